@@ -17,7 +17,9 @@
 package org.summerboot.jexpress.api.common;
 
 import org.apache.commons.lang3.StringUtils;
+import io.netty.util.AsciiString;
 import org.summerboot.jexpress.boot.BootConstants;
+import org.summerboot.jexpress.infra.netty.util.ResponseHeaderCache;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -31,12 +33,18 @@ public class ProcessorSettings {
 
     protected String httpServiceResponseHeaderName_Reference = BootConstants.RESPONSE_HEADER_KEY_REF;
 
+    // pre-encoded once here instead of per response
+    protected AsciiString httpServiceResponseHeaderKey_ServerTimestamp = ResponseHeaderCache.HEADER_TS;
+
+    protected AsciiString httpServiceResponseHeaderKey_Reference = ResponseHeaderCache.HEADER_REF;
+
     public String getHttpServiceResponseHeaderName_ServerTimestamp() {
         return httpServiceResponseHeaderName_ServerTimestamp;
     }
 
     public void setHttpServiceResponseHeaderName_ServerTimestamp(String httpServiceResponseHeaderName_ServerTimestamp) {
         this.httpServiceResponseHeaderName_ServerTimestamp = StringUtils.isBlank(httpServiceResponseHeaderName_ServerTimestamp) ? null : httpServiceResponseHeaderName_ServerTimestamp;
+        this.httpServiceResponseHeaderKey_ServerTimestamp = ResponseHeaderCache.headerName(this.httpServiceResponseHeaderName_ServerTimestamp);
     }
 
     public String getHttpServiceResponseHeaderName_Reference() {
@@ -45,6 +53,34 @@ public class ProcessorSettings {
 
     public void setHttpServiceResponseHeaderName_Reference(String httpServiceResponseHeaderName_Reference) {
         this.httpServiceResponseHeaderName_Reference = StringUtils.isBlank(httpServiceResponseHeaderName_Reference) ? null : httpServiceResponseHeaderName_Reference;
+        this.httpServiceResponseHeaderKey_Reference = ResponseHeaderCache.headerName(this.httpServiceResponseHeaderName_Reference);
+    }
+
+    /**
+     * @return the pre-encoded server timestamp header name, null when disabled
+     */
+    public AsciiString getHttpServiceResponseHeaderKey_ServerTimestamp() {
+        return httpServiceResponseHeaderKey_ServerTimestamp;
+    }
+
+    /**
+     * @return the pre-encoded reference header name, null when disabled
+     */
+    public AsciiString getHttpServiceResponseHeaderKey_Reference() {
+        return httpServiceResponseHeaderKey_Reference;
+    }
+
+    protected String metricsName;
+
+    /**
+     * @return endpoint name in metrics, like "GET /api/v1/users/{id}"
+     */
+    public String getMetricsName() {
+        return metricsName;
+    }
+
+    public void setMetricsName(String metricsName) {
+        this.metricsName = metricsName;
     }
 
     protected LogSettings logSettings;
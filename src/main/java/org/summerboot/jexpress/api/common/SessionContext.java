@@ -17,6 +17,7 @@
 package org.summerboot.jexpress.api.common;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
@@ -24,6 +25,7 @@ import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.AsciiString;
 import jakarta.ws.rs.core.MediaType;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -39,15 +41,19 @@ import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.SocketAddress;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Flow;
 
 /**
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
@@ -73,7 +79,7 @@ public class SessionContext {
     protected final String txId;
     protected final long hit;
     protected final long startTs;
-    protected final OffsetDateTime startDateTime;
+    protected OffsetDateTime startDateTime;// lazy, only needed by the log report
     protected Caller caller;
     protected String callerId;
 
@@ -92,10 +98,13 @@ public class SessionContext {
     protected byte[] data;
     protected String txt = "";
     protected File file;
+    @JsonIgnore
+    protected Flow.Publisher<List<ByteBuffer>> responseStream;
+    protected long responseStreamContentLength = -1;
     protected boolean downloadMode = true;
     protected String redirect;
     protected final List<POI> poi = new ArrayList<>();
-    protected final List<Memo> memo = new ArrayList<>();
+    protected List<Memo> memo;// lazy, most requests have no memo
     protected Boolean pretty = null;
 
     // Session attributes
@@ -142,7 +151,6 @@ public class SessionContext {
         this.txId = txId;
         this.hit = hit;
         this.startTs = startTs;
-        this.startDateTime = OffsetDateTime.ofInstant(java.time.Instant.ofEpochMilli(startTs), java.time.ZoneId.systemDefault());
         this.requestHeaders = requestHeaders;
         this.protocol = protocol;
         this.requestMethod = requestMethod;
@@ -157,7 +165,6 @@ public class SessionContext {
         this.txId = txId;
         this.hit = hit;
         this.startTs = startTs;
-        this.startDateTime = OffsetDateTime.ofInstant(java.time.Instant.ofEpochMilli(startTs), java.time.ZoneId.systemDefault());
         this.requestHeaders = requestHeaders;
         this.protocol = protocol;
         this.requestMethod = requestMethod;
@@ -248,6 +255,9 @@ public class SessionContext {
     }
 
     public OffsetDateTime startDateTime() {
+        if (startDateTime == null) {
+            startDateTime = OffsetDateTime.ofInstant(Instant.ofEpochMilli(startTs), ZoneId.systemDefault());
+        }
         return startDateTime;
     }
 
@@ -274,7 +284,7 @@ public class SessionContext {
     }
 
     //@JsonInclude(JsonInclude.Include.NON_NULL)
-    public HttpResponseStatus status() {
+    public synchronized HttpResponseStatus status() {
         return status;
     }
 
@@ -282,7 +292,7 @@ public class SessionContext {
         return status(status, null);
     }
 
-    public SessionContext status(HttpResponseStatus status, Boolean autoConvertBlank200To204) {
+    public synchronized SessionContext status(HttpResponseStatus status, Boolean autoConvertBlank200To204) {
         this.status = status;
         if (autoConvertBlank200To204 != null) {
             this.autoConvertBlank200To204 = autoConvertBlank200To204;
@@ -335,6 +345,28 @@ public class SessionContext {
         return this;
     }
 
+    /**
+     * Same as {@link #responseHeader(String, Object)} with a pre-encoded header name
+     *
+     * @param key
+     * @param value
+     * @return
+     */
+    public SessionContext responseHeader(AsciiString key, CharSequence value) {
+        if (key == null || key.isEmpty()) {
+            return this;
+        }
+        if (responseHeaders == null) {
+            responseHeaders = new DefaultHttpHeaders();
+        }
+        if (value == null) {
+            responseHeaders.remove(key);
+        } else {
+            responseHeaders.set(key, value);
+        }
+        return this;
+    }
+
     //        public Response addHeaders(String key, Iterable<?> values) {
 //            if (StringUtils.isBlank(key) || values == null) {
 //                return this;
@@ -487,6 +519,31 @@ public class SessionContext {
         return file;
     }
 
+    /**
+     * Pipe an upstream body to the client without buffering, e.g. from RpcDelegate.rpcPipe(...)
+     *
+     * @param publisher     must be subscribed exactly once, the upstream connection is held until then
+     * @param contentType
+     * @param contentLength -1 for chunked transfer encoding
+     * @return
+     */
+    public SessionContext responseStream(Flow.Publisher<List<ByteBuffer>> publisher, String contentType, long contentLength) {
+        resetResponse(false);
+        this.responseStream = publisher;
+        this.responseStreamContentLength = contentLength;
+        this.contentType = contentType;
+        memo("stream", contentLength < 0 ? "chunked" : contentLength + " bytes");
+        return this;
+    }
+
+    public Flow.Publisher<List<ByteBuffer>> responseStream() {
+        return responseStream;
+    }
+
+    public long responseStreamContentLength() {
+        return responseStreamContentLength;
+    }
+
     public boolean isDownloadMode() {
         return downloadMode;
     }
@@ -502,6 +559,8 @@ public class SessionContext {
         data = null;
         txt = "";
         file = null;
+        responseStream = null;
+        responseStreamContentLength = -1;
         downloadMode = true;
         redirect = null;
         contentDescription = null;
@@ -876,9 +935,12 @@ public class SessionContext {
         return this;
     }
 
+    /**
+     * @return snapshot of the recorded POI, which may still be recorded from other threads, e.g. by rpcAsync callbacks
+     */
     //@JsonInclude(JsonInclude.Include.NON_NULL)
     public synchronized List<POI> poi() {
-        return poi;
+        return List.copyOf(poi);
     }
 
     public synchronized SessionContext memo(String desc) {
@@ -894,13 +956,19 @@ public class SessionContext {
     }
 
     public synchronized SessionContext memo(String id, String desc, Level logLevel) {
+        if (memo == null) {
+            memo = new ArrayList<>();
+        }
         memo.add(new Memo(id, desc, logLevel));
         return this;
     }
 
+    /**
+     * @return snapshot of the recorded memo, which may still be recorded from other threads, e.g. by rpcAsync callbacks
+     */
     //@JsonInclude(JsonInclude.Include.NON_NULL)
     public synchronized List<Memo> memo() {
-        return memo;
+        return memo == null ? List.of() : List.copyOf(memo);
     }
 
     public boolean autoConvertBlank200To204() {
@@ -968,18 +1036,22 @@ public class SessionContext {
             return this;
         }
         NioConfig.VerboseTargetPOIType filterType = cfg == null ? NioConfig.VerboseTargetPOIType.all : cfg.getFilterPOIType();
-        sb.append(BootConstants.BR + "\tPOI.t0=").append(startDateTime).append(" ");
+        sb.append(BootConstants.BR + "\tPOI.t0=").append(startDateTime()).append(" ");
         switch (filterType) {
             case all:
-                poi.forEach((p) -> {
+                for (int i = 0, size = poi.size(); i < size; i++) {
+                    POI p = poi.get(i);
                     sb.append(p.name).append("=").append(p.ts - startTs).append("ms, ");
-                });
+                }
                 break;
             case filter:
                 Set<String> poiSet = cfg.getFilterPOISet();
-                poi.stream().filter((p) -> (poiSet.contains(p.name))).forEachOrdered((p) -> {
-                    sb.append(p.name).append("=").append(p.ts - startTs).append("ms, ");
-                });
+                for (int i = 0, size = poi.size(); i < size; i++) {
+                    POI p = poi.get(i);
+                    if (poiSet.contains(p.name)) {
+                        sb.append(p.name).append("=").append(p.ts - startTs).append("ms, ");
+                    }
+                }
                 break;
             case ignore:
                 sb.append("off");
@@ -993,18 +1065,21 @@ public class SessionContext {
     }
 
     public synchronized SessionContext reportMemo(StringBuilder sb, Level reportLevel) {
-        if (memo.isEmpty()) {
+        if (memo == null || memo.isEmpty()) {
             return this;
         }
         sb.append(BootConstants.BR + BootConstants.BR + "\tMemo: ");
-        memo.stream().filter(m -> m.logLevel.isMoreSpecificThan(reportLevel))
-                .forEach((m) -> {
-                    if (m.id == null || m.id.isEmpty()) {
-                        sb.append(BootConstants.BR + "\t\t").append(m.desc);
-                    } else {
-                        sb.append(BootConstants.BR + "\t\t").append(m.id).append(BootConstants.MEMO_DELIMITER).append(m.desc);
-                    }
-                });
+        for (int i = 0, size = memo.size(); i < size; i++) {
+            Memo m = memo.get(i);
+            if (!m.logLevel.isMoreSpecificThan(reportLevel)) {
+                continue;
+            }
+            if (m.id == null || m.id.isEmpty()) {
+                sb.append(BootConstants.BR + "\t\t").append(m.desc);
+            } else {
+                sb.append(BootConstants.BR + "\t\t").append(m.id).append(BootConstants.MEMO_DELIMITER).append(m.desc);
+            }
+        }
         return this;
     }
 
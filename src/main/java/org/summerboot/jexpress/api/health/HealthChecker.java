@@ -45,6 +45,22 @@ public interface HealthChecker<T extends Object> extends Comparable<Object> {
         return this.getClass().getSimpleName();
     }
 
+    /**
+     * @return seconds between two inspections while healthy, 0 to inspect on demand only (via
+     * HealthMonitor.inspect()). While unhealthy the inspection is retried with exponential backoff from
+     * nio.server.health.InspectionIntervalSeconds up to nio.server.health.InspectionIntervalSeconds.max
+     */
+    default int inspectionIntervalSeconds() {
+        return 0;
+    }
+
+    /**
+     * @return milliseconds before an inspection is cancelled and reported as failed, 0 to use the process timeout
+     */
+    default long inspectionTimeoutMs() {
+        return 0;
+    }
+
     enum InspectionType {
         HealthCheck, PauseCheck
     }
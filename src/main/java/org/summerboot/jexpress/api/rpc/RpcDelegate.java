@@ -18,15 +18,19 @@ package org.summerboot.jexpress.api.rpc;
 
 import io.netty.handler.codec.http.HttpResponseStatus;
 import org.summerboot.jexpress.api.common.SessionContext;
+import org.summerboot.jexpress.integration.rpc.http.CapturedBodyPublisher;
 import org.summerboot.jexpress.integration.rpc.http.HttpClientStringSubscriber;
+import tools.jackson.databind.JavaType;
 
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
@@ -53,10 +57,20 @@ public interface RpcDelegate {
         return sb.toString();
     }
 
+    /**
+     * @param body
+     * @return a String body publisher which keeps the body for logging, no need to subscribe to it again
+     */
+    static HttpRequest.BodyPublisher bodyPublisher(String body) {
+        return new CapturedBodyPublisher(body);
+    }
+
     static String getHttpRequestBody(HttpRequest req) {
         String reqBody = null;
         Optional<HttpRequest.BodyPublisher> pub = req.bodyPublisher();
-        if (pub.isPresent()) {
+        if (pub.isPresent() && pub.get() instanceof CapturedBodyPublisher captured) {
+            reqBody = captured.getBody();
+        } else if (pub.isPresent()) {
             reqBody = pub.map(p -> {
                 var bodySubscriber = HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
                 var flowSubscriber = new HttpClientStringSubscriber(bodySubscriber);
@@ -104,4 +118,87 @@ public interface RpcDelegate {
      * @throws IOException
      */
     <T> RpcResult<T> rpcEx(SessionContext context, RpcResult<T> request, HttpResponseStatus... successStatusList) throws IOException;
+
+    /**
+     * Non-blocking version of {@link #rpcEx(SessionContext, HttpRequest.Builder, HttpResponseStatus...)}, the calling
+     * thread is not held while waiting for the response
+     *
+     * @param <T>
+     * @param context
+     * @param reqBuilder
+     * @param successStatusList
+     * @return a future of Non-Null RpcResult, completes exceptionally with the IOException if failed to send/receive
+     */
+    <T> CompletableFuture<RpcResult<T>> rpcAsync(SessionContext context, HttpRequest.Builder reqBuilder, HttpResponseStatus... successStatusList);
+
+    /**
+     * Non-blocking version of {@link #rpcEx(SessionContext, HttpRequest, String, HttpResponseStatus...)}
+     *
+     * @param <T>
+     * @param context
+     * @param originRequest
+     * @param originRequestBody
+     * @param successStatusList
+     * @return a future of Non-Null RpcResult, completes exceptionally with the IOException if failed to send/receive
+     */
+    <T> CompletableFuture<RpcResult<T>> rpcAsync(SessionContext context, HttpRequest originRequest, String originRequestBody, HttpResponseStatus... successStatusList);
+
+    /**
+     * Fan-out: send all requests concurrently and wait for all of them with a shared deadline, memos and POIs of all
+     * calls are collected into the context
+     *
+     * @param <T>
+     * @param context
+     * @param timeoutMs         shared deadline of all requests
+     * @param reqBuilders
+     * @param successStatusList
+     * @return Non-Null RpcResults in the same order as reqBuilders, a failed, rejected or timed out call has
+     * remoteSuccess=false without response and its error in {@link RpcResult#error()}, the context status is not
+     * changed: the caller decides whether the request fails
+     */
+    <T> List<RpcResult<T>> rpcAll(SessionContext context, long timeoutMs, List<HttpRequest.Builder> reqBuilders, HttpResponseStatus... successStatusList);
+
+    /**
+     * Streaming mode: a success response body is deserialized by Jackson directly from the response stream while it
+     * arrives, without holding the whole body as String, only the first httpclient.streaming.captureKB are kept for
+     * logging. The body is read with blocking I/O on the calling thread, like rpcEx. Circuit breaker, bulkhead, retry
+     * and hedging apply as with rpcEx, the response cache does not.
+     *
+     * @param <T>
+     * @param context
+     * @param reqBuilder
+     * @param successResponseClass
+     * @param successStatusList
+     * @return a Non-Null RpcResult with successResponse, update(...) is not needed
+     * @throws IOException
+     */
+    <T> RpcResult<T> rpcStream(SessionContext context, HttpRequest.Builder reqBuilder, Class<T> successResponseClass, HttpResponseStatus... successStatusList) throws IOException;
+
+    /**
+     * Streaming mode, see {@link #rpcStream(SessionContext, HttpRequest.Builder, Class, HttpResponseStatus...)}
+     *
+     * @param <T>
+     * @param context
+     * @param reqBuilder
+     * @param successResponseType
+     * @param successStatusList
+     * @return a Non-Null RpcResult with successResponse, update(...) is not needed
+     * @throws IOException
+     */
+    <T> RpcResult<T> rpcStream(SessionContext context, HttpRequest.Builder reqBuilder, JavaType successResponseType, HttpResponseStatus... successStatusList) throws IOException;
+
+    /**
+     * Pipe mode: a success response body is piped straight through to the client response without buffering, via
+     * {@link SessionContext#responseStream(java.util.concurrent.Flow.Publisher, String, long)}. An error response body is
+     * read as String for RpcResult.update(...) and not piped. Circuit breaker, bulkhead, retry and hedging apply until
+     * the response headers arrive, the response cache does not.
+     *
+     * @param <T>
+     * @param context
+     * @param reqBuilder
+     * @param successStatusList
+     * @return a Non-Null RpcResult without body when remoteSuccess is true
+     * @throws IOException
+     */
+    <T> RpcResult<T> rpcPipe(SessionContext context, HttpRequest.Builder reqBuilder, HttpResponseStatus... successStatusList) throws IOException;
 }
@@ -27,6 +27,7 @@ import org.summerboot.jexpress.util.lang.BeanUtil;
 import tools.jackson.databind.JavaType;
 import tools.jackson.databind.ObjectMapper;
 
+import java.io.InputStream;
 import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
@@ -49,6 +50,8 @@ public class RpcResult<T> {
     protected final boolean remoteSuccess;
     protected T successResponse;
     protected final ContentType contentType;
+    protected final boolean streamed;
+    protected Err error;
 
     enum ContentType {JSON, XML, OTHER}
 
@@ -59,10 +62,33 @@ public class RpcResult<T> {
     }
 
     public RpcResult(HttpRequest originRequest, String originRequestBody, HttpResponse httpResponse, boolean remoteSuccess, HttpClientConfig httpClientConfig) {
+        this(originRequest, originRequestBody, httpResponse, httpResponse == null ? null : String.valueOf(httpResponse.body()), false, remoteSuccess, null, httpClientConfig);
+    }
+
+    /**
+     * Streaming mode: the response body has been consumed and successResponse was deserialized from the stream,
+     * update(...) does nothing
+     *
+     * @param originRequest
+     * @param originRequestBody
+     * @param httpResponse
+     * @param capturedResponseBody the captured (may be truncated) body for logging, or the full error body when
+     *                             remoteSuccess is false
+     * @param remoteSuccess
+     * @param successResponse
+     * @param httpClientConfig
+     */
+    public RpcResult(HttpRequest originRequest, String originRequestBody, HttpResponse httpResponse, String capturedResponseBody, boolean remoteSuccess, T successResponse, HttpClientConfig httpClientConfig) {
+        this(originRequest, originRequestBody, httpResponse, capturedResponseBody, remoteSuccess, remoteSuccess, successResponse, httpClientConfig);
+    }
+
+    protected RpcResult(HttpRequest originRequest, String originRequestBody, HttpResponse httpResponse, String rpcResponseBody, boolean streamed, boolean remoteSuccess, T successResponse, HttpClientConfig httpClientConfig) {
         this.originRequest = originRequest;
         this.originRequestBody = originRequestBody;
         this.httpResponse = httpResponse;
-        this.rpcResponseBody = httpResponse == null ? null : String.valueOf(httpResponse.body());
+        this.rpcResponseBody = rpcResponseBody;
+        this.streamed = streamed;
+        this.successResponse = successResponse;
         this.httpStatusCode = httpResponse == null ? 0 : httpResponse.statusCode();
         this.httpStatus = HttpResponseStatus.valueOf(httpStatusCode);
         this.remoteSuccess = remoteSuccess;
@@ -136,6 +162,19 @@ public class RpcResult<T> {
         return contentType;
     }
 
+    /**
+     * @return why the call got no response, e.g. timed out, rejected by circuit breaker or IO error; null if a
+     * response was received
+     */
+    public Err error() {
+        return error;
+    }
+
+    public RpcResult<T> error(Err error) {
+        this.error = error;
+        return this;
+    }
+
     public RpcResult<T> update(Class<T> successResponseClass, final SessionContext context) {
         return update(httpClientConfiguredObjectMapper, successResponseClass, context);
     }
@@ -160,7 +199,7 @@ public class RpcResult<T> {
      * @return this
      */
     public RpcResult<T> update(ObjectMapper jacksonMapper, Class<T> successResponseClass, final SessionContext context) {
-        if (remoteSuccess) {
+        if (remoteSuccess && !streamed) {
             successResponse = deserialize(jacksonMapper, successResponseClass, context);
         }
         return this;
@@ -183,7 +222,7 @@ public class RpcResult<T> {
      * @return this
      */
     public RpcResult<T> update(ObjectMapper jacksonMapper, JavaType successResponseType, final SessionContext context) {
-        if (remoteSuccess) {
+        if (remoteSuccess && !streamed) {
             successResponse = deserialize(jacksonMapper, successResponseType, context);
         }
         return this;
@@ -212,17 +251,10 @@ public class RpcResult<T> {
         R ret;
         try {
             ret = responseClass == null
-                    ? jacksonMapper.readValue(rpcResponseBody, responseType)
-                    : jacksonMapper.readValue(rpcResponseBody, responseClass);
-            if (doValidation) {
-                String error = BeanUtil.getBeanValidationResult(ret);
-                if (error != null) {
-                    if (context != null) {
-                        Err e = new Err(BootErrorCode.HTTPCLIENT_INVALID_RESPONSE_FORMAT, null, "Invalid HTTP client JSON response", null, error);
-                        context.status(HttpResponseStatus.BAD_GATEWAY).error(e);
-                    }
-                    return null;
-                }
+                    ? BeanUtil.reader(jacksonMapper, responseType).readValue(rpcResponseBody)
+                    : BeanUtil.reader(jacksonMapper, responseClass).readValue(rpcResponseBody);
+            if (doValidation && !isValid(ret, context)) {
+                return null;
             }
             if (!remoteSuccess && context != null && ret instanceof ServiceErrorConvertible) {
                 ServiceErrorConvertible errorResponse = (ServiceErrorConvertible) ret;
@@ -243,6 +275,41 @@ public class RpcResult<T> {
         }
         return ret;
     }
+
+    /**
+     * Streaming mode: deserialize directly from the response stream and validate, set error in context if failed
+     *
+     * @param <R>
+     * @param jacksonMapper
+     * @param responseType
+     * @param in
+     * @param context
+     * @return null if failed
+     */
+    public static <R> R deserialize(ObjectMapper jacksonMapper, JavaType responseType, InputStream in, final SessionContext context) {
+        try {
+            R ret = BeanUtil.reader(jacksonMapper, responseType).readValue(in);
+            return isValid(ret, context) ? ret : null;
+        } catch (Throwable ex) {
+            if (context != null) {
+                Err e = new Err(BootErrorCode.HTTPCLIENT_UNKNOWN_RESPONSE_FORMAT, null, "Unknown HTTP client JSON response", ex, ex.toString());
+                context.status(HttpResponseStatus.BAD_GATEWAY).error(e);
+            }
+            return null;
+        }
+    }
+
+    protected static boolean isValid(Object ret, final SessionContext context) {
+        String error = BeanUtil.getBeanValidationResult(ret);
+        if (error != null) {
+            if (context != null) {
+                Err e = new Err(BootErrorCode.HTTPCLIENT_INVALID_RESPONSE_FORMAT, null, "Invalid HTTP client JSON response", null, error);
+                context.status(HttpResponseStatus.BAD_GATEWAY).error(e);
+            }
+            return false;
+        }
+        return true;
+    }
 }
 
 
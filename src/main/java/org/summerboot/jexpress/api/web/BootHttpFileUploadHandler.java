@@ -48,18 +48,32 @@ import org.summerboot.jexpress.boot.BootConstants;
 import org.summerboot.jexpress.infra.netty.config.NioConfig;
 import org.summerboot.jexpress.infra.netty.util.NioHttpUtil;
 import org.summerboot.jexpress.webserver.multipart.MultipartUtil;
+import org.summerboot.jexpress.webserver.multipart.StreamingFileUpload;
+import org.summerboot.jexpress.webserver.multipart.StreamingHttpDataFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Multipart file upload handler, by default each file lands in a temp file before
+ * {@link #onFileUploaded(ChannelHandlerContext, String, File, Map, Caller, SessionContext)} is called on the IO thread.
+ * <p>
+ * Streaming mode: return an {@link UploadSink} from
+ * {@link #createUploadSink(String, String, String, Map, Caller, SessionContext)} to receive the content chunk by chunk,
+ * written on the BizExecutor when server.http.webserver.upload.offload=true. The connection stops reading while the
+ * sink is behind by server.http.webserver.upload.bufferKB, and the upload is aborted after
+ * server.http.webserver.upload.maxDurationSeconds.
+ *
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
  */
 //NOT @ChannelHandler.Sharable due to BootHttpFileUploadHandler is stateful
@@ -102,6 +116,10 @@ public abstract class BootHttpFileUploadHandler<T> extends SimpleChannelInboundH
     protected long fileSizeQuota;
     protected Caller caller;
     protected Map<String, String> params;
+    protected StreamingFileUpload streamingFileUpload;
+    protected ScheduledFuture<?> uploadTimer;
+    protected long uploadTimeLimitMs;
+    protected long uploadDeadlineNanos;
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable ex) {
@@ -113,6 +131,8 @@ public abstract class BootHttpFileUploadHandler<T> extends SimpleChannelInboundH
         if (httpDecoder != null) {
             httpDecoder.cleanFiles();
         }
+        abortStreamingFileUpload("connection closed");
+        cancelUploadTimer();
         ctx.fireChannelInactive();
     }
 
@@ -137,8 +157,15 @@ public abstract class BootHttpFileUploadHandler<T> extends SimpleChannelInboundH
                     ctx.channel().close();// the only way to stop uploading is to close socket 
                     return;
                 }
-                httpDecoder = new HttpPostRequestDecoder(HDF, request);
+                httpDecoder = new HttpPostRequestDecoder(new StreamingHttpDataFactory(USER_DISK,
+                        (name, filename, contentType, contentTransferEncoding, charset, size) -> createStreamingFileUpload(ctx, name, filename, contentType, contentTransferEncoding, charset, size)),
+                        request);
                 httpDecoder.setDiscardThreshold(0);
+                uploadTimeLimitMs = getUploadTimeLimit_Ms(caller, context);
+                if (uploadTimeLimitMs > 0) {
+                    uploadDeadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(uploadTimeLimitMs);
+                    uploadTimer = ctx.executor().schedule(() -> onUploadTimeout(ctx, uploadTimeLimitMs), uploadTimeLimitMs, TimeUnit.MILLISECONDS);
+                }
             }
         }
         if (!isMultipart) {
@@ -172,6 +199,8 @@ public abstract class BootHttpFileUploadHandler<T> extends SimpleChannelInboundH
     }
 
     protected void reset() {
+        abortStreamingFileUpload("upload incomplete");
+        cancelUploadTimer();
         //关闭httpDecoder
         if (httpDecoder != null) {
             httpDecoder.cleanFiles();
@@ -212,6 +241,11 @@ public abstract class BootHttpFileUploadHandler<T> extends SimpleChannelInboundH
                             FileUpload fileUpload = (FileUpload) data;
                             if (fileUpload.isCompleted()) {
                                 log.debug("file completed " + fileUpload.length());
+                                if (fileUpload instanceof StreamingFileUpload streaming) {
+                                    streamingFileUpload = null;
+                                    onStreamingFileUploadCompleted(ctx, streaming, params, caller, context);
+                                    break;
+                                }
                                 T ret = onFileUploaded(ctx, fileUpload.getFilename(), fileUpload.getFile(), params, caller, context);
                                 context.response(ret);
                                 NioHttpUtil.sendResponse(ctx, true, context, null, null);
@@ -325,4 +359,124 @@ public abstract class BootHttpFileUploadHandler<T> extends SimpleChannelInboundH
 
     protected abstract T onFileUploaded(ChannelHandlerContext ctx, String fileName, File file, Map<String, String> params, Caller caller, SessionContext context);
 
+    /**
+     * Streaming mode, e.g.
+     * <code>return new DigestUploadSink(MessageDigest.getInstance("SHA-256"), new FileUploadSink(path));</code>
+     *
+     * @param fieldName
+     * @param fileName
+     * @param contentType
+     * @param params      form fields received before the file
+     * @param caller
+     * @param context
+     * @return null to receive the file in a temp file (default)
+     * @throws IOException
+     */
+    protected UploadSink createUploadSink(String fieldName, String fileName, String contentType, Map<String, String> params, Caller caller, SessionContext context) throws IOException {
+        return null;
+    }
+
+    /**
+     * Streaming mode: called after {@link UploadSink#complete()}, on the BizExecutor when
+     * server.http.webserver.upload.offload=true, otherwise on the IO thread
+     *
+     * @param ctx
+     * @param fileName
+     * @param sink
+     * @param params
+     * @param caller
+     * @param context
+     * @return response
+     */
+    protected T onFileStreamed(ChannelHandlerContext ctx, String fileName, UploadSink sink, Map<String, String> params, Caller caller, SessionContext context) {
+        return onFileUploaded(ctx, fileName, sink.getFile(), params, caller, context);
+    }
+
+    /**
+     * @param caller
+     * @param context
+     * @return max duration (in milliseconds) of an upload, 0 for unlimited
+     */
+    protected long getUploadTimeLimit_Ms(Caller caller, SessionContext context) {
+        return TimeUnit.SECONDS.toMillis(uploadCfg.getUploadMaxDurationSeconds());
+    }
+
+    protected FileUpload createStreamingFileUpload(ChannelHandlerContext ctx, String name, String filename, String contentType, String contentTransferEncoding, Charset charset, long size) {
+        UploadSink sink;
+        try {
+            sink = createUploadSink(name, filename, contentType, params, caller, context);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        if (sink == null) {
+            return null;
+        }
+        streamingFileUpload = new StreamingFileUpload(name, filename, contentType, contentTransferEncoding, charset, size,
+                sink, ctx.channel(), uploadCfg.isUploadOffload() ? uploadCfg.getBizExecutor() : null, uploadCfg.getUploadBufferKB() * 1024L);
+        return streamingFileUpload;
+    }
+
+    protected void onStreamingFileUploadCompleted(ChannelHandlerContext ctx, StreamingFileUpload upload, Map<String, String> params, Caller caller, SessionContext context) {
+        // the handler fields (incl. the request timer) are reset for the next request before the offloaded sink completes,
+        // so the upload time limit is enforced on the sink by its own timer, cancelled only when the sink is done
+        ScheduledFuture<?> sinkTimer = null;
+        if (uploadTimeLimitMs > 0) {
+            long limitMs = uploadTimeLimitMs;
+            long remainingNanos = Math.max(0, uploadDeadlineNanos - System.nanoTime());
+            sinkTimer = ctx.executor().schedule(() -> upload.expire(new TimeoutException("File upload not completed within " + limitMs + " ms")), remainingNanos, TimeUnit.NANOSECONDS);
+        }
+        ScheduledFuture<?> timer = sinkTimer;
+        upload.getResult().whenComplete((sink, ex) -> {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (ex instanceof TimeoutException) {
+                log.warn("upload timeout: " + upload);
+                Err err = new Err(BootErrorCode.HTTP_REQUEST_TIMEOUT, null, ex.getMessage(), null);
+                context.error(err).status(HttpResponseStatus.REQUEST_TIMEOUT);
+            } else if (ex != null) {
+                log.error("upload failed: " + upload, ex);
+                Err err = new Err(BootErrorCode.NIO_UNEXPECTED_SERVICE_FAILURE, null, "File upload failed", ex);
+                context.error(err).status(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            } else {
+                try {
+                    T ret = onFileStreamed(ctx, upload.getFilename(), sink, params, caller, context);
+                    context.response(ret);
+                } catch (Throwable e) {
+                    log.error("onFileStreamed failed: " + upload, e);
+                    Err err = new Err(BootErrorCode.NIO_UNEXPECTED_SERVICE_FAILURE, null, "File upload failed", e);
+                    context.error(err).status(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                }
+            }
+            NioHttpUtil.sendResponse(ctx, true, context, null, null);
+        });
+    }
+
+    protected void abortStreamingFileUpload(String reason) {
+        StreamingFileUpload upload = streamingFileUpload;
+        streamingFileUpload = null;
+        if (upload != null && !upload.isCompleted()) {
+            upload.abort(new IOException(reason + ": " + upload.getFilename()));
+        }
+    }
+
+    protected void cancelUploadTimer() {
+        if (uploadTimer != null) {
+            uploadTimer.cancel(false);
+            uploadTimer = null;
+        }
+    }
+
+    protected void onUploadTimeout(ChannelHandlerContext ctx, long uploadTimeLimitMs) {
+        uploadTimer = null;
+        if (httpDecoder == null) {
+            return;
+        }
+        abortStreamingFileUpload("upload timeout");
+        reset();
+        Err err = new Err(BootErrorCode.HTTP_REQUEST_TIMEOUT, null, "File upload not completed within " + uploadTimeLimitMs + " ms", null);
+        context.error(err).status(HttpResponseStatus.REQUEST_TIMEOUT);
+        NioHttpUtil.sendResponse(ctx, false, context, null, null);
+    }
+
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.api.web;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Receives the content of one uploaded file chunk by chunk, see
+ * {@link BootHttpFileUploadHandler#createUploadSink(String, String, String, java.util.Map, org.summerboot.jexpress.api.auth.Caller, org.summerboot.jexpress.api.common.SessionContext)}.
+ * <p>
+ * The methods are called one at a time in order, on the IO thread or on the BizExecutor
+ * (server.http.webserver.upload.offload), never concurrently.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public interface UploadSink {
+
+    /**
+     * @param chunk released by the caller after return, do not keep a reference
+     * @throws IOException to abort the upload
+     */
+    void write(ByteBuf chunk) throws IOException;
+
+    /**
+     * All chunks have been written
+     *
+     * @throws IOException to fail the upload
+     */
+    void complete() throws IOException;
+
+    /**
+     * The upload failed, was cancelled or exceeded a quota, release the resources, e.g. delete the partial file
+     *
+     * @param cause
+     */
+    void abort(Throwable cause);
+
+    /**
+     * @return the file written by this sink (or its downstream sink), null if none
+     */
+    default File getFile() {
+        return null;
+    }
+}
@@ -238,6 +238,10 @@ public class BackOffice extends BootConfig {
     @Config(key = "backoffice.IdleMonotor.Config0.Reload.IntervalSec", defaultValue = "30")
     private int idleConfig0ReloadIntervalSec = 30;
 
+    @Config(key = "trainingRun.methods", defaultValue = "GET, HEAD",
+            desc = "CSV of the HTTP methods called by -trainingRun, load balancing ping endpoints are always called. Add POST, PUT, PATCH, DELETE etc. only against a disposable training environment")
+    private String[] trainingRunMethods = {"GET", "HEAD"};
+
 
     @ConfigHeader(title = "4.1 Default Path/File Naming")
     @Config(key = "naming.file.defaultMasterPasswordFile", defaultValue = "master.password")
@@ -353,6 +357,9 @@ public class BackOffice extends BootConfig {
     @Config(key = "naming.cli.debug", defaultValue = "debug")
     private String cliName_debugMode = "debug";
 
+    @Config(key = "naming.cli.trainingRun", defaultValue = "trainingRun")
+    private String cliName_trainingRun = "trainingRun";
+
     @Config(key = "naming.memo.delimiter", defaultValue = ": ", trim = false)
     private String memoDelimiter = ": ";
 
@@ -611,6 +618,14 @@ public class BackOffice extends BootConfig {
         return cliName_debugMode;
     }
 
+    public String getCliName_trainingRun() {
+        return cliName_trainingRun;
+    }
+
+    public String[] getTrainingRunMethods() {
+        return trainingRunMethods;
+    }
+
     public String getMemoDelimiter() {
         return memoDelimiter;
     }
@@ -97,6 +97,7 @@ public interface BootConstants {
     String CLI_FORMAT_CONFIG_FILE = BackOffice.agent.getCliName_formatCfgFile();
     String CLI_PSV = BackOffice.agent.getCliName_psv();
     String CLI_DEBUGMODE = BackOffice.agent.getCliName_debugMode();
+    String CLI_TRAINING_RUN = BackOffice.agent.getCliName_trainingRun();
     String MEMO_DELIMITER = BackOffice.agent.getMemoDelimiter();
 
     /*
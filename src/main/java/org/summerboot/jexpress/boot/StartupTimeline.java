@@ -0,0 +1,100 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.boot;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup phase timing, each {@link #mark(String)} records the time elapsed since the previous mark.
+ * <p>
+ * The time from JVM process start to the first phase (JVM init, class loading and static init before the application
+ * object is created) is reported as "jvm".
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class StartupTimeline {
+
+    public record Phase(String name, long millis) {
+    }
+
+    protected final long jvmMillis;
+    protected final long startNanos;
+    protected long lastNanos;
+    protected final List<Phase> phases = new ArrayList<>();
+
+    public StartupTimeline() {
+        startNanos = System.nanoTime();
+        lastNanos = startNanos;
+        // ProcessHandle is cheap, RuntimeMXBean.getUptime() would load JMX at the very beginning of the startup
+        jvmMillis = ProcessHandle.current().info().startInstant()
+                .map(start -> Math.max(0, Duration.between(start, Instant.now()).toMillis()))
+                .orElse(-1L);
+    }
+
+    /**
+     * Record a phase ends now
+     *
+     * @param phase
+     * @return phase duration in milliseconds
+     */
+    public synchronized long mark(String phase) {
+        long now = System.nanoTime();
+        long millis = TimeUnit.NANOSECONDS.toMillis(now - lastNanos);
+        lastNanos = now;
+        phases.add(new Phase(phase, millis));
+        return millis;
+    }
+
+    /**
+     * @return milliseconds from JVM process start to the first phase, -1 if not available on this OS
+     */
+    public long getJvmMillis() {
+        return jvmMillis;
+    }
+
+    /**
+     * @return milliseconds from the first phase to the last mark
+     */
+    public synchronized long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastNanos - startNanos);
+    }
+
+    public synchronized List<Phase> getPhases() {
+        return List.copyOf(phases);
+    }
+
+    /**
+     * @return one line report, e.g. startup 1520ms (jvm 310ms): scan=220ms, cli=15ms, config=180ms, ...
+     */
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("startup ").append(getTotalMillis()).append("ms");
+        if (jvmMillis >= 0) {
+            sb.append(" (jvm ").append(jvmMillis).append("ms)");
+        }
+        sb.append(":");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase p = phases.get(i);
+            sb.append(i == 0 ? " " : ", ").append(p.name()).append('=').append(p.millis()).append("ms");
+        }
+        return sb.toString();
+    }
+}
@@ -295,6 +295,7 @@ abstract public class SummerApplication extends SummerBigBang {
             if (instrumentationMgr != null/* && isJMXRequired()*/) {
                 instrumentationMgr.start(BootConstants.VERSION);
             }
+            startupTimeline.mark("jmx");
 
             // 3a. runner.run
             //@Deprecated
@@ -314,10 +315,12 @@ abstract public class SummerApplication extends SummerBigBang {
                 QuartzUtil.getNextFireTimes(scheduler, sb);
                 log.info(() -> sb.toString());
             }
+            startupTimeline.mark("scheduler");
 
             // 4. health inspection
             log.trace("4. health check");
             String serviceStatus = HealthMonitor.start(appContext, true, guiceInjector);
+            startupTimeline.mark("health");
 
             long timeoutMs = BackOffice.agent.getProcessTimeoutMilliseconds();
             String timeoutDesc = BackOffice.agent.getProcessTimeoutAlertMessage();
@@ -358,6 +361,7 @@ abstract public class SummerApplication extends SummerBigBang {
                 if (appLifecycleListener != null) {
                     IdleEventMonitor.start(GrpcServer.IDLE_EVENT_MONITOR, appLifecycleListener);
                 }
+                startupTimeline.mark("grpc");
             }
 
             // 5b. start server: HTTP
@@ -372,15 +376,27 @@ abstract public class SummerApplication extends SummerBigBang {
                         IdleEventMonitor.start(NioServer.IDLE_EVENT_MONITOR, appLifecycleListener);
                     }
                 }
+                startupTimeline.mark("http");
             }
 
             // 6. announcement
+            String startupReport = startupTimeline.report();
+            log.info(startupReport);
+            startingMemo.append(BootConstants.BR).append(startupReport);
             startingMemo.append(BootConstants.BR).append(serviceStatus);
             startingMemo.append(BootConstants.BR).append("pid#" + BootConstants.PID);
             log.info(() -> I18n.info.launched.format(userSpecifiedResourceBundle, appVersion + " pid#" + BootConstants.PID) + serviceStatus); // REF269-2
             if (appLifecycleListener != null) {
                 appLifecycleListener.onApplicationStart(appContext, super.appVersion, startingMemo.toString());
             }
+
+            // 7. AppCDS training run
+            if (cli != null && cli.hasOption(BootConstants.CLI_TRAINING_RUN)) {
+                String report = TrainingRun.run(NioConfig.cfg, TrainingRun.DEFAULT_ITERATIONS, cli.getOptionValue(BootConstants.CLI_TRAINING_RUN));
+                log.info(report);
+                shutdown();
+                ApplicationUtil.RTO(BootErrorCode.RTO_CLS_EXIT, report, null);
+            }
         } catch (java.net.BindException ex) {// from NioServer
             log.fatal(ex + BootConstants.BR + BackOffice.agent.getPortInUseAlertMessage());
             ApplicationUtil.RTO(BootErrorCode.RTO_BINDING_ERROR, null, null);
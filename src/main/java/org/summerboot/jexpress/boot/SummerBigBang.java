@@ -95,6 +95,10 @@ abstract public class SummerBigBang extends SummerSingularity {
         return guiceInjector;
     }
 
+    public StartupTimeline getStartupTimeline() {
+        return startupTimeline;
+    }
+
     protected void bang() {
         log.trace("");
         guiceInjector = null;
@@ -120,6 +124,7 @@ abstract public class SummerBigBang extends SummerSingularity {
         } catch (IOException ex) {
             ex.printStackTrace();
         }
+        startupTimeline.mark("cli");
 
         /*
          * 2. load configs:
@@ -127,6 +132,7 @@ abstract public class SummerBigBang extends SummerSingularity {
          * AuthConfig depends on Ioc scan result: JaxRsRequestProcessor scan @DeclareRoles to verify Role-Mapping in configuration file
          */
         loadBootConfigFiles(ConfigUtil.ConfigLoadMode.app_run);
+        startupTimeline.mark("config");
 
         /*
          * 3. let caller to init app
@@ -135,12 +141,14 @@ abstract public class SummerBigBang extends SummerSingularity {
             log.trace("initApp.before.guiceInjector: {}", appInitializer);
             appInitializer.initAppBeforeIoC(userSpecifiedConfigDir);
         }
+        startupTimeline.mark("initAppBeforeIoC");
 
         /*
          * 4. should be invoked after log4j was initialized to avoid caller invokes LogManager.static{}
          * on User Specified ImplTags Ready
          */
         genesis(primaryClass, userSpecifiedalternativeNames);//trigger subclass to init IoC container
+        startupTimeline.mark("ioc");
 
         /*
          * 5. let caller to init app
@@ -149,6 +157,9 @@ abstract public class SummerBigBang extends SummerSingularity {
             log.trace("initApp.after.guiceInjector: {}", appInitializer);
             appInitializer.initAppAfterIoC(userSpecifiedConfigDir, guiceInjector);
         }
+        // boot scan is done, release the cached classpath scan results
+        ReflectionUtil.clearScanCache();
+        startupTimeline.mark("initAppAfterIoC");
 
         return (T) this;
     }
@@ -246,6 +257,13 @@ abstract public class SummerBigBang extends SummerSingularity {
                 .get();
         cliOptions.addOption(arg);
 
+        arg = Option.builder(BootConstants.CLI_TRAINING_RUN)
+                .desc("AppCDS training run: start the application, call the HTTP endpoints (GET/HEAD only unless BackOffice trainingRun.methods says otherwise) " + TrainingRun.DEFAULT_ITERATIONS + " times via loopback, dump the dynamic AppCDS archive to the specified file (requires -XX:+RecordDynamicDumpInfo) and exit"
+                        + BootConstants.BR + "Note: endpoints are called with dummy parameters, use a training environment. Or run with -XX:ArchiveClassesAtExit=<file> without specifying the file here")
+                .hasArg().argName("archive file").optionalArg(true)
+                .get();
+        cliOptions.addOption(arg);
+
         arg = Option.builder(BootConstants.CLI_DECRYPT)
                 .desc("Decrypt config file content with all \"ENC(encrypted text)\" using password:"
                         + BootConstants.BR + BootConstants.BR + BootConstants.BR + "\t -" + BootConstants.CLI_DECRYPT + " -" + BootConstants.CLI_CONFIG_DOMAIN + " <path> ")// REF269-3
@@ -116,6 +116,7 @@ abstract public class SummerSingularity {
 
     protected final StringBuilder memo = new StringBuilder();
     protected final Class primaryClass;
+    protected final StartupTimeline startupTimeline = new StartupTimeline();
 
 
     /*
@@ -189,6 +190,7 @@ abstract public class SummerSingularity {
         userSpecifiedalternativeNames.clear();
 
         // rest Scan Results
+        ReflectionUtil.clearScanCache();
         jvmStartCommand = null;
         jmxRequired = false;
         callerRootPackageNames = null;
@@ -238,6 +240,7 @@ abstract public class SummerSingularity {
         System.setProperty(BootConstants.SYS_PROP_APP_PACKAGE_NAME, StringUtils.isBlank(rootPackageName) ? "Root" : rootPackageName);// REF2610-1: used by log4j2.xml
         BackOffice.agent.setVersion(appVersion);
         scanArgsToInitializeLogging(args);
+        startupTimeline.mark("logging");
         /*
          * load external modules
          */
@@ -248,6 +251,8 @@ abstract public class SummerSingularity {
             ApplicationUtil.RTO(BootErrorCode.RTO_PLUGIN_ERROR, msg, ex);
         }
 
+        startupTimeline.mark("plugins");
+
         String error = scanAnnotation_Unique(callerRootPackageNames, memo);
         if (error != null) {
             ApplicationUtil.RTO(BootErrorCode.RTO_CODE_ERROR_UNIQUE, error, null);
@@ -258,6 +263,7 @@ abstract public class SummerSingularity {
         scanAnnotation_Service(callerRootPackageNames);
         scanAnnotation_DeclareRoles(callerRootPackageNames);
         scanAnnotation_JExpressConfigImportResource(packages);
+        startupTimeline.mark("scan");
         return (T) this;
     }
 
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.boot;
+
+import io.netty.handler.codec.http.HttpMethod;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.summerboot.jexpress.infra.netty.config.NioConfig;
+import org.summerboot.jexpress.webserver.jaxrs.JaxRsRequestProcessorManager;
+
+import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * AppCDS training run: exercise the registered HTTP endpoints via loopback so that the classes of the whole request
+ * path (Netty pipeline, JSON, error handling, controllers) are loaded, then dump a dynamic AppCDS archive.
+ * <p>
+ * Two ways to get the archive, the application exits after the training run either way:
+ * <pre>{@code
+ * 1. java -XX:ArchiveClassesAtExit=app.jsa -jar app.jar -trainingRun
+ * 2. java -XX:+RecordDynamicDumpInfo -jar app.jar -trainingRun app.jsa
+ * then: java -XX:SharedArchiveFile=app.jsa -jar app.jar
+ * }</pre>
+ * The endpoints are called with "0" as path parameters and "{}" as request body. Only GET and HEAD endpoints are
+ * called by default, other methods must be listed in BackOffice trainingRun.methods and should only be enabled against a
+ * disposable training environment, never against production data.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class TrainingRun {
+
+    protected static final Logger log = LogManager.getLogger(TrainingRun.class.getName());
+
+    public static final int DEFAULT_ITERATIONS = 3;
+
+    protected TrainingRun() {
+    }
+
+    /**
+     * @param nioCfg
+     * @param iterations  requests per endpoint
+     * @param archiveFile dump dynamic AppCDS archive to this file when not blank, requires -XX:+RecordDynamicDumpInfo
+     * @return report
+     */
+    public static String run(NioConfig nioCfg, int iterations, String archiveFile) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Training run");
+        exerciseHttpEndpoints(nioCfg, iterations, sb);
+        if (StringUtils.isNotBlank(archiveFile)) {
+            dumpArchive(archiveFile, sb);
+        }
+        return sb.toString();
+    }
+
+    protected static void exerciseHttpEndpoints(NioConfig nioCfg, int iterations, StringBuilder sb) {
+        List<InetSocketAddress> bindingAddresses = nioCfg.getBindingAddresses();
+        Map<HttpMethod, List<String>> endpoints = JaxRsRequestProcessorManager.getDeclaredUris();
+        if (bindingAddresses == null || bindingAddresses.isEmpty() || endpoints.isEmpty()) {
+            sb.append(BootConstants.BR).append("\t- HTTP: skipped, no binding address or no endpoint");
+            return;
+        }
+        InetSocketAddress addr = bindingAddresses.get(0);
+        InetAddress ip = addr.getAddress();
+        String host = ip == null || ip.isAnyLocalAddress() ? InetAddress.getLoopbackAddress().getHostAddress() : ip.getHostAddress();
+        if (host.indexOf(':') >= 0) {
+            host = "[" + host + "]";
+        }
+        boolean tls = nioCfg.isTLSEnabled();
+        String baseUrl = (tls ? "https://" : "http://") + host + ":" + addr.getPort();
+
+        HttpClient.Builder builder = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5));
+        if (tls) {
+            // scoped to this client only: trust the own server certificate without hostname verification
+            try {
+                SSLContext sslContext = SSLContext.getInstance("TLS");
+                sslContext.init(null, new TrustManager[]{new OwnServerTrustManager()}, null);
+                SSLParameters sslParameters = sslContext.getDefaultSSLParameters();
+                sslParameters.setProtocols(nioCfg.getTlsProtocols());
+                sslParameters.setEndpointIdentificationAlgorithm(null);
+                builder.sslContext(sslContext).sslParameters(sslParameters);
+            } catch (Throwable ex) {
+                sb.append(BootConstants.BR).append("\t- HTTP: skipped, failed to init TLS: ").append(ex);
+                return;
+            }
+        }
+        Set<String> methods = new HashSet<>();
+        for (String method : BackOffice.agent.getTrainingRunMethods()) {
+            methods.add(method.trim().toUpperCase(Locale.ROOT));
+        }
+        Map<String, Integer> statusCount = new TreeMap<>();
+        int requests = 0;
+        int skipped = 0;
+        try (HttpClient client = builder.build()) {
+            Set<String> pingEndpoints = BackOffice.agent.getLoadBalancingPingEndpoints();
+            for (int i = 0; i < Math.max(1, iterations); i++) {
+                for (String ping : pingEndpoints) {
+                    if (StringUtils.isNotBlank(ping)) {
+                        requests++;
+                        send(client, HttpMethod.GET, baseUrl + ping, statusCount);
+                    }
+                }
+                for (Map.Entry<HttpMethod, List<String>> e : endpoints.entrySet()) {
+                    if (!methods.contains(e.getKey().name())) {
+                        skipped += i == 0 ? e.getValue().size() : 0;
+                        continue;
+                    }
+                    for (String declaredUri : e.getValue()) {
+                        requests++;
+                        send(client, e.getKey(), baseUrl + toTrainingPath(declaredUri), statusCount);
+                    }
+                }
+            }
+        }
+        sb.append(BootConstants.BR).append("\t- HTTP: ").append(requests).append(" requests to ").append(baseUrl).append(", status ").append(statusCount)
+                .append(", skipped ").append(skipped).append(" endpoints not in trainingRun.methods ").append(methods);
+    }
+
+    /**
+     * The training run only talks to the server started by this process via loopback, whose certificate rarely matches
+     * the loopback address. Being an {@link X509ExtendedTrustManager}, JSSE does not wrap it with the identity check.
+     */
+    protected static class OwnServerTrustManager extends X509ExtendedTrustManager {
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+
+    protected static void send(HttpClient client, HttpMethod method, String url, Map<String, Integer> statusCount) {
+        String status;
+        try {
+            boolean hasBody = HttpMethod.POST.equals(method) || HttpMethod.PUT.equals(method) || HttpMethod.PATCH.equals(method);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .method(method.name(), hasBody ? HttpRequest.BodyPublishers.ofString("{}") : HttpRequest.BodyPublishers.noBody())
+                    .build();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            status = response.statusCode() / 100 + "xx";
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            status = "interrupted";
+        } catch (Throwable ex) {
+            log.debug(() -> "training request failed: " + method + " " + url, ex);
+            status = "error";
+        }
+        statusCount.merge(status, 1, Integer::sum);
+    }
+
+    /**
+     * @param declaredUri
+     * @return declaredUri with path parameters replaced by "0", e.g. /user/{id: [0-9]+}/tag -> /user/0/tag
+     */
+    protected static String toTrainingPath(String declaredUri) {
+        return declaredUri.replaceAll("\\{[^/]*}", "0");
+    }
+
+    /**
+     * Dump a dynamic AppCDS archive, the same as <code>jcmd pid VM.cds dynamic_dump file</code>
+     *
+     * @param archiveFile
+     * @param sb
+     */
+    protected static void dumpArchive(String archiveFile, StringBuilder sb) {
+        String path = new File(archiveFile).getAbsolutePath();
+        try {
+            ObjectName dcmd = new ObjectName("com.sun.management:type=DiagnosticCommand");
+            Object ret = ManagementFactory.getPlatformMBeanServer().invoke(dcmd, "vmCds",
+                    new Object[]{new String[]{"dynamic_dump", path}}, new String[]{String[].class.getName()});
+            sb.append(BootConstants.BR).append("\t- AppCDS archive: ").append(path).append(" ").append(ret == null ? "" : ret.toString().trim());
+        } catch (Throwable ex) {
+            sb.append(BootConstants.BR).append("\t- AppCDS archive: failed to dump ").append(path)
+                    .append(", start the JVM with -XX:+RecordDynamicDumpInfo, or use -XX:ArchiveClassesAtExit=").append(path).append(" instead: ").append(ex);
+        }
+    }
+}
@@ -24,25 +24,39 @@ import org.summerboot.jexpress.util.time.TimeUtil;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
  * IdleEventMonitor is a utility class to track the last request timestamp and loose transaction ID.
  * It can be used to monitor idle states and trigger events when a request has not been received within a specified threshold.
  * This class is thread-safe and can be used in a multi-threaded environment.
+ * <p>
+ * The last request timestamp is a coarse clock: {@link #onCall(long, String)} only writes when the stored timestamp is
+ * older than the resolution, so the hot path is a read of a shared field instead of a write per request. Idle detection
+ * may therefore fire up to one resolution earlier.
  *
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
  */
 public abstract class IdleEventMonitor {
 
-    private final AtomicLong lastTimestamp = new AtomicLong(System.currentTimeMillis());
-    private final AtomicReference<String> lastTransactionId = new AtomicReference<>();
+    public static final long DEFAULT_RESOLUTION_MILLIS = 1000;
+
+    private volatile long lastTimestamp = System.currentTimeMillis();
+    private volatile String lastTransactionId;
     private final String name;
+    private final long resolutionMillis;
 
     public IdleEventMonitor(String name) {
+        this(name, DEFAULT_RESOLUTION_MILLIS);
+    }
+
+    /**
+     * @param name
+     * @param resolutionMillis minimum interval between two updates of the last request timestamp, 0 to update on every call
+     */
+    public IdleEventMonitor(String name, long resolutionMillis) {
         this.name = name;
+        this.resolutionMillis = Math.max(0, resolutionMillis);
     }
 
     public String getName() {
@@ -54,16 +68,23 @@ public abstract class IdleEventMonitor {
     }
 
     public void onCall(long timestamp, String lastTransactionId) {
-        this.lastTimestamp.set(timestamp);
-        this.lastTransactionId.set(lastTransactionId);
+        if (timestamp - this.lastTimestamp < resolutionMillis) {
+            return;
+        }
+        this.lastTransactionId = lastTransactionId;
+        this.lastTimestamp = timestamp;
     }
 
     public String getLastTransactionId() {
-        return lastTransactionId.get();
+        return lastTransactionId;
     }
 
     public long getLastTimestamp() {
-        return lastTimestamp.get();
+        return lastTimestamp;
+    }
+
+    public long getResolutionMillis() {
+        return resolutionMillis;
     }
 
     public long getWaitMillis(long threshold, TimeUnit timeUnit) {
@@ -71,7 +92,7 @@ public abstract class IdleEventMonitor {
     }
 
     public long getWaitMillis(long thresholdMillis) {
-        return thresholdMillis - (System.currentTimeMillis() - lastTimestamp.get());
+        return thresholdMillis - (System.currentTimeMillis() - lastTimestamp);
     }
 
     public boolean isTimeout(long threshold, TimeUnit timeUnit) {
@@ -79,7 +100,7 @@ public abstract class IdleEventMonitor {
     }
 
     public boolean isTimeout(long thresholdMillis) {
-        return System.currentTimeMillis() - lastTimestamp.get() > thresholdMillis;
+        return System.currentTimeMillis() - lastTimestamp > thresholdMillis;
     }
 
 
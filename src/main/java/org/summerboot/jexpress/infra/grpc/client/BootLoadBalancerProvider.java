@@ -20,23 +20,44 @@ import io.grpc.Attributes;
 import io.grpc.EquivalentAddressGroup;
 import io.grpc.NameResolver;
 import io.grpc.NameResolverProvider;
+import io.grpc.Status;
 import io.grpc.StatusOr;
+import io.grpc.SynchronizationContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
+ * Resolves a static list of servers, or a server list file which is watched and re-resolved when modified.
+ * <p>
+ * Server list file format: host:port separated by comma or new line, lines start with # are ignored
+ *
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
  */
 public class BootLoadBalancerProvider extends NameResolverProvider {
 
+    protected static final Logger log = LogManager.getLogger(BootLoadBalancerProvider.class.getName());
+
     protected final List<EquivalentAddressGroup> servers;
     protected final String scheme;
     protected final int priority;
     protected final String defaultAuthorityWhitoutTrustManager;
+    protected final File serverListFile;
+    protected final long serverListFileCheckIntervalMs;
 
     public BootLoadBalancerProvider(String scheme, int priority, InetSocketAddress... addresses) {
         this.scheme = scheme;
@@ -45,15 +66,46 @@ public class BootLoadBalancerProvider extends NameResolverProvider {
         this.servers = Arrays.stream(addresses)
                 .map(EquivalentAddressGroup::new)
                 .collect(Collectors.toList());
+        this.serverListFile = null;
+        this.serverListFileCheckIntervalMs = 0;
     }
 
-    public BootLoadBalancerProvider(String scheme, int priority, List<? extends InetSocketAddress> addresses) {
+    public BootLoadBalancerProvider(String scheme, int priority, List<? extends SocketAddress> addresses) {
         this.scheme = scheme;
         this.priority = priority;
         this.defaultAuthorityWhitoutTrustManager = getAuthorityFromAddress(addresses);
         this.servers = addresses.stream()
                 .map(EquivalentAddressGroup::new)
                 .collect(Collectors.toList());
+        this.serverListFile = null;
+        this.serverListFileCheckIntervalMs = 0;
+    }
+
+    /**
+     * @param scheme
+     * @param priority
+     * @param serverListFile                the server list file to be watched
+     * @param serverListFileCheckIntervalMs how often to check the file last modified time
+     * @param defaultAddresses              used when the file does not exist or has no valid server, could be empty
+     */
+    public BootLoadBalancerProvider(String scheme, int priority, File serverListFile, long serverListFileCheckIntervalMs, List<? extends SocketAddress> defaultAddresses) {
+        this.scheme = scheme;
+        this.priority = priority;
+        this.serverListFile = serverListFile.getAbsoluteFile();
+        this.serverListFileCheckIntervalMs = Math.max(1000, serverListFileCheckIntervalMs);
+        List<? extends SocketAddress> initial = defaultAddresses == null ? List.of() : defaultAddresses;
+        try {
+            List<InetSocketAddress> fromFile = loadServerListFile(this.serverListFile);
+            if (!fromFile.isEmpty()) {
+                initial = fromFile;
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to load server list file: " + this.serverListFile, ex);
+        }
+        this.defaultAuthorityWhitoutTrustManager = getAuthorityFromAddress(initial);
+        this.servers = initial.stream()
+                .map(EquivalentAddressGroup::new)
+                .collect(Collectors.toList());
     }
 
     public String getAuthorityFromAddress(InetSocketAddress... addresses) {
@@ -67,20 +119,72 @@ public class BootLoadBalancerProvider extends NameResolverProvider {
         return addr.getHostName() + ":" + addr.getPort();
     }
 
-    public String getAuthorityFromAddress(List<? extends InetSocketAddress> addresses) {
+    public String getAuthorityFromAddress(List<? extends SocketAddress> addresses) {
 //        this.authority = addresses.stream()
 //                .map(InetSocketAddress::getHostName)// getHostString
 //                .collect(Collectors.joining(", "));
         if (addresses == null || addresses.isEmpty()) {
             return "unknownhost";
         }
-        InetSocketAddress addr = addresses.get(0);
+        SocketAddress first = addresses.get(0);
+        if (!(first instanceof InetSocketAddress addr)) {
+            return "localhost";
+        }
         return addr.getHostName() + ":" + addr.getPort();
     }
 
+    /**
+     * @param file
+     * @return servers in host:port format separated by comma or new line, lines start with # are ignored
+     * @throws IOException
+     */
+    public static List<InetSocketAddress> loadServerListFile(File file) throws IOException {
+        List<InetSocketAddress> ret = new ArrayList<>();
+        if (file == null || !file.isFile()) {
+            return ret;
+        }
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            for (String hostPort : line.split(",")) {
+                hostPort = hostPort.trim();
+                if (hostPort.isEmpty()) {
+                    continue;
+                }
+                int i = hostPort.lastIndexOf(':');
+                if (i < 1) {
+                    throw new IOException("invalid server \"" + hostPort + "\" in " + file + ", expected host:port");
+                }
+                String host = hostPort.substring(0, i).trim();
+                if (host.startsWith("[") && host.endsWith("]")) {// IPv6
+                    host = host.substring(1, host.length() - 1);
+                }
+                try {
+                    int port = Integer.parseInt(hostPort.substring(i + 1).trim());
+                    ret.add(new InetSocketAddress(host, port));
+                } catch (NumberFormatException ex) {
+                    throw new IOException("invalid port \"" + hostPort + "\" in " + file, ex);
+                }
+            }
+        }
+        return ret;
+    }
+
     @Override
     public NameResolver newNameResolver(URI notUsedTargetUri, NameResolver.Args args) {
         return new NameResolver() {
+            protected final SynchronizationContext syncContext = args.getSynchronizationContext();
+            protected final ScheduledExecutorService scheduler = args.getScheduledExecutorService();
+            // guarded by syncContext
+            protected Listener2 listener;
+            protected boolean shutdown;
+            protected volatile List<EquivalentAddressGroup> currentServers = servers;
+            // scheduler thread
+            protected long lastModified = serverListFile == null ? 0 : serverListFile.lastModified();
+            protected ScheduledFuture<?> fileWatcher;
+
             @Override
             public String getServiceAuthority() {// called when trust manager is null
                 String auth = notUsedTargetUri.getAuthority();
@@ -92,11 +196,69 @@ public class BootLoadBalancerProvider extends NameResolverProvider {
 
             @Override
             public void start(Listener2 listener) {
-                listener.onResult(ResolutionResult.newBuilder().setAddressesOrError(StatusOr.fromValue(servers)).setAttributes(Attributes.EMPTY).build());
+                this.listener = listener;
+                publish();
+                if (serverListFile != null) {
+                    fileWatcher = scheduler.scheduleWithFixedDelay(() -> {
+                        long modified = serverListFile.lastModified();
+                        if (modified != lastModified) {
+                            lastModified = modified;
+                            reload();
+                        }
+                    }, serverListFileCheckIntervalMs, serverListFileCheckIntervalMs, TimeUnit.MILLISECONDS);
+                }
+            }
+
+            @Override
+            public void refresh() {
+                if (serverListFile == null || listener == null) {
+                    return;
+                }
+                // file IO and DNS lookups must not block the channel's SynchronizationContext
+                scheduler.execute(this::reload);
+            }
+
+            /**
+             * scheduler thread: read and resolve the server list file, then publish it on the SynchronizationContext
+             */
+            protected void reload() {
+                try {
+                    List<InetSocketAddress> fromFile = loadServerListFile(serverListFile);
+                    if (fromFile.isEmpty()) {
+                        log.warn(() -> "No server found in " + serverListFile + ", keep using " + currentServers);
+                        return;
+                    }
+                    List<EquivalentAddressGroup> reloaded = fromFile.stream()
+                            .map(EquivalentAddressGroup::new)
+                            .collect(Collectors.toList());
+                    syncContext.execute(() -> {
+                        if (shutdown) {
+                            return;
+                        }
+                        currentServers = reloaded;
+                        log.info(() -> "Server list reloaded from " + serverListFile + ": " + fromFile);
+                        publish();
+                    });
+                } catch (IOException ex) {
+                    log.error("Failed to reload server list file: " + serverListFile + ", keep using " + currentServers, ex);
+                }
+            }
+
+            protected void publish() {
+                if (currentServers.isEmpty()) {
+                    listener.onError(Status.UNAVAILABLE.withDescription("no server in " + (serverListFile == null ? "config" : serverListFile)));
+                    return;
+                }
+                listener.onResult(ResolutionResult.newBuilder().setAddressesOrError(StatusOr.fromValue(currentServers)).setAttributes(Attributes.EMPTY).build());
             }
 
             @Override
             public void shutdown() {
+                shutdown = true;
+                if (fileWatcher != null) {
+                    fileWatcher.cancel(false);
+                    fileWatcher = null;
+                }
             }
         };
     }
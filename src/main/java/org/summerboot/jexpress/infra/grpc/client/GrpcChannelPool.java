@@ -0,0 +1,399 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.grpc.client;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ManagedChannel} backed by N independent channels (N HTTP/2 connections per target), so the client is not
+ * capped by the server's MAX_CONCURRENT_STREAMS and the throughput of a single TCP connection.
+ * <p>
+ * Each call goes to the channel with the least in-flight calls, channels in TRANSIENT_FAILURE are skipped while any
+ * other channel is usable. Generated stubs use it like any other channel. Live pools (not shut down) export their
+ * per-channel in-flight calls and connectivity states via {@link #appendMetrics}.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class GrpcChannelPool extends ManagedChannel {
+
+    protected static final Logger log = LogManager.getLogger(GrpcChannelPool.class.getName());
+
+    /**
+     * pools not shut down yet, for metrics
+     */
+    protected static final Set<GrpcChannelPool> LIVE_POOLS = ConcurrentHashMap.newKeySet();
+
+    static {
+        BootMetrics.register("grpc_channel_pool", GrpcChannelPool::appendMetrics);
+    }
+
+    /**
+     * One pooled channel with its in-flight counter
+     */
+    public static class PooledChannel {
+
+        protected final int index;
+        protected final ManagedChannel channel;
+        protected final AtomicInteger inFlight = new AtomicInteger();
+        protected final AtomicLong total = new AtomicLong();
+        protected volatile ConnectivityState state = ConnectivityState.IDLE;
+
+        protected PooledChannel(int index, ManagedChannel channel) {
+            this.index = index;
+            this.channel = channel;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public ManagedChannel getChannel() {
+            return channel;
+        }
+
+        /**
+         * @return number of calls started but not closed yet on this channel
+         */
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * @return number of calls started on this channel since created
+         */
+        public long getTotal() {
+            return total.get();
+        }
+
+        public ConnectivityState getState() {
+            return state;
+        }
+
+        protected boolean isUsable() {
+            ConnectivityState s = state;
+            return s != ConnectivityState.TRANSIENT_FAILURE && s != ConnectivityState.SHUTDOWN;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + index + "{" + state + ", inFlight=" + inFlight.get() + ", total=" + total.get() + "}";
+        }
+    }
+
+    protected final List<PooledChannel> channels;
+    protected final String authority;
+    protected final AtomicInteger nextStart = new AtomicInteger();
+    protected final List<StateListener> stateListeners = new ArrayList<>();
+
+    protected record StateListener(ConnectivityState source, Runnable callback, Executor executor) {
+    }
+
+    /**
+     * @param channelBuilder used to build each pooled channel
+     * @param size           number of channels, at least 1
+     */
+    public GrpcChannelPool(ManagedChannelBuilder<?> channelBuilder, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("channel pool size must be greater than 0: " + size);
+        }
+        List<PooledChannel> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(new PooledChannel(i, channelBuilder.build()));
+        }
+        channels = List.copyOf(list);
+        authority = channels.get(0).channel.authority();
+        for (PooledChannel pc : channels) {
+            pc.state = pc.channel.getState(true);// connect eagerly
+            watchState(pc);
+        }
+        LIVE_POOLS.add(this);
+    }
+
+    protected void watchState(PooledChannel pc) {
+        ConnectivityState current = pc.channel.getState(false);
+        ConnectivityState previous = pc.state;
+        pc.state = current;
+        if (current != previous) {
+            log.debug(() -> "gRPC channel pool " + authority + " " + pc);
+            fireStateChanged();
+        }
+        if (current != ConnectivityState.SHUTDOWN) {
+            pc.channel.notifyWhenStateChanged(current, () -> watchState(pc));
+        }
+    }
+
+    protected void fireStateChanged() {
+        ConnectivityState aggregated = getState(false);
+        List<StateListener> fired = new ArrayList<>();
+        synchronized (stateListeners) {
+            stateListeners.removeIf(l -> {
+                if (l.source != aggregated) {
+                    fired.add(l);
+                    return true;
+                }
+                return false;
+            });
+        }
+        for (StateListener l : fired) {
+            l.executor.execute(l.callback);
+        }
+    }
+
+    /**
+     * @return the usable channel with the least in-flight calls, or the least loaded one when none is usable
+     */
+    protected PooledChannel pick() {
+        int size = channels.size();
+        if (size == 1) {
+            return channels.get(0);
+        }
+        // rotating start index breaks ties fairly
+        int start = Math.floorMod(nextStart.getAndIncrement(), size);
+        PooledChannel best = null;
+        PooledChannel bestUnusable = null;
+        for (int i = 0; i < size; i++) {
+            PooledChannel pc = channels.get((start + i) % size);
+            if (pc.isUsable()) {
+                if (best == null || pc.inFlight.get() < best.inFlight.get()) {
+                    best = pc;
+                }
+            } else if (bestUnusable == null || pc.inFlight.get() < bestUnusable.inFlight.get()) {
+                bestUnusable = pc;
+            }
+        }
+        return best != null ? best : bestUnusable;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+        PooledChannel pc = pick();
+        ClientCall<ReqT, RespT> call = pc.channel.newCall(methodDescriptor, callOptions);
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(call) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                pc.inFlight.incrementAndGet();
+                pc.total.incrementAndGet();
+                try {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            pc.inFlight.decrementAndGet();
+                            super.onClose(status, trailers);
+                        }
+                    }, headers);
+                } catch (RuntimeException ex) {
+                    pc.inFlight.decrementAndGet();
+                    throw ex;
+                }
+            }
+        };
+    }
+
+    @Override
+    public String authority() {
+        return authority;
+    }
+
+    /**
+     * @return READY if any channel is READY, otherwise CONNECTING, IDLE, TRANSIENT_FAILURE or SHUTDOWN in that order
+     */
+    @Override
+    public ConnectivityState getState(boolean requestConnection) {
+        boolean connecting = false, idle = false, failure = false;
+        for (PooledChannel pc : channels) {
+            ConnectivityState s = pc.channel.getState(requestConnection);
+            switch (s) {
+                case READY:
+                    return ConnectivityState.READY;
+                case CONNECTING:
+                    connecting = true;
+                    break;
+                case IDLE:
+                    idle = true;
+                    break;
+                case TRANSIENT_FAILURE:
+                    failure = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (connecting) {
+            return ConnectivityState.CONNECTING;
+        }
+        if (idle) {
+            return ConnectivityState.IDLE;
+        }
+        return failure ? ConnectivityState.TRANSIENT_FAILURE : ConnectivityState.SHUTDOWN;
+    }
+
+    @Override
+    public void notifyWhenStateChanged(ConnectivityState source, Runnable callback) {
+        if (getState(false) != source) {
+            callback.run();
+            return;
+        }
+        synchronized (stateListeners) {
+            stateListeners.add(new StateListener(source, callback, Runnable::run));
+        }
+    }
+
+    @Override
+    public void resetConnectBackoff() {
+        for (PooledChannel pc : channels) {
+            pc.channel.resetConnectBackoff();
+        }
+    }
+
+    @Override
+    public void enterIdle() {
+        for (PooledChannel pc : channels) {
+            pc.channel.enterIdle();
+        }
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        LIVE_POOLS.remove(this);
+        for (PooledChannel pc : channels) {
+            pc.channel.shutdown();
+        }
+        return this;
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        LIVE_POOLS.remove(this);
+        for (PooledChannel pc : channels) {
+            pc.channel.shutdownNow();
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        for (PooledChannel pc : channels) {
+            if (!pc.channel.isShutdown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (PooledChannel pc : channels) {
+            if (!pc.channel.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (PooledChannel pc : channels) {
+            long remaining = deadline - System.nanoTime();
+            if (!pc.channel.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the pooled channels, for metrics
+     */
+    public List<PooledChannel> getChannels() {
+        return channels;
+    }
+
+    /**
+     * @return in-flight calls of each pooled channel
+     */
+    public int[] getInFlightCounts() {
+        int[] ret = new int[channels.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = channels.get(i).inFlight.get();
+        }
+        return ret;
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    /**
+     * Export the pooled channels of all live pools, labeled by target (authority) and channel index, pools of the same
+     * target are summed
+     *
+     * @param sb
+     * @param openMetrics
+     */
+    public static void appendMetrics(StringBuilder sb, boolean openMetrics) {
+        if (LIVE_POOLS.isEmpty()) {
+            return;
+        }
+        Map<String, Number> inFlight = new TreeMap<>();
+        Map<String, Number> calls = new TreeMap<>();
+        Map<String, Number> states = new TreeMap<>();
+        for (GrpcChannelPool pool : LIVE_POOLS) {
+            String target = BootMetrics.label("target", pool.authority);
+            for (ConnectivityState s : ConnectivityState.values()) {
+                states.putIfAbsent(target + "," + BootMetrics.label("state", s.name().toLowerCase()), 0);
+            }
+            for (PooledChannel pc : pool.channels) {
+                String channel = target + "," + BootMetrics.label("channel", String.valueOf(pc.index));
+                inFlight.merge(channel, pc.inFlight.get(), (a, b) -> a.intValue() + b.intValue());
+                calls.merge(channel, pc.total.get(), (a, b) -> a.longValue() + b.longValue());
+                states.merge(target + "," + BootMetrics.label("state", pc.state.name().toLowerCase()), 1, (a, b) -> a.intValue() + b.intValue());
+            }
+        }
+        BootMetrics.appendLabeled(sb, openMetrics, "grpc_channel_in_flight", "gauge", "gRPC calls started but not closed yet on the pooled channel", inFlight);
+        BootMetrics.appendLabeled(sb, openMetrics, "grpc_channel_calls", "counter", "gRPC calls started on the pooled channel", calls);
+        BootMetrics.appendLabeled(sb, openMetrics, "grpc_channel_pool_channels", "gauge", "pooled gRPC channels per connectivity state", states);
+    }
+
+    @Override
+    public String toString() {
+        return "GrpcChannelPool{" + authority + ", " + channels + "}";
+    }
+}
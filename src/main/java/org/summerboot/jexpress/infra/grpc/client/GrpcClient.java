@@ -18,8 +18,13 @@
 package org.summerboot.jexpress.infra.grpc.client;
 
 import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusException;
+import io.grpc.StatusRuntimeException;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
 import org.summerboot.jexpress.infra.grpc.client.config.GrpcClientConfig;
+import org.summerboot.jexpress.integration.resilience.CallNotPermittedException;
+import org.summerboot.jexpress.integration.resilience.Resilience;
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -34,12 +39,16 @@ public abstract class GrpcClient<T extends GrpcClient<T>> {
 
     protected NettyChannelBuilder channelBuilder;
     protected ManagedChannel channel;
+    protected int channelPoolSize = 1;
     protected final ReadWriteLock rwLock = new ReentrantReadWriteLock();
     protected final Lock readLock = rwLock.readLock();
     protected Thread shutdownHook;
+    protected volatile Resilience resilience;
 
     public T withConfig(GrpcClientConfig cfg) {
         this.channelBuilder = cfg.getChannelBuilder();
+        this.channelPoolSize = cfg.getChannelPoolSize();
+        this.resilience = cfg.getResilience();
         cfg.addConfigUpdateListener(this);
         return (T) this;
     }
@@ -52,14 +61,103 @@ public abstract class GrpcClient<T extends GrpcClient<T>> {
         return (T) this;
     }
 
+    /**
+     * @param channelPoolSize number of channels (HTTP/2 connections) per target, a {@link GrpcChannelPool} will be used when greater than 1. Takes effect on next connect()
+     */
+    public T withChannelPoolSize(int channelPoolSize) {
+        this.channelPoolSize = Math.max(1, channelPoolSize);
+        return (T) this;
+    }
+
+    /**
+     * @param resilience circuit breaker, bulkhead and retry used by {@link #call(Resilience.Attempt)}, null to disable
+     */
+    public T withResilience(Resilience resilience) {
+        this.resilience = resilience;
+        return (T) this;
+    }
+
+    /**
+     * callback when config file updated if GrpcClientConfig.addConfigUpdateListener(this);
+     *
+     * @param resilience
+     */
+    public void updateResilience(Resilience resilience) {
+        this.resilience = resilience;
+    }
+
+    /**
+     * Call a stub method via the resilience layer (circuit breaker, bulkhead and retry), e.g.
+     * <pre>{@code
+     * HelloReply reply = call(attempt -> blockingStub.withDeadlineAfter(3, TimeUnit.SECONDS).sayHello(request));
+     * }</pre>
+     *
+     * @param <R>
+     * @param <E>
+     * @param stubCall
+     * @return
+     * @throws E
+     * @throws StatusRuntimeException with Status.UNAVAILABLE when rejected by circuit breaker or bulkhead
+     */
+    protected <R, E extends Exception> R call(Resilience.Attempt<R, E> stubCall) throws E {
+        Resilience r = resilience;
+        if (r == null) {
+            return stubCall.run(0);
+        }
+        try {
+            return r.execute(stubCall, null, this::classify);
+        } catch (CallNotPermittedException ex) {
+            throw Status.UNAVAILABLE.withDescription(ex.getMessage()).withCause(ex).asRuntimeException();
+        }
+    }
+
+    /**
+     * Classify an exception for circuit breaker and retry: UNAVAILABLE is retryable, DEADLINE_EXCEEDED,
+     * RESOURCE_EXHAUSTED, INTERNAL and UNKNOWN are failures, other status codes are client errors
+     *
+     * @param ex
+     * @return
+     */
+    protected Resilience.Outcome classify(Throwable ex) {
+        Status status;
+        if (ex instanceof StatusRuntimeException sre) {
+            status = sre.getStatus();
+        } else if (ex instanceof StatusException se) {
+            status = se.getStatus();
+        } else {
+            // not from the remote server
+            return Resilience.Outcome.SUCCESS;
+        }
+        return switch (status.getCode()) {
+            case UNAVAILABLE -> Resilience.Outcome.RETRYABLE_FAILURE;
+            case DEADLINE_EXCEEDED, RESOURCE_EXHAUSTED, INTERNAL, UNKNOWN -> Resilience.Outcome.FAILURE;
+            default -> Resilience.Outcome.SUCCESS;
+        };
+    }
+
+    public Resilience getResilience() {
+        return resilience;
+    }
+
     /**
      * callback when config file updated if GrpcClientConfig.addConfigUpdateListener(this);
      *
      * @param channelBuilder
      */
     public void updateChannelBuilder(NettyChannelBuilder channelBuilder) {
+        updateChannelBuilder(channelBuilder, channelPoolSize);
+    }
+
+    /**
+     * callback when config file updated if GrpcClientConfig.addConfigUpdateListener(this);
+     *
+     * @param channelBuilder
+     * @param channelPoolSize
+     */
+    public void updateChannelBuilder(NettyChannelBuilder channelBuilder, int channelPoolSize) {
         rwLock.writeLock().lock();
         this.channelBuilder = channelBuilder;
+        this.channelPoolSize = Math.max(1, channelPoolSize);
         rwLock.writeLock().unlock();
         onChannelBuilderUpdated();
     }
@@ -80,7 +178,7 @@ public abstract class GrpcClient<T extends GrpcClient<T>> {
         rwLock.writeLock().lock();
         try {
             disconnect(false);
-            channel = channelBuilder.build();
+            channel = channelPoolSize > 1 ? new GrpcChannelPool(channelBuilder, channelPoolSize) : channelBuilder.build();
             String info = channel.authority();
             shutdownHook = new Thread(() -> {
                 try {
@@ -97,10 +195,21 @@ public abstract class GrpcClient<T extends GrpcClient<T>> {
     }
 
     /**
-     * @param channel
+     * @param channel a {@link GrpcChannelPool} when channelPoolSize is greater than 1
      */
     protected abstract void onConnected(ManagedChannel channel);
 
+    /**
+     * @return the current channel pool for metrics, or null when not connected or channelPoolSize is 1
+     */
+    public GrpcChannelPool getChannelPool() {
+        return channel instanceof GrpcChannelPool pool ? pool : null;
+    }
+
+    public int getChannelPoolSize() {
+        return channelPoolSize;
+    }
+
     /**
      * Disconnect the current connection
      */
@@ -0,0 +1,491 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.grpc.client;
+
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.stub.StreamObserver;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side load balancer which picks the least loaded server instead of blindly rotating like round_robin:
+ * <ul>
+ * <li>{@link Algorithm#LEAST_REQUEST} - the server with the fewest outstanding requests</li>
+ * <li>{@link Algorithm#POWER_OF_TWO_CHOICES} - the less loaded one of two randomly chosen servers</li>
+ * <li>{@link Algorithm#PEAK_EWMA} - power of two choices on peak EWMA latency x (outstanding requests + 1)</li>
+ * </ul>
+ * Servers failing the standard grpc.health.v1 health check, or ejected as outliers because of a high failure rate,
+ * are excluded from picking. When no healthy server is left, all READY servers are used (panic mode) rather than
+ * failing every call.
+ * <p>
+ * All state except the per-call counters is confined to the channel's {@link SynchronizationContext}.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class HealthAwareLoadBalancer extends LoadBalancer {
+
+    protected static final Logger log = LogManager.getLogger(HealthAwareLoadBalancer.class.getName());
+
+    public enum Algorithm {
+        LEAST_REQUEST("boot_least_request"), POWER_OF_TWO_CHOICES("boot_p2c"), PEAK_EWMA("boot_peak_ewma");
+
+        private final String policyName;
+
+        Algorithm(String policyName) {
+            this.policyName = policyName;
+        }
+
+        public String getPolicyName() {
+            return policyName;
+        }
+    }
+
+    /**
+     * status codes indicating a server side problem, count as failure for outlier ejection
+     */
+    protected static final Set<Status.Code> FAILURE_CODES = EnumSet.of(Status.Code.UNAVAILABLE, Status.Code.DEADLINE_EXCEEDED,
+            Status.Code.INTERNAL, Status.Code.UNKNOWN, Status.Code.RESOURCE_EXHAUSTED, Status.Code.DATA_LOSS);
+
+    protected final Helper helper;
+    protected final SynchronizationContext syncContext;
+    protected final Algorithm algorithm;
+    protected final Map<EquivalentAddressGroup, Endpoint> endpoints = new LinkedHashMap<>();
+    protected HealthAwareLoadBalancerConfig config = HealthAwareLoadBalancerConfig.DEFAULT;
+    protected SynchronizationContext.ScheduledHandle healthCheckTimer;
+    protected SynchronizationContext.ScheduledHandle outlierDetectionTimer;
+    protected ConnectivityState currentState;
+
+    public HealthAwareLoadBalancer(Helper helper, Algorithm algorithm) {
+        this.helper = helper;
+        this.syncContext = helper.getSynchronizationContext();
+        this.algorithm = algorithm;
+    }
+
+    @Override
+    public Status acceptResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+        List<EquivalentAddressGroup> addresses = resolvedAddresses.getAddresses();
+        if (addresses.isEmpty()) {
+            Status unavailable = Status.UNAVAILABLE.withDescription("Name resolver returned no usable address, attrs=" + resolvedAddresses.getAttributes());
+            handleNameResolutionError(unavailable);
+            return unavailable;
+        }
+        Object lbConfig = resolvedAddresses.getLoadBalancingPolicyConfig();
+        HealthAwareLoadBalancerConfig newConfig = lbConfig instanceof HealthAwareLoadBalancerConfig c ? c : HealthAwareLoadBalancerConfig.DEFAULT;
+        boolean timersChanged = newConfig.isHealthCheckEnabled() != config.isHealthCheckEnabled()
+                || newConfig.getHealthCheckIntervalMs() != config.getHealthCheckIntervalMs()
+                || newConfig.isOutlierEjectionEnabled() != config.isOutlierEjectionEnabled()
+                || newConfig.getOutlierIntervalMs() != config.getOutlierIntervalMs();
+        config = newConfig;
+
+        Set<EquivalentAddressGroup> latest = new HashSet<>();
+        for (EquivalentAddressGroup eag : addresses) {
+            // attributes excluded from the key, the same server with different attributes is still the same server
+            EquivalentAddressGroup key = new EquivalentAddressGroup(eag.getAddresses());
+            latest.add(key);
+            Endpoint endpoint = endpoints.get(key);
+            if (endpoint != null) {
+                endpoint.ewmaDecayNanos = config.getEwmaDecayNanos();
+                continue;
+            }
+            Subchannel subchannel = helper.createSubchannel(CreateSubchannelArgs.newBuilder().setAddresses(eag).build());
+            Endpoint newEndpoint = new Endpoint(key, subchannel, config.getEwmaDecayNanos());
+            endpoints.put(key, newEndpoint);
+            subchannel.start(stateInfo -> processSubchannelState(newEndpoint, stateInfo));
+            subchannel.requestConnection();
+        }
+        Iterator<Map.Entry<EquivalentAddressGroup, Endpoint>> it = endpoints.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<EquivalentAddressGroup, Endpoint> entry = it.next();
+            if (!latest.contains(entry.getKey())) {
+                it.remove();
+                entry.getValue().subchannel.shutdown();
+            }
+        }
+        if (timersChanged || (healthCheckTimer == null && outlierDetectionTimer == null)) {
+            scheduleTimers();
+        }
+        updateBalancingState();
+        return Status.OK;
+    }
+
+    @Override
+    public void handleNameResolutionError(Status error) {
+        if (currentState != ConnectivityState.READY) {
+            updateState(ConnectivityState.TRANSIENT_FAILURE, new FixedPicker(PickResult.withError(error)));
+        }
+    }
+
+    @Override
+    public void requestConnection() {
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.subchannel.requestConnection();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        cancelTimers();
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.subchannel.shutdown();
+        }
+        endpoints.clear();
+    }
+
+    protected void processSubchannelState(Endpoint endpoint, ConnectivityStateInfo stateInfo) {
+        if (endpoints.get(endpoint.addressGroup) != endpoint || stateInfo.getState() == ConnectivityState.SHUTDOWN) {
+            return;
+        }
+        ConnectivityState previous = endpoint.stateInfo.getState();
+        endpoint.stateInfo = stateInfo;
+        switch (stateInfo.getState()) {
+            case IDLE -> endpoint.subchannel.requestConnection();
+            case READY -> {
+                if (previous != ConnectivityState.READY && config.isHealthCheckEnabled()) {
+                    checkHealth(endpoint);
+                }
+            }
+        }
+        updateBalancingState();
+    }
+
+    protected void updateBalancingState() {
+        long now = System.nanoTime();
+        List<Endpoint> ready = new ArrayList<>();
+        List<Endpoint> usable = new ArrayList<>();
+        boolean connecting = false;
+        Status lastError = null;
+        for (Endpoint endpoint : endpoints.values()) {
+            switch (endpoint.stateInfo.getState()) {
+                case READY -> {
+                    ready.add(endpoint);
+                    if (endpoint.healthy && !endpoint.isEjected(now)) {
+                        usable.add(endpoint);
+                    }
+                }
+                case CONNECTING, IDLE -> connecting = true;
+                case TRANSIENT_FAILURE -> lastError = endpoint.stateInfo.getStatus();
+            }
+        }
+        if (usable.isEmpty() && !ready.isEmpty()) {
+            // panic mode: a degraded server is better than failing every call
+            usable = ready;
+        }
+        if (!usable.isEmpty()) {
+            updateState(ConnectivityState.READY, new Picker(usable, algorithm));
+        } else if (connecting) {
+            updateState(ConnectivityState.CONNECTING, new FixedPicker(PickResult.withNoResult()));
+        } else {
+            Status error = lastError == null ? Status.UNAVAILABLE.withDescription("no server available") : lastError;
+            updateState(ConnectivityState.TRANSIENT_FAILURE, new FixedPicker(PickResult.withError(error)));
+        }
+    }
+
+    protected void updateState(ConnectivityState state, SubchannelPicker picker) {
+        currentState = state;
+        helper.updateBalancingState(state, picker);
+    }
+
+    protected void scheduleTimers() {
+        cancelTimers();
+        if (config.isHealthCheckEnabled()) {
+            healthCheckTimer = syncContext.schedule(this::runHealthChecks, config.getHealthCheckIntervalMs(), TimeUnit.MILLISECONDS, helper.getScheduledExecutorService());
+        }
+        if (config.isOutlierEjectionEnabled()) {
+            outlierDetectionTimer = syncContext.schedule(this::detectOutliers, config.getOutlierIntervalMs(), TimeUnit.MILLISECONDS, helper.getScheduledExecutorService());
+        }
+    }
+
+    protected void cancelTimers() {
+        if (healthCheckTimer != null) {
+            healthCheckTimer.cancel();
+            healthCheckTimer = null;
+        }
+        if (outlierDetectionTimer != null) {
+            outlierDetectionTimer.cancel();
+            outlierDetectionTimer = null;
+        }
+    }
+
+    protected void runHealthChecks() {
+        for (Endpoint endpoint : endpoints.values()) {
+            if (endpoint.stateInfo.getState() == ConnectivityState.READY) {
+                checkHealth(endpoint);
+            }
+        }
+        healthCheckTimer = syncContext.schedule(this::runHealthChecks, config.getHealthCheckIntervalMs(), TimeUnit.MILLISECONDS, helper.getScheduledExecutorService());
+    }
+
+    protected void checkHealth(Endpoint endpoint) {
+        HealthCheckRequest request = HealthCheckRequest.newBuilder().setService(config.getHealthCheckServiceName()).build();
+        HealthGrpc.newStub(endpoint.subchannel.asChannel())
+                .withDeadlineAfter(config.getHealthCheckTimeoutMs(), TimeUnit.MILLISECONDS)
+                .check(request, new StreamObserver<>() {
+                    @Override
+                    public void onNext(HealthCheckResponse response) {
+                        HealthCheckResponse.ServingStatus status = response.getStatus();
+                        syncContext.execute(() -> onHealthCheckResult(endpoint, status == HealthCheckResponse.ServingStatus.SERVING, status.name()));
+                    }
+
+                    @Override
+                    public void onError(Throwable ex) {
+                        Status status = Status.fromThrowable(ex);
+                        // server without health service is considered healthy
+                        boolean healthy = status.getCode() == Status.Code.UNIMPLEMENTED;
+                        syncContext.execute(() -> onHealthCheckResult(endpoint, healthy, status.toString()));
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+    }
+
+    protected void onHealthCheckResult(Endpoint endpoint, boolean healthy, String reason) {
+        if (endpoints.get(endpoint.addressGroup) != endpoint || endpoint.healthy == healthy) {
+            return;
+        }
+        endpoint.healthy = healthy;
+        if (healthy) {
+            log.info(() -> "gRPC server back to healthy: " + endpoint.addressGroup.getAddresses() + " - " + reason);
+        } else {
+            log.warn(() -> "gRPC server unhealthy: " + endpoint.addressGroup.getAddresses() + " - " + reason);
+        }
+        updateBalancingState();
+    }
+
+    protected void detectOutliers() {
+        long now = System.nanoTime();
+        int size = endpoints.size();
+        int maxEjected = size * config.getOutlierMaxEjectionPercent() / 100;
+        if (maxEjected < 1 && size > 1 && config.getOutlierMaxEjectionPercent() > 0) {
+            maxEjected = 1;
+        }
+        int ejected = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            if (endpoint.isEjected(now)) {
+                ejected++;
+            }
+        }
+        for (Endpoint endpoint : endpoints.values()) {
+            long failures = endpoint.failures.sumThenReset();
+            long total = failures + endpoint.successes.sumThenReset();
+            if (endpoint.isEjected(now)) {
+                continue;
+            }
+            boolean outlier = total >= config.getOutlierMinimumRequests() && failures * 100 >= config.getOutlierFailureRatePercent() * total;
+            if (!outlier) {
+                if (failures == 0 && endpoint.ejectionCount > 0) {
+                    endpoint.ejectionCount--;
+                }
+                continue;
+            }
+            if (ejected >= maxEjected) {
+                continue;
+            }
+            endpoint.ejectionCount++;
+            long ejectionMs = Math.min(config.getOutlierBaseEjectionTimeMs() * endpoint.ejectionCount, config.getOutlierMaxEjectionTimeMs());
+            endpoint.ejectedUntilNanos = now + TimeUnit.MILLISECONDS.toNanos(ejectionMs);
+            ejected++;
+            log.warn(() -> "gRPC server ejected for " + ejectionMs + "ms: " + endpoint.addressGroup.getAddresses() + ", failures " + failures + "/" + total);
+        }
+        updateBalancingState();
+        outlierDetectionTimer = syncContext.schedule(this::detectOutliers, config.getOutlierIntervalMs(), TimeUnit.MILLISECONDS, helper.getScheduledExecutorService());
+    }
+
+    /**
+     * One server (subchannel) with its load and health statistics
+     */
+    protected static class Endpoint {
+
+        protected final EquivalentAddressGroup addressGroup;
+        protected final Subchannel subchannel;
+        protected final AtomicInteger outstanding = new AtomicInteger();
+        protected final LongAdder successes = new LongAdder();
+        protected final LongAdder failures = new LongAdder();
+        protected final ClientStreamTracer.Factory tracerFactory;
+        protected volatile long ewmaDecayNanos;
+        protected volatile double ewmaNanos;
+        protected long lastObservedNanos;
+        // below are confined to the SynchronizationContext
+        protected ConnectivityStateInfo stateInfo = ConnectivityStateInfo.forNonError(ConnectivityState.IDLE);
+        protected boolean healthy = true;
+        protected int ejectionCount;
+        protected long ejectedUntilNanos;
+
+        protected Endpoint(EquivalentAddressGroup addressGroup, Subchannel subchannel, long ewmaDecayNanos) {
+            this.addressGroup = addressGroup;
+            this.subchannel = subchannel;
+            this.ewmaDecayNanos = ewmaDecayNanos;
+            this.tracerFactory = new ClientStreamTracer.Factory() {
+                @Override
+                public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                    outstanding.incrementAndGet();
+                    long start = System.nanoTime();
+                    return new ClientStreamTracer() {
+                        @Override
+                        public void streamClosed(Status status) {
+                            outstanding.decrementAndGet();
+                            onCallFinished(System.nanoTime() - start, status);
+                        }
+                    };
+                }
+            };
+        }
+
+        protected boolean isEjected(long now) {
+            return ejectedUntilNanos != 0 && now - ejectedUntilNanos < 0;
+        }
+
+        protected void onCallFinished(long rttNanos, Status status) {
+            if (FAILURE_CODES.contains(status.getCode())) {
+                failures.increment();
+            } else {
+                successes.increment();
+            }
+            observe(rttNanos);
+        }
+
+        /**
+         * peak EWMA: a slower response is taken immediately, a faster one decays the average based on elapsed time
+         *
+         * @param rttNanos
+         */
+        protected synchronized void observe(long rttNanos) {
+            long now = System.nanoTime();
+            double current = ewmaNanos;
+            if (current == 0 || rttNanos > current) {
+                ewmaNanos = rttNanos;
+            } else {
+                double w = Math.exp(-(now - lastObservedNanos) / (double) ewmaDecayNanos);
+                ewmaNanos = current * w + rttNanos * (1 - w);
+            }
+            lastObservedNanos = now;
+        }
+
+        protected double cost() {
+            double ewma = ewmaNanos;
+            int pending = outstanding.get();
+            if (ewma == 0) {
+                // never responded: free when idle, otherwise avoid piling up on an unknown server
+                return pending == 0 ? 0 : Double.MAX_VALUE / 2 + pending;
+            }
+            return ewma * (pending + 1);
+        }
+    }
+
+    protected static class Picker extends SubchannelPicker {
+
+        protected final List<Endpoint> list;
+        protected final Algorithm algorithm;
+
+        protected Picker(List<Endpoint> list, Algorithm algorithm) {
+            this.list = list;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            Endpoint endpoint = choose();
+            return PickResult.withSubchannel(endpoint.subchannel, endpoint.tracerFactory);
+        }
+
+        protected Endpoint choose() {
+            int size = list.size();
+            if (size == 1) {
+                return list.get(0);
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            switch (algorithm) {
+                case LEAST_REQUEST: {
+                    // random start index breaks ties fairly
+                    int start = random.nextInt(size);
+                    Endpoint best = null;
+                    int bestLoad = Integer.MAX_VALUE;
+                    for (int i = 0; i < size; i++) {
+                        Endpoint e = list.get((start + i) % size);
+                        int load = e.outstanding.get();
+                        if (load < bestLoad) {
+                            best = e;
+                            bestLoad = load;
+                        }
+                    }
+                    return best;
+                }
+                default: {
+                    int i = random.nextInt(size);
+                    int j = random.nextInt(size - 1);
+                    if (j >= i) {
+                        j++;
+                    }
+                    Endpoint a = list.get(i);
+                    Endpoint b = list.get(j);
+                    if (algorithm == Algorithm.PEAK_EWMA) {
+                        return a.cost() <= b.cost() ? a : b;
+                    }
+                    return a.outstanding.get() <= b.outstanding.get() ? a : b;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "HealthAwareLoadBalancer.Picker{" + algorithm + ", size=" + list.size() + "}";
+        }
+    }
+
+    protected static class FixedPicker extends SubchannelPicker {
+
+        protected final PickResult result;
+
+        protected FixedPicker(PickResult result) {
+            this.result = result;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "HealthAwareLoadBalancer.FixedPicker{" + result + "}";
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.grpc.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable settings of {@link HealthAwareLoadBalancer}, parsed from the "loadBalancingConfig" of the gRPC service config.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class HealthAwareLoadBalancerConfig {
+
+    public static final String KEY_EWMA_DECAY_MS = "ewmaDecayMs";
+    public static final String KEY_HEALTH_CHECK_ENABLED = "healthCheckEnabled";
+    public static final String KEY_HEALTH_CHECK_SERVICE_NAME = "healthCheckServiceName";
+    public static final String KEY_HEALTH_CHECK_INTERVAL_MS = "healthCheckIntervalMs";
+    public static final String KEY_HEALTH_CHECK_TIMEOUT_MS = "healthCheckTimeoutMs";
+    public static final String KEY_OUTLIER_EJECTION_ENABLED = "outlierEjectionEnabled";
+    public static final String KEY_OUTLIER_FAILURE_RATE_PERCENT = "outlierFailureRatePercent";
+    public static final String KEY_OUTLIER_MINIMUM_REQUESTS = "outlierMinimumRequests";
+    public static final String KEY_OUTLIER_INTERVAL_MS = "outlierIntervalMs";
+    public static final String KEY_OUTLIER_BASE_EJECTION_TIME_MS = "outlierBaseEjectionTimeMs";
+    public static final String KEY_OUTLIER_MAX_EJECTION_TIME_MS = "outlierMaxEjectionTimeMs";
+    public static final String KEY_OUTLIER_MAX_EJECTION_PERCENT = "outlierMaxEjectionPercent";
+
+    public static final HealthAwareLoadBalancerConfig DEFAULT = new HealthAwareLoadBalancerConfig(Map.of());
+
+    protected final long ewmaDecayMs;
+    protected final boolean healthCheckEnabled;
+    protected final String healthCheckServiceName;
+    protected final long healthCheckIntervalMs;
+    protected final long healthCheckTimeoutMs;
+    protected final boolean outlierEjectionEnabled;
+    protected final int outlierFailureRatePercent;
+    protected final long outlierMinimumRequests;
+    protected final long outlierIntervalMs;
+    protected final long outlierBaseEjectionTimeMs;
+    protected final long outlierMaxEjectionTimeMs;
+    protected final int outlierMaxEjectionPercent;
+
+    /**
+     * @param rawConfig JSON style map, numbers could be any {@link Number}, missing values use default
+     */
+    public HealthAwareLoadBalancerConfig(Map<String, ?> rawConfig) {
+        Map<String, ?> raw = rawConfig == null ? Map.of() : rawConfig;
+        ewmaDecayMs = Math.max(1, getLong(raw, KEY_EWMA_DECAY_MS, 10_000));
+        healthCheckEnabled = getBoolean(raw, KEY_HEALTH_CHECK_ENABLED, false);
+        Object serviceName = raw.get(KEY_HEALTH_CHECK_SERVICE_NAME);
+        healthCheckServiceName = serviceName == null ? "" : serviceName.toString();
+        healthCheckIntervalMs = Math.max(100, getLong(raw, KEY_HEALTH_CHECK_INTERVAL_MS, 5_000));
+        healthCheckTimeoutMs = Math.max(1, getLong(raw, KEY_HEALTH_CHECK_TIMEOUT_MS, 1_000));
+        outlierEjectionEnabled = getBoolean(raw, KEY_OUTLIER_EJECTION_ENABLED, true);
+        outlierFailureRatePercent = (int) Math.min(100, Math.max(1, getLong(raw, KEY_OUTLIER_FAILURE_RATE_PERCENT, 50)));
+        outlierMinimumRequests = Math.max(1, getLong(raw, KEY_OUTLIER_MINIMUM_REQUESTS, 20));
+        outlierIntervalMs = Math.max(100, getLong(raw, KEY_OUTLIER_INTERVAL_MS, 10_000));
+        outlierBaseEjectionTimeMs = Math.max(1, getLong(raw, KEY_OUTLIER_BASE_EJECTION_TIME_MS, 30_000));
+        outlierMaxEjectionTimeMs = Math.max(outlierBaseEjectionTimeMs, getLong(raw, KEY_OUTLIER_MAX_EJECTION_TIME_MS, 300_000));
+        outlierMaxEjectionPercent = (int) Math.min(100, Math.max(0, getLong(raw, KEY_OUTLIER_MAX_EJECTION_PERCENT, 50)));
+    }
+
+    protected static long getLong(Map<String, ?> raw, String key, long defaultValue) {
+        Object v = raw.get(key);
+        if (v == null) {
+            return defaultValue;
+        }
+        if (v instanceof Number n) {
+            return n.longValue();
+        }
+        try {
+            return Long.parseLong(v.toString().trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("invalid " + key + ": " + v, ex);
+        }
+    }
+
+    protected static boolean getBoolean(Map<String, ?> raw, String key, boolean defaultValue) {
+        Object v = raw.get(key);
+        if (v == null) {
+            return defaultValue;
+        }
+        if (v instanceof Boolean b) {
+            return b;
+        }
+        return Boolean.parseBoolean(v.toString().trim());
+    }
+
+    /**
+     * @return JSON style map to be used in "loadBalancingConfig" of the gRPC service config (numbers as Double)
+     */
+    public Map<String, ?> toRawConfig() {
+        Map<String, Object> ret = new LinkedHashMap<>();
+        ret.put(KEY_EWMA_DECAY_MS, (double) ewmaDecayMs);
+        ret.put(KEY_HEALTH_CHECK_ENABLED, healthCheckEnabled);
+        ret.put(KEY_HEALTH_CHECK_SERVICE_NAME, healthCheckServiceName);
+        ret.put(KEY_HEALTH_CHECK_INTERVAL_MS, (double) healthCheckIntervalMs);
+        ret.put(KEY_HEALTH_CHECK_TIMEOUT_MS, (double) healthCheckTimeoutMs);
+        ret.put(KEY_OUTLIER_EJECTION_ENABLED, outlierEjectionEnabled);
+        ret.put(KEY_OUTLIER_FAILURE_RATE_PERCENT, (double) outlierFailureRatePercent);
+        ret.put(KEY_OUTLIER_MINIMUM_REQUESTS, (double) outlierMinimumRequests);
+        ret.put(KEY_OUTLIER_INTERVAL_MS, (double) outlierIntervalMs);
+        ret.put(KEY_OUTLIER_BASE_EJECTION_TIME_MS, (double) outlierBaseEjectionTimeMs);
+        ret.put(KEY_OUTLIER_MAX_EJECTION_TIME_MS, (double) outlierMaxEjectionTimeMs);
+        ret.put(KEY_OUTLIER_MAX_EJECTION_PERCENT, (double) outlierMaxEjectionPercent);
+        return ret;
+    }
+
+    public long getEwmaDecayNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(ewmaDecayMs);
+    }
+
+    public long getEwmaDecayMs() {
+        return ewmaDecayMs;
+    }
+
+    public boolean isHealthCheckEnabled() {
+        return healthCheckEnabled;
+    }
+
+    public String getHealthCheckServiceName() {
+        return healthCheckServiceName;
+    }
+
+    public long getHealthCheckIntervalMs() {
+        return healthCheckIntervalMs;
+    }
+
+    public long getHealthCheckTimeoutMs() {
+        return healthCheckTimeoutMs;
+    }
+
+    public boolean isOutlierEjectionEnabled() {
+        return outlierEjectionEnabled;
+    }
+
+    public int getOutlierFailureRatePercent() {
+        return outlierFailureRatePercent;
+    }
+
+    public long getOutlierMinimumRequests() {
+        return outlierMinimumRequests;
+    }
+
+    public long getOutlierIntervalMs() {
+        return outlierIntervalMs;
+    }
+
+    public long getOutlierBaseEjectionTimeMs() {
+        return outlierBaseEjectionTimeMs;
+    }
+
+    public long getOutlierMaxEjectionTimeMs() {
+        return outlierMaxEjectionTimeMs;
+    }
+
+    public int getOutlierMaxEjectionPercent() {
+        return outlierMaxEjectionPercent;
+    }
+
+    @Override
+    public String toString() {
+        return "HealthAwareLoadBalancerConfig" + toRawConfig();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.grpc.client;
+
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.LoadBalancerRegistry;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registers one load balancing policy per {@link HealthAwareLoadBalancer.Algorithm}, see
+ * {@link HealthAwareLoadBalancer.Algorithm#getPolicyName()}
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class HealthAwareLoadBalancerProvider extends LoadBalancerProvider {
+
+    private static final AtomicBoolean REGISTERED = new AtomicBoolean(false);
+
+    /**
+     * Register all policies to the default {@link LoadBalancerRegistry}, safe to be called multiple times
+     */
+    public static void registerAll() {
+        if (!REGISTERED.compareAndSet(false, true)) {
+            return;
+        }
+        LoadBalancerRegistry registry = LoadBalancerRegistry.getDefaultRegistry();
+        for (HealthAwareLoadBalancer.Algorithm algorithm : HealthAwareLoadBalancer.Algorithm.values()) {
+            registry.register(new HealthAwareLoadBalancerProvider(algorithm));
+        }
+    }
+
+    protected final HealthAwareLoadBalancer.Algorithm algorithm;
+
+    public HealthAwareLoadBalancerProvider(HealthAwareLoadBalancer.Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public int getPriority() {
+        return 5;
+    }
+
+    @Override
+    public String getPolicyName() {
+        return algorithm.getPolicyName();
+    }
+
+    @Override
+    public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+        return new HealthAwareLoadBalancer(helper, algorithm);
+    }
+
+    @Override
+    public NameResolver.ConfigOrError parseLoadBalancingPolicyConfig(Map<String, ?> rawLoadBalancingPolicyConfig) {
+        try {
+            return NameResolver.ConfigOrError.fromConfig(new HealthAwareLoadBalancerConfig(rawLoadBalancingPolicyConfig));
+        } catch (RuntimeException ex) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withCause(ex).withDescription("Invalid " + getPolicyName() + " config: " + ex.getMessage()));
+        }
+    }
+}
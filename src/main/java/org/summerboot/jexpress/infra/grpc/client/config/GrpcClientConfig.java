@@ -29,12 +29,19 @@ import io.grpc.netty.shaded.io.netty.handler.ssl.SslContext;
 import io.grpc.netty.shaded.io.netty.handler.ssl.SslContextBuilder;
 import io.grpc.netty.shaded.io.netty.handler.ssl.SslProvider;
 import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
 import org.summerboot.jexpress.annotation.config.Config;
 import org.summerboot.jexpress.annotation.config.ConfigHeader;
 import org.summerboot.jexpress.boot.config.BootConfig;
 import org.summerboot.jexpress.boot.config.ConfigUtil;
 import org.summerboot.jexpress.infra.grpc.client.BootLoadBalancerProvider;
 import org.summerboot.jexpress.infra.grpc.client.GrpcClient;
+import org.summerboot.jexpress.infra.grpc.client.HealthAwareLoadBalancer;
+import org.summerboot.jexpress.infra.grpc.client.HealthAwareLoadBalancerConfig;
+import org.summerboot.jexpress.infra.grpc.client.HealthAwareLoadBalancerProvider;
+import org.summerboot.jexpress.integration.resilience.CircuitBreaker;
+import org.summerboot.jexpress.integration.resilience.Resilience;
+import org.summerboot.jexpress.util.strategy.BackoffStrategy;
 
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLException;
@@ -44,7 +51,9 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -68,18 +77,35 @@ abstract public class GrpcClientConfig extends BootConfig {
     protected final static String ID = "gRpc.client";
 
     public enum LoadBalancingPolicy {
-        ROUND_ROBIN("round_robin"), PICK_FIRST("pick_first");
+        ROUND_ROBIN("round_robin"), PICK_FIRST("pick_first"),
+        LEAST_REQUEST(HealthAwareLoadBalancer.Algorithm.LEAST_REQUEST),
+        POWER_OF_TWO_CHOICES(HealthAwareLoadBalancer.Algorithm.POWER_OF_TWO_CHOICES),
+        PEAK_EWMA(HealthAwareLoadBalancer.Algorithm.PEAK_EWMA);
 
         private final String value;
+        private final boolean healthAware;
 
         private LoadBalancingPolicy(String value) {
             this.value = value;
+            this.healthAware = false;
+        }
+
+        private LoadBalancingPolicy(HealthAwareLoadBalancer.Algorithm algorithm) {
+            this.value = algorithm.getPolicyName();
+            this.healthAware = true;
         }
 
         public String getValue() {
             return value;
         }
 
+        /**
+         * @return true if implemented by {@link HealthAwareLoadBalancer}, which needs its settings via service config
+         */
+        public boolean isHealthAware() {
+            return healthAware;
+        }
+
     }
 
     public enum DefaultTrustStore {
@@ -118,9 +144,52 @@ abstract public class GrpcClientConfig extends BootConfig {
     @Config(key = ID + ".LoadBalancing.scheme", defaultValue = "grpc", desc = "In case you have more than one gRPC clients needs to connect to different gRPC services, you can set this to distinguish them")
     protected volatile String loadBalancingTargetScheme = "grpc";
 
-    @Config(key = ID + ".LoadBalancing.policy", defaultValue = "ROUND_ROBIN", desc = "available options: ROUND_ROBIN, PICK_FIRST")
+    @Config(key = ID + ".LoadBalancing.servers.file",
+            desc = "file with the cluster target in the same format as " + ID + ".LoadBalancing.servers (comma or new line separated, # for comments), reloaded at runtime when modified. " + ID + ".LoadBalancing.servers will be used as the fallback when the file is empty or invalid",
+            example = "grpc_servers.txt")
+    protected volatile File loadBalancingServersFile;
+    @Config(key = ID + ".LoadBalancing.servers.file.CheckIntervalSec", defaultValue = "5",
+            desc = "interval in seconds to check whether " + ID + ".LoadBalancing.servers.file is modified")
+    protected volatile int loadBalancingServersFileCheckIntervalSec = 5;
+
+    @Config(key = ID + ".LoadBalancing.policy", defaultValue = "ROUND_ROBIN",
+            desc = "available options: ROUND_ROBIN, PICK_FIRST, LEAST_REQUEST (fewest outstanding requests), POWER_OF_TWO_CHOICES (less outstanding requests of two random servers), PEAK_EWMA (power of two choices on peak EWMA latency x outstanding requests)."
+                    + " The last three skip unhealthy servers and eject outliers, see " + ID + ".LoadBalancing.healthCheck.* and " + ID + ".LoadBalancing.outlierEjection.*")
     protected volatile LoadBalancingPolicy loadBalancingPolicy;
 
+    @Config(key = ID + ".LoadBalancing.healthCheck.enabled", defaultValue = "false",
+            desc = "Only for LEAST_REQUEST, POWER_OF_TWO_CHOICES and PEAK_EWMA: periodically call the standard grpc.health.v1.Health/Check on each server and skip the ones not SERVING. Servers without the health service (UNIMPLEMENTED) are considered healthy")
+    protected volatile boolean healthCheckEnabled = false;
+    @Config(key = ID + ".LoadBalancing.healthCheck.serviceName", desc = "the service name in HealthCheckRequest, empty for the overall server health")
+    protected volatile String healthCheckServiceName = "";
+    @Config(key = ID + ".LoadBalancing.healthCheck.intervalMs", defaultValue = "5000")
+    protected volatile long healthCheckIntervalMs = 5000;
+    @Config(key = ID + ".LoadBalancing.healthCheck.timeoutMs", defaultValue = "1000")
+    protected volatile long healthCheckTimeoutMs = 1000;
+
+    @Config(key = ID + ".LoadBalancing.outlierEjection.enabled", defaultValue = "true",
+            desc = "Only for LEAST_REQUEST, POWER_OF_TWO_CHOICES and PEAK_EWMA: temporarily eject a server when its failure rate (UNAVAILABLE, DEADLINE_EXCEEDED, INTERNAL, UNKNOWN, RESOURCE_EXHAUSTED, DATA_LOSS) within an interval reaches the threshold")
+    protected volatile boolean outlierEjectionEnabled = true;
+    @Config(key = ID + ".LoadBalancing.outlierEjection.failureRatePercent", defaultValue = "50")
+    protected volatile int outlierFailureRatePercent = 50;
+    @Config(key = ID + ".LoadBalancing.outlierEjection.minimumRequests", defaultValue = "20",
+            desc = "a server will not be ejected when it has less requests than this within an interval")
+    protected volatile long outlierMinimumRequests = 20;
+    @Config(key = ID + ".LoadBalancing.outlierEjection.intervalMs", defaultValue = "10000")
+    protected volatile long outlierIntervalMs = 10000;
+    @Config(key = ID + ".LoadBalancing.outlierEjection.baseEjectionTimeMs", defaultValue = "30000",
+            desc = "ejection time = baseEjectionTimeMs x number of consecutive ejections, capped by maxEjectionTimeMs")
+    protected volatile long outlierBaseEjectionTimeMs = 30000;
+    @Config(key = ID + ".LoadBalancing.outlierEjection.maxEjectionTimeMs", defaultValue = "300000")
+    protected volatile long outlierMaxEjectionTimeMs = 300000;
+    @Config(key = ID + ".LoadBalancing.outlierEjection.maxEjectionPercent", defaultValue = "50",
+            desc = "max percentage of servers to be ejected at the same time, all READY servers will be used when none is left")
+    protected volatile int outlierMaxEjectionPercent = 50;
+
+    @Config(key = ID + ".LoadBalancing.peakEwma.decayMs", defaultValue = "10000",
+            desc = "Only for PEAK_EWMA: how long a latency spike is remembered")
+    protected volatile long peakEwmaDecayMs = 10000;
+
     protected volatile NameResolverProvider nameResolverProvider;
 
     //1. gRPC connection
@@ -189,6 +258,9 @@ abstract public class GrpcClientConfig extends BootConfig {
 
     @ConfigHeader(title = "4. " + ID + " Channel Settings",
             desc = "The following settings are for NettyChannelBuilder, which is used to create a gRPC channel")
+    @Config(key = ID + ".channel.poolSize", defaultValue = "1",
+            desc = "int: number of channels (HTTP/2 connections) per target, calls go to the channel with the least in-flight calls. Use it when a single connection is capped by the server's MAX_CONCURRENT_STREAMS or one TCP connection's throughput")
+    protected volatile int channelPoolSize = 1;
     @Config(key = ID + ".channel.userAgent", desc = "string: default null")
     protected volatile String userAgent = null;
     @Config(key = ID + ".channel.maxInboundMessageSize", desc = "int: default 4194304 if not set")
@@ -216,6 +288,47 @@ abstract public class GrpcClientConfig extends BootConfig {
     @Config(key = ID + ".channel.retryBufferSize", desc = "int: default 16777216L if not set")
     protected volatile Long retryBufferSize = null;//16777216L
 
+    @ConfigHeader(title = "5. " + ID + " Resilience",
+            desc = "circuit breaker, bulkhead and retry of the calls made via GrpcClient.call(), rejected calls fail fast with Status.UNAVAILABLE")
+    @Config(key = ID + ".resilience.name", desc = "dependency name used as health check name and metrics label, default is the simple class name of this config")
+    protected volatile String resilienceName;
+    @Config(key = ID + ".resilience.CircuitBreaker.enabled", defaultValue = "false")
+    protected volatile boolean circuitBreakerEnabled = false;
+    @Config(key = ID + ".resilience.CircuitBreaker.windowType", defaultValue = "COUNT",
+            desc = "COUNT: the last windowSize calls, TIME: the calls of the last windowSize seconds")
+    protected volatile CircuitBreaker.WindowType circuitBreakerWindowType = CircuitBreaker.WindowType.COUNT;
+    @Config(key = ID + ".resilience.CircuitBreaker.windowSize", defaultValue = "100")
+    protected volatile int circuitBreakerWindowSize = 100;
+    @Config(key = ID + ".resilience.CircuitBreaker.minimumNumberOfCalls", defaultValue = "20",
+            desc = "minimum calls in the window before the failure rate is evaluated")
+    protected volatile int circuitBreakerMinimumNumberOfCalls = 20;
+    @Config(key = ID + ".resilience.CircuitBreaker.failureRateThreshold", defaultValue = "50",
+            desc = "percent, open the circuit when the failure rate (status UNAVAILABLE, DEADLINE_EXCEEDED, RESOURCE_EXHAUSTED, INTERNAL or UNKNOWN) reaches it")
+    protected volatile int circuitBreakerFailureRateThreshold = 50;
+    @Config(key = ID + ".resilience.CircuitBreaker.waitDurationInOpenStateMs", defaultValue = "30000")
+    protected volatile long circuitBreakerWaitDurationInOpenStateMs = 30000;
+    @Config(key = ID + ".resilience.CircuitBreaker.permittedCallsInHalfOpenState", defaultValue = "5",
+            desc = "probe calls in half open state, the circuit closes when all of them succeed")
+    protected volatile int circuitBreakerPermittedCallsInHalfOpenState = 5;
+    @Config(key = ID + ".resilience.CircuitBreaker.reportToHealthMonitor", defaultValue = "false",
+            desc = "report the open circuit as a failed health check named after the dependency, endpoints with @RequiresHealthCheck fail fast. Note: the ping endpoint then reports this instance as unhealthy, one failing dependency takes it out of the load balancer")
+    protected volatile boolean circuitBreakerReportToHealthMonitor = false;
+    @Config(key = ID + ".resilience.Bulkhead.maxConcurrentCalls", defaultValue = "0", desc = "max concurrent calls, disabled when <= 0")
+    protected volatile int bulkheadMaxConcurrentCalls = 0;
+    @Config(key = ID + ".resilience.Bulkhead.maxWaitMs", defaultValue = "0", desc = "max time to wait for a permit, 0 to reject immediately")
+    protected volatile long bulkheadMaxWaitMs = 0;
+    @Config(key = ID + ".resilience.Retry.BackoffStrategy",
+            desc = "no retry if not set or maxAttempts <= 0. Only status UNAVAILABLE is retried, keep " + ID + ".channel.retryEnabled for transparent retries",
+            example = "{\"strategy\":\"EXPONENTIAL\",\"initialInterval\":100,\"factor\":2.0,\"maxInterval\":1000,\"maxAttempts\":2,\"jitterFactor\":0.2}")
+    protected volatile BackoffStrategy retryBackoffStrategy;
+    @Config(key = ID + ".resilience.Retry.budgetPercent", defaultValue = "10", desc = "retries allowed per 100 calls")
+    protected volatile int retryBudgetPercent = 10;
+    @Config(key = ID + ".resilience.Retry.budgetMaxTokens", defaultValue = "10", desc = "max retries available at once")
+    protected volatile int retryBudgetMaxTokens = 10;
+
+    @JsonIgnore
+    protected volatile Resilience resilience;
+
     @Override
     protected void preLoad(File cfgFile, boolean isReal, ConfigUtil helper, Properties props) {
         createIfNotExist(FILENAME_KEYSTORE, FILENAME_KEYSTORE);
@@ -233,17 +346,43 @@ abstract public class GrpcClientConfig extends BootConfig {
         if (nameResolverProvider != null) {
             nameResolverRegistry.deregister(nameResolverProvider);
         }
-        if (loadBalancingServers != null && !loadBalancingServers.isEmpty()) {
+        if (loadBalancingServersFile != null) {
+            if (!loadBalancingServersFile.isFile()) {
+                helper.addError("invalid \"" + ID + ".LoadBalancing.servers.file\" - file not found: " + loadBalancingServersFile.getAbsolutePath(), null);
+                return;
+            }
+            List<InetSocketAddress> defaultServers = loadBalancingServers == null ? List.of() : loadBalancingServers;
+            nameResolverProvider = new BootLoadBalancerProvider(loadBalancingTargetScheme, ++priority, loadBalancingServersFile, TimeUnit.SECONDS.toMillis(Math.max(1, loadBalancingServersFileCheckIntervalSec)), defaultServers);
+            nameResolverRegistry.register(nameResolverProvider);
+        } else if (loadBalancingServers != null && !loadBalancingServers.isEmpty()) {
             nameResolverProvider = new BootLoadBalancerProvider(loadBalancingTargetScheme, ++priority, loadBalancingServers);
             nameResolverRegistry.register(nameResolverProvider);
         }
+        if (channelPoolSize < 1) {
+            helper.addError("invalid \"" + ID + ".channel.poolSize\" - must be greater than 0: " + channelPoolSize, null);
+        }
         if (tmf == null && defaultTrustStore == DefaultTrustStore.TrustAll) { // ignore Server Certificate
             tmf = io.grpc.netty.shaded.io.netty.handler.ssl.util.InsecureTrustManagerFactory.INSTANCE;
         }
+        Resilience newResilience = null;
+        try {
+            String name = StringUtils.isBlank(resilienceName) ? getClass().getSimpleName() : resilienceName;
+            newResilience = Resilience.build(name, circuitBreakerEnabled, circuitBreakerWindowType, circuitBreakerWindowSize, circuitBreakerMinimumNumberOfCalls,
+                    circuitBreakerFailureRateThreshold, circuitBreakerWaitDurationInOpenStateMs, circuitBreakerPermittedCallsInHalfOpenState, circuitBreakerReportToHealthMonitor,
+                    bulkheadMaxConcurrentCalls, bulkheadMaxWaitMs, retryBackoffStrategy, retryBudgetPercent, retryBudgetMaxTokens);
+        } catch (IllegalArgumentException ex) {
+            helper.addError("invalid \"" + ID + ".resilience.*\" - " + ex.getMessage(), null);
+        }
+        Resilience oldResilience = resilience;
+        resilience = newResilience == null ? null : Resilience.register(newResilience);
+        if (oldResilience != null && (newResilience == null || !oldResilience.getName().equals(newResilience.getName()))) {
+            Resilience.unregister(oldResilience);
+        }
         channelBuilder = initNettyChannelBuilder(nameResolverProvider, loadBalancingPolicy.getValue(), uri, kmf, tmf, overrideAuthority, ciphers, sslProvider, tlsProtocols);
         configNettyChannelBuilder(channelBuilder);
         for (GrpcClient listener : listeners) {
-            listener.updateChannelBuilder(channelBuilder);
+            listener.updateResilience(resilience);
+            listener.updateChannelBuilder(channelBuilder, channelPoolSize);
         }
     }
 
@@ -293,10 +432,32 @@ abstract public class GrpcClientConfig extends BootConfig {
             }
         }
 
+        // client side load balancing settings for LEAST_REQUEST, POWER_OF_TWO_CHOICES and PEAK_EWMA
+        if (nameResolverProvider != null && loadBalancingPolicy != null && loadBalancingPolicy.isHealthAware()) {
+            nettyChannelBuilder.defaultServiceConfig(Map.of("loadBalancingConfig", List.of(Map.of(loadBalancingPolicy.getValue(), buildHealthAwareLoadBalancerConfig().toRawConfig()))));
+        }
+
         //nettyChannelBuilder.flowControlWindow(NettyChannelBuilder.DEFAULT_FLOW_CONTROL_WINDOW);
         //nettyChannelBuilder.initialFlowControlWindow(NettyChannelBuilder.DEFAULT_FLOW_CONTROL_WINDOW);
     }
 
+    protected HealthAwareLoadBalancerConfig buildHealthAwareLoadBalancerConfig() {
+        Map<String, Object> raw = new LinkedHashMap<>();
+        raw.put(HealthAwareLoadBalancerConfig.KEY_EWMA_DECAY_MS, peakEwmaDecayMs);
+        raw.put(HealthAwareLoadBalancerConfig.KEY_HEALTH_CHECK_ENABLED, healthCheckEnabled);
+        raw.put(HealthAwareLoadBalancerConfig.KEY_HEALTH_CHECK_SERVICE_NAME, healthCheckServiceName == null ? "" : healthCheckServiceName);
+        raw.put(HealthAwareLoadBalancerConfig.KEY_HEALTH_CHECK_INTERVAL_MS, healthCheckIntervalMs);
+        raw.put(HealthAwareLoadBalancerConfig.KEY_HEALTH_CHECK_TIMEOUT_MS, healthCheckTimeoutMs);
+        raw.put(HealthAwareLoadBalancerConfig.KEY_OUTLIER_EJECTION_ENABLED, outlierEjectionEnabled);
+        raw.put(HealthAwareLoadBalancerConfig.KEY_OUTLIER_FAILURE_RATE_PERCENT, outlierFailureRatePercent);
+        raw.put(HealthAwareLoadBalancerConfig.KEY_OUTLIER_MINIMUM_REQUESTS, outlierMinimumRequests);
+        raw.put(HealthAwareLoadBalancerConfig.KEY_OUTLIER_INTERVAL_MS, outlierIntervalMs);
+        raw.put(HealthAwareLoadBalancerConfig.KEY_OUTLIER_BASE_EJECTION_TIME_MS, outlierBaseEjectionTimeMs);
+        raw.put(HealthAwareLoadBalancerConfig.KEY_OUTLIER_MAX_EJECTION_TIME_MS, outlierMaxEjectionTimeMs);
+        raw.put(HealthAwareLoadBalancerConfig.KEY_OUTLIER_MAX_EJECTION_PERCENT, outlierMaxEjectionPercent);
+        return new HealthAwareLoadBalancerConfig(raw);
+    }
+
     @Override
     public void shutdown() {
     }
@@ -339,6 +500,7 @@ abstract public class GrpcClientConfig extends BootConfig {
                                                               @Nullable String overrideAuthority, @Nullable Iterable<String> ciphers, @Nullable SslProvider sslProvider, @Nullable String... tlsProtocols) throws SSLException {
         final NettyChannelBuilder channelBuilder;
         if (nameResolverProvider != null) {// use client side load balancing
+            HealthAwareLoadBalancerProvider.registerAll();
             // register
             NameResolverRegistry nameResolverRegistry = NameResolverRegistry.getDefaultRegistry();// Use singleton instance in new API to replace deprecated channelBuilder.nameResolverFactory(new nameResolverRegistry().asFactory());
             nameResolverRegistry.register(nameResolverProvider);
@@ -397,6 +559,14 @@ abstract public class GrpcClientConfig extends BootConfig {
         return loadBalancingPolicy;
     }
 
+    public File getLoadBalancingServersFile() {
+        return loadBalancingServersFile;
+    }
+
+    public HealthAwareLoadBalancerConfig getHealthAwareLoadBalancerConfig() {
+        return buildHealthAwareLoadBalancerConfig();
+    }
+
     public NameResolverProvider getNameResolverProvider() {
         return nameResolverProvider;
     }
@@ -433,8 +603,19 @@ abstract public class GrpcClientConfig extends BootConfig {
         return defaultTrustStore;
     }
 
+    public int getChannelPoolSize() {
+        return channelPoolSize;
+    }
+
     public NettyChannelBuilder getChannelBuilder() {
         return channelBuilder;
     }
 
+    /**
+     * @return null if none of circuit breaker, bulkhead and retry is enabled
+     */
+    public Resilience getResilience() {
+        return resilience;
+    }
+
 }
@@ -17,12 +17,17 @@
 package org.summerboot.jexpress.infra.grpc.helper;
 
 import io.grpc.BindableService;
+import io.grpc.Channel;
+import io.grpc.ManagedChannel;
 import io.grpc.NameResolverProvider;
 import io.grpc.ServerBuilder;
 import io.grpc.ServerInterceptor;
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
 import io.grpc.netty.shaded.io.netty.handler.ssl.SslProvider;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.summerboot.jexpress.api.auth.Caller;
 import org.summerboot.jexpress.api.common.SessionContext;
@@ -43,9 +48,19 @@ import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.security.GeneralSecurityException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * For testing gRPC with two-way TLS.
@@ -498,6 +513,147 @@ public abstract class GrpcTestHelper {
 
     protected abstract void runClient(NettyChannelBuilder channelBuilder);
 
+    /**
+     * ghz-style summary of a local load test
+     */
+    public static class LoadTestReport {
+        private final long count;
+        private final long ok;
+        private final Map<String, Long> errors;
+        private final long elapsedNanos;
+        private final Histogram latencyNanos;
+
+        LoadTestReport(long ok, Map<String, Long> errors, long elapsedNanos, Histogram latencyNanos) {
+            this.ok = ok;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.latencyNanos = latencyNanos;
+            this.count = latencyNanos.getTotalCount();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getOk() {
+            return ok;
+        }
+
+        public Map<String, Long> getErrors() {
+            return errors;
+        }
+
+        public Duration getElapsed() {
+            return Duration.ofNanos(elapsedNanos);
+        }
+
+        public double getRequestsPerSecond() {
+            return elapsedNanos == 0 ? 0 : count * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        /**
+         * @param percentile 0 - 100
+         * @return latency in milliseconds
+         */
+        public double getLatencyMs(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long nanos = percentile <= 0 ? latencyNanos.getMinValue() : latencyNanos.getValueAtPercentile(percentile);
+            return nanos / 1_000_000.0;
+        }
+
+        public double getAverageLatencyMs() {
+            if (count == 0) {
+                return 0;
+            }
+            return latencyNanos.getMean() / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return "Summary:" +
+                    "\n  Count:\t" + count +
+                    "\n  Total:\t" + getElapsed().toMillis() + " ms" +
+                    "\n  Slowest:\t" + String.format("%.2f", getLatencyMs(100)) + " ms" +
+                    "\n  Fastest:\t" + String.format("%.2f", getLatencyMs(0)) + " ms" +
+                    "\n  Average:\t" + String.format("%.2f", getAverageLatencyMs()) + " ms" +
+                    "\n  Requests/sec:\t" + String.format("%.2f", getRequestsPerSecond()) +
+                    "\nLatency distribution:" +
+                    "\n  50 % in " + String.format("%.2f", getLatencyMs(50)) + " ms" +
+                    "\n  90 % in " + String.format("%.2f", getLatencyMs(90)) + " ms" +
+                    "\n  95 % in " + String.format("%.2f", getLatencyMs(95)) + " ms" +
+                    "\n  99 % in " + String.format("%.2f", getLatencyMs(99)) + " ms" +
+                    "\n  99.9 % in " + String.format("%.2f", getLatencyMs(99.9)) + " ms" +
+                    "\nStatus code distribution:" +
+                    "\n  [OK]\t" + ok + " responses" +
+                    (errors.isEmpty() ? "" : "\n  " + errors);
+        }
+    }
+
+    /**
+     * Run a ghz-style local load test: {@code concurrency} workers share {@code connections} channels (round-robin) and keep calling
+     * until {@code totalRequests} calls are made or {@code duration} elapsed, whichever comes first.
+     *
+     * @param channelBuilder the client channel builder, see {@link #buildGrpcClient(GrpcSimpleClient)}
+     * @param connections    number of channels (HTTP/2 connections) to open, like ghz --connections
+     * @param concurrency    number of concurrent workers, like ghz --concurrency
+     * @param totalRequests  max number of calls, 0 = unlimited (duration must be provided), like ghz --total
+     * @param duration       max duration of the test, null = unlimited (totalRequests must be provided), like ghz --duration
+     * @param call           a blocking unary call to test, e.g. {@code channel -> MyServiceGrpc.newBlockingStub(channel).hello(request)}
+     * @return the report
+     * @throws InterruptedException
+     */
+    public static LoadTestReport loadTest(NettyChannelBuilder channelBuilder, int connections, int concurrency, long totalRequests, Duration duration, Consumer<Channel> call) throws InterruptedException {
+        if (totalRequests <= 0 && duration == null) {
+            throw new IllegalArgumentException("either totalRequests or duration is required");
+        }
+        connections = Math.max(1, connections);
+        concurrency = Math.max(1, concurrency);
+        ManagedChannel[] channels = new ManagedChannel[connections];
+        for (int i = 0; i < connections; i++) {
+            channels[i] = channelBuilder.build();
+        }
+        final long deadline = duration == null ? Long.MAX_VALUE : System.nanoTime() + duration.toNanos();
+        final long maxRequests = totalRequests <= 0 ? Long.MAX_VALUE : totalRequests;
+        final AtomicLong issued = new AtomicLong(0);
+        final LongAdder ok = new LongAdder();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        // constant memory however long the test runs, 3 significant digits
+        final Recorder latencies = new Recorder(3);
+        ExecutorService workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("GrpcLoadTest-", 0).factory());
+        long start = System.nanoTime();
+        try {
+            for (int w = 0; w < concurrency; w++) {
+                final Channel channel = channels[w % connections];
+                workers.execute(() -> {
+                    while (System.nanoTime() < deadline && issued.incrementAndGet() <= maxRequests) {
+                        long t0 = System.nanoTime();
+                        try {
+                            call.accept(channel);
+                            ok.increment();
+                        } catch (StatusRuntimeException ex) {
+                            errors.computeIfAbsent(ex.getStatus().getCode().name(), k -> new LongAdder()).increment();
+                        } catch (Throwable ex) {
+                            errors.computeIfAbsent(Status.Code.UNKNOWN.name() + ": " + ex.getClass().getSimpleName(), k -> new LongAdder()).increment();
+                        }
+                        latencies.recordValue(System.nanoTime() - t0);
+                    }
+                });
+            }
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            for (ManagedChannel channel : channels) {
+                channel.shutdownNow();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        Map<String, Long> errorSummary = new TreeMap<>();
+        errors.forEach((k, v) -> errorSummary.put(k, v.sum()));
+        return new LoadTestReport(ok.sum(), errorSummary, elapsed, latencies.getIntervalHistogram());
+    }
+
 
 }
 
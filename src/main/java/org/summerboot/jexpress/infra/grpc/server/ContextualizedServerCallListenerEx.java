@@ -90,6 +90,7 @@ public class ContextualizedServerCallListenerEx<ReqT> extends ForwardingServerCa
         Context previous;
         ContextualizedServerCallListenerEx<ReqT> listener;
         final SessionContext sessionContext;
+        final GrpcCallMetrics callMetrics;
         var serverCall = call;
         boolean isPing = false;
 
@@ -99,11 +100,13 @@ public class ContextualizedServerCallListenerEx<ReqT> extends ForwardingServerCa
             if (isPing) {
                 GrpcServer.getServiceCounter().incrementPing();
                 sessionContext = null;
+                callMetrics = null;
             } else {
                 GrpcServer.getServiceCounter().incrementHit();
                 final long hitIndex = GrpcServer.getServiceCounter().incrementBiz();
                 final String txId = BootConstants.APP_ID + "-" + hitIndex;
                 GrpcServer.IDLE_EVENT_MONITOR.onCall(txId);
+                callMetrics = GrpcCallMetrics.start(methodName, startTs);
                 HttpHeaders httpHeaders = new DefaultHttpHeaders();
                 for (String key : headers.keys()) {
                     httpHeaders.add(key, headers.get(Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER)));
@@ -147,6 +150,14 @@ public class ContextualizedServerCallListenerEx<ReqT> extends ForwardingServerCa
                         }
                         super.sendMessage(message);
                     }
+
+                    @Override
+                    public void close(Status status, Metadata trailers) {
+                        if (callMetrics != null) {
+                            callMetrics.onClose(status);
+                        }
+                        super.close(status, trailers);
+                    }
                 };
             }
         } finally {
@@ -155,6 +166,7 @@ public class ContextualizedServerCallListenerEx<ReqT> extends ForwardingServerCa
 
         try {
             listener = new ContextualizedServerCallListenerEx<>(next.startCall(serverCall, headers), context, sessionContext, !isPing);
+            listener.callMetrics = callMetrics;
             if (!isPing) {
                 log.trace("interceptCall: {}", listener);
             }
@@ -176,6 +188,8 @@ public class ContextualizedServerCallListenerEx<ReqT> extends ForwardingServerCa
 
     private final Long hit;
 
+    private GrpcCallMetrics callMetrics;
+
     /**
      * onReady()
      * ↓
@@ -238,6 +252,9 @@ public class ContextualizedServerCallListenerEx<ReqT> extends ForwardingServerCa
     @Override
     public void onHalfClose() {
         applyLogContext("onHalfClose", true);
+        if (callMetrics != null) {
+            callMetrics.onBusinessStart();
+        }
         Context previous = this.context.attach();
 
         try {
@@ -254,6 +271,9 @@ public class ContextualizedServerCallListenerEx<ReqT> extends ForwardingServerCa
         if (isBusinessRequest) {
             GrpcServer.getServiceCounter().incrementCancelled();
             GrpcServer.getServiceCounter().incrementProcessed();
+            if (callMetrics != null) {
+                callMetrics.onClose(Status.CANCELLED);
+            }
         }
         Context previous = this.context.attach();
 
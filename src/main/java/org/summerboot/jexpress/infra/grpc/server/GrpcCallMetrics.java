@@ -0,0 +1,98 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.grpc.server;
+
+import io.grpc.Status;
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+import org.summerboot.jexpress.infra.metrics.EndpointMetrics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Timing of one gRPC call: queuing = received to business logic start (onHalfClose), process = business logic start to
+ * close, response = received to close
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+class GrpcCallMetrics {
+
+    /**
+     * gRPC status code names indexed by code value, plus "other"
+     */
+    protected static final String[] STATUS_LABELS;
+
+    static {
+        Status.Code[] codes = Status.Code.values();
+        int max = 0;
+        for (Status.Code code : codes) {
+            max = Math.max(max, code.value());
+        }
+        STATUS_LABELS = new String[max + 2];
+        for (int i = 0; i < STATUS_LABELS.length; i++) {
+            STATUS_LABELS[i] = "other";
+        }
+        for (Status.Code code : codes) {
+            STATUS_LABELS[code.value()] = code.name();
+        }
+    }
+
+    protected final EndpointMetrics metrics;
+    protected final long startNanos;
+    protected volatile long businessStartNanos;
+    protected final AtomicBoolean recorded = new AtomicBoolean(false);
+
+    /**
+     * @param fullMethodName
+     * @param startTs        when the call was received, in epoch milliseconds
+     * @return null if metrics is disabled
+     */
+    static GrpcCallMetrics start(String fullMethodName, long startTs) {
+        EndpointMetrics metrics = BootMetrics.grpc(fullMethodName, STATUS_LABELS);
+        if (metrics == null) {
+            return null;
+        }
+        long elapsedMs = Math.max(0, System.currentTimeMillis() - startTs);
+        return new GrpcCallMetrics(metrics, System.nanoTime() - elapsedMs * 1_000_000);
+    }
+
+    protected GrpcCallMetrics(EndpointMetrics metrics, long startNanos) {
+        this.metrics = metrics;
+        this.startNanos = startNanos;
+    }
+
+    void onBusinessStart() {
+        if (businessStartNanos == 0) {
+            businessStartNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * only the first call is recorded
+     *
+     * @param status
+     */
+    void onClose(Status status) {
+        if (!recorded.compareAndSet(false, true)) {
+            return;
+        }
+        long now = System.nanoTime();
+        long businessStart = businessStartNanos;
+        long queuing = businessStart == 0 ? -1 : businessStart - startNanos;
+        long process = businessStart == 0 ? -1 : now - businessStart;
+        metrics.record(queuing, process, now - startNanos, status.getCode().value());
+    }
+}
@@ -16,19 +16,31 @@
  */
 package org.summerboot.jexpress.infra.grpc.server;
 
-import io.grpc.Grpc;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.grpc.ServerCredentials;
 import io.grpc.ServerInterceptor;
 import io.grpc.TlsServerCredentials;
 import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.ChannelOption;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.ServerChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollChannelOption;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
 import org.summerboot.jexpress.boot.BootConstants;
 import org.summerboot.jexpress.boot.lifecycle.app.IdleEventMonitor;
 import org.summerboot.jexpress.infra.grpc.server.config.GrpcServerConfig;
 import org.summerboot.jexpress.infra.metrics.NioStatusListener;
+import org.summerboot.jexpress.infra.netty.util.IoMultiplexer;
 import org.summerboot.jexpress.util.concurrent.NamedDefaultThreadFactory;
 
 import javax.net.ssl.KeyManagerFactory;
@@ -37,15 +49,19 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
+ * CRaC: the server and the shared event loop groups are closed before checkpoint, the server is rebuilt from the same
+ * builder and started again after restore
+ *
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
  */
-public class GrpcServer {
+public class GrpcServer implements Resource {
 
     protected static final Logger log = LogManager.getLogger(GrpcServer.class.getName());
 
@@ -56,9 +72,24 @@ public class GrpcServer {
     protected final int port;
     protected final ServerCredentials serverCredentials;
 
-    protected final ServerBuilder serverBuilder;
+    protected final GrpcServerConfig cfg;
+    protected final NettyServerBuilder serverBuilder;
 
     protected Server server = null;
+    protected boolean eventLoopGroupsAcquired = false;
+    protected boolean shutdownHookAdded = false;
+    protected boolean cracRegistered = false;
+    protected volatile boolean restartAfterRestore = false;
+
+    /**
+     * Boss/worker event loop groups shared by all gRPC bindings in this JVM, created on first start and released when the last server is shut down.
+     * gRPC uses its own shaded Netty, so these groups cannot be shared with the NioServer's (unshaded) groups.
+     */
+    protected static EventLoopGroup sharedBossGroup;
+    protected static EventLoopGroup sharedWorkerGroup;
+    protected static Class<? extends ServerChannel> sharedServerChannelClass;
+    protected static IoMultiplexer sharedMultiplexer;
+    protected static int sharedEventLoopGroupsRefCount = 0;
 
     protected ScheduledExecutorService statusReporter = null;
     //protected boolean servicePaused = false;
@@ -81,14 +112,22 @@ public class GrpcServer {
     }
 
     public GrpcServer(String bindingAddr, int port, KeyManagerFactory kmf, TrustManagerFactory tmf, ThreadPoolExecutor tpe, boolean useVirtualThread, boolean generateReport, NioStatusListener nioListener, ServerInterceptor... serverInterceptors) {
+        this(GrpcServerConfig.cfg, bindingAddr, port, kmf, tmf, tpe, useVirtualThread, generateReport, nioListener, serverInterceptors);
+    }
+
+    public GrpcServer(GrpcServerConfig cfg, String bindingAddr, int port, KeyManagerFactory kmf, TrustManagerFactory tmf, ThreadPoolExecutor tpe, boolean useVirtualThread, boolean generateReport, NioStatusListener nioListener, ServerInterceptor... serverInterceptors) {
+        this.cfg = cfg;
         this.bindingAddr = bindingAddr;
         this.port = port;
         serverCredentials = initTLS(kmf, tmf);
+        InetSocketAddress bindingAddress = new InetSocketAddress(bindingAddr, port);
         if (serverCredentials == null) {
-            serverBuilder = NettyServerBuilder.forAddress(new InetSocketAddress(bindingAddr, port));
+            serverBuilder = NettyServerBuilder.forAddress(bindingAddress);
         } else {
-            serverBuilder = Grpc.newServerBuilderForPort(port, serverCredentials);
+            // do not use Grpc.newServerBuilderForPort(port, serverCredentials), which listens on all interfaces and ignores bindingAddr
+            serverBuilder = NettyServerBuilder.forAddress(bindingAddress, serverCredentials);
         }
+        configNettyServerBuilder(serverBuilder, cfg);
         if (serverInterceptors != null) {
             for (ServerInterceptor serverInterceptor : serverInterceptors) {
                 serverBuilder.intercept(serverInterceptor);
@@ -100,6 +139,134 @@ public class GrpcServer {
         }
     }
 
+    /**
+     * Apply HTTP/2 flow control, keepalive enforcement and connection age settings, gRPC default is kept for any setting not specified
+     *
+     * @param nettyServerBuilder
+     * @param cfg
+     */
+    protected void configNettyServerBuilder(NettyServerBuilder nettyServerBuilder, GrpcServerConfig cfg) {
+        if (cfg.getFlowControlWindow() != null) {
+            nettyServerBuilder.flowControlWindow(cfg.getFlowControlWindow());
+        } else if (cfg.getInitialFlowControlWindow() != null) {
+            nettyServerBuilder.initialFlowControlWindow(cfg.getInitialFlowControlWindow());
+        }
+        if (cfg.getMaxConcurrentCallsPerConnection() != null) {
+            nettyServerBuilder.maxConcurrentCallsPerConnection(cfg.getMaxConcurrentCallsPerConnection());
+        }
+        if (cfg.getMaxInboundMessageSize() != null) {
+            nettyServerBuilder.maxInboundMessageSize(cfg.getMaxInboundMessageSize());
+        }
+        if (cfg.getMaxInboundMetadataSize() != null) {
+            nettyServerBuilder.maxInboundMetadataSize(cfg.getMaxInboundMetadataSize());
+        }
+
+        // keepalive
+        if (cfg.getKeepAliveTimeSeconds() != null) {
+            nettyServerBuilder.keepAliveTime(cfg.getKeepAliveTimeSeconds(), TimeUnit.SECONDS);
+        }
+        if (cfg.getKeepAliveTimeoutSeconds() != null) {
+            nettyServerBuilder.keepAliveTimeout(cfg.getKeepAliveTimeoutSeconds(), TimeUnit.SECONDS);
+        }
+        if (cfg.getPermitKeepAliveTimeSeconds() != null) {
+            nettyServerBuilder.permitKeepAliveTime(cfg.getPermitKeepAliveTimeSeconds(), TimeUnit.SECONDS);
+        }
+        if (cfg.getPermitKeepAliveWithoutCalls() != null) {
+            nettyServerBuilder.permitKeepAliveWithoutCalls(cfg.getPermitKeepAliveWithoutCalls());
+        }
+
+        // connection management
+        if (cfg.getMaxConnectionIdleSeconds() != null) {
+            nettyServerBuilder.maxConnectionIdle(cfg.getMaxConnectionIdleSeconds(), TimeUnit.SECONDS);
+        }
+        if (cfg.getMaxConnectionAgeSeconds() != null) {
+            nettyServerBuilder.maxConnectionAge(cfg.getMaxConnectionAgeSeconds(), TimeUnit.SECONDS);
+        }
+        if (cfg.getMaxConnectionAgeGraceSeconds() != null) {
+            nettyServerBuilder.maxConnectionAgeGrace(cfg.getMaxConnectionAgeGraceSeconds(), TimeUnit.SECONDS);
+        }
+
+        // socket
+        nettyServerBuilder.withOption(ChannelOption.SO_BACKLOG, cfg.getSoBacklog())
+                .withChildOption(ChannelOption.TCP_NODELAY, cfg.isSoTcpNodelay());
+    }
+
+    /**
+     * Use the shared boss/worker event loop groups with native Epoll transport when available
+     *
+     * @param cfg
+     */
+    protected void acquireEventLoopGroups(GrpcServerConfig cfg) {
+        synchronized (GrpcServer.class) {
+            if (sharedEventLoopGroupsRefCount == 0) {
+                IoMultiplexer multiplexer = cfg.getMultiplexer();
+                int bossSize = Math.max(1, cfg.getEventLoopGroupAcceptorSize());
+                int workerSize = Math.max(0, cfg.getEventLoopGroupWorkerSize());
+                ThreadFactory threadFactoryBoss = NamedDefaultThreadFactory.build("Netty-gRPC.Boss", false);
+                ThreadFactory threadFactoryWorker = NamedDefaultThreadFactory.build("Netty-gRPC.Worker", false);
+                if (Epoll.isAvailable() && (IoMultiplexer.AVAILABLE.equals(multiplexer) || IoMultiplexer.EPOLL.equals(multiplexer))) {
+                    sharedBossGroup = new EpollEventLoopGroup(bossSize, threadFactoryBoss);
+                    sharedWorkerGroup = new EpollEventLoopGroup(workerSize, threadFactoryWorker);
+                    sharedServerChannelClass = EpollServerSocketChannel.class;
+                    sharedMultiplexer = IoMultiplexer.EPOLL;
+                } else {
+                    // KQueue is not bundled with grpc-netty-shaded
+                    sharedBossGroup = new NioEventLoopGroup(bossSize, threadFactoryBoss);
+                    sharedWorkerGroup = new NioEventLoopGroup(workerSize, threadFactoryWorker);
+                    sharedServerChannelClass = NioServerSocketChannel.class;
+                    sharedMultiplexer = IoMultiplexer.JDK;
+                }
+                log.info("gRPC transport: Epoll=" + Epoll.isAvailable() + ", multiplexer=" + multiplexer + " -> " + sharedMultiplexer);
+            }
+            sharedEventLoopGroupsRefCount++;
+            eventLoopGroupsAcquired = true;
+            serverBuilder.bossEventLoopGroup(sharedBossGroup)
+                    .workerEventLoopGroup(sharedWorkerGroup)
+                    .channelType(sharedServerChannelClass);
+            if (sharedMultiplexer == IoMultiplexer.EPOLL && cfg.isSoReusePort()) {
+                serverBuilder.withOption(EpollChannelOption.SO_REUSEPORT, true);
+            }
+        }
+    }
+
+    /**
+     * Release the shared event loop groups, shutdown gracefully when no more gRPC server is using them
+     */
+    protected void releaseEventLoopGroups() {
+        releaseEventLoopGroups(false);
+    }
+
+    /**
+     * @param await wait for the event loop groups to terminate when shutting them down
+     */
+    protected void releaseEventLoopGroups(boolean await) {
+        synchronized (GrpcServer.class) {
+            if (!eventLoopGroupsAcquired) {
+                return;
+            }
+            eventLoopGroupsAcquired = false;
+            sharedEventLoopGroupsRefCount--;
+            if (sharedEventLoopGroupsRefCount > 0) {
+                return;
+            }
+            sharedEventLoopGroupsRefCount = 0;
+            if (sharedBossGroup != null) {
+                var f = sharedBossGroup.shutdownGracefully();
+                if (await) {
+                    f.awaitUninterruptibly(30, TimeUnit.SECONDS);
+                }
+                sharedBossGroup = null;
+            }
+            if (sharedWorkerGroup != null) {
+                var f = sharedWorkerGroup.shutdownGracefully();
+                if (await) {
+                    f.awaitUninterruptibly(30, TimeUnit.SECONDS);
+                }
+                sharedWorkerGroup = null;
+            }
+        }
+    }
+
     protected ServerCredentials initTLS(KeyManagerFactory kmf, TrustManagerFactory tmf) {
         if (kmf == null) {
             return null;
@@ -189,15 +356,29 @@ public class GrpcServer {
             shutdown();
         }
         String appInfo = BootConstants.VERSION + " " + BootConstants.PID;
-        server = serverBuilder.build().start();
+        acquireEventLoopGroups(cfg);
+        try {
+            server = serverBuilder.build().start();
+        } catch (IOException | RuntimeException ex) {
+            releaseEventLoopGroups();
+            throw ex;
+        }
         String schema = serverCredentials == null ? "grpc" : "grpcs";
-        String info = "Netty GRPC server [" + appInfo + "] is listening on " + schema + "://" + bindingAddr + ":" + port;
+        String info = "Netty GRPC server [" + appInfo + "] (multiplexer=" + sharedMultiplexer + ") is listening on " + schema + "://" + bindingAddr + ":" + port;
         memo.append(BootConstants.BR).append(info);
         log.info(info);
-        Runtime.getRuntime().addShutdownHook(
-                new Thread(() -> {
-                    shutdown();
-                }, "GrpcServer.shutdown and stop listening on " + schema + "://" + bindingAddr + ":" + port));
+        if (!shutdownHookAdded) {
+            shutdownHookAdded = true;
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(() -> {
+                        shutdown();
+                    }, "GrpcServer.shutdown and stop listening on " + schema + "://" + bindingAddr + ":" + port));
+        }
+        if (!cracRegistered) {
+            // the global context only keeps a weak reference, this server is held by SummerApplication
+            Core.getGlobalContext().register(this);
+            cracRegistered = true;
+        }
         if (isBlockingMode) {
             try {
                 server.awaitTermination();
@@ -223,6 +404,34 @@ public class GrpcServer {
             System.err.println("GrpcServer shutdown timeout " + bindingAddr + ":" + port);
         } finally {
             server = null;
+            releaseEventLoopGroups();
+        }
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) throws Exception {
+        Server s = server;
+        restartAfterRestore = s != null;
+        if (s == null) {
+            return;
+        }
+        log.info("CRaC beforeCheckpoint: stopping gRPC server " + bindingAddr + ":" + port);
+        s.shutdown();
+        if (!s.awaitTermination(5, TimeUnit.SECONDS)) {
+            s.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        server = null;
+        // checkpoint fails on open sockets, wait for the event loops to close them; statusReporter keeps running
+        releaseEventLoopGroups(true);
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) throws Exception {
+        if (!restartAfterRestore) {
+            return;
         }
+        restartAfterRestore = false;
+        log.info("CRaC afterRestore: starting gRPC server " + bindingAddr + ":" + port);
+        start(new StringBuilder());
     }
 }
@@ -1 +1 @@
-/* * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project * * Licensed under the Apache License, Version 2.0 (the "License"); * you may not use this file except in compliance with the License. * You may obtain a copy of the License at * *     https://apache.org * * Unless required by applicable law or agreed to in writing, software * distributed under the License is distributed on an "AS IS" BASIS, * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. * See the License for the specific language governing permissions and * limitations under the License. * */package org.summerboot.jexpress.infra.grpc.server.config;import com.fasterxml.jackson.annotation.JsonAutoDetect;import com.fasterxml.jackson.annotation.JsonIgnore;import org.summerboot.jexpress.annotation.config.Config;import org.summerboot.jexpress.annotation.config.ConfigHeader;import org.summerboot.jexpress.boot.BootConstants;import org.summerboot.jexpress.boot.config.BootConfig;import org.summerboot.jexpress.boot.config.ConfigUtil;import org.summerboot.jexpress.security.SecurityUtil;import org.summerboot.jexpress.util.net.GeoIpUtil;import javax.net.ssl.KeyManagerFactory;import javax.net.ssl.TrustManagerFactory;import java.io.File;import java.io.IOException;import java.net.InetSocketAddress;import java.util.List;import java.util.Properties;import java.util.Set;import java.util.concurrent.ThreadPoolExecutor;/** * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵 */@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)//@ImportResource(BootConstant.FILE_CFG_GRPC)public class GrpcServerConfig extends BootConfig {    public static void main(String[] args) {        String t = generateTemplate(GrpcServerConfig.class);        System.out.println(t);    }    protected static final String FILENAME_TRUSTSTORE_4SERVER = "truststore_grpc_server.p12";    protected final static String ID = "gRpc.server";    public static final GrpcServerConfig cfg = new GrpcServerConfig();    protected GrpcServerConfig() {    }    @Override    protected void reset() {        tpeCore = BootConstants.CPU_CORE * 2 + 1;        tpeMax = BootConstants.CPU_CORE * 2 + 1;    }    //1. gRPC server config    @ConfigHeader(title = "1. " + ID + " Network Listeners",            format = "ip1:port1, ip2:port2, ..., ipN:portN",            example = "192.168.1.10:8424, 127.0.0.1:8424, 0.0.0.0:8424")    @Config(key = ID + ".bindings", predefinedValue = "0.0.0.0:8424, 0.0.0.0:8425", required = true)    protected volatile List<InetSocketAddress> bindingAddresses;    @Config(key = ID + ".autostart", defaultValue = "true")    protected volatile boolean autoStart;    @Config(key = ID + ".idle.threshold.second", defaultValue = "59", desc = "make it prime number when you have both NIO and gRPC server running")    protected volatile int idleThresholdSecond;    @Config(key = ID + ".CallerAddressFilter.option", defaultValue = "String", desc = "valid value = String, HostString, HostName, AddressStirng, HostAddress, AddrHostName, CanonicalHostName")    protected volatile GeoIpUtil.CallerAddressFilterOption CallerAddressFilterOption = GeoIpUtil.CallerAddressFilterOption.String;    @Config(key = ID + ".CallerAddressFilter.Whitelist", desc = "Whitelist in CSV format, example: 127.0.0.1, 192\\\\.168\\\\.1\\\\.")    protected volatile Set<String> callerAddressFilterWhitelist;    @Config(key = ID + ".CallerAddressFilter.Blacklist", desc = "Blacklist in CSV format, example: 10.1.1.40, 192\\\\.168\\\\.2\\\\.")    protected volatile Set<String> callerAddressFilterBlacklist;    @Config(key = ID + ".pool.BizExecutor.mode", defaultValue = "VirtualThread",            desc = "valid value = VirtualThread (default for Java 21+), CPU, IO and Mixed (default for old Java)\n use CPU core + 1 when application is CPU bound\n"                    + "use CPU core x 2 + 1 when application is I/O bound\n"                    + "need to find the best value based on your performance test result when nio.server.BizExecutor.mode=Mixed")    protected volatile ThreadingMode tpeThreadingMode = ThreadingMode.VirtualThread;    @Config(key = ID + ".pool.coreSize", predefinedValue = "0",            desc = "coreSize 0 = current computer/VM's available processors x 2 + 1")    protected volatile int tpeCore = BootConstants.CPU_CORE * 2 + 1;    @Config(key = ID + ".pool.maxSize", predefinedValue = "0",            desc = "maxSize 0 = current computer/VM's available processors x 2 + 1")    protected volatile int tpeMax = BootConstants.CPU_CORE * 2 + 1;    @Config(key = ID + ".pool.queueSize", defaultValue = "" + Integer.MAX_VALUE,            desc = "The waiting list size when the pool is full")    protected volatile int tpeQueue = Integer.MAX_VALUE;    @Config(key = ID + ".pool.keepAliveSeconds", defaultValue = "60")    protected volatile long tpeKeepAliveSeconds = 60;    @Config(key = ID + ".pool.prestartAllCoreThreads", defaultValue = "false")    protected boolean prestartAllCoreThreads = false;    @Config(key = ID + ".pool.allowCoreThreadTimeOut", defaultValue = "false")    protected boolean allowCoreThreadTimeOut = false;    protected ThreadPoolExecutor tpe = null;    //2. TRC (The Remote Callee) keystore    protected static final String KEY_kmf_key = ID + ".ssl.KeyStore";    protected static final String KEY_kmf_StorePwdKey = ID + ".ssl.KeyStorePwd";    protected static final String KEY_kmf_AliasKey = ID + ".ssl.KeyAlias";    protected static final String KEY_kmf_AliasPwdKey = ID + ".ssl.KeyPwd";    @ConfigHeader(title = "2. " + ID + " keystore")    @Config(key = KEY_kmf_key, StorePwdKey = KEY_kmf_StorePwdKey, AliasKey = KEY_kmf_AliasKey, AliasPwdKey = KEY_kmf_AliasPwdKey,            desc = "Path to key store file. Use SSL/TLS when keystore is provided, otherwise use plain socket",            callbackMethodName4Dump = "generateTemplate_keystore")    //@JsonIgnore    protected volatile KeyManagerFactory kmf;    protected void generateTemplate_keystore(StringBuilder sb, Properties currentValues) {        appendCurrentValue(KEY_kmf_key, currentValues, FILENAME_KEYSTORE, sb);        appendCurrentValue(KEY_kmf_StorePwdKey, currentValues, DEFAULT_DEC_VALUE, sb);        appendCurrentValue(KEY_kmf_AliasKey, currentValues, "server2_4096.jexpress.org", sb);        appendCurrentValue(KEY_kmf_AliasPwdKey, currentValues, DEFAULT_DEC_VALUE, sb);        generateTemplate = true;    }    //3. TRC (The Remote Callee) truststore        protected static final String KEY_tmf_key = ID + ".ssl.TrustStore";    protected static final String KEY_tmf_StorePwdKey = ID + ".ssl.TrustStorePwd";    @ConfigHeader(title = "3. " + ID + " truststore")    @Config(key = KEY_tmf_key, StorePwdKey = KEY_tmf_StorePwdKey, callbackMethodName4Dump = "generateTemplate_truststore",            desc = DESC_TMF_SERVER)    @JsonIgnore    protected volatile TrustManagerFactory tmf;    protected void generateTemplate_truststore(StringBuilder sb, Properties currentValues) {        appendCurrentValue(KEY_tmf_key, currentValues, FILENAME_TRUSTSTORE_4SERVER, sb, true);        appendCurrentValue(KEY_tmf_StorePwdKey, currentValues, DEFAULT_DEC_VALUE, sb, true);        generateTemplate = true;    }    @Override    protected void preLoad(File cfgFile, boolean isReal, ConfigUtil helper, Properties props) {        createIfNotExist(FILENAME_SRC_TRUSTSTORE, FILENAME_KEYSTORE);        createIfNotExist(FILENAME_SRC_TRUSTSTORE, FILENAME_TRUSTSTORE_4SERVER);    }    @Override    protected void loadCustomizedConfigs(File cfgFile, boolean isReal, ConfigUtil helper, Properties props) throws IOException {        // pre-compile regexes for whitelist and blacklist        if (callerAddressFilterWhitelist != null) {            for (String regex : callerAddressFilterWhitelist) {                SecurityUtil.matches("", regex);            }        }        if (callerAddressFilterBlacklist != null) {            for (String regex : callerAddressFilterBlacklist) {                SecurityUtil.matches("", regex);            }        }        tpe = buildThreadPoolExecutor(tpe, "Netty-gRPC.Biz", tpeThreadingMode,                tpeCore, tpeMax, tpeQueue, tpeKeepAliveSeconds, null,                prestartAllCoreThreads, allowCoreThreadTimeOut, true);    }    @Override    public void shutdown() {        if (tpe != null && !tpe.isShutdown()) {            tpe.shutdown();        }    }    public List<InetSocketAddress> getBindingAddresses() {        return bindingAddresses;    }    public boolean isAutoStart() {        return autoStart;    }    public int getIdleThresholdSecond() {        return idleThresholdSecond;    }    public GeoIpUtil.CallerAddressFilterOption getCallerAddressFilterOption() {        return CallerAddressFilterOption;    }    public Set<String> getCallerAddressFilterWhitelist() {        return callerAddressFilterWhitelist;    }    public Set<String> getCallerAddressFilterBlacklist() {        return callerAddressFilterBlacklist;    }    public ThreadingMode getTpeThreadingMode() {        return tpeThreadingMode;    }    public int getTpeCore() {        return tpeCore;    }    public int getTpeMax() {        return tpeMax;    }    public int getTpeQueue() {        return tpeQueue;    }    public long getTpeKeepAliveSeconds() {        return tpeKeepAliveSeconds;    }    public ThreadPoolExecutor getTpe() {        return tpe;    }    public KeyManagerFactory getKmf() {        return kmf;    }    public TrustManagerFactory getTmf() {        return tmf;    }}
\ No newline at end of file
+/* * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project * * Licensed under the Apache License, Version 2.0 (the "License"); * you may not use this file except in compliance with the License. * You may obtain a copy of the License at * *     https://apache.org * * Unless required by applicable law or agreed to in writing, software * distributed under the License is distributed on an "AS IS" BASIS, * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. * See the License for the specific language governing permissions and * limitations under the License. * */package org.summerboot.jexpress.infra.grpc.server.config;import com.fasterxml.jackson.annotation.JsonAutoDetect;import com.fasterxml.jackson.annotation.JsonIgnore;import org.summerboot.jexpress.annotation.config.Config;import org.summerboot.jexpress.annotation.config.ConfigHeader;import org.summerboot.jexpress.boot.BootConstants;import org.summerboot.jexpress.boot.config.BootConfig;import org.summerboot.jexpress.boot.config.ConfigUtil;import org.summerboot.jexpress.infra.netty.util.IoMultiplexer;import org.summerboot.jexpress.security.SecurityUtil;import org.summerboot.jexpress.util.net.GeoIpUtil;import javax.net.ssl.KeyManagerFactory;import javax.net.ssl.TrustManagerFactory;import java.io.File;import java.io.IOException;import java.net.InetSocketAddress;import java.util.List;import java.util.Properties;import java.util.Set;import java.util.concurrent.ThreadPoolExecutor;/** * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵 */@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)//@ImportResource(BootConstant.FILE_CFG_GRPC)public class GrpcServerConfig extends BootConfig {    public static void main(String[] args) {        String t = generateTemplate(GrpcServerConfig.class);        System.out.println(t);    }    protected static final String FILENAME_TRUSTSTORE_4SERVER = "truststore_grpc_server.p12";    protected final static String ID = "gRpc.server";    public static final GrpcServerConfig cfg = new GrpcServerConfig();    protected GrpcServerConfig() {    }    @Override    protected void reset() {        tpeCore = BootConstants.CPU_CORE * 2 + 1;        tpeMax = BootConstants.CPU_CORE * 2 + 1;    }    //1. gRPC server config    @ConfigHeader(title = "1. " + ID + " Network Listeners",            format = "ip1:port1, ip2:port2, ..., ipN:portN",            example = "192.168.1.10:8424, 127.0.0.1:8424, 0.0.0.0:8424")    @Config(key = ID + ".bindings", predefinedValue = "0.0.0.0:8424, 0.0.0.0:8425", required = true)    protected volatile List<InetSocketAddress> bindingAddresses;    @Config(key = ID + ".autostart", defaultValue = "true")    protected volatile boolean autoStart;    @Config(key = ID + ".idle.threshold.second", defaultValue = "59", desc = "make it prime number when you have both NIO and gRPC server running")    protected volatile int idleThresholdSecond;    @Config(key = ID + ".CallerAddressFilter.option", defaultValue = "String", desc = "valid value = String, HostString, HostName, AddressStirng, HostAddress, AddrHostName, CanonicalHostName")    protected volatile GeoIpUtil.CallerAddressFilterOption CallerAddressFilterOption = GeoIpUtil.CallerAddressFilterOption.String;    @Config(key = ID + ".CallerAddressFilter.Whitelist", desc = "Whitelist in CSV format, example: 127.0.0.1, 192\\\\.168\\\\.1\\\\.")    protected volatile Set<String> callerAddressFilterWhitelist;    @Config(key = ID + ".CallerAddressFilter.Blacklist", desc = "Blacklist in CSV format, example: 10.1.1.40, 192\\\\.168\\\\.2\\\\.")    protected volatile Set<String> callerAddressFilterBlacklist;    @Config(key = ID + ".pool.BizExecutor.mode", defaultValue = "VirtualThread",            desc = "valid value = VirtualThread (default for Java 21+), CPU, IO and Mixed (default for old Java)\n use CPU core + 1 when application is CPU bound\n"                    + "use CPU core x 2 + 1 when application is I/O bound\n"                    + "need to find the best value based on your performance test result when nio.server.BizExecutor.mode=Mixed")    protected volatile ThreadingMode tpeThreadingMode = ThreadingMode.VirtualThread;    @Config(key = ID + ".pool.coreSize", predefinedValue = "0",            desc = "coreSize 0 = current computer/VM's available processors x 2 + 1")    protected volatile int tpeCore = BootConstants.CPU_CORE * 2 + 1;    @Config(key = ID + ".pool.maxSize", predefinedValue = "0",            desc = "maxSize 0 = current computer/VM's available processors x 2 + 1")    protected volatile int tpeMax = BootConstants.CPU_CORE * 2 + 1;    @Config(key = ID + ".pool.queueSize", defaultValue = "" + Integer.MAX_VALUE,            desc = "The waiting list size when the pool is full")    protected volatile int tpeQueue = Integer.MAX_VALUE;    @Config(key = ID + ".pool.keepAliveSeconds", defaultValue = "60")    protected volatile long tpeKeepAliveSeconds = 60;    @Config(key = ID + ".pool.prestartAllCoreThreads", defaultValue = "false")    protected boolean prestartAllCoreThreads = false;    @Config(key = ID + ".pool.allowCoreThreadTimeOut", defaultValue = "false")    protected boolean allowCoreThreadTimeOut = false;    protected ThreadPoolExecutor tpe = null;    @Config(key = ID + ".multiplexer", defaultValue = "AVAILABLE",            desc = "valid value = AVAILABLE (native Epoll when available, otherwise JDK NIO), EPOLL, JDK")    protected volatile IoMultiplexer multiplexer = IoMultiplexer.AVAILABLE;    @Config(key = ID + ".EventLoopGroup.AcceptorSize", defaultValue = "1",            desc = "shared by all gRPC bindings")    protected volatile int eventLoopGroupAcceptorSize = 1;    @Config(key = ID + ".EventLoopGroup.WorkerSize", predefinedValue = "0",            desc = "WorkerSize 0 = current computer/VM's available processors x 2, shared by all gRPC bindings")    protected volatile int eventLoopGroupWorkerSize = 0;    @Config(key = ID + ".socket.SO_REUSEPORT", defaultValue = "true",            desc = "Epoll only, allows multiple sockets to bind the same address/port and lets the kernel balance accepts across them")    protected volatile boolean soReusePort = true;    @Config(key = ID + ".socket.SO_BACKLOG", defaultValue = "1024")    protected volatile int soBacklog = 1024;    @Config(key = ID + ".socket.TCP_NODELAY", defaultValue = "true")    protected volatile boolean soTcpNodelay = true;    //2. HTTP/2 flow control and connection management    @ConfigHeader(title = "2. " + ID + " HTTP/2 Flow Control and Connection Management",            desc = "The following settings are for NettyServerBuilder, gRPC default is used when not set")    @Config(key = ID + ".flowControlWindow", desc = "int: fixed HTTP/2 flow control window in bytes, disables BDP auto-tuning when set. Default 1048576 with auto-tuning if not set")    protected volatile Integer flowControlWindow = null;    @Config(key = ID + ".initialFlowControlWindow", desc = "int: initial HTTP/2 flow control window in bytes, keeps BDP auto-tuning. Mutually exclusive with flowControlWindow")    protected volatile Integer initialFlowControlWindow = null;    @Config(key = ID + ".maxConcurrentCallsPerConnection", desc = "int: HTTP/2 MAX_CONCURRENT_STREAMS advertised to clients. Default unlimited if not set")    protected volatile Integer maxConcurrentCallsPerConnection = null;    @Config(key = ID + ".maxInboundMessageSize", desc = "int: default 4194304 if not set")    protected volatile Integer maxInboundMessageSize = null;    @Config(key = ID + ".maxInboundMetadataSize", desc = "int: default 8192 if not set")    protected volatile Integer maxInboundMetadataSize = null;    @Config(key = ID + ".keepAliveTimeSeconds", desc = "long: default 7200 (2 hours) if not set. The interval in seconds between server PING frames")    protected volatile Long keepAliveTimeSeconds = null;    @Config(key = ID + ".keepAliveTimeoutSeconds", desc = "long: default 20 if not set. The timeout in seconds for a PING frame to be acknowledged before closing the connection")    protected volatile Long keepAliveTimeoutSeconds = null;    @Config(key = ID + ".permitKeepAliveTimeSeconds", desc = "long: default 300 (5 minutes) if not set. The most aggressive client keepalive interval allowed, clients pinging more often get GOAWAY(ENHANCE_YOUR_CALM)")    protected volatile Long permitKeepAliveTimeSeconds = null;    @Config(key = ID + ".permitKeepAliveWithoutCalls", desc = "boolean: default false if not set. Whether clients are allowed to send keepalive PINGs when there is no outstanding call")    protected volatile Boolean permitKeepAliveWithoutCalls = null;    @Config(key = ID + ".maxConnectionIdleSeconds", desc = "long: default infinite if not set. Idle connections are gracefully closed with GOAWAY after this time")    protected volatile Long maxConnectionIdleSeconds = null;    @Config(key = ID + ".maxConnectionAgeSeconds", desc = "long: default infinite if not set. Connections are gracefully closed after this age so that clients re-resolve and rebalance across servers")    protected volatile Long maxConnectionAgeSeconds = null;    @Config(key = ID + ".maxConnectionAgeGraceSeconds", desc = "long: default infinite if not set. Grace time for outstanding calls to complete after maxConnectionAge is reached")    protected volatile Long maxConnectionAgeGraceSeconds = null;    //3. TRC (The Remote Callee) keystore    protected static final String KEY_kmf_key = ID + ".ssl.KeyStore";    protected static final String KEY_kmf_StorePwdKey = ID + ".ssl.KeyStorePwd";    protected static final String KEY_kmf_AliasKey = ID + ".ssl.KeyAlias";    protected static final String KEY_kmf_AliasPwdKey = ID + ".ssl.KeyPwd";    @ConfigHeader(title = "3. " + ID + " keystore")    @Config(key = KEY_kmf_key, StorePwdKey = KEY_kmf_StorePwdKey, AliasKey = KEY_kmf_AliasKey, AliasPwdKey = KEY_kmf_AliasPwdKey,            desc = "Path to key store file. Use SSL/TLS when keystore is provided, otherwise use plain socket",            callbackMethodName4Dump = "generateTemplate_keystore")    //@JsonIgnore    protected volatile KeyManagerFactory kmf;    protected void generateTemplate_keystore(StringBuilder sb, Properties currentValues) {        appendCurrentValue(KEY_kmf_key, currentValues, FILENAME_KEYSTORE, sb);        appendCurrentValue(KEY_kmf_StorePwdKey, currentValues, DEFAULT_DEC_VALUE, sb);        appendCurrentValue(KEY_kmf_AliasKey, currentValues, "server2_4096.jexpress.org", sb);        appendCurrentValue(KEY_kmf_AliasPwdKey, currentValues, DEFAULT_DEC_VALUE, sb);        generateTemplate = true;    }    //4. TRC (The Remote Callee) truststore        protected static final String KEY_tmf_key = ID + ".ssl.TrustStore";    protected static final String KEY_tmf_StorePwdKey = ID + ".ssl.TrustStorePwd";    @ConfigHeader(title = "4. " + ID + " truststore")    @Config(key = KEY_tmf_key, StorePwdKey = KEY_tmf_StorePwdKey, callbackMethodName4Dump = "generateTemplate_truststore",            desc = DESC_TMF_SERVER)    @JsonIgnore    protected volatile TrustManagerFactory tmf;    protected void generateTemplate_truststore(StringBuilder sb, Properties currentValues) {        appendCurrentValue(KEY_tmf_key, currentValues, FILENAME_TRUSTSTORE_4SERVER, sb, true);        appendCurrentValue(KEY_tmf_StorePwdKey, currentValues, DEFAULT_DEC_VALUE, sb, true);        generateTemplate = true;    }    @Override    protected void preLoad(File cfgFile, boolean isReal, ConfigUtil helper, Properties props) {        createIfNotExist(FILENAME_SRC_TRUSTSTORE, FILENAME_KEYSTORE);        createIfNotExist(FILENAME_SRC_TRUSTSTORE, FILENAME_TRUSTSTORE_4SERVER);    }    @Override    protected void loadCustomizedConfigs(File cfgFile, boolean isReal, ConfigUtil helper, Properties props) throws IOException {        // pre-compile regexes for whitelist and blacklist        if (callerAddressFilterWhitelist != null) {            for (String regex : callerAddressFilterWhitelist) {                SecurityUtil.matches("", regex);            }        }        if (callerAddressFilterBlacklist != null) {            for (String regex : callerAddressFilterBlacklist) {                SecurityUtil.matches("", regex);            }        }        if (eventLoopGroupAcceptorSize < 1) {            eventLoopGroupAcceptorSize = 1;        }        if (eventLoopGroupWorkerSize < 0) {            eventLoopGroupWorkerSize = 0;        }        if (flowControlWindow != null && initialFlowControlWindow != null) {            helper.addError(ID + ".flowControlWindow and " + ID + ".initialFlowControlWindow are mutually exclusive", null);        }        tpe = buildThreadPoolExecutor(tpe, "Netty-gRPC.Biz", tpeThreadingMode,                tpeCore, tpeMax, tpeQueue, tpeKeepAliveSeconds, null,                prestartAllCoreThreads, allowCoreThreadTimeOut, true);    }    @Override    public void shutdown() {        if (tpe != null && !tpe.isShutdown()) {            tpe.shutdown();        }    }    public List<InetSocketAddress> getBindingAddresses() {        return bindingAddresses;    }    public boolean isAutoStart() {        return autoStart;    }    public int getIdleThresholdSecond() {        return idleThresholdSecond;    }    public GeoIpUtil.CallerAddressFilterOption getCallerAddressFilterOption() {        return CallerAddressFilterOption;    }    public Set<String> getCallerAddressFilterWhitelist() {        return callerAddressFilterWhitelist;    }    public Set<String> getCallerAddressFilterBlacklist() {        return callerAddressFilterBlacklist;    }    public ThreadingMode getTpeThreadingMode() {        return tpeThreadingMode;    }    public int getTpeCore() {        return tpeCore;    }    public int getTpeMax() {        return tpeMax;    }    public int getTpeQueue() {        return tpeQueue;    }    public long getTpeKeepAliveSeconds() {        return tpeKeepAliveSeconds;    }    public ThreadPoolExecutor getTpe() {        return tpe;    }    public IoMultiplexer getMultiplexer() {        return multiplexer;    }    public int getEventLoopGroupAcceptorSize() {        return eventLoopGroupAcceptorSize;    }    public int getEventLoopGroupWorkerSize() {        return eventLoopGroupWorkerSize;    }    public boolean isSoReusePort() {        return soReusePort;    }    public int getSoBacklog() {        return soBacklog;    }    public boolean isSoTcpNodelay() {        return soTcpNodelay;    }    public Integer getFlowControlWindow() {        return flowControlWindow;    }    public Integer getInitialFlowControlWindow() {        return initialFlowControlWindow;    }    public Integer getMaxConcurrentCallsPerConnection() {        return maxConcurrentCallsPerConnection;    }    public Integer getMaxInboundMessageSize() {        return maxInboundMessageSize;    }    public Integer getMaxInboundMetadataSize() {        return maxInboundMetadataSize;    }    public Long getKeepAliveTimeSeconds() {        return keepAliveTimeSeconds;    }    public Long getKeepAliveTimeoutSeconds() {        return keepAliveTimeoutSeconds;    }    public Long getPermitKeepAliveTimeSeconds() {        return permitKeepAliveTimeSeconds;    }    public Boolean getPermitKeepAliveWithoutCalls() {        return permitKeepAliveWithoutCalls;    }    public Long getMaxConnectionIdleSeconds() {        return maxConnectionIdleSeconds;    }    public Long getMaxConnectionAgeSeconds() {        return maxConnectionAgeSeconds;    }    public Long getMaxConnectionAgeGraceSeconds() {        return maxConnectionAgeGraceSeconds;    }    public KeyManagerFactory getKmf() {        return kmf;    }    public TrustManagerFactory getTmf() {        return tmf;    }}
\ No newline at end of file
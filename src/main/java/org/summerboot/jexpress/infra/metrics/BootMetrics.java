@@ -0,0 +1,299 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-endpoint metrics registry, exported in Prometheus text format / OpenMetrics and via JMX.
+ * <p>
+ * The number of endpoints is capped to keep memory constant: requests beyond {@link #getMaxEndpoints()} distinct
+ * endpoints are recorded as {@link #ENDPOINT_OTHER}.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class BootMetrics {
+
+    public static final String PROTOCOL_HTTP = "http";
+    public static final String PROTOCOL_GRPC = "grpc";
+    public static final String ENDPOINT_UNMATCHED = "_unmatched";
+    public static final String ENDPOINT_OTHER = "_other";
+    public static final String CONTENT_TYPE_OPENMETRICS = "application/openmetrics-text; version=1.0.0";
+    public static final String CONTENT_TYPE_PROMETHEUS = "text/plain; version=0.0.4";
+
+    public static final String[] HTTP_STATUS_LABELS = {"1xx", "2xx", "3xx", "4xx", "5xx", "other"};
+    public static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    protected static final String PREFIX = "jexpress_";
+
+    protected static volatile boolean enabled = true;
+    protected static volatile long highestTrackableMicros = TimeUnit.SECONDS.toMicros(60);
+    protected static volatile int significantDigits = 2;
+    protected static volatile int windowSeconds = 60;
+    protected static volatile int maxEndpoints = 500;
+
+    protected static final Map<String, EndpointMetrics> HTTP = new ConcurrentHashMap<>();
+    protected static final Map<String, EndpointMetrics> GRPC = new ConcurrentHashMap<>();
+    // sorted by name to export in a stable order regardless of class loading order
+    protected static final Map<String, MetricsSource> SOURCES = new ConcurrentSkipListMap<>();
+
+    protected BootMetrics() {
+    }
+
+    /**
+     * Only applies to endpoints created afterward, existing histograms keep their size
+     *
+     * @param enabled
+     * @param highestTrackableMs
+     * @param significantDigits
+     * @param windowSeconds
+     * @param maxEndpoints
+     */
+    public static void configure(boolean enabled, long highestTrackableMs, int significantDigits, int windowSeconds, int maxEndpoints) {
+        BootMetrics.enabled = enabled;
+        BootMetrics.highestTrackableMicros = TimeUnit.MILLISECONDS.toMicros(Math.max(1, highestTrackableMs));
+        BootMetrics.significantDigits = Math.min(5, Math.max(0, significantDigits));
+        BootMetrics.windowSeconds = Math.max(1, windowSeconds);
+        BootMetrics.maxEndpoints = Math.max(1, maxEndpoints);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static int getMaxEndpoints() {
+        return maxEndpoints;
+    }
+
+    /**
+     * @param endpoint
+     * @return null if metrics is disabled
+     */
+    public static EndpointMetrics http(String endpoint) {
+        return get(HTTP, PROTOCOL_HTTP, endpoint == null ? ENDPOINT_UNMATCHED : endpoint, HTTP_STATUS_LABELS);
+    }
+
+    /**
+     * @param fullMethodName
+     * @param statusLabels   gRPC status code names indexed by code value, with one extra "other" at the end
+     * @return null if metrics is disabled
+     */
+    public static EndpointMetrics grpc(String fullMethodName, String[] statusLabels) {
+        return get(GRPC, PROTOCOL_GRPC, fullMethodName == null ? ENDPOINT_UNMATCHED : fullMethodName, statusLabels);
+    }
+
+    protected static EndpointMetrics get(Map<String, EndpointMetrics> registry, String protocol, String endpoint, String[] statusLabels) {
+        if (!enabled) {
+            return null;
+        }
+        EndpointMetrics ret = registry.get(endpoint);
+        if (ret != null) {
+            return ret;
+        }
+        if (registry.size() >= maxEndpoints) {
+            endpoint = ENDPOINT_OTHER;
+        }
+        return registry.computeIfAbsent(endpoint, name -> new EndpointMetrics(protocol, name, statusLabels, highestTrackableMicros, significantDigits, windowSeconds));
+    }
+
+    public static int httpStatusIndex(int httpStatusCode) {
+        int i = httpStatusCode / 100 - 1;
+        return i < 0 || i > 4 ? HTTP_STATUS_LABELS.length - 1 : i;
+    }
+
+    public static List<EndpointMetrics> getAll() {
+        List<EndpointMetrics> ret = new ArrayList<>(HTTP.size() + GRPC.size());
+        ret.addAll(HTTP.values());
+        ret.addAll(GRPC.values());
+        ret.sort(Comparator.comparing(EndpointMetrics::getProtocol).thenComparing(EndpointMetrics::getEndpoint));
+        return ret;
+    }
+
+    public static void reset() {
+        for (EndpointMetrics m : HTTP.values()) {
+            m.reset();
+        }
+        for (EndpointMetrics m : GRPC.values()) {
+            m.reset();
+        }
+    }
+
+    /**
+     * Append all endpoint metrics, caller should append its own metrics and then {@link #appendEof(StringBuilder, boolean)}
+     *
+     * @param sb
+     * @param openMetrics true for OpenMetrics 1.0, false for Prometheus text format 0.0.4
+     */
+    public static void appendEndpointMetrics(StringBuilder sb, boolean openMetrics) {
+        appendProtocol(sb, openMetrics, PROTOCOL_HTTP, HTTP);
+        appendProtocol(sb, openMetrics, PROTOCOL_GRPC, GRPC);
+    }
+
+    protected static void appendProtocol(StringBuilder sb, boolean openMetrics, String protocol, Map<String, EndpointMetrics> registry) {
+        if (registry.isEmpty()) {
+            return;
+        }
+        List<EndpointMetrics> list = new ArrayList<>(registry.values());
+        list.sort(Comparator.comparing(EndpointMetrics::getEndpoint));
+        int size = list.size();
+        // snapshot once, each family iterates the same data
+        LatencyHistogram.Snapshot[][] snapshots = new LatencyHistogram.Snapshot[size][];
+        for (int i = 0; i < size; i++) {
+            EndpointMetrics m = list.get(i);
+            snapshots[i] = new LatencyHistogram.Snapshot[]{m.getQueuing().snapshot(QUANTILES), m.getProcess().snapshot(QUANTILES), m.getResponse().snapshot(QUANTILES)};
+        }
+        String[] phases = {"queuing", "process", "response"};
+        for (int p = 0; p < phases.length; p++) {
+            String name = PREFIX + protocol + "_" + phases[p] + "_seconds";
+            sb.append("# TYPE ").append(name).append(" summary\n");
+            if (openMetrics) {
+                sb.append("# UNIT ").append(name).append(" seconds\n");
+            }
+            sb.append("# HELP ").append(name).append(" ").append(protocol).append(" ").append(phases[p]).append(" time, quantiles of the last ").append(windowSeconds).append("s window\n");
+            for (int i = 0; i < size; i++) {
+                LatencyHistogram.Snapshot s = snapshots[i][p];
+                String endpoint = escape(list.get(i).getEndpoint());
+                for (int q = 0; q < QUANTILES.length; q++) {
+                    sb.append(name).append("{endpoint=\"").append(endpoint).append("\",quantile=\"").append(QUANTILES[q]).append("\"} ")
+                            .append(toSeconds(s.valuesMicros()[q])).append('\n');
+                }
+                sb.append(name).append("_sum{endpoint=\"").append(endpoint).append("\"} ").append(toSeconds(s.sumMicros())).append('\n');
+                sb.append(name).append("_count{endpoint=\"").append(endpoint).append("\"} ").append(s.count()).append('\n');
+            }
+        }
+        String name = PREFIX + protocol + "_requests";
+        sb.append("# TYPE ").append(openMetrics ? name : name + "_total").append(" counter\n");
+        sb.append("# HELP ").append(openMetrics ? name : name + "_total").append(" ").append(protocol).append(" requests by endpoint and status\n");
+        for (EndpointMetrics m : list) {
+            String endpoint = escape(m.getEndpoint());
+            String[] labels = m.getStatusLabels();
+            for (int i = 0; i < labels.length; i++) {
+                long c = m.getStatusCount(i);
+                if (c == 0) {
+                    continue;
+                }
+                sb.append(name).append("_total{endpoint=\"").append(endpoint).append("\",status=\"").append(labels[i]).append("\"} ").append(c).append('\n');
+            }
+        }
+    }
+
+    public static void appendGauge(StringBuilder sb, String name, String help, double value) {
+        name = PREFIX + name;
+        sb.append("# TYPE ").append(name).append(" gauge\n");
+        sb.append("# HELP ").append(name).append(" ").append(help).append('\n');
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    public static void appendCounter(StringBuilder sb, boolean openMetrics, String name, String help, long value) {
+        name = PREFIX + name;
+        String family = openMetrics ? name : name + "_total";
+        sb.append("# TYPE ").append(family).append(" counter\n");
+        sb.append("# HELP ").append(family).append(" ").append(help).append('\n');
+        sb.append(name).append("_total ").append(value).append('\n');
+    }
+
+    /**
+     * @param sb
+     * @param openMetrics
+     * @param name        metric name without prefix
+     * @param type        counter or gauge
+     * @param help
+     * @param samples     labels formatted by {@link #label(String, String)} - value, nothing is appended when empty
+     */
+    public static void appendLabeled(StringBuilder sb, boolean openMetrics, String name, String type, String help, Map<String, ? extends Number> samples) {
+        if (samples.isEmpty()) {
+            return;
+        }
+        name = PREFIX + name;
+        boolean counter = "counter".equals(type);
+        String family = counter && !openMetrics ? name + "_total" : name;
+        String sample = counter ? name + "_total" : name;
+        sb.append("# TYPE ").append(family).append(' ').append(type).append('\n');
+        sb.append("# HELP ").append(family).append(' ').append(help).append('\n');
+        for (Map.Entry<String, ? extends Number> e : samples.entrySet()) {
+            sb.append(sample).append('{').append(e.getKey()).append("} ").append(e.getValue()).append('\n');
+        }
+    }
+
+    /**
+     * @param name
+     * @param value
+     * @return name="escaped value"
+     */
+    public static String label(String name, String value) {
+        return name + "=\"" + escape(value) + "\"";
+    }
+
+    /**
+     * Register a subsystem's metrics to be exported by the metrics endpoint, usually from the subsystem's static
+     * initializer
+     *
+     * @param name   unique source name, registering the same name again replaces the previous source
+     * @param source
+     */
+    public static void register(String name, MetricsSource source) {
+        SOURCES.put(name, source);
+    }
+
+    public static void unregister(String name) {
+        SOURCES.remove(name);
+    }
+
+    /**
+     * @param sb
+     * @param openMetrics
+     */
+    public static void appendSourceMetrics(StringBuilder sb, boolean openMetrics) {
+        for (MetricsSource source : SOURCES.values()) {
+            source.appendMetrics(sb, openMetrics);
+        }
+    }
+
+    public static void appendEof(StringBuilder sb, boolean openMetrics) {
+        if (openMetrics) {
+            sb.append("# EOF\n");
+        }
+    }
+
+    /**
+     * @param openMetrics
+     * @return all endpoint metrics in Prometheus text format / OpenMetrics
+     */
+    public static String toText(boolean openMetrics) {
+        StringBuilder sb = new StringBuilder(4096);
+        appendEndpointMetrics(sb, openMetrics);
+        appendEof(sb, openMetrics);
+        return sb.toString();
+    }
+
+    protected static double toSeconds(long micros) {
+        return micros / 1_000_000.0;
+    }
+
+    protected static String escape(String labelValue) {
+        if (labelValue.indexOf('\\') < 0 && labelValue.indexOf('"') < 0 && labelValue.indexOf('\n') < 0) {
+            return labelValue;
+        }
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Queuing, process and response time histograms plus status counters of one endpoint: a RequestProcessor (HTTP) or a
+ * full method name (gRPC)
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class EndpointMetrics {
+
+    protected final String protocol;
+    protected final String endpoint;
+    protected final LatencyHistogram queuing;
+    protected final LatencyHistogram process;
+    protected final LatencyHistogram response;
+    protected final String[] statusLabels;
+    protected final LongAdder[] statusCounters;
+
+    public EndpointMetrics(String protocol, String endpoint, String[] statusLabels, long highestTrackableMicros, int significantDigits, int windowSeconds) {
+        this.protocol = protocol;
+        this.endpoint = endpoint;
+        this.queuing = new LatencyHistogram(highestTrackableMicros, significantDigits, windowSeconds);
+        this.process = new LatencyHistogram(highestTrackableMicros, significantDigits, windowSeconds);
+        this.response = new LatencyHistogram(highestTrackableMicros, significantDigits, windowSeconds);
+        this.statusLabels = statusLabels;
+        this.statusCounters = new LongAdder[statusLabels.length];
+        for (int i = 0; i < statusCounters.length; i++) {
+            statusCounters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param queuingNanos  negative if not measured
+     * @param processNanos  negative if not measured
+     * @param responseNanos negative if not measured
+     * @param statusIndex   index of the status label, out of range goes to the last label
+     */
+    public void record(long queuingNanos, long processNanos, long responseNanos, int statusIndex) {
+        queuing.recordNanos(queuingNanos);
+        process.recordNanos(processNanos);
+        response.recordNanos(responseNanos);
+        if (statusIndex < 0 || statusIndex >= statusCounters.length) {
+            statusIndex = statusCounters.length - 1;
+        }
+        statusCounters[statusIndex].increment();
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public LatencyHistogram getQueuing() {
+        return queuing;
+    }
+
+    public LatencyHistogram getProcess() {
+        return process;
+    }
+
+    public LatencyHistogram getResponse() {
+        return response;
+    }
+
+    public String[] getStatusLabels() {
+        return statusLabels;
+    }
+
+    public long getStatusCount(int statusIndex) {
+        return statusCounters[statusIndex].sum();
+    }
+
+    public void reset() {
+        queuing.reset();
+        process.reset();
+        response.reset();
+        for (LongAdder c : statusCounters) {
+            c.reset();
+        }
+    }
+}
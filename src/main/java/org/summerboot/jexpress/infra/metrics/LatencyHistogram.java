@@ -0,0 +1,171 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.metrics;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.IntCountsHistogram;
+import org.HdrHistogram.Recorder;
+import org.summerboot.jexpress.util.concurrent.NamedDefaultThreadFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency recorder in microseconds with constant memory.
+ * <p>
+ * Writers only touch a {@link Recorder} and two {@link LongAdder}s. The tumbling window is rotated by a timer every
+ * windowSeconds regardless of how often it is read, percentiles are calculated from the last complete window (or the
+ * current one before the first window completes), count and sum are cumulative since start as required by Prometheus
+ * summary.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class LatencyHistogram {
+
+    protected static final ScheduledExecutorService ROTATOR = Executors.newSingleThreadScheduledExecutor(NamedDefaultThreadFactory.build("LatencyHistogram.rotator", false, true));
+
+    /**
+     * Holds the histogram weakly so that a discarded histogram is not kept alive by its timer
+     */
+    protected static class Rotation implements Runnable {
+
+        protected final WeakReference<LatencyHistogram> ref;
+        protected volatile ScheduledFuture<?> future;
+
+        protected Rotation(LatencyHistogram histogram) {
+            this.ref = new WeakReference<>(histogram);
+        }
+
+        @Override
+        public void run() {
+            LatencyHistogram histogram = ref.get();
+            if (histogram == null) {
+                ScheduledFuture<?> f = future;
+                if (f != null) {
+                    f.cancel(false);
+                }
+                return;
+            }
+            histogram.rotate();
+        }
+    }
+
+    public record Snapshot(long count, long sumMicros, long windowCount, long maxMicros, double[] percentiles, long[] valuesMicros) {
+
+        public long getValueMicros(double percentile) {
+            for (int i = 0; i < percentiles.length; i++) {
+                if (percentiles[i] == percentile) {
+                    return valuesMicros[i];
+                }
+            }
+            return -1;
+        }
+    }
+
+    protected final long highestTrackableMicros;
+    protected final long windowNanos;
+    protected final Recorder recorder;
+    protected final LongAdder count = new LongAdder();
+    protected final LongAdder sumMicros = new LongAdder();
+
+    // guarded by this
+    protected Histogram recycled;
+    protected AbstractHistogram current;
+    protected AbstractHistogram previous;
+    protected boolean hasCompleteWindow;
+
+    /**
+     * @param highestTrackableMicros values above will be recorded as this value
+     * @param significantDigits      0-5, precision vs. memory: 2 means 1% error
+     * @param windowSeconds          percentiles window size
+     */
+    public LatencyHistogram(long highestTrackableMicros, int significantDigits, int windowSeconds) {
+        this.highestTrackableMicros = Math.max(2, highestTrackableMicros);
+        this.windowNanos = TimeUnit.SECONDS.toNanos(Math.max(1, windowSeconds));
+        this.recorder = new Recorder(1, this.highestTrackableMicros, significantDigits);
+        // int counts are enough within a window, half of the memory of long counts
+        this.current = new IntCountsHistogram(1, this.highestTrackableMicros, significantDigits);
+        this.previous = new IntCountsHistogram(1, this.highestTrackableMicros, significantDigits);
+        Rotation rotation = new Rotation(this);
+        rotation.future = ROTATOR.scheduleAtFixedRate(rotation, windowNanos, windowNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordNanos(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0) {
+            return;
+        }
+        count.increment();
+        sumMicros.add(micros);
+        recorder.recordValue(Math.min(Math.max(1, micros), highestTrackableMicros));
+    }
+
+    /**
+     * Complete the current window, called by the timer every windowSeconds
+     */
+    public synchronized void rotate() {
+        recycled = recorder.getIntervalHistogram(recycled);
+        current.add(recycled);
+        AbstractHistogram tmp = previous;
+        previous = current;
+        current = tmp;
+        current.reset();
+        hasCompleteWindow = true;
+    }
+
+    public Snapshot snapshot(double... percentiles) {
+        AbstractHistogram h;
+        long[] values = new long[percentiles.length];
+        long windowCount;
+        long max;
+        synchronized (this) {
+            recycled = recorder.getIntervalHistogram(recycled);
+            current.add(recycled);
+            h = hasCompleteWindow ? previous : current;
+            windowCount = h.getTotalCount();
+            max = windowCount == 0 ? 0 : h.getMaxValue();
+            for (int i = 0; i < percentiles.length; i++) {
+                values[i] = windowCount == 0 ? 0 : h.getValueAtPercentile(percentiles[i] * 100);
+            }
+        }
+        return new Snapshot(count.sum(), sumMicros.sum(), windowCount, max, percentiles, values);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public synchronized void reset() {
+        recycled = recorder.getIntervalHistogram(recycled);
+        current.reset();
+        previous.reset();
+        hasCompleteWindow = false;
+        count.reset();
+        sumMicros.reset();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.metrics;
+
+/**
+ * A subsystem's metrics, exported by the metrics endpoint once registered via
+ * {@link BootMetrics#register(String, MetricsSource)}
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+@FunctionalInterface
+public interface MetricsSource {
+
+    /**
+     * @param sb          append the metrics in Prometheus text format / OpenMetrics, without the EOF line
+     * @param openMetrics
+     */
+    void appendMetrics(StringBuilder sb, boolean openMetrics);
+}
@@ -36,6 +36,7 @@ public class InstrumentationMgrImpl implements InstrumentationMgr {
 
     protected MBeanServer mBeanServer;
     protected ObjectName mbeanName;
+    protected ObjectName metricsMBeanName;
 
     @Inject
     protected ServerStatusMBean mbean;
@@ -46,6 +47,8 @@ public class InstrumentationMgrImpl implements InstrumentationMgr {
         mbeanName = new ObjectName(beanName + ":name=Status");
         //ServerStatusMBean mbean = Main.injector.getInstance(ServerStatusMBean.class);
         mBeanServer.registerMBean(mbean, mbeanName);
+        metricsMBeanName = new ObjectName(beanName + ":name=Metrics");
+        mBeanServer.registerMBean(new MetricsStatus(), metricsMBeanName);
         //ObjectName poolName = new ObjectName("com.zaxxer.hikari:type=Pool (foo)");
         //HikariPoolMXBean poolProxy = JMX.newMXBeanProxy(mBeanServer, poolName, HikariPoolMXBean.class);
         //int idleConnections = poolProxy.getIdleConnections();
@@ -64,6 +67,12 @@ public class InstrumentationMgrImpl implements InstrumentationMgr {
                 mBeanServer.unregisterMBean(mbeanName);
             } catch (InstanceNotFoundException | MBeanRegistrationException ex) {
             }
+            if (metricsMBeanName != null) {
+                try {
+                    mBeanServer.unregisterMBean(metricsMBeanName);
+                } catch (InstanceNotFoundException | MBeanRegistrationException ex) {
+                }
+            }
         }
     }
 
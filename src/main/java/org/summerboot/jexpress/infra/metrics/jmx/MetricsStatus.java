@@ -0,0 +1,52 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.metrics.jmx;
+
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+import org.summerboot.jexpress.infra.metrics.EndpointMetrics;
+import org.summerboot.jexpress.infra.metrics.LatencyHistogram;
+
+import java.util.List;
+
+/**
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class MetricsStatus implements MetricsStatusMBean {
+
+    @Override
+    public String getMetrics() {
+        return BootMetrics.toText(false);
+    }
+
+    @Override
+    public String[] getEndpointSummaries() {
+        List<EndpointMetrics> all = BootMetrics.getAll();
+        String[] ret = new String[all.size()];
+        for (int i = 0; i < ret.length; i++) {
+            EndpointMetrics m = all.get(i);
+            LatencyHistogram.Snapshot s = m.getResponse().snapshot(0.5, 0.99);
+            ret[i] = m.getProtocol() + " " + m.getEndpoint() + ": count=" + s.count()
+                    + ", p50=" + s.valuesMicros()[0] / 1000.0 + "ms, p99=" + s.valuesMicros()[1] / 1000.0 + "ms, max=" + s.maxMicros() / 1000.0 + "ms";
+        }
+        return ret;
+    }
+
+    @Override
+    public void reset() {
+        BootMetrics.reset();
+    }
+}
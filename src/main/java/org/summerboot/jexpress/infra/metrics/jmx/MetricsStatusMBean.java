@@ -0,0 +1,35 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.metrics.jmx;
+
+/**
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public interface MetricsStatusMBean {
+
+    /**
+     * @return per-endpoint metrics in Prometheus text format
+     */
+    String getMetrics();
+
+    /**
+     * @return one line per endpoint: protocol, endpoint, count and p50/p99 response time in ms
+     */
+    String[] getEndpointSummaries();
+
+    void reset();
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.netty;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+import org.summerboot.jexpress.infra.netty.config.NioConfig;
+import org.summerboot.jexpress.infra.netty.util.NioHttpUtil;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Serves {@link BootMetrics} and the registered {@link org.summerboot.jexpress.infra.metrics.MetricsSource}s on
+ * NioConfig server.metrics.endpoint in OpenMetrics format when the Accept header asks for it, otherwise in Prometheus
+ * text format 0.0.4
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+@ChannelHandler.Sharable
+public class BootHttpMetricsHandler extends SimpleChannelInboundHandler<HttpObject> {
+
+    protected static final Logger log = LogManager.getLogger(BootHttpMetricsHandler.class.getName());
+
+    public BootHttpMetricsHandler() {
+        super(HttpObject.class, false);
+    }
+
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, final HttpObject httpObject) throws Exception {
+        NioConfig nioCfg = NioConfig.cfg;
+        String endpoint = nioCfg.getMetricsEndpoint();
+        if (endpoint == null || !(httpObject instanceof HttpRequest req) || !HttpMethod.GET.equals(req.method()) || !isMetricsUri(req.uri(), endpoint)
+                || (nioCfg.isMetricsEndpointLocalOnly() && !isLoopback(ctx.channel().remoteAddress()))) {
+            //pass to next Handler
+            ctx.fireChannelRead(httpObject);
+            return;
+        }
+        try {
+            String accept = req.headers().get(HttpHeaderNames.ACCEPT);
+            boolean openMetrics = accept != null && accept.contains("application/openmetrics-text");
+            StringBuilder sb = new StringBuilder(8192);
+            BootMetrics.appendEndpointMetrics(sb, openMetrics);
+            appendServerMetrics(sb, openMetrics);
+            BootMetrics.appendSourceMetrics(sb, openMetrics);
+            BootMetrics.appendEof(sb, openMetrics);
+            NioHttpUtil.sendText(ctx, HttpUtil.isKeepAlive(req), null, HttpResponseStatus.OK, sb.toString(),
+                    openMetrics ? BootMetrics.CONTENT_TYPE_OPENMETRICS : BootMetrics.CONTENT_TYPE_PROMETHEUS, "UTF-8", true, null);
+        } catch (Throwable ex) {
+            log.error("failed to export metrics", ex);
+            NioHttpUtil.sendText(ctx, HttpUtil.isKeepAlive(req), null, HttpResponseStatus.INTERNAL_SERVER_ERROR, null, null, null, true, null);
+        } finally {
+            ReferenceCountUtil.release(req);
+        }
+    }
+
+    protected void appendServerMetrics(StringBuilder sb, boolean openMetrics) {
+        BootMetrics.appendCounter(sb, openMetrics, "http_hits", "HTTP business requests received", NioCounter.COUNTER_HIT_TOTAL.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "http_responses_sent", "HTTP business responses sent", NioCounter.COUNTER_SENT_TOTAL.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "http_pings", "HTTP ping requests received", NioCounter.COUNTER_PING_HIT.get());
+        BootMetrics.appendCounter(sb, openMetrics, "http_channels", "HTTP channels accepted", NioCounter.COUNTER_TOTAL_CHANNEL.get());
+        BootMetrics.appendGauge(sb, "http_active_channels", "HTTP channels currently open", NioCounter.COUNTER_ACTIVE_CHANNEL.get());
+    }
+
+    protected static boolean isMetricsUri(String uri, String endpoint) {
+        if (!uri.startsWith(endpoint)) {
+            return false;
+        }
+        return uri.length() == endpoint.length() || uri.charAt(endpoint.length()) == '?';
+    }
+
+    protected static boolean isLoopback(SocketAddress remoteAddress) {
+        return remoteAddress instanceof InetSocketAddress isa && isa.getAddress() != null && isa.getAddress().isLoopbackAddress();
+    }
+}
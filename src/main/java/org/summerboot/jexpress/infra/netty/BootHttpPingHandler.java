@@ -23,6 +23,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpObject;
 import io.netty.handler.codec.http.HttpRequest;
@@ -33,15 +34,13 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.summerboot.jexpress.api.common.ServiceError;
 import org.summerboot.jexpress.boot.BackOffice;
-import org.summerboot.jexpress.boot.BootConstants;
 import org.summerboot.jexpress.boot.lifecycle.http.HttpLifecycleListener;
 import org.summerboot.jexpress.infra.netty.config.NioConfig;
 import org.summerboot.jexpress.infra.netty.util.NioHttpUtil;
+import org.summerboot.jexpress.infra.netty.util.ResponseHeaderCache;
 import org.summerboot.jexpress.integration.HealthMonitor;
 import org.summerboot.jexpress.util.format.ServiceErrorSanitizer;
-import org.summerboot.jexpress.util.time.TimeUtil;
 
-import java.time.OffsetDateTime;
 import java.util.Set;
 
 /**
@@ -101,8 +100,9 @@ public class BootHttpPingHandler extends SimpleChannelInboundHandler<HttpObject>
                     if (isContinue) {
 
                         DefaultHttpHeaders responseHeaders = new DefaultHttpHeaders();
-                        responseHeaders.set(BootConstants.RESPONSE_HEADER_KEY_REF, BootConstants.APP_ID);
-                        responseHeaders.set(BootConstants.RESPONSE_HEADER_KEY_TS, OffsetDateTime.now().format(TimeUtil.ISO_ZONED_DATE_TIME3));
+                        responseHeaders.set(ResponseHeaderCache.HEADER_REF, ResponseHeaderCache.APP_ID);
+                        responseHeaders.set(ResponseHeaderCache.HEADER_TS, ResponseHeaderCache.serverTimestamp());
+                        responseHeaders.set(HttpHeaderNames.DATE, ResponseHeaderCache.httpDate());
                         NioHttpUtil.sendText(ctx, HttpUtil.isKeepAlive((HttpRequest) req), responseHeaders, status, internalReason, null, null, true, null);
                         httpLifecycleListener.afterSendPingResponse(ctx, req.uri(), hit, status);
                     }
@@ -46,6 +46,8 @@ public class HttpNioChannelInitializer extends NioChannelInitializer {
 
     protected final static ChannelHandler DefaultFileUploadRejector = new BootHttpFileUploadRejector();
 
+    protected final static ChannelHandler DefaultMetricsHandler = new BootHttpMetricsHandler();
+
     protected static final Logger LoggingHandlerLogger = LogManager.getLogger(LoggingHandler.class);
 
     @Inject
@@ -119,6 +121,11 @@ public class HttpNioChannelInitializer extends NioChannelInitializer {
             channelPipeline.addLast(WebSocketAuthHandlerOtt.BASENAME, new WebSocketAuthHandlerOtt(injector, namedWebsocket));
         }
 
+        // 6. Metrics
+        if (nioCfg.getMetricsEndpoint() != null) {
+            channelPipeline.addLast("Metrics", DefaultMetricsHandler);
+        }
+
         // 6*. Ping
         if (namedPing != null) {
             for (String named : namedPing) {
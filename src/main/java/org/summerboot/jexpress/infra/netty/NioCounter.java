@@ -16,17 +16,27 @@
  */
 package org.summerboot.jexpress.infra.netty;
 
+import org.summerboot.jexpress.util.concurrent.StripedIdGenerator;
+
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Per-request counters are striped (LongAdder / StripedIdGenerator) to avoid a single contended cache line across
+ * event loop threads, per-connection and ping counters stay AtomicLong
+ *
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
  */
 public class NioCounter {//package access only, not a public class
 
     protected static final AtomicLong COUNTER_PING_HIT = new AtomicLong(0);
-    protected static final AtomicLong COUNTER_BIZ_HIT = new AtomicLong(0);
+    protected static final StripedIdGenerator COUNTER_BIZ_HIT = new StripedIdGenerator();
     protected static final AtomicLong COUNTER_TOTAL_CHANNEL = new AtomicLong(0);
     protected static final AtomicLong COUNTER_ACTIVE_CHANNEL = new AtomicLong(0);
-    protected static final AtomicLong COUNTER_HIT = new AtomicLong(0);
-    protected static final AtomicLong COUNTER_SENT = new AtomicLong(0);
+    // per second, reset by the QPS task
+    protected static final LongAdder COUNTER_HIT = new LongAdder();
+    protected static final LongAdder COUNTER_SENT = new LongAdder();
+    // cumulative since start, exported on /metrics
+    protected static final LongAdder COUNTER_HIT_TOTAL = new LongAdder();
+    protected static final LongAdder COUNTER_SENT_TOTAL = new LongAdder();
 }
@@ -18,6 +18,7 @@ package org.summerboot.jexpress.infra.netty;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
@@ -28,10 +29,14 @@ import io.netty.channel.epoll.Epoll;
 import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollIoHandler;
 import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.kqueue.KQueue;
+import io.netty.channel.kqueue.KQueueIoHandler;
 import io.netty.channel.kqueue.KQueueServerSocketChannel;
+import io.netty.channel.kqueue.KQueueSocketChannel;
 import io.netty.channel.nio.NioIoHandler;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http2.Http2SecurityUtil;
 import io.netty.handler.ssl.ClientAuth;
 import io.netty.handler.ssl.SslContext;
@@ -41,6 +46,9 @@ import io.netty.handler.ssl.SupportedCipherSuiteFilter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
 import org.summerboot.jexpress.boot.BackOffice;
 import org.summerboot.jexpress.boot.BootConstants;
 import org.summerboot.jexpress.boot.config.BootConfig;
@@ -67,19 +75,26 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
+ * CRaC: the listening sockets and event loop groups are closed before checkpoint and bound again after restore
+ *
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
  */
-public class NioServer {
+public class NioServer implements Resource {
 
     protected static final Logger log = LogManager.getLogger(NioServer.class.getName());
 
     protected EventLoopGroup bossGroup;// the pool to accept new connection requests
     protected EventLoopGroup workerGroup;// the pool to process IO logic
+    // shared with NettyHttpClient
+    protected static volatile EventLoopGroup sharedWorkerGroup;
+    protected static volatile Class<? extends Channel> sharedSocketChannelClass;
     //protected  EventExecutorGroup sharedNioExecutorGroup;// a thread pool to handle time-consuming business
     protected ScheduledExecutorService QPS_SERVICE;// = Executors.newSingleThreadScheduledExecutor();
 
     protected final NioChannelInitializer channelInitializer;
     protected final NioStatusListener nioListener;
+    protected volatile NioConfig boundNioCfg;
+    protected boolean cracRegistered = false;
 
     public static final String IDLE_EVENT_MONITOR_ID = "HTTPServer";
     public static final IdleEventMonitor IDLE_EVENT_MONITOR = new IdleEventMonitor(IDLE_EVENT_MONITOR_ID) {
@@ -117,6 +132,13 @@ public class NioServer {
         System.setProperty("io.netty.allocator.smallCacheSize", "0");
         System.setProperty("io.netty.allocator.normalCacheSize", "0");
 
+        boundNioCfg = nioCfg;
+        if (!cracRegistered) {
+            // the global context only keeps a weak reference, this server is held by SummerApplication
+            Core.getGlobalContext().register(this);
+            cracRegistered = true;
+        }
+
         // Configure SSL.
         SSLContext jdkSslContext = null;
         SslContext nettySslContext = null;
@@ -173,8 +195,8 @@ public class NioServer {
         } else if (KQueue.isAvailable() && (IoMultiplexer.AVAILABLE.equals(multiplexer) || IoMultiplexer.KQUEUE.equals(multiplexer))) {
             //bossGroup = new EpollEventLoopGroup(bossSize, threadFactoryBoss);
             //workerGroup = new EpollEventLoopGroup(workerSize, threadFactoryWorker);
-            bossGroup = new MultiThreadIoEventLoopGroup(bossSize, threadFactoryBoss, EpollIoHandler.newFactory());
-            workerGroup = new MultiThreadIoEventLoopGroup(workerSize, threadFactoryWorker, EpollIoHandler.newFactory());
+            bossGroup = new MultiThreadIoEventLoopGroup(bossSize, threadFactoryBoss, KQueueIoHandler.newFactory());
+            workerGroup = new MultiThreadIoEventLoopGroup(workerSize, threadFactoryWorker, KQueueIoHandler.newFactory());
             serverChannelClass = KQueueServerSocketChannel.class;
             multiplexer = IoMultiplexer.KQUEUE;
         } else {
@@ -185,6 +207,12 @@ public class NioServer {
             serverChannelClass = NioServerSocketChannel.class;
             multiplexer = IoMultiplexer.JDK;
         }
+        sharedSocketChannelClass = switch (multiplexer) {
+            case EPOLL -> EpollSocketChannel.class;
+            case KQUEUE -> KQueueSocketChannel.class;
+            default -> NioSocketChannel.class;
+        };
+        sharedWorkerGroup = workerGroup;
         ServerBootstrap boot = new ServerBootstrap();
         if (multiplexer == IoMultiplexer.EPOLL) {
             boot.option(EpollChannelOption.SO_REUSEPORT, true);
@@ -255,12 +283,12 @@ public class NioServer {
             boolean useVirtualThread = nioCfg.getTpeThreadingMode().equals(BootConfig.ThreadingMode.VirtualThread);
             QPS_SERVICE = Executors.newSingleThreadScheduledExecutor(NamedDefaultThreadFactory.build("NIO.QPS_SERVICE", useVirtualThread));
             QPS_SERVICE.scheduleAtFixedRate(() -> {
-                long hps = NioCounter.COUNTER_HIT.getAndSet(0);
-                long tps = NioCounter.COUNTER_SENT.getAndSet(0);
+                long hps = NioCounter.COUNTER_HIT.sumThenReset();
+                long tps = NioCounter.COUNTER_SENT.sumThenReset();
                 if (nioListener == null && !log.isDebugEnabled()) {
                     return;
                 }
-                long bizHit = NioCounter.COUNTER_BIZ_HIT.get();
+                long bizHit = NioCounter.COUNTER_BIZ_HIT.count();
                 //if (lastBizHit[0] == bizHit && !servicePaused) {
 //                if (lastBizHitRef.get() == bizHit && !HealthMonitor.isServicePaused()) {
 //                    return;
@@ -298,6 +326,20 @@ public class NioServer {
         }
     }
 
+    /**
+     * @return the worker group of the started HTTP server, null if not started
+     */
+    public static EventLoopGroup getSharedWorkerGroup() {
+        return sharedWorkerGroup;
+    }
+
+    /**
+     * @return the client socket channel class matching {@link #getSharedWorkerGroup()}
+     */
+    public static Class<? extends Channel> getSharedSocketChannelClass() {
+        return sharedSocketChannelClass;
+    }
+
     public void shutdown() {
         String tn = Thread.currentThread().getName();
         if (bossGroup != null && !bossGroup.isShutdown()) {
@@ -319,4 +361,30 @@ public class NioServer {
         }
     }
 
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) throws Exception {
+        if (boundNioCfg == null) {
+            return;
+        }
+        log.info("CRaC beforeCheckpoint: stopping HTTP server");
+        shutdown();
+        // checkpoint fails on open sockets, wait for the event loops to close them
+        if (bossGroup != null) {
+            bossGroup.terminationFuture().await(30, TimeUnit.SECONDS);
+        }
+        if (workerGroup != null) {
+            workerGroup.terminationFuture().await(30, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) throws Exception {
+        NioConfig nioCfg = boundNioCfg;
+        if (nioCfg == null) {
+            return;
+        }
+        log.info("CRaC afterRestore: starting HTTP server");
+        bind(nioCfg, new StringBuilder());
+    }
+
 }
@@ -42,6 +42,8 @@ import org.summerboot.jexpress.api.common.ServiceError;
 import org.summerboot.jexpress.api.common.SessionContext;
 import org.summerboot.jexpress.api.rest.ErrorAuditor;
 import org.summerboot.jexpress.boot.BootConstants;
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+import org.summerboot.jexpress.infra.metrics.EndpointMetrics;
 import org.summerboot.jexpress.infra.netty.config.NioConfig;
 import org.summerboot.jexpress.infra.netty.util.NioHttpUtil;
 import org.summerboot.jexpress.security.SecurityUtil;
@@ -106,8 +108,10 @@ public abstract class NioServerHttpRequestHandler extends SimpleChannelInboundHa
     @Override
     public void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest req) {
         final long start = System.currentTimeMillis();
-        NioCounter.COUNTER_HIT.incrementAndGet();
-        final long hitIndex = NioCounter.COUNTER_BIZ_HIT.incrementAndGet();
+        final long startNanos = System.nanoTime();
+        NioCounter.COUNTER_HIT.increment();
+        NioCounter.COUNTER_HIT_TOTAL.increment();
+        final long hitIndex = NioCounter.COUNTER_BIZ_HIT.next();
         final String txId = BootConstants.APP_ID + "-" + hitIndex;
         boolean isDecoderSuccess = req.decoderResult().isSuccess();
 
@@ -143,6 +147,7 @@ public abstract class NioServerHttpRequestHandler extends SimpleChannelInboundHa
         //ScopedValue.where(SessionContext.SESSION_CONTEXT, ioc).run(() -> {
         Runnable asyncTask = () -> {
             long queuingTime = System.currentTimeMillis() - start;
+            final long queuingNanos = System.nanoTime() - startNanos;
             ThreadContext.put(BootConstants.SYS_PROP_HITINDEX, "-" + hitIndex);// REF269-2
             NioServer.IDLE_EVENT_MONITOR.onCall(txId);
             String acceptCharset = requestHeaders.get(HttpHeaderNames.ACCEPT_CHARSET);
@@ -152,6 +157,7 @@ public abstract class NioServerHttpRequestHandler extends SimpleChannelInboundHa
             long responseDataBytes = -1;
             Throwable ioEx = null;
             long processTime = -1;
+            long processNanos = -1;
             ProcessorSettings processorSettings = null;
             Map<String, List<String>> parameters = null;
             String httpRequestUri = httpRequestUriRaw;
@@ -190,6 +196,7 @@ public abstract class NioServerHttpRequestHandler extends SimpleChannelInboundHa
                     }
                 }
                 processTime = System.currentTimeMillis() - start;
+                processNanos = System.nanoTime() - startNanos - queuingNanos;
                 responseDataBytes = NioHttpUtil.sendResponse(ctx, isKeepAlive, context, this, processorSettings);
                 context.poi(BootPoi.SERVICE_END);
             } catch (IllegalArgumentException ex) {
@@ -207,8 +214,10 @@ public abstract class NioServerHttpRequestHandler extends SimpleChannelInboundHa
                 responseDataBytes = NioHttpUtil.sendResponse(ctx, isKeepAlive, context, this, processorSettings);
             } finally {
                 try {
-                    NioCounter.COUNTER_SENT.incrementAndGet();
+                    NioCounter.COUNTER_SENT.increment();
+                    NioCounter.COUNTER_SENT_TOTAL.increment();
                     long responseTime = System.currentTimeMillis() - start;
+                    recordMetrics(processorSettings, queuingNanos, processNanos, System.nanoTime() - startNanos, context.status());
                     this.afterService(requestHeaders, httpMethod, httpRequestUri, parameters, httpPostRequestBody, context);
                     String report = null;
                     try {
@@ -270,6 +279,7 @@ public abstract class NioServerHttpRequestHandler extends SimpleChannelInboundHa
             Err e = new Err(BootErrorCode.NIO_TOO_MANY_REQUESTS, null, "Too many request, try again later", ex);
             context.error(e).status(HttpResponseStatus.TOO_MANY_REQUESTS).level(Level.FATAL);
             long responseDataBytes = NioHttpUtil.sendResponse(ctx, isKeepAlive, context, this, null);
+            recordMetrics(null, -1, -1, System.nanoTime() - startNanos, context.status());
 
             StringBuilder sb = new StringBuilder();
             sb.append("request_").append(txId).append("=").append(ex.toString())
@@ -301,6 +311,26 @@ public abstract class NioServerHttpRequestHandler extends SimpleChannelInboundHa
         //});
     }
 
+    /**
+     * Record to the per-endpoint metrics, endpoint is the matched RequestProcessor or {@link BootMetrics#ENDPOINT_UNMATCHED}
+     *
+     * @param processorSettings
+     * @param queuingNanos
+     * @param processNanos
+     * @param responseNanos
+     * @param status
+     */
+    protected void recordMetrics(ProcessorSettings processorSettings, long queuingNanos, long processNanos, long responseNanos, HttpResponseStatus status) {
+        try {
+            EndpointMetrics metrics = BootMetrics.http(processorSettings == null ? null : processorSettings.getMetricsName());
+            if (metrics != null) {
+                metrics.record(queuingNanos, processNanos, responseNanos, BootMetrics.httpStatusIndex(status == null ? 0 : status.code()));
+            }
+        } catch (Throwable ex) {
+            log.warn("failed to record metrics", ex);
+        }
+    }
+
     protected final String me = ", hdl=" + this.toString();
 
     protected String info(ChannelHandlerContext ctx) {
@@ -20,13 +20,16 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.ssl.SslProvider;
+import io.netty.util.AsciiString;
 import org.apache.commons.lang3.StringUtils;
 import org.summerboot.jexpress.annotation.config.Config;
 import org.summerboot.jexpress.annotation.config.ConfigHeader;
 import org.summerboot.jexpress.boot.BootConstants;
 import org.summerboot.jexpress.boot.config.BootConfig;
 import org.summerboot.jexpress.boot.config.ConfigUtil;
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
 import org.summerboot.jexpress.infra.netty.util.IoMultiplexer;
+import org.summerboot.jexpress.infra.websocket.stomp.StompBroker;
 import org.summerboot.jexpress.integration.HealthMonitor;
 import org.summerboot.jexpress.security.SecurityUtil;
 import org.summerboot.jexpress.util.lang.BeanUtil;
@@ -285,9 +288,18 @@ public class NioConfig extends BootConfig {
             desc = "Sent Idle enabled only when value > 0")
     protected volatile int writerIdleSeconds = 0;
 
-    @Config(key = "nio.server.health.InspectionIntervalSeconds", defaultValue = "5")
+    @Config(key = "nio.server.health.InspectionIntervalSeconds", defaultValue = "5",
+            desc = "retry interval of a failed health inspection, doubled after each consecutive failure")
     protected volatile int healthInspectionIntervalSeconds = 5;
 
+    @Config(key = "nio.server.health.InspectionIntervalSeconds.max", defaultValue = "60",
+            desc = "max retry interval of a failed health inspection")
+    protected volatile int healthInspectionMaxIntervalSeconds = 60;
+
+    @Config(key = "nio.server.health.InspectionPoolSize", defaultValue = "4",
+            desc = "max number of health inspections running in parallel")
+    protected volatile int healthInspectionPoolSize = 4;
+
 
     @Config(key = "nio.WebSocket.Compress", defaultValue = "true")
     protected volatile boolean webSocketCompress = true;
@@ -311,6 +323,12 @@ public class NioConfig extends BootConfig {
     protected volatile long webSocketHandshakeTimeoutMs = 10000L;//io.netty.handler.codec.http.websocketx.WebSocketServerProtocolConfig.DEFAULT_HANDSHAKE_TIMEOUT_MILLIS;
     @Config(key = "nio.WebSocket.STOMP.subprotocol", defaultValue = "v10.stomp, v11.stomp, v12.stomp")
     protected volatile String webSocketStompSubprotocol = "v10.stomp, v11.stomp, v12.stomp";
+    @Config(key = "nio.WebSocket.STOMP.SlowConsumerPolicy", defaultValue = "BUFFER",
+            desc = "StompBroker subscriber not writable: DROP messages, BUFFER up to MaxPendingMessages then drop, or buffer then DISCONNECT")
+    protected volatile StompBroker.SlowConsumerPolicy webSocketStompSlowConsumerPolicy = StompBroker.SlowConsumerPolicy.BUFFER;
+    @Config(key = "nio.WebSocket.STOMP.MaxPendingMessages", defaultValue = "1024",
+            desc = "max messages buffered per StompBroker subscriber channel while it is not writable")
+    protected volatile int webSocketStompMaxPendingMessages = 1024;
 
 
     // 4.4. Request/Response
@@ -335,6 +353,9 @@ public class NioConfig extends BootConfig {
     @Config(key = "nio.JAX-RS.jsonParser.TimeZone", desc = "The ID for a TimeZone, either an abbreviation such as \"UTC\", a full name such as \"America/Toronto\", or a custom ID such as \"GMT-8:00\", or \"system\" as system default timezone.", defaultValue = "system")
     protected TimeZone jsonParserTimeZone = TimeZone.getDefault();
 
+    @Config(key = "nio.JAX-RS.jsonParser.Blackbird", desc = "true to use Jackson Blackbird generated property accessors instead of reflection, usually faster for beans with many properties, verify with your own payloads. Requires the optional dependency tools.jackson.module:jackson-module-blackbird", defaultValue = "false")
+    protected volatile boolean jsonParserBlackbird = false;
+
     @Config(key = "nio.default.response.Charset", desc = "Accept-Charset header is deprecated and no longer used by modern browsers,\nservers often default to a widely compatible encoding UTF-8 (for English/French only, like Canada set it to ISO-8859-1) or the resource's default encoding for better user experience.", defaultValue = "UTF-8")
     protected Charset defaultResponseCharset = StandardCharsets.UTF_8;
 
@@ -416,6 +437,18 @@ public class NioConfig extends BootConfig {
     @Config(key = "server.http.webserver.tempupload", defaultValue = "temp/upload")
     protected volatile String tempUpload = "temp/upload";
 
+    @Config(key = "server.http.webserver.upload.offload", defaultValue = "true",
+            desc = "streaming upload (BootHttpFileUploadHandler.createUploadSink): write the chunks on the BizExecutor instead of the IO thread")
+    protected volatile boolean uploadOffload = true;
+
+    @Config(key = "server.http.webserver.upload.bufferKB", defaultValue = "1024",
+            desc = "streaming upload: stop reading from the connection while more than this is waiting for the sink, resume at half of it")
+    protected volatile int uploadBufferKB = 1024;
+
+    @Config(key = "server.http.webserver.upload.maxDurationSeconds", defaultValue = "0",
+            desc = "abort a file upload not completed within this time, 0 = unlimited")
+    protected volatile int uploadMaxDurationSeconds = 0;
+
     protected volatile boolean downloadMode;
     protected volatile File rootFolder;
 
@@ -450,6 +483,24 @@ public class NioConfig extends BootConfig {
         return serverDefaultResponseHeaders;
     }
 
+    //9. Metrics
+    @ConfigHeader(title = "9. Metrics",
+            desc = "per-endpoint queuing/process/response time percentiles and status counters of HTTP and gRPC requests, exported via the metrics endpoint (Prometheus text format or OpenMetrics) and JMX")
+    @Config(key = "server.metrics.enabled", defaultValue = "true")
+    protected volatile boolean metricsEnabled = true;
+    @Config(key = "server.metrics.endpoint", defaultValue = "/metrics", desc = "HTTP GET endpoint, empty to disable")
+    protected volatile String metricsEndpoint = "/metrics";
+    @Config(key = "server.metrics.endpoint.localOnly", defaultValue = "true", desc = "only serve the metrics endpoint to loopback callers, others get 404")
+    protected volatile boolean metricsEndpointLocalOnly = true;
+    @Config(key = "server.metrics.histogram.highestTrackableMs", defaultValue = "60000", desc = "longer time will be recorded as this value. Memory per endpoint grows with log2 of this value")
+    protected volatile long metricsHighestTrackableMs = 60000;
+    @Config(key = "server.metrics.histogram.significantDigits", defaultValue = "2", desc = "0-5, 2 means 1% value error. Memory per endpoint grows 10x per digit")
+    protected volatile int metricsSignificantDigits = 2;
+    @Config(key = "server.metrics.histogram.windowSeconds", defaultValue = "60", desc = "percentiles are calculated from the last complete window, windows are rotated by a timer independent of scrapes")
+    protected volatile int metricsWindowSeconds = 60;
+    @Config(key = "server.metrics.maxEndpoints", defaultValue = "500", desc = "max number of endpoints per protocol, the rest are recorded as _other")
+    protected volatile int metricsMaxEndpoints = 500;
+
     protected String docrootDir;
     protected String tempUploadDir;
 
@@ -510,7 +561,13 @@ public class NioConfig extends BootConfig {
                 if (headerValue != null) {
                     headerValue = headerValue.trim();
                 }
-                serverDefaultResponseHeaders.set(headerName, headerValue);
+                if (!StandardCharsets.US_ASCII.newEncoder().canEncode(headerName + headerValue)) {
+                    // AsciiString would silently turn each non-ASCII char into one wrong byte
+                    helper.addError("invalid \"" + name + "\" - header name and value must be US-ASCII: " + headerValue, null);
+                    return;
+                }
+                // pre-encoded, copied to every response as is
+                serverDefaultResponseHeaders.set(AsciiString.cached(headerName), new AsciiString(headerValue));
             }
         });
 
@@ -525,7 +582,13 @@ public class NioConfig extends BootConfig {
         tpe = buildThreadPoolExecutor(tpe, "Netty-HTTP.Biz", tpeThreadingMode,
                 tpeCore, tpeMax, tpeQueue, tpeKeepAliveSeconds, null,
                 prestartAllCoreThreads, allowCoreThreadTimeOut, false);
-        BeanUtil.init(jsonParserTimeZone, deserializationFailOnUnknownProperties, deserializationCaseInsensitive, serializationPretty, serializationIgnoreEmptyArray, serializationIgnoreNull, showRefInServiceError);
+        BeanUtil.init(jsonParserTimeZone, deserializationFailOnUnknownProperties, deserializationCaseInsensitive, serializationPretty, serializationIgnoreEmptyArray, serializationIgnoreNull, showRefInServiceError, jsonParserBlackbird);
+
+        //9. Metrics
+        if (StringUtils.isNotBlank(metricsEndpoint) && !metricsEndpoint.startsWith("/")) {
+            helper.addError("invalid \"server.metrics.endpoint\" - must start with /: " + metricsEndpoint, null);
+        }
+        BootMetrics.configure(metricsEnabled, metricsHighestTrackableMs, metricsSignificantDigits, metricsWindowSeconds, metricsMaxEndpoints);
 
         //5.1 caller filter
         switch (filterUserType) {
@@ -562,6 +625,21 @@ public class NioConfig extends BootConfig {
         }
     }
 
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * @return null if disabled
+     */
+    public String getMetricsEndpoint() {
+        return metricsEnabled && StringUtils.isNotBlank(metricsEndpoint) ? metricsEndpoint.trim() : null;
+    }
+
+    public boolean isMetricsEndpointLocalOnly() {
+        return metricsEndpointLocalOnly;
+    }
+
     public boolean isTLSEnabled() {
         return tlsProtocols != null && tlsProtocols.length > 0;
     }
@@ -606,6 +684,14 @@ public class NioConfig extends BootConfig {
         return webSocketStompSubprotocol;
     }
 
+    public StompBroker.SlowConsumerPolicy getWebSocketStompSlowConsumerPolicy() {
+        return webSocketStompSlowConsumerPolicy;
+    }
+
+    public int getWebSocketStompMaxPendingMessages() {
+        return webSocketStompMaxPendingMessages;
+    }
+
     public List<InetSocketAddress> getBindingAddresses() {
         return bindingAddresses;
     }
@@ -794,6 +880,14 @@ public class NioConfig extends BootConfig {
         return healthInspectionIntervalSeconds;
     }
 
+    public int getHealthInspectionMaxIntervalSeconds() {
+        return healthInspectionMaxIntervalSeconds;
+    }
+
+    public int getHealthInspectionPoolSize() {
+        return healthInspectionPoolSize;
+    }
+
     public boolean isDeserializationCaseInsensitive() {
         return deserializationCaseInsensitive;
     }
@@ -810,6 +904,10 @@ public class NioConfig extends BootConfig {
         return jsonParserTimeZone;
     }
 
+    public boolean isJsonParserBlackbird() {
+        return jsonParserBlackbird;
+    }
+
     public Charset getDefaultResponseCharset() {
         return defaultResponseCharset;
     }
@@ -909,4 +1007,16 @@ public class NioConfig extends BootConfig {
     public String getTempUploadDir() {
         return tempUploadDir;
     }
+
+    public boolean isUploadOffload() {
+        return uploadOffload;
+    }
+
+    public int getUploadBufferKB() {
+        return uploadBufferKB;
+    }
+
+    public int getUploadMaxDurationSeconds() {
+        return uploadMaxDurationSeconds;
+    }
 }
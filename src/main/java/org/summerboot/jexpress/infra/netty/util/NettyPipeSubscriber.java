@@ -0,0 +1,102 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.netty.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * Pipes an upstream body (e.g. HttpResponse.BodyHandlers.ofPublisher()) to the Netty client response without
+ * buffering: the next chunk is requested only after the previous one is written, so a slow client slows down the
+ * upstream instead of filling the heap. The response headers must have been written.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class NettyPipeSubscriber implements Flow.Subscriber<List<ByteBuffer>> {
+
+    protected static final Logger log = LogManager.getLogger(NettyPipeSubscriber.class.getName());
+
+    protected final ChannelHandlerContext ctx;
+    protected final boolean isKeepAlive;
+    protected final String txId;
+    protected volatile Flow.Subscription subscription;
+    protected volatile long bytes;
+
+    public NettyPipeSubscriber(ChannelHandlerContext ctx, boolean isKeepAlive, String txId) {
+        this.ctx = ctx;
+        this.isKeepAlive = isKeepAlive;
+        this.txId = txId;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (!ctx.channel().isActive()) {
+            subscription.cancel();
+            return;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+        ByteBuf buf = Unpooled.wrappedBuffer(item.toArray(ByteBuffer[]::new));
+        if (!buf.isReadable()) {
+            // an empty chunk would end a chunked response
+            buf.release();
+            subscription.request(1);
+            return;
+        }
+        bytes += buf.readableBytes();
+        ctx.writeAndFlush(new DefaultHttpContent(buf)).addListener((ChannelFutureListener) f -> {
+            if (f.isSuccess()) {
+                subscription.request(1);
+            } else {
+                log.debug(() -> txId + " client gone after " + bytes + " bytes: " + f.cause());
+                subscription.cancel();
+                ctx.close();
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable ex) {
+        // the status line has been sent, the client sees a truncated response
+        log.warn(() -> txId + " upstream failed after " + bytes + " bytes: " + ex);
+        ctx.close();
+    }
+
+    @Override
+    public void onComplete() {
+        ChannelFuture f = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        if (!isKeepAlive) {
+            f.addListener(ChannelFutureListener.CLOSE);
+        }
+        log.debug(() -> txId + " piped " + bytes + " bytes");
+    }
+}
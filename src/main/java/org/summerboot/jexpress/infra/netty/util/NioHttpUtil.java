@@ -61,7 +61,6 @@ import org.summerboot.jexpress.integration.cache.local.SimpleLocalCacheImpl;
 import org.summerboot.jexpress.security.SecurityUtil;
 import org.summerboot.jexpress.util.net.GeoIpUtil;
 import org.summerboot.jexpress.util.runtime.ApplicationUtil;
-import org.summerboot.jexpress.util.time.TimeUtil;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
@@ -76,7 +75,6 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.OffsetDateTime;
 import java.util.Base64;
 import java.util.regex.Pattern;
 
@@ -127,17 +125,18 @@ public class NioHttpUtil {
 
 
     public static long sendResponse(ChannelHandlerContext ctx, boolean isKeepAlive, final SessionContext sessionContext, final ErrorAuditor errorAuditor, final ProcessorSettings processorSettings) {
-        String headerKey_reference;
-        String headerKey_serverTimestamp;
+        AsciiString headerKey_reference;
+        AsciiString headerKey_serverTimestamp;
         if (processorSettings == null) {
-            headerKey_reference = BootConstants.RESPONSE_HEADER_KEY_REF;
-            headerKey_serverTimestamp = BootConstants.RESPONSE_HEADER_KEY_TS;
+            headerKey_reference = ResponseHeaderCache.HEADER_REF;
+            headerKey_serverTimestamp = ResponseHeaderCache.HEADER_TS;
         } else {
-            headerKey_reference = processorSettings.getHttpServiceResponseHeaderName_Reference();
-            headerKey_serverTimestamp = processorSettings.getHttpServiceResponseHeaderName_ServerTimestamp();
+            headerKey_reference = processorSettings.getHttpServiceResponseHeaderKey_Reference();
+            headerKey_serverTimestamp = processorSettings.getHttpServiceResponseHeaderKey_ServerTimestamp();
         }
         sessionContext.responseHeader(headerKey_reference, sessionContext.txId());
-        sessionContext.responseHeader(headerKey_serverTimestamp, OffsetDateTime.now().format(TimeUtil.ISO_ZONED_DATE_TIME3));
+        sessionContext.responseHeader(headerKey_serverTimestamp, ResponseHeaderCache.serverTimestamp());
+        sessionContext.responseHeader(HttpHeaderNames.DATE, ResponseHeaderCache.httpDate());
         final HttpResponseStatus status = sessionContext.status();
 
         if (sessionContext.file() != null) {
@@ -146,6 +145,9 @@ public class NioHttpUtil {
         if (sessionContext.data() != null) {
             return sendData(ctx, isKeepAlive, sessionContext, errorAuditor, processorSettings, sessionContext.responseHeaders());
         }
+        if (sessionContext.responseStream() != null) {
+            return sendStream(ctx, isKeepAlive, sessionContext, sessionContext.responseHeaders());
+        }
         if (sessionContext.redirect() != null) {
             sendRedirect(ctx, sessionContext.redirect(), status, sessionContext.responseHeaders());
             return 0;
@@ -244,6 +246,39 @@ public class NioHttpUtil {
         return responseDataBytes;
     }
 
+    /**
+     * Write the response headers, then pipe the upstream body via {@link NettyPipeSubscriber}
+     *
+     * @param ctx
+     * @param isKeepAlive
+     * @param context
+     * @param responseHeaders
+     * @return the content length, 0 if unknown (chunked)
+     */
+    protected static long sendStream(ChannelHandlerContext ctx, boolean isKeepAlive, final SessionContext context, HttpHeaders responseHeaders) {
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, context.status());
+        HttpHeaders h = response.headers();
+        if (responseHeaders != null) {
+            h.set(responseHeaders);
+        }
+        long contentLength = context.responseStreamContentLength();
+        if (contentLength < 0) {
+            h.remove(HttpHeaderNames.CONTENT_LENGTH);
+            h.set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+        } else {
+            h.set(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(contentLength));
+        }
+        if (context.contentType() != null) {
+            h.set(HttpHeaderNames.CONTENT_TYPE, context.contentType());
+        }
+        if (isKeepAlive) {
+            h.set(HttpHeaderNames.CONNECTION, KEEP_ALIVE);
+        }
+        ctx.write(response);
+        context.responseStream().subscribe(new NettyPipeSubscriber(ctx, isKeepAlive, context.txId()));
+        return Math.max(0, contentLength);
+    }
+
     private static long sendData(ChannelHandlerContext ctx, boolean isKeepAlive, final SessionContext context, final ErrorAuditor errorAuditor, final ProcessorSettings processorSettings, HttpHeaders responseHeaders) {
         byte[] data = context.data();
         long dataSize = data.length;
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.netty.util;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.util.AsciiString;
+import org.summerboot.jexpress.boot.BootConstants;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.Locale;
+
+/**
+ * Pre-encoded common response header names and values shared by all responses, Netty copies {@link AsciiString} bytes
+ * as is instead of encoding a String char by char.
+ * <p>
+ * The {@link HttpHeaderNames#DATE} value and the second part of the server timestamp
+ * ({@link BootConstants#RESPONSE_HEADER_KEY_TS}, same format as TimeUtil.ISO_ZONED_DATE_TIME3) are formatted once
+ * per second, by the first response of each second, and shared by all responses of that second.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class ResponseHeaderCache {
+
+    public static final AsciiString HEADER_REF = AsciiString.cached(BootConstants.RESPONSE_HEADER_KEY_REF);
+    public static final AsciiString HEADER_TS = AsciiString.cached(BootConstants.RESPONSE_HEADER_KEY_TS);
+    public static final AsciiString APP_ID = AsciiString.cached(BootConstants.APP_ID);
+
+    /**
+     * RFC 9110 IMF-fixdate, e.g. Sun, 06 Nov 1994 08:49:37 GMT
+     */
+    protected static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+    protected static final DateTimeFormatter TS_SECOND = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.");
+    protected static final DateTimeFormatter TS_OFFSET = new DateTimeFormatterBuilder().appendOffset("+HH:MM", "Z").toFormatter();
+
+    protected record Second(long epochSecond, AsciiString httpDate, byte[] tsSecond, byte[] tsOffset) {
+    }
+
+    protected record Millisecond(long epochMilli, AsciiString ts) {
+    }
+
+    protected static volatile Second second;
+    protected static volatile Millisecond millisecond;
+
+    protected ResponseHeaderCache() {
+    }
+
+    /**
+     * @return the cached Date header value of the current second
+     */
+    public static AsciiString httpDate() {
+        return second(System.currentTimeMillis()).httpDate;
+    }
+
+    /**
+     * @return the current time in TimeUtil.ISO_ZONED_DATE_TIME3 format, e.g. 2026-10-19T12:45:48.123-04:00
+     */
+    public static AsciiString serverTimestamp() {
+        long now = System.currentTimeMillis();
+        Millisecond ms = millisecond;
+        if (ms != null && ms.epochMilli == now) {
+            return ms.ts;
+        }
+        Second s = second(now);
+        int millis = (int) Math.floorMod(now, 1000L);
+        byte[] ts = new byte[s.tsSecond.length + 3 + s.tsOffset.length];
+        System.arraycopy(s.tsSecond, 0, ts, 0, s.tsSecond.length);
+        int i = s.tsSecond.length;
+        ts[i++] = (byte) ('0' + millis / 100);
+        ts[i++] = (byte) ('0' + millis / 10 % 10);
+        ts[i++] = (byte) ('0' + millis % 10);
+        System.arraycopy(s.tsOffset, 0, ts, i, s.tsOffset.length);
+        AsciiString ret = new AsciiString(ts, false);
+        millisecond = new Millisecond(now, ret);
+        return ret;
+    }
+
+    /**
+     * To be called when the settings are loaded, not per response
+     *
+     * @param name
+     * @return the pre-encoded constant when name is one of the default names, otherwise name as AsciiString, null if
+     * name is null
+     */
+    public static AsciiString headerName(String name) {
+        if (name == null) {
+            return null;
+        }
+        if (name.equals(BootConstants.RESPONSE_HEADER_KEY_REF)) {
+            return HEADER_REF;
+        }
+        if (name.equals(BootConstants.RESPONSE_HEADER_KEY_TS)) {
+            return HEADER_TS;
+        }
+        return AsciiString.cached(name);
+    }
+
+    protected static Second second(long epochMilli) {
+        long epochSecond = Math.floorDiv(epochMilli, 1000L);
+        Second s = second;
+        if (s != null && s.epochSecond == epochSecond) {
+            return s;
+        }
+        return nextSecond(epochSecond);
+    }
+
+    /**
+     * Only the first caller of a second formats it, the others wait for it instead of formatting the same values
+     *
+     * @param epochSecond
+     * @return
+     */
+    protected static synchronized Second nextSecond(long epochSecond) {
+        Second s = second;
+        if (s != null && s.epochSecond == epochSecond) {
+            // formatted by another thread meanwhile
+            return s;
+        }
+        Instant instant = Instant.ofEpochSecond(epochSecond);
+        ZonedDateTime local = instant.atZone(ZoneId.systemDefault());
+        s = new Second(epochSecond,
+                new AsciiString(HTTP_DATE.format(instant).getBytes(StandardCharsets.US_ASCII), false),
+                TS_SECOND.format(local).getBytes(StandardCharsets.US_ASCII),
+                TS_OFFSET.format(local).getBytes(StandardCharsets.US_ASCII));
+        second = s;
+        return s;
+    }
+}
@@ -0,0 +1,561 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.websocket.stomp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.AttributeKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+import org.summerboot.jexpress.infra.netty.config.NioConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process STOMP broker: destination subscriptions with wildcards and fan-out of one encoded MESSAGE frame to all
+ * subscribed WebSocket channels.
+ * <p>
+ * Destinations are split into segments by '/' or '.', in a subscription '*' matches one segment and '**' (or '#')
+ * matches zero or more segments, e.g. /topic/chat.* receives /topic/chat.room1 but not /topic/chat.room1.typing.
+ * <p>
+ * A published message is encoded once, each subscriber gets a composite of its own "subscription" header and a
+ * retained duplicate of the shared frame, written by one task per event loop. Per channel writability is respected
+ * according to nio.WebSocket.STOMP.SlowConsumerPolicy.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class StompBroker {
+
+    protected static final Logger log = LogManager.getLogger(StompBroker.class.getName());
+
+    protected static final Map<String, StompBroker> REGISTRY = new ConcurrentHashMap<>();
+
+    public static final StompBroker DEFAULT = register(new StompBroker("default"));
+
+    static {
+        BootMetrics.register("stomp_broker", StompBroker::appendMetrics);
+    }
+
+    public enum SlowConsumerPolicy {
+        /**
+         * drop messages while the channel is not writable
+         */
+        DROP,
+        /**
+         * buffer up to nio.WebSocket.STOMP.MaxPendingMessages while the channel is not writable, then drop
+         */
+        BUFFER,
+        /**
+         * buffer up to nio.WebSocket.STOMP.MaxPendingMessages while the channel is not writable, then close the channel
+         */
+        DISCONNECT
+    }
+
+    protected static final AttributeKey<Session> SESSION_KEY = AttributeKey.valueOf("jexpress.stomp.session");
+
+    /**
+     * resolved destinations kept in {@link #routes} before it is cleared
+     */
+    protected static final int MAX_ROUTES = 10000;
+
+    protected final String name;
+    /**
+     * destination - subscriptions without wildcard
+     */
+    protected final Map<String, Set<Subscription>> exactSubscriptions = new ConcurrentHashMap<>();
+    protected final Set<Subscription> wildcardSubscriptions = ConcurrentHashMap.newKeySet();
+    /**
+     * destination - subscriptions grouped by event loop, valid while {@link #version} is unchanged
+     */
+    protected final Map<String, Route> routes = new ConcurrentHashMap<>();
+    protected final AtomicLong version = new AtomicLong();
+    protected final AtomicLong messageId = new AtomicLong();
+    protected final AtomicInteger sessions = new AtomicInteger();
+    protected final AtomicInteger subscriptions = new AtomicInteger();
+    protected final LongAdder published = new LongAdder();
+    protected final LongAdder delivered = new LongAdder();
+    protected final LongAdder dropped = new LongAdder();
+    protected final LongAdder disconnected = new LongAdder();
+
+    public StompBroker(String name) {
+        this.name = name;
+    }
+
+    public static StompBroker register(StompBroker broker) {
+        REGISTRY.put(broker.getName(), broker);
+        return broker;
+    }
+
+    public static void unregister(StompBroker broker) {
+        REGISTRY.remove(broker.getName(), broker);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param loops  event loops of the subscribers
+     * @param groups subscriptions of each event loop
+     */
+    protected record Route(long version, EventLoop[] loops, Subscription[][] groups) {
+    }
+
+    protected static class Subscription {
+
+        protected final Session session;
+        protected final String id;
+        protected final String destination;
+        /**
+         * null if no wildcard
+         */
+        protected final String[] pattern;
+        /**
+         * "MESSAGE\nsubscription:id\n", written in front of the shared frame
+         */
+        protected final byte[] prefix;
+
+        protected Subscription(Session session, String id, String destination) {
+            this.session = session;
+            this.id = id;
+            this.destination = destination;
+            this.pattern = isWildcard(destination) ? split(destination) : null;
+            this.prefix = ("MESSAGE\nsubscription:" + escape(id) + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Subscriptions and pending messages of one channel, pending messages are only accessed on the event loop of the
+     * channel
+     */
+    protected static class Session {
+
+        protected final Channel channel;
+        protected final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+        protected final ArrayDeque<WebSocketFrame> pending = new ArrayDeque<>();
+        protected final SlowConsumerPolicy slowConsumerPolicy;
+        protected final int maxPendingMessages;
+
+        protected Session(Channel channel) {
+            this.channel = channel;
+            NioConfig nioCfg = NioConfig.cfg;
+            this.slowConsumerPolicy = nioCfg.getWebSocketStompSlowConsumerPolicy();
+            this.maxPendingMessages = Math.max(0, nioCfg.getWebSocketStompMaxPendingMessages());
+        }
+    }
+
+    /**
+     * @param channel
+     * @return the STOMP session of the channel, created on first call and removed with all its subscriptions when the
+     * channel is closed
+     */
+    protected Session getSession(Channel channel) {
+        Session session = channel.attr(SESSION_KEY).get();
+        if (session != null) {
+            return session;
+        }
+        Session newSession = new Session(channel);
+        session = channel.attr(SESSION_KEY).setIfAbsent(newSession);
+        if (session != null) {
+            return session;
+        }
+        sessions.incrementAndGet();
+        channel.closeFuture().addListener(f -> close(newSession));
+        return newSession;
+    }
+
+    /**
+     * @param channel
+     * @param subscriptionId the "id" header of the SUBSCRIBE frame, replaces the existing subscription with the same
+     *                       id
+     * @param destination
+     */
+    public void subscribe(Channel channel, String subscriptionId, String destination) {
+        Session session = getSession(channel);
+        Subscription subscription = new Subscription(session, subscriptionId, destination);
+        Subscription old = session.subscriptions.put(subscriptionId, subscription);
+        if (old != null) {
+            remove(old);
+        }
+        if (subscription.pattern == null) {
+            exactSubscriptions.computeIfAbsent(destination, k -> ConcurrentHashMap.newKeySet()).add(subscription);
+        } else {
+            wildcardSubscriptions.add(subscription);
+        }
+        subscriptions.incrementAndGet();
+        version.incrementAndGet();
+    }
+
+    public void unsubscribe(Channel channel, String subscriptionId) {
+        Session session = channel.attr(SESSION_KEY).get();
+        if (session == null) {
+            return;
+        }
+        Subscription subscription = session.subscriptions.remove(subscriptionId);
+        if (subscription != null) {
+            remove(subscription);
+        }
+    }
+
+    protected void remove(Subscription subscription) {
+        if (subscription.pattern == null) {
+            exactSubscriptions.computeIfPresent(subscription.destination, (k, v) -> v.remove(subscription) && v.isEmpty() ? null : v);
+        } else {
+            wildcardSubscriptions.remove(subscription);
+        }
+        subscriptions.decrementAndGet();
+        version.incrementAndGet();
+    }
+
+    protected void close(Session session) {
+        for (Subscription subscription : session.subscriptions.values()) {
+            remove(subscription);
+        }
+        session.subscriptions.clear();
+        sessions.decrementAndGet();
+        EventLoop loop = session.channel.eventLoop();
+        if (loop.inEventLoop()) {
+            releasePending(session);
+        } else {
+            try {
+                loop.execute(() -> releasePending(session));
+            } catch (RejectedExecutionException ex) {
+                // event loop terminated
+            }
+        }
+    }
+
+    protected void releasePending(Session session) {
+        WebSocketFrame frame;
+        while ((frame = session.pending.poll()) != null) {
+            frame.release();
+        }
+    }
+
+    /**
+     * Publish a text message
+     *
+     * @param destination
+     * @param contentType null for none
+     * @param body
+     * @return number of subscriptions the message is sent to
+     */
+    public int publish(String destination, String contentType, String body) {
+        ByteBuf buf = Unpooled.wrappedBuffer(body.getBytes(StandardCharsets.UTF_8));
+        Map<String, String> headers = contentType == null ? Map.of() : Map.of("content-type", contentType);
+        return publish(destination, headers, buf);
+    }
+
+    /**
+     * Publish a message, the body is copied once into the shared frame and not released
+     *
+     * @param destination
+     * @param headers     extra MESSAGE headers, destination, message-id, subscription and content-length are set by the
+     *                    broker
+     * @param body
+     * @return number of subscriptions the message is sent to
+     */
+    public int publish(String destination, Map<String, String> headers, ByteBuf body) {
+        published.increment();
+        Route route = getRoute(destination);
+        if (route.loops().length == 0) {
+            return 0;
+        }
+        ByteBuf shared = encode(destination, headers, body);
+        int count = 0;
+        try {
+            for (int i = 0; i < route.loops().length; i++) {
+                EventLoop loop = route.loops()[i];
+                Subscription[] group = route.groups()[i];
+                count += group.length;
+                shared.retain();
+                Runnable task = () -> {
+                    try {
+                        for (Subscription subscription : group) {
+                            deliver(subscription, shared);
+                        }
+                    } finally {
+                        shared.release();
+                    }
+                };
+                if (loop.inEventLoop()) {
+                    task.run();
+                } else {
+                    try {
+                        loop.execute(task);
+                    } catch (RejectedExecutionException ex) {
+                        shared.release();
+                        count -= group.length;
+                    }
+                }
+            }
+        } finally {
+            shared.release();
+        }
+        return count;
+    }
+
+    protected Route getRoute(String destination) {
+        long currentVersion = version.get();
+        Route route = routes.get(destination);
+        if (route != null && route.version() == currentVersion) {
+            return route;
+        }
+        Map<EventLoop, List<Subscription>> byLoop = new LinkedHashMap<>();
+        Set<Subscription> exact = exactSubscriptions.get(destination);
+        if (exact != null) {
+            for (Subscription subscription : exact) {
+                byLoop.computeIfAbsent(subscription.session.channel.eventLoop(), k -> new ArrayList<>()).add(subscription);
+            }
+        }
+        if (!wildcardSubscriptions.isEmpty()) {
+            String[] segments = split(destination);
+            for (Subscription subscription : wildcardSubscriptions) {
+                if (matches(subscription.pattern, 0, segments, 0)) {
+                    byLoop.computeIfAbsent(subscription.session.channel.eventLoop(), k -> new ArrayList<>()).add(subscription);
+                }
+            }
+        }
+        EventLoop[] loops = byLoop.keySet().toArray(EventLoop[]::new);
+        Subscription[][] groups = new Subscription[loops.length][];
+        for (int i = 0; i < loops.length; i++) {
+            groups[i] = byLoop.get(loops[i]).toArray(Subscription[]::new);
+        }
+        route = new Route(currentVersion, loops, groups);
+        if (routes.size() >= MAX_ROUTES) {
+            routes.clear();
+        }
+        routes.put(destination, route);
+        return route;
+    }
+
+    /**
+     * @param destination
+     * @param headers
+     * @param body
+     * @return the MESSAGE frame without command and subscription header
+     */
+    protected ByteBuf encode(String destination, Map<String, String> headers, ByteBuf body) {
+        int length = body.readableBytes();
+        ByteBuf buf = ByteBufAllocator.DEFAULT.buffer(256 + length);
+        writeHeader(buf, "destination", destination);
+        writeHeader(buf, "message-id", name + "-" + messageId.incrementAndGet());
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                String key = header.getKey();
+                if (!isReservedHeader(key) && header.getValue() != null) {
+                    writeHeader(buf, key, header.getValue());
+                }
+            }
+        }
+        writeHeader(buf, "content-length", String.valueOf(length));
+        buf.writeByte('\n');
+        buf.writeBytes(body, body.readerIndex(), length);
+        buf.writeByte(0);
+        return buf;
+    }
+
+    protected static boolean isReservedHeader(String key) {
+        return switch (key) {
+            case "destination", "message-id", "subscription", "content-length", "receipt", "transaction" -> true;
+            default -> false;
+        };
+    }
+
+    protected static void writeHeader(ByteBuf buf, String key, String value) {
+        buf.writeCharSequence(escape(key), StandardCharsets.UTF_8);
+        buf.writeByte(':');
+        buf.writeCharSequence(escape(value), StandardCharsets.UTF_8);
+        buf.writeByte('\n');
+    }
+
+    /**
+     * Called on the event loop of the subscriber
+     *
+     * @param subscription
+     * @param shared
+     */
+    protected void deliver(Subscription subscription, ByteBuf shared) {
+        Session session = subscription.session;
+        Channel channel = session.channel;
+        if (!channel.isActive()) {
+            return;
+        }
+        if (!session.pending.isEmpty() && channel.isWritable()) {
+            drain(session);
+        }
+        if (channel.isWritable() && session.pending.isEmpty()) {
+            channel.writeAndFlush(toFrame(subscription, shared), channel.voidPromise());
+            delivered.increment();
+            return;
+        }
+        if (session.slowConsumerPolicy != SlowConsumerPolicy.DROP && session.pending.size() < session.maxPendingMessages) {
+            session.pending.add(toFrame(subscription, shared));
+            return;
+        }
+        dropped.increment();
+        if (session.slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT) {
+            disconnected.increment();
+            log.warn(() -> "STOMP slow consumer disconnected: " + channel.remoteAddress() + ", pending " + session.pending.size());
+            releasePending(session);
+            channel.close();
+        }
+    }
+
+    protected static WebSocketFrame toFrame(Subscription subscription, ByteBuf shared) {
+        return new TextWebSocketFrame(Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(subscription.prefix), shared.retainedDuplicate()));
+    }
+
+    /**
+     * Write the buffered messages of the channel, called on its event loop when it becomes writable
+     *
+     * @param channel
+     */
+    public void onWritable(Channel channel) {
+        Session session = channel.attr(SESSION_KEY).get();
+        if (session != null) {
+            drain(session);
+        }
+    }
+
+    protected void drain(Session session) {
+        Channel channel = session.channel;
+        boolean written = false;
+        WebSocketFrame frame;
+        while (channel.isWritable() && (frame = session.pending.poll()) != null) {
+            channel.write(frame, channel.voidPromise());
+            delivered.increment();
+            written = true;
+        }
+        if (written) {
+            channel.flush();
+        }
+    }
+
+    protected static boolean isWildcard(String destination) {
+        for (String segment : split(destination)) {
+            if ("*".equals(segment) || "**".equals(segment) || "#".equals(segment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected static String[] split(String destination) {
+        return destination.split("[/.]", -1);
+    }
+
+    protected static boolean matches(String[] pattern, int p, String[] segments, int s) {
+        while (p < pattern.length) {
+            String token = pattern[p];
+            if ("**".equals(token) || "#".equals(token)) {
+                if (p == pattern.length - 1) {
+                    return true;
+                }
+                for (int i = s; i <= segments.length; i++) {
+                    if (matches(pattern, p + 1, segments, i)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (s >= segments.length || !("*".equals(token) || token.equals(segments[s]))) {
+                return false;
+            }
+            p++;
+            s++;
+        }
+        return s == segments.length;
+    }
+
+    /**
+     * STOMP 1.2 header value escaping
+     *
+     * @param value
+     * @return
+     */
+    protected static String escape(String value) {
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = switch (c) {
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case ':' -> "\\c";
+                default -> null;
+            };
+            if (replacement != null && sb == null) {
+                sb = new StringBuilder(value.length() + 8).append(value, 0, i);
+            }
+            if (sb != null) {
+                if (replacement == null) {
+                    sb.append(c);
+                } else {
+                    sb.append(replacement);
+                }
+            }
+        }
+        return sb == null ? value : sb.toString();
+    }
+
+    public static void appendMetrics(StringBuilder sb, boolean openMetrics) {
+        if (REGISTRY.isEmpty()) {
+            return;
+        }
+        Map<String, StompBroker> all = new TreeMap<>(REGISTRY);
+        Map<String, Number> sessions = new TreeMap<>();
+        Map<String, Number> subscriptions = new TreeMap<>();
+        Map<String, Number> published = new TreeMap<>();
+        Map<String, Number> delivered = new TreeMap<>();
+        Map<String, Number> dropped = new TreeMap<>();
+        Map<String, Number> disconnected = new TreeMap<>();
+        for (StompBroker broker : all.values()) {
+            String label = BootMetrics.label("name", broker.name);
+            sessions.put(label, broker.sessions.get());
+            subscriptions.put(label, broker.subscriptions.get());
+            published.put(label, broker.published.sum());
+            delivered.put(label, broker.delivered.sum());
+            dropped.put(label, broker.dropped.sum());
+            disconnected.put(label, broker.disconnected.sum());
+        }
+        BootMetrics.appendLabeled(sb, openMetrics, "stomp_sessions", "gauge", "STOMP sessions currently open", sessions);
+        BootMetrics.appendLabeled(sb, openMetrics, "stomp_subscriptions", "gauge", "STOMP subscriptions currently active", subscriptions);
+        BootMetrics.appendLabeled(sb, openMetrics, "stomp_published", "counter", "STOMP messages published", published);
+        BootMetrics.appendLabeled(sb, openMetrics, "stomp_delivered", "counter", "STOMP messages written to subscribers", delivered);
+        BootMetrics.appendLabeled(sb, openMetrics, "stomp_dropped", "counter", "STOMP messages dropped due to slow consumers", dropped);
+        BootMetrics.appendLabeled(sb, openMetrics, "stomp_slow_consumers_disconnected", "counter", "STOMP slow consumers disconnected", disconnected);
+    }
+}
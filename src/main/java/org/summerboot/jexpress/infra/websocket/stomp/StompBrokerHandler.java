@@ -0,0 +1,201 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.infra.websocket.stomp;
+
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.stomp.DefaultStompFrame;
+import io.netty.handler.codec.stomp.StompCommand;
+import io.netty.handler.codec.stomp.StompFrame;
+import io.netty.handler.codec.stomp.StompHeaders;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.summerboot.jexpress.api.auth.Caller;
+import org.summerboot.jexpress.infra.websocket.handler.WebSocketAuthHandlerOtt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * STOMP business handler backed by a {@link StompBroker}: CONNECT/STOMP, SUBSCRIBE, UNSUBSCRIBE, SEND and DISCONNECT
+ * with receipts. ACK/NACK and transactions are accepted and ignored, the broker does not keep messages.
+ * <p>
+ * Bind it (or a subclass overriding {@link #onSubscribe} / {@link #onSend} for authorization and application
+ * destinations) as the named ChannelHandler of a WebSocket uri, {@link WebSocketAuthHandlerOtt} builds the STOMP
+ * pipeline in front of it:
+ * <pre>{@code
+ * bind(ChannelHandler.class).annotatedWith(Names.named("/ws/chat")).toInstance(new StompBrokerHandler());
+ * }</pre>
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+@ChannelHandler.Sharable
+public class StompBrokerHandler extends SimpleChannelInboundHandler<StompFrame> {
+
+    protected static final Logger log = LogManager.getLogger(StompBrokerHandler.class.getName());
+
+    protected final StompBroker broker;
+
+    public StompBrokerHandler() {
+        this(StompBroker.DEFAULT);
+    }
+
+    public StompBrokerHandler(StompBroker broker) {
+        this.broker = broker;
+    }
+
+    public StompBroker getBroker() {
+        return broker;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, StompFrame frame) throws Exception {
+        if (frame.decoderResult().isFailure()) {
+            sendError(ctx, "malformed frame", String.valueOf(frame.decoderResult().cause()));
+            return;
+        }
+        StompHeaders headers = frame.headers();
+        Caller caller = ctx.channel().attr(WebSocketAuthHandlerOtt.USER_ID_KEY).get();
+        switch (frame.command()) {
+            case CONNECT, STOMP -> {
+                DefaultStompFrame connected = new DefaultStompFrame(StompCommand.CONNECTED);
+                connected.headers().set(StompHeaders.VERSION, negotiateVersion(headers.getAsString(StompHeaders.ACCEPT_VERSION)));
+                connected.headers().set(StompHeaders.HEART_BEAT, "0,0");
+                connected.headers().set(StompHeaders.SERVER, "jExpress");
+                broker.getSession(ctx.channel());
+                ctx.writeAndFlush(connected);
+            }
+            case SUBSCRIBE -> {
+                String id = headers.getAsString(StompHeaders.ID);
+                String destination = headers.getAsString(StompHeaders.DESTINATION);
+                if (id == null || destination == null) {
+                    sendError(ctx, "missing header", "SUBSCRIBE requires id and destination");
+                    return;
+                }
+                if (!onSubscribe(ctx, caller, destination)) {
+                    sendError(ctx, "access denied", "not allowed to subscribe to " + destination);
+                    return;
+                }
+                broker.subscribe(ctx.channel(), id, destination);
+            }
+            case UNSUBSCRIBE -> {
+                String id = headers.getAsString(StompHeaders.ID);
+                if (id == null) {
+                    sendError(ctx, "missing header", "UNSUBSCRIBE requires id");
+                    return;
+                }
+                broker.unsubscribe(ctx.channel(), id);
+            }
+            case SEND -> {
+                String destination = headers.getAsString(StompHeaders.DESTINATION);
+                if (destination == null) {
+                    sendError(ctx, "missing header", "SEND requires destination");
+                    return;
+                }
+                if (onSend(ctx, caller, destination, frame)) {
+                    Map<String, String> messageHeaders = new HashMap<>();
+                    headers.forEach(header -> messageHeaders.putIfAbsent(header.getKey().toString(), header.getValue().toString()));
+                    broker.publish(destination, messageHeaders, frame.content());
+                }
+            }
+            case DISCONNECT -> {
+                String receipt = headers.getAsString(StompHeaders.RECEIPT);
+                if (receipt == null) {
+                    ctx.close();
+                } else {
+                    ctx.writeAndFlush(receipt(receipt)).addListener(ChannelFutureListener.CLOSE);
+                }
+                return;
+            }
+            case ACK, NACK, BEGIN, COMMIT, ABORT -> {
+                // no acknowledgement nor transaction, messages are not kept by the broker
+            }
+            default -> {
+                sendError(ctx, "unsupported command", String.valueOf(frame.command()));
+                return;
+            }
+        }
+        String receipt = headers.getAsString(StompHeaders.RECEIPT);
+        if (receipt != null) {
+            ctx.writeAndFlush(receipt(receipt));
+        }
+    }
+
+    /**
+     * @param ctx
+     * @param caller      the caller verified by the one time token, null if not available
+     * @param destination
+     * @return true to subscribe, false to reply ERROR and close the connection
+     */
+    protected boolean onSubscribe(ChannelHandlerContext ctx, Caller caller, String destination) {
+        return true;
+    }
+
+    /**
+     * @param ctx
+     * @param caller      the caller verified by the one time token, null if not available
+     * @param destination
+     * @param frame
+     * @return true to publish the frame to the subscribers of the destination, false if handled by the application
+     */
+    protected boolean onSend(ChannelHandlerContext ctx, Caller caller, String destination, StompFrame frame) {
+        return true;
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            broker.onWritable(ctx.channel());
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        log.debug(() -> "STOMP error: " + ctx.channel().remoteAddress(), cause);
+        ctx.close();
+    }
+
+    protected static String negotiateVersion(String acceptVersion) {
+        if (acceptVersion == null) {
+            return "1.0";
+        }
+        if (acceptVersion.contains("1.2")) {
+            return "1.2";
+        }
+        return acceptVersion.contains("1.1") ? "1.1" : "1.0";
+    }
+
+    protected static StompFrame receipt(String receiptId) {
+        DefaultStompFrame receipt = new DefaultStompFrame(StompCommand.RECEIPT);
+        receipt.headers().set(StompHeaders.RECEIPT_ID, receiptId);
+        return receipt;
+    }
+
+    protected void sendError(ChannelHandlerContext ctx, String message, String detail) {
+        DefaultStompFrame error = new DefaultStompFrame(StompCommand.ERROR);
+        error.headers().set(StompHeaders.MESSAGE, message);
+        error.headers().set(StompHeaders.CONTENT_TYPE, "text/plain");
+        if (detail != null) {
+            error.content().writeCharSequence(detail, StandardCharsets.UTF_8);
+        }
+        ctx.writeAndFlush(error).addListener(ChannelFutureListener.CLOSE);
+    }
+}
@@ -21,6 +21,9 @@ import io.netty.handler.codec.http.HttpMethod;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
 import org.summerboot.jexpress.annotation.Service;
 import org.summerboot.jexpress.annotation.health.HealthCheck;
 import org.summerboot.jexpress.api.common.BootErrorCode;
@@ -31,54 +34,161 @@ import org.summerboot.jexpress.boot.BackOffice;
 import org.summerboot.jexpress.boot.BootConstants;
 import org.summerboot.jexpress.boot.SummerApplication;
 import org.summerboot.jexpress.boot.lifecycle.app.AppLifecycleListener;
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
 import org.summerboot.jexpress.infra.netty.config.NioConfig;
-import org.summerboot.jexpress.util.concurrent.Timeout;
+import org.summerboot.jexpress.util.concurrent.NamedDefaultThreadFactory;
 import org.summerboot.jexpress.util.lang.BeanUtil;
 import org.summerboot.jexpress.util.runtime.ApplicationUtil;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Each health checker runs on its own schedule on a bounded pool, so that a slow checker neither delays the others nor
+ * the detection of a failure:
+ * <ul>
+ * <li>while healthy: every {@link HealthChecker#inspectionIntervalSeconds()}, or on demand via {@link #inspect()}</li>
+ * <li>while unhealthy: retried with exponential backoff from nio.server.health.InspectionIntervalSeconds up to
+ * nio.server.health.InspectionIntervalSeconds.max</li>
+ * <li>each inspection is reported as failed {@link HealthChecker#inspectionTimeoutMs()} after it is submitted, whether
+ * still queued or running, a running ping() is interrupted and the health checker is not inspected again until ping()
+ * actually returns, so that a hung checker occupies at most one pool thread</li>
+ * </ul>
+ * The aggregated result is published as one immutable snapshot, the request path (@RequiresHealthCheck) reads it
+ * without locking.
+ *
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
  */
 public class HealthMonitor {
 
     protected static final Logger log = LogManager.getLogger(HealthMonitor.class.getName());
 
+    /**
+     * on demand inspections of the same health checker (e.g. triggered by IO errors of many requests) are merged
+     * within this period
+     */
+    protected static final long MIN_ON_DEMAND_INTERVAL_MS = 1000;
+
     /*
      * api variables
      */
     protected static volatile AppLifecycleListener appLifecycleListener;
-    protected static final ExecutorService tpe = Executors.newSingleThreadExecutor();
-    protected static final LinkedBlockingQueue<HealthChecker> HEALTH_CHECKER_QUEUE = new LinkedBlockingQueue<>();
+    /**
+     * schedules the inspections and their timeouts, the inspections run on {@link #inspectionPool}
+     */
+    protected static final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, NamedDefaultThreadFactory.build("HealthMonitor", false));
+    protected static ThreadPoolExecutor inspectionPool;
+    /**
+     * each running inspection holds one permit, CRaC holds all permits between checkpoint and restore so that no
+     * health checker opens a connection while the checkpoint is taken
+     */
+    protected static final Semaphore INSPECTION_PERMIT = new Semaphore(Integer.MAX_VALUE, true);
     protected static final Set<HealthChecker> REGISTERED_HEALTH_CHECKERS = new HashSet<>();
-    private static boolean keepRunning = false;
+    protected static final Map<HealthChecker, CheckerState> CHECKER_STATES = new ConcurrentHashMap<>();
+    private static volatile boolean keepRunning = false;
     private static volatile boolean started = false;
 
     /*
      * status variables
      */
-    protected static volatile boolean isHealthCheckSuccess = true;
+
+    /**
+     * @param passed             true if no health check failed
+     * @param failedHealthChecks health check name - errors, immutable
+     * @param reason             null if passed
+     */
+    protected record HealthStatus(boolean passed, Map<String, List<Err>> failedHealthChecks, ServiceError reason) {
+    }
+
+    protected static final HealthStatus HEALTH_CHECK_PASSED = new HealthStatus(true, Map.of(), null);
+    /**
+     * replaced as a whole by {@link #publishHealthStatus()}, readers never see a partially updated status
+     */
+    protected static volatile HealthStatus healthStatus = HEALTH_CHECK_PASSED;
     protected static volatile boolean isServicePaused = false;
-    protected static volatile ServiceError statusReasonHealthCheck;
     protected static volatile ServiceError statusReasonPaused;
     protected static volatile String statusReasonLastKnown;
     protected static final Map<String, Err> pauseReleaseCodes = new ConcurrentHashMap<>();
-    protected static final Map<String, List<Err>> failedHealthChecks = new ConcurrentHashMap<>();
+    /**
+     * failures of the scheduled inspections, kept until the same health checker passes
+     */
+    protected static final Map<String, List<Err>> inspectedHealthChecks = new ConcurrentHashMap<>();
+    /**
+     * failures reported via {@link #reportHealthCheckResult(String, List)}, kept until reported as passed
+     */
+    protected static final Map<String, List<Err>> reportedHealthChecks = new ConcurrentHashMap<>();
+
+    /**
+     * Schedule and statistics of one health checker
+     */
+    protected static class CheckerState {
+
+        protected final HealthChecker healthChecker;
+        protected final String name;
+        /**
+         * registered health checkers follow their own interval, ad hoc ones (via {@link #inspect(HealthChecker...)})
+         * are inspected until passed
+         */
+        protected final boolean registered;
+        /**
+         * from submit until the worker thread leaves ping(), longer than the inspection when it timed out
+         */
+        protected final AtomicBoolean running = new AtomicBoolean();
+        /**
+         * an inspection was requested while a timed out ping() was still running
+         */
+        protected final AtomicBoolean rerun = new AtomicBoolean();
+        /**
+         * id of the running inspection, completed by whichever comes first: the result or the timeout
+         */
+        protected final AtomicLong currentRun = new AtomicLong();
+        protected long runSequence;// guarded by running
+        protected volatile ScheduledFuture<?> timeoutTask;
+        protected volatile CompletableFuture<Boolean> result = CompletableFuture.completedFuture(true);
+        protected ScheduledFuture<?> next;// guarded by this
+        protected long nextRunAtMs;// guarded by this
+        protected volatile Boolean passed;
+        protected volatile int consecutiveFailures;
+        protected volatile long lastLatencyMs;
+        protected volatile long lastEndMs;
+        protected final LongAdder runs = new LongAdder();
+        protected final LongAdder failures = new LongAdder();
+        protected final LongAdder timeouts = new LongAdder();
+        protected final LongAdder flaps = new LongAdder();
+
+        protected CheckerState(HealthChecker healthChecker, boolean registered) {
+            this.healthChecker = healthChecker;
+            this.name = getName(healthChecker);
+            this.registered = registered;
+        }
+
+        protected long timeoutMs() {
+            long timeoutMs = healthChecker.inspectionTimeoutMs();
+            return timeoutMs > 0 ? timeoutMs : BackOffice.agent.getProcessTimeoutMilliseconds();
+        }
+    }
 
     public static void setAppLifecycleListener(AppLifecycleListener listener) {
         appLifecycleListener = listener;
@@ -86,6 +196,14 @@ public class HealthMonitor {
 
     private static final String ANNOTATION = HealthChecker.class.getSimpleName();
 
+    public static String getName(HealthChecker healthChecker) {
+        HealthCheck healthCheckAnnotation = healthChecker.getClass().getAnnotation(HealthCheck.class);
+        if (healthCheckAnnotation != null && StringUtils.isNoneBlank(healthCheckAnnotation.name())) {
+            return healthCheckAnnotation.name();
+        }
+        return healthChecker.getClass().getSimpleName();
+    }
+
     public static void registerDefaultHealthInspectors(Map<String, Object> annotatedHealthCheckers, StringBuilder memo) {
         REGISTERED_HEALTH_CHECKERS.clear();
         if (annotatedHealthCheckers == null || annotatedHealthCheckers.isEmpty()) {
@@ -115,7 +233,9 @@ public class HealthMonitor {
      * use default inspectors
      */
     public static int inspect() {
-        REGISTERED_HEALTH_CHECKERS.forEach(HEALTH_CHECKER_QUEUE::offer);
+        for (HealthChecker healthChecker : REGISTERED_HEALTH_CHECKERS) {
+            inspectSoon(getState(healthChecker));
+        }
         return REGISTERED_HEALTH_CHECKERS.size();
     }
 
@@ -131,10 +251,13 @@ public class HealthMonitor {
             if (healthChecker == null) {
                 continue;
             }
-            HEALTH_CHECKER_QUEUE.add(healthChecker);
+            inspectSoon(getState(healthChecker));
         }
     }
 
+    protected static CheckerState getState(HealthChecker healthChecker) {
+        return CHECKER_STATES.computeIfAbsent(healthChecker, k -> new CheckerState(k, REGISTERED_HEALTH_CHECKERS.contains(k)));
+    }
 
     private static SummerApplication.AppContext appContext;
 
@@ -175,26 +298,27 @@ public class HealthMonitor {
             log.warn(memo);
         }
 
-        // 2. start health monitor sync to return result
+        // 2. inspect all in parallel, the next inspections are scheduled by the results
+        keepRunning = true;
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (HealthChecker healthChecker : REGISTERED_HEALTH_CHECKERS) {
+            results.add(submit(getState(healthChecker)));
+        }
         String ret = null;
         if (returnRsult) {
-            // start sync to get result
-            int size = inspect();
-            keepRunning = false;
-            if (size > 0) {
-                AsyncTask.run();
-                ret = buildMessage();
-            } else {
+            // wait to get result, each inspection completes within its timeout
+            if (results.isEmpty()) {
                 ret = "No health inspectors registered";
+            } else {
+                try {
+                    CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+                } catch (Throwable ex) {
+                    log.error("HealthMonitor start error", ex);
+                }
+                ret = buildMessage();
             }
         }
-
-        // 3. start async in background
-        keepRunning = true;
-        if (!isServiceAvailable()) {
-            inspect();
-        }
-        tpe.execute(AsyncTask);
+        started = true;
 
         // return sync result
         return ret;
@@ -202,108 +326,305 @@ public class HealthMonitor {
 
     public static void shutdown() {
         keepRunning = false;
-        tpe.shutdown();
+        scheduler.shutdownNow();
+        synchronized (HealthMonitor.class) {
+            if (inspectionPool != null) {
+                inspectionPool.shutdownNow();
+            }
+        }
     }
 
+    /**
+     * CRaC: wait for the running inspections and hold new ones until restore, then inspect all again since the
+     * dependencies may have changed after restore
+     */
+    private static volatile boolean checkpointPermitsHeld = false;
+
+    protected static final Resource CRAC_RESOURCE = new Resource() {
+        @Override
+        public void beforeCheckpoint(Context<? extends Resource> context) throws Exception {
+            long waitMs = 0;
+            for (CheckerState state : CHECKER_STATES.values()) {
+                waitMs = Math.max(waitMs, state.timeoutMs());
+            }
+            // a hung ping() never returns its permit
+            if (!INSPECTION_PERMIT.tryAcquire(Integer.MAX_VALUE, waitMs, TimeUnit.MILLISECONDS)) {
+                List<String> names = new ArrayList<>();
+                for (CheckerState state : CHECKER_STATES.values()) {
+                    if (state.running.get()) {
+                        names.add(state.name);
+                    }
+                }
+                throw new IllegalStateException("health checks still running after " + waitMs + " ms: " + names);
+            }
+            checkpointPermitsHeld = true;
+        }
+
+        @Override
+        public void afterRestore(Context<? extends Resource> context) throws Exception {
+            if (checkpointPermitsHeld) {
+                checkpointPermitsHeld = false;
+                INSPECTION_PERMIT.release(Integer.MAX_VALUE);
+            }
+            if (keepRunning) {
+                inspect();
+            }
+        }
+    };
+
     static {
+        scheduler.setRemoveOnCancelPolicy(true);
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                     HealthMonitor.shutdown();
                 }, "HealthMonitor.shutdownHook")
         );
+        Core.getGlobalContext().register(CRAC_RESOURCE);
+        BootMetrics.register("health_monitor", HealthMonitor::appendMetrics);
+    }
+
+    protected static synchronized ThreadPoolExecutor getInspectionPool() {
+        if (inspectionPool == null) {
+            int poolSize = Math.max(1, NioConfig.cfg.getHealthInspectionPoolSize());
+            inspectionPool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), NamedDefaultThreadFactory.build("HealthMonitor.inspection", false));
+            inspectionPool.allowCoreThreadTimeOut(true);
+        }
+        return inspectionPool;
     }
 
-    private static final Runnable AsyncTask = () -> {
-        int inspectionIntervalSeconds = NioConfig.cfg.getHealthInspectionIntervalSeconds();
-        long timeoutMs = BackOffice.agent.getProcessTimeoutMilliseconds();
-        String timeoutDesc = BackOffice.agent.getProcessTimeoutAlertMessage();
-        final Set<HealthChecker> triggeredHealthCheckers = new TreeSet<>();
-        AtomicLong retry = new AtomicLong(0);
-        do {
-            triggeredHealthCheckers.clear();
-            Boolean allHealthCheckPassed = null;
+    /**
+     * Inspect as soon as the last inspection of the same health checker is {@link #MIN_ON_DEMAND_INTERVAL_MS} ago
+     *
+     * @param state
+     */
+    protected static void inspectSoon(CheckerState state) {
+        if (!keepRunning) {
+            return;
+        }
+        if (state.running.get()) {
+            if (state.result.isDone()) {
+                state.rerun.set(true);
+            }
+            return;
+        }
+        long delayMs = Math.max(0, state.lastEndMs + MIN_ON_DEMAND_INTERVAL_MS - System.currentTimeMillis());
+        schedule(state, delayMs);
+    }
+
+    /**
+     * Schedule the next inspection, an earlier one already scheduled is kept
+     *
+     * @param state
+     * @param delayMs
+     */
+    protected static void schedule(CheckerState state, long delayMs) {
+        synchronized (state) {
+            long runAtMs = System.currentTimeMillis() + delayMs;
+            if (state.next != null && !state.next.isDone()) {
+                if (state.nextRunAtMs <= runAtMs) {
+                    return;
+                }
+                state.next.cancel(false);
+            }
+            state.nextRunAtMs = runAtMs;
             try {
-                // take all health checkers from the queue, remove duplicated
-                do {
-                    HealthChecker triggeredHealthChecker = HEALTH_CHECKER_QUEUE.take();// block/wait here for health checkers
-                    triggeredHealthCheckers.add(triggeredHealthChecker);
-                } while (!HEALTH_CHECKER_QUEUE.isEmpty());
-                // for each checker do health check
-                for (HealthChecker triggeredHealthChecker : triggeredHealthCheckers) {
-                    HealthCheck healthCheckAnnotation = triggeredHealthChecker.getClass().getAnnotation(HealthCheck.class);
-                    final String triggeredHealthCheckerName;
-                    if (healthCheckAnnotation != null && StringUtils.isNoneBlank(healthCheckAnnotation.name())) {
-                        triggeredHealthCheckerName = healthCheckAnnotation.name();
-                    } else {
-                        triggeredHealthCheckerName = triggeredHealthChecker.getClass().getSimpleName();
-                    }
+                state.next = scheduler.schedule(() -> submit(state), delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                // shutting down
+            }
+        }
+    }
 
-                    try (var a = Timeout.watch(triggeredHealthCheckerName + ".ping()", timeoutMs).withDesc(timeoutDesc)) {
-                        List<Err> errs = triggeredHealthChecker.ping();
-                        boolean currentInspectionPassed = errs == null || errs.isEmpty();
-                        if (!currentInspectionPassed) {
-                            HEALTH_CHECKER_QUEUE.offer(triggeredHealthChecker); // put failed health check back into the queue
-                        }
-                        HealthChecker.InspectionType inspectionType = triggeredHealthChecker.inspectionType();
-                        switch (inspectionType) {
-                            case PauseCheck -> {
-                                String lockCode = triggeredHealthChecker.pauseLockCode();
-                                if (currentInspectionPassed) {
-                                    //failedHealthChecks.remove(triggeredHealthCheckerName);
-                                    pauseService(false, lockCode, triggeredHealthCheckerName, "health check success");
-                                } else {
-                                    //failedHealthChecks.put(triggeredHealthCheckerName, errs);
-                                    pauseService(true, lockCode, triggeredHealthCheckerName, "health check failed with errs: " + BeanUtil.toJson(errs));
-                                }
-                            }
-                            case HealthCheck -> {
-                                if (currentInspectionPassed) {
-                                    if (allHealthCheckPassed == null) {
-                                        allHealthCheckPassed = true;
-                                    } else {
-                                        allHealthCheckPassed &= true;
-                                    }
-                                    failedHealthChecks.remove(triggeredHealthCheckerName);
-                                } else {
-                                    allHealthCheckPassed = false;
-                                    failedHealthChecks.put(triggeredHealthCheckerName, errs);
-                                }
-
-
-                            }
-                        }
-                    } catch (Throwable ex) {
-                        HEALTH_CHECKER_QUEUE.offer(triggeredHealthChecker);
-                        log.error("Health check error: " + triggeredHealthCheckerName, ex);
-                    }
+    /**
+     * @param state
+     * @return the result of the new inspection, or of the running one
+     */
+    protected static CompletableFuture<Boolean> submit(CheckerState state) {
+        if (!state.running.compareAndSet(false, true)) {
+            if (state.result.isDone()) {
+                // timed out, inspect again once the hung ping() returns
+                state.rerun.set(true);
+            }
+            return state.result;
+        }
+        long run = ++state.runSequence;
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        state.result = result;
+        state.currentRun.set(run);
+        // claimed by whichever comes first: the worker thread or the timeout of a queued inspection
+        AtomicBoolean claimed = new AtomicBoolean();
+        FutureTask<Void> task = new FutureTask<>(() -> inspect(state, run, claimed), null);
+        long submitNanos = System.nanoTime();
+        long timeoutMs = state.timeoutMs();
+        try {
+            // armed on submit, so that an inspection waiting in the queue times out as well
+            state.timeoutTask = scheduler.schedule(() -> onTimeout(state, run, claimed, task, submitNanos, timeoutMs), timeoutMs, TimeUnit.MILLISECONDS);
+            getInspectionPool().execute(task);
+        } catch (RejectedExecutionException ex) {
+            ScheduledFuture<?> timeoutTask = state.timeoutTask;
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+            }
+            state.currentRun.set(0);
+            state.running.set(false);
+            result.complete(state.passed == null || state.passed);
+        }
+        return result;
+    }
+
+    protected static void inspect(CheckerState state, long run, AtomicBoolean claimed) {
+        if (!claimed.compareAndSet(false, true)) {
+            // timed out while queued
+            return;
+        }
+        try {
+            try {
+                INSPECTION_PERMIT.acquire();// not during CRaC checkpoint
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if (state.currentRun.compareAndSet(run, 0)) {
+                    state.result.complete(state.passed == null || state.passed);
                 }
-                // all done, summarize the results
-                if (allHealthCheckPassed != null) {
-                    setHealthCheckPassed(allHealthCheckPassed);
+                return;
+            }
+            long startNanos = System.nanoTime();
+            List<Err> errs;
+            try {
+                errs = state.healthChecker.ping();
+            } catch (Throwable ex) {
+                log.error("Health check error: " + state.name, ex);
+                errs = List.of(new Err(BootErrorCode.SERVICE_HEALTH_CHECK_FAILED, state.name, "Health check error: " + ex, ex));
+            } finally {
+                INSPECTION_PERMIT.release();
+            }
+            complete(state, run, startNanos, errs, false);
+        } finally {
+            exit(state);
+        }
+    }
+
+    protected static void onTimeout(CheckerState state, long run, AtomicBoolean claimed, FutureTask<Void> task, long submitNanos, long timeoutMs) {
+        Err err = new Err(BootErrorCode.SERVICE_HEALTH_CHECK_FAILED, state.name, "Health check timeout: " + state.name + ".ping() did not complete in " + timeoutMs + " ms", null);
+        if (!complete(state, run, submitNanos, List.of(err), true)) {
+            return;
+        }
+        if (claimed.compareAndSet(false, true)) {
+            // still queued, will never run
+            task.cancel(false);
+            exit(state);
+        } else {
+            // interrupt ping(), the health checker stays running until ping() returns
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * The worker thread left ping() or the queued inspection was dropped
+     *
+     * @param state
+     */
+    protected static void exit(CheckerState state) {
+        state.running.set(false);
+        if (state.rerun.getAndSet(false)) {
+            inspectSoon(state);
+        }
+    }
+
+    /**
+     * Record the result of an inspection and schedule the next one
+     *
+     * @param state
+     * @param run
+     * @param startNanos
+     * @param errs
+     * @param timedOut
+     * @return false if the inspection has already been completed by its result or its timeout
+     */
+    protected static boolean complete(CheckerState state, long run, long startNanos, List<Err> errs, boolean timedOut) {
+        if (!state.currentRun.compareAndSet(run, 0)) {
+            return false;
+        }
+        if (!timedOut) {
+            ScheduledFuture<?> timeoutTask = state.timeoutTask;
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+            }
+        }
+        CompletableFuture<Boolean> result = state.result;// replaced by the next inspection once running is reset
+        boolean currentInspectionPassed = errs == null || errs.isEmpty();
+        int retry = state.consecutiveFailures;
+        state.lastLatencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        state.lastEndMs = System.currentTimeMillis();
+        state.runs.increment();
+        if (!currentInspectionPassed) {
+            state.failures.increment();
+        }
+        if (timedOut) {
+            state.timeouts.increment();
+        }
+        Boolean lastPassed = state.passed;
+        if (lastPassed != null && lastPassed != currentInspectionPassed) {
+            state.flaps.increment();
+        }
+        state.passed = currentInspectionPassed;
+        state.consecutiveFailures = currentInspectionPassed ? 0 : retry + 1;
 
-                    long retryValue = retry.get();// not being set yet
-                    if (allHealthCheckPassed) {
-                        retry.set(0);
+        long nextDelayMs = getNextDelayMs(state, currentInspectionPassed);
+        if (keepRunning && nextDelayMs >= 0) {
+            schedule(state, nextDelayMs);
+        }
+        HealthChecker.InspectionType inspectionType = state.healthChecker.inspectionType();
+        try {
+            switch (inspectionType) {
+                case PauseCheck -> {
+                    String lockCode = state.healthChecker.pauseLockCode();
+                    if (currentInspectionPassed) {
+                        pauseService(false, lockCode, state.name, "health check success");
                     } else {
-                        retry.incrementAndGet();
+                        pauseService(true, lockCode, state.name, "health check failed with errs: " + BeanUtil.toJson(errs));
+                    }
+                }
+                case HealthCheck -> {
+                    if (!currentInspectionPassed) {
+                        inspectedHealthChecks.put(state.name, errs);
+                        publishHealthStatus();
+                    } else if (inspectedHealthChecks.remove(state.name) != null) {
+                        publishHealthStatus();
                     }
                     if (appLifecycleListener != null && started) {
                         try {
-                            appLifecycleListener.onHealthCheckFinished(appContext, isHealthCheckSuccess, isServicePaused, retryValue, inspectionIntervalSeconds);
+                            int nextInspectionIntervalSeconds = nextDelayMs < 0 ? 0 : (int) TimeUnit.MILLISECONDS.toSeconds(nextDelayMs);
+                            appLifecycleListener.onHealthCheckFinished(appContext, isHealthCheckSuccess(), isServicePaused, retry, nextInspectionIntervalSeconds);
                         } catch (Throwable ex) {
                             log.error("appLifecycleListener.onHealthInspectionFailed() error", ex);
                         }
                     }
                 }
-
-                started = true;
-                // wait
-                TimeUnit.SECONDS.sleep(inspectionIntervalSeconds);
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
-                log.error("HealthMonitor interrupted", ex);
             }
-        } while (keepRunning);
-    };
+        } catch (Throwable ex) {
+            log.error("Health check error: " + state.name, ex);
+        } finally {
+            result.complete(currentInspectionPassed);
+        }
+        return true;
+    }
+
+    /**
+     * @param state
+     * @param passed
+     * @return milliseconds to the next inspection, -1 for on demand only
+     */
+    protected static long getNextDelayMs(CheckerState state, boolean passed) {
+        if (passed) {
+            int intervalSeconds = state.healthChecker.inspectionIntervalSeconds();
+            return state.registered && intervalSeconds > 0 ? TimeUnit.SECONDS.toMillis(intervalSeconds) : -1;
+        }
+        // exponential backoff while unhealthy
+        long baseMs = TimeUnit.SECONDS.toMillis(Math.max(1, NioConfig.cfg.getHealthInspectionIntervalSeconds()));
+        long maxMs = Math.max(baseMs, TimeUnit.SECONDS.toMillis(NioConfig.cfg.getHealthInspectionMaxIntervalSeconds()));
+        int shift = Math.min(state.consecutiveFailures - 1, 20);
+        return Math.min(maxMs, baseMs << shift);
+    }
 
     public static void pauseService(boolean pauseService, String lockCode, String triggeredHealthCheckerName, String reason) {
         boolean serviceStatusChanged = isServicePaused ^ pauseService;
@@ -339,25 +660,48 @@ public class HealthMonitor {
         updateServiceStatus(serviceStatusChanged, detailedReason);
     }
 
-    protected static void setHealthCheckPassed(boolean isPassed) {
-        boolean serviceStatusChanged = isHealthCheckSuccess ^ isPassed;
-        isHealthCheckSuccess = isPassed;
+    /**
+     * Report a health check result from outside the scheduled inspection, e.g. a client side circuit breaker. The
+     * failure stays until reported as passed, endpoints with @RequiresHealthCheck(healthCheckName) fail fast meanwhile
+     *
+     * @param healthCheckName
+     * @param errs            null or empty means passed
+     */
+    public static void reportHealthCheckResult(String healthCheckName, List<Err> errs) {
+        if (errs == null || errs.isEmpty()) {
+            if (reportedHealthChecks.remove(healthCheckName) == null) {
+                return;
+            }
+        } else {
+            reportedHealthChecks.put(healthCheckName, errs);
+        }
+        publishHealthStatus();
+    }
+
+    /**
+     * Merge the inspected and reported failures into a new {@link HealthStatus}
+     */
+    protected static synchronized void publishHealthStatus() {
+        Map<String, List<Err>> failedHealthChecks = new TreeMap<>(inspectedHealthChecks);
+        failedHealthChecks.putAll(reportedHealthChecks);
+        boolean isPassed = failedHealthChecks.isEmpty();
+        boolean serviceStatusChanged = healthStatus.passed() ^ isPassed;
         if (isPassed) {
-            failedHealthChecks.clear();
+            healthStatus = HEALTH_CHECK_PASSED;
             updateServiceStatus(serviceStatusChanged, "Health check passed");
             return;
         }
 
-        //failedHealthChecks.forEach((k, v) -> log.warn("Health check failed: " + k + ", errors: " + v));
-        List<String> affectedServices = getAffectedServices();
-        statusReasonHealthCheck = new ServiceError(BootConstants.APP_ID + "-HealthMonitor");
-        statusReasonHealthCheck.adAdditionalField("affectedServices", affectedServices);
+        failedHealthChecks = Collections.unmodifiableMap(failedHealthChecks);
+        ServiceError statusReasonHealthCheck = new ServiceError(BootConstants.APP_ID + "-HealthMonitor");
+        statusReasonHealthCheck.adAdditionalField("affectedServices", getAffectedServices(failedHealthChecks.keySet()));
         failedHealthChecks.forEach((healthCheckerName, errors) -> {
             errors.forEach((error) -> {
                 error.setErrorTag(healthCheckerName);
             });
             statusReasonHealthCheck.addErrors(errors);
         });
+        healthStatus = new HealthStatus(false, failedHealthChecks, statusReasonHealthCheck);
         updateServiceStatus(serviceStatusChanged, statusReasonHealthCheck.toJson());
     }
 
@@ -369,7 +713,7 @@ public class HealthMonitor {
         log.warn(buildMessage());// always warn for status changed
         if (appLifecycleListener != null) {
             try {
-                appLifecycleListener.onApplicationStatusUpdated(appContext, isHealthCheckSuccess, isServicePaused, serviceStatusChanged, reason);
+                appLifecycleListener.onApplicationStatusUpdated(appContext, isHealthCheckSuccess(), isServicePaused, serviceStatusChanged, reason);
             } catch (Throwable ex) {
                 log.error("appLifecycleListener.onApplicationStatusUpdated() error", ex);
             }
@@ -377,12 +721,13 @@ public class HealthMonitor {
     }
 
     public static String buildMessage() {
+        HealthStatus status = healthStatus;
         StringBuilder sb = new StringBuilder();
 
         sb.append(BootConstants.BR)
-                .append("Health Check: ").append(isHealthCheckSuccess ? "passed" : "with error: ").append(BootConstants.BR);
-        if (!isHealthCheckSuccess) {
-            sb.append("\t cause: ").append(statusReasonHealthCheck == null ? "" : statusReasonHealthCheck.toJson()).append(BootConstants.BR);
+                .append("Health Check: ").append(status.passed() ? "passed" : "with error: ").append(BootConstants.BR);
+        if (!status.passed()) {
+            sb.append("\t cause: ").append(status.reason() == null ? "" : status.reason().toJson()).append(BootConstants.BR);
         }
 
         sb.append("Service Status: ").append(isServicePaused ? "paused" : "running").append(BootConstants.BR);
@@ -402,15 +747,15 @@ public class HealthMonitor {
     }
 
     public static boolean isHealthCheckSuccess() {
-        return isHealthCheckSuccess;
+        return healthStatus.passed();
     }
 
     public static ServiceError getStatusReasonHealthCheck() {
-        return statusReasonHealthCheck;
+        return healthStatus.reason();
     }
 
     public static boolean isServiceAvailable() {
-        return isHealthCheckSuccess && !isServicePaused;
+        return healthStatus.passed() && !isServicePaused;
     }
 
     public static String getServiceStatusReason() {
@@ -457,14 +802,16 @@ public class HealthMonitor {
         if (failedHealthChecks != null) {
             failedHealthChecks.clear();
         }
+        // one volatile read, consistent for the whole check
+        Map<String, List<Err>> currentFailedHealthChecks = healthStatus.failedHealthChecks();
         if (requiredHealthChecks == null || requiredHealthChecks.isEmpty()) {
             switch (emptyHealthCheckPolicy) {
                 case REQUIRE_ALL -> {
                     // if criticalHealthChecks is empty (default), that means requrie ALL HealthChecks, so return true if healthCheckFailedList is NOT empty
                     if (failedHealthChecks == null) {
-                        return !HealthMonitor.failedHealthChecks.isEmpty();
+                        return !currentFailedHealthChecks.isEmpty();
                     } else {
-                        failedHealthChecks.addAll(failedHealthChecks);
+                        failedHealthChecks.addAll(currentFailedHealthChecks.keySet());
                     }
                 }
                 case REQUIRE_NONE -> {
@@ -475,7 +822,7 @@ public class HealthMonitor {
         } else {
             // if criticalHealthChecks is NOT empty (user specified), that means critical on only given HealthChecks, so return true if healthCheckFailedList contains any of the criticalHealthChecks
             for (String criticalHealthCheck : requiredHealthChecks) {
-                if (failedHealthChecks.contains(criticalHealthCheck)) {
+                if (currentFailedHealthChecks.containsKey(criticalHealthCheck)) {
                     if (failedHealthChecks == null) {
                         return true;
                     } else {
@@ -520,6 +867,10 @@ public class HealthMonitor {
     private static final List<String> EMPTY_LIST = Collections.emptyList();
 
     public static List<String> getAffectedServices() {
+        return getAffectedServices(healthStatus.failedHealthChecks().keySet());
+    }
+
+    protected static List<String> getAffectedServices(Collection<String> failedHealthChecks) {
         if (failedHealthChecks.isEmpty()) {
             return EMPTY_LIST;
         }
@@ -528,10 +879,55 @@ public class HealthMonitor {
         if (all != null) {
             currentAffectedServices.addAll(all);
         }
-        for (String failedHealthCheck : failedHealthChecks.keySet()) {
-            currentAffectedServices.addAll(affectedServices.get(failedHealthCheck));
+        for (String failedHealthCheck : failedHealthChecks) {
+            currentAffectedServices.addAll(affectedServices.getOrDefault(failedHealthCheck, Collections.emptySet()));
         }
         // remove duplicated and sort by alphabetical order for better readability
         return currentAffectedServices.stream().filter(Objects::nonNull).distinct().sorted().toList();
     }
+
+    /**
+     * Append per health checker metrics, labeled by health check name
+     *
+     * @param sb
+     * @param openMetrics
+     */
+    public static void appendMetrics(StringBuilder sb, boolean openMetrics) {
+        if (CHECKER_STATES.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> status = new LinkedHashMap<>();
+        Map<String, Long> latency = new LinkedHashMap<>();
+        Map<String, Integer> consecutiveFailures = new LinkedHashMap<>();
+        Map<String, Long> runs = new LinkedHashMap<>();
+        Map<String, Long> failures = new LinkedHashMap<>();
+        Map<String, Long> timeouts = new LinkedHashMap<>();
+        Map<String, Long> flaps = new LinkedHashMap<>();
+        for (CheckerState state : toNameMap().values()) {
+            String label = BootMetrics.label("name", state.name);
+            Boolean passed = state.passed;
+            status.put(label, passed == null ? -1 : passed ? 1 : 0);
+            latency.put(label, state.lastLatencyMs);
+            consecutiveFailures.put(label, state.consecutiveFailures);
+            runs.put(label, state.runs.sum());
+            failures.put(label, state.failures.sum());
+            timeouts.put(label, state.timeouts.sum());
+            flaps.put(label, state.flaps.sum());
+        }
+        BootMetrics.appendLabeled(sb, openMetrics, "health_check_status", "gauge", "Last health check result: 1 passed, 0 failed, -1 not inspected yet", status);
+        BootMetrics.appendLabeled(sb, openMetrics, "health_check_latency_ms", "gauge", "Duration of the last health check in milliseconds", latency);
+        BootMetrics.appendLabeled(sb, openMetrics, "health_check_consecutive_failures", "gauge", "Health check failures since the last pass", consecutiveFailures);
+        BootMetrics.appendLabeled(sb, openMetrics, "health_check_runs", "counter", "Health checks run", runs);
+        BootMetrics.appendLabeled(sb, openMetrics, "health_check_failures", "counter", "Health checks failed, including timeouts", failures);
+        BootMetrics.appendLabeled(sb, openMetrics, "health_check_timeouts", "counter", "Health checks cancelled due to timeout", timeouts);
+        BootMetrics.appendLabeled(sb, openMetrics, "health_check_flaps", "counter", "Health check result changes between passed and failed", flaps);
+    }
+
+    protected static Map<String, CheckerState> toNameMap() {
+        Map<String, CheckerState> ret = new TreeMap<>();
+        for (CheckerState state : CHECKER_STATES.values()) {
+            ret.put(state.name, state);
+        }
+        return ret;
+    }
 }
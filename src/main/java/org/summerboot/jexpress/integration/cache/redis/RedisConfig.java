@@ -20,6 +20,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
 import org.summerboot.jexpress.boot.config.ConfigUtil;
 import org.summerboot.jexpress.boot.config.JExpressConfig;
 import org.summerboot.jexpress.security.EncryptorUtil;
@@ -40,6 +43,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.summerboot.jexpress.boot.config.ConfigUtil.ENCRYPTED_WARPER_PREFIX;
@@ -47,20 +51,32 @@ import static org.summerboot.jexpress.boot.config.ConfigUtil.ENCRYPTED_WARPER_PR
 /**
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
  */
-public class RedisConfig implements JExpressConfig {
+public class RedisConfig implements JExpressConfig, Resource {
 
     protected static final String PK = "primary";
+    protected static final long CHECKPOINT_WAIT_MS = 30000;
+
+    protected record Node(String host, int port, String password) {
+    }
 
     protected static Logger log = LogManager.getLogger(RedisConfig.class);
     protected File cfgFile;
     protected volatile List<JedisPool> jedisPools;
     protected volatile JedisPool masterPool;
     protected volatile List<String> nodes;
+    // to rebuild the pools after CRaC restore
+    protected volatile List<Node> nodeSpecs;
+    protected volatile boolean closedForCheckpoint;
     protected volatile int reconnectRetryIntervalMinutes;
     protected volatile int sendAlertIntervalMinutes;
 
     public static final RedisConfig cfg = new RedisConfig();
 
+    static {
+        // CRaC holds resources weakly, cfg is never collected
+        Core.getGlobalContext().register(cfg);
+    }
+
     public RedisConfig() {
     }
 
@@ -108,6 +124,7 @@ public class RedisConfig implements JExpressConfig {
         } else {
             nodes.clear();
         }
+        List<Node> specs = new ArrayList<>();
         ConfigUtil helper = new ConfigUtil(this.cfgFile.getAbsolutePath());
         reconnectRetryIntervalMinutes = helper.getAsInt(props, "redis.Reconnect.Retry.IntervalMinutes", 1);
         sendAlertIntervalMinutes = helper.getAsInt(props, "redis.SendAlert.IntervalMinutes", 10);
@@ -136,21 +153,27 @@ public class RedisConfig implements JExpressConfig {
                 }
                 String host = f2[1];
                 int port = Integer.parseInt(fields[2]);
-                JedisPool jp = new JedisPool(new JedisPoolConfig(),
-                        host,
-                        port,
-                        Protocol.DEFAULT_TIMEOUT,
-                        pwd);
-                jedisPools.add(jp);
+                Node node = new Node(host, port, pwd);
+                specs.add(node);
+                jedisPools.add(newPool(node));
                 nodes.add(host + ":" + port);
             }
         });
+        nodeSpecs = specs;
         String master = autoFailover(null);
         if (master != null) {
             nodes.add("current master=" + master);
         }
     }
 
+    protected JedisPool newPool(Node node) {
+        return new JedisPool(new JedisPoolConfig(),
+                node.host,
+                node.port,
+                Protocol.DEFAULT_TIMEOUT,
+                node.password);
+    }
+
     @Override
 
     public void shutdown() {
@@ -162,6 +185,63 @@ public class RedisConfig implements JExpressConfig {
         });
     }
 
+    /**
+     * CRaC: a socket must not be open in the checkpoint. Stop lending connections (getMaster() returns null until
+     * restored), wait up to {@value #CHECKPOINT_WAIT_MS} ms for the borrowed ones to be returned, then close the pools.
+     *
+     * @param context
+     * @throws Exception
+     */
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) throws Exception {
+        List<JedisPool> pools = jedisPools;
+        if (pools == null || pools.isEmpty()) {
+            return;
+        }
+        masterPool = null;
+        jedisPools = new ArrayList<>();
+        closedForCheckpoint = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CHECKPOINT_WAIT_MS);
+        int stillActive = 0;
+        for (JedisPool p : pools) {
+            while (p.getNumActive() > 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+            stillActive += p.getNumActive();
+            try {
+                // borrowed connections are destroyed when returned
+                p.close();
+            } catch (Throwable ex) {
+                log.warn("failed to close Redis pool before checkpoint: " + ex);
+            }
+        }
+        if (stillActive > 0) {
+            throw new IllegalStateException(stillActive + " Redis connections still in use after " + CHECKPOINT_WAIT_MS + " ms");
+        }
+    }
+
+    /**
+     * CRaC: rebuild the pools closed before the checkpoint, the master may have changed while the process was
+     * checkpointed
+     *
+     * @param context
+     * @throws Exception
+     */
+    @Override
+    public void afterRestore(Context<? extends Resource> context) throws Exception {
+        List<Node> specs = nodeSpecs;
+        if (!closedForCheckpoint || specs == null || specs.isEmpty()) {
+            return;
+        }
+        closedForCheckpoint = false;
+        List<JedisPool> pools = new ArrayList<>();
+        for (Node node : specs) {
+            pools.add(newPool(node));
+        }
+        jedisPools = pools;
+        autoFailover(null);
+    }
+
     public String autoFailover(Throwable cause) {
         if (cause != null) {
             log.error(cause);
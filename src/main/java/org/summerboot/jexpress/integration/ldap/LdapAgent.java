@@ -26,11 +26,15 @@ import org.summerboot.jexpress.security.SecurityUtil;
 import org.summerboot.jexpress.security.auth.BootAuthenticator;
 import org.summerboot.jexpress.security.auth.config.AuthConfig;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import javax.naming.AuthenticationException;
+import javax.naming.CommunicationException;
 import javax.naming.Context;
 import javax.naming.NameAlreadyBoundException;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.BasicAttribute;
@@ -44,18 +48,25 @@ import javax.naming.ldap.InitialLdapContext;
 import javax.naming.ldap.LdapContext;
 import java.io.Closeable;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
 /**
+ * LDAP operations on one connection, either a connection of its own or one borrowed from a {@link LdapConnectionPool}
+ * and returned on {@link #close()}. User logins bind on a connection of the bind pool when it is set, so the search
+ * connection always stays bound as the service account.
+ *
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
  */
 public class LdapAgent implements Closeable {
@@ -81,7 +92,16 @@ public class LdapAgent implements Closeable {
     }
 
     public static LdapAgent build() throws NamingException {
-        return new LdapAgent(AuthConfig.cfg.getLdapConfig(), AuthConfig.cfg.getLdapBaseDN(), AuthConfig.cfg.isTypeAD(), AuthConfig.cfg.getLdapSchemaTenantGroupOU());
+        AuthConfig authCfg = AuthConfig.cfg;
+        LdapConnectionPool searchPool = authCfg.getLdapSearchPool();
+        LdapAgent agent = searchPool == null
+                ? new LdapAgent(authCfg.getLdapConfig(), authCfg.getLdapBaseDN(), authCfg.isTypeAD(), authCfg.getLdapSchemaTenantGroupOU())
+                : new LdapAgent(searchPool, authCfg.getLdapBaseDN(), authCfg.isTypeAD(), authCfg.getLdapSchemaTenantGroupOU());
+        agent.setBindPool(authCfg.getLdapBindPool());
+        agent.setGroupCache(authCfg.getLdapGroupCache());
+        agent.setFailedLoginCache(authCfg.getLdapFailedLoginCache());
+        agent.setLoginThrottle(authCfg.getLdapLoginThrottle());
+        return agent;
     }
 
     public static Properties buildCfg(String host, int port, boolean isSSLEnabled, String ldapSSLConnectionFactoryClassName, String sslProtocol, String bindingUserDN, String bindingPassword) {
@@ -122,18 +142,28 @@ public class LdapAgent implements Closeable {
     protected LdapContext m_ctx = null;//not thread safe
     protected String uidKey;
 
+    protected final LdapConnectionPool searchPool;
+    protected LdapConnectionPool.PooledContext pooledContext;
+    protected boolean broken;
+    protected LdapConnectionPool bindPool;
+    protected LdapResultCache<List<String>> groupCache;
+    protected LdapResultCache<Boolean> failedLoginCache;
+    protected LdapLoginThrottle loginThrottle;
+
+    /**
+     * per process random key of the failed login cache keys, so that the cache never holds a plain or unsalted password
+     * hash
+     */
+    protected static final byte[] FAILED_LOGIN_KEY = new SecureRandom().generateSeed(32);
+
     public LdapContext getLdapContext() {
         return m_ctx;
     }
 
     public LdapAgent(Properties cfg, String baseDN, boolean isAD, String tenantGroupName) throws NamingException {
-        if (cfg == null || baseDN == null) {
-            String ERROR_NO_CFG = "LDAP is not configured at " + (AuthConfig.cfg.getCfgFile() == null ? "any file" : AuthConfig.cfg.getCfgFile().getAbsolutePath())
-                    + ". \nOr create your own class, either extends " + BootAuthenticator.class.getSimpleName() + " or implements " + Authenticator.class.getSimpleName()
-                    + " then annotated with @Service(binding = " + Authenticator.class.getSimpleName() + ".class)";
-            throw new UnsupportedOperationException(ERROR_NO_CFG);
-        }
+        checkConfigured(cfg, baseDN);
         this.cfg = cfg;
+        this.searchPool = null;
         this.baseDN = baseDN;
         this.isAD = isAD;
         this.tenantGroupName = tenantGroupName;
@@ -141,6 +171,64 @@ public class LdapAgent implements Closeable {
         connect();
     }
 
+    /**
+     * @param searchPool      the service account connection is borrowed from this pool and returned on {@link #close()}
+     * @param baseDN
+     * @param isAD
+     * @param tenantGroupName
+     * @throws NamingException
+     */
+    public LdapAgent(LdapConnectionPool searchPool, String baseDN, boolean isAD, String tenantGroupName) throws NamingException {
+        checkConfigured(searchPool, baseDN);
+        this.cfg = null;
+        this.searchPool = searchPool;
+        this.baseDN = baseDN;
+        this.isAD = isAD;
+        this.tenantGroupName = tenantGroupName;
+        uidKey = isAD ? "sAMAccountName" : "uid";
+        pooledContext = searchPool.borrow();
+        m_ctx = pooledContext.getContext();
+    }
+
+    protected static void checkConfigured(Object cfg, String baseDN) {
+        if (cfg == null || baseDN == null) {
+            String ERROR_NO_CFG = "LDAP is not configured at " + (AuthConfig.cfg.getCfgFile() == null ? "any file" : AuthConfig.cfg.getCfgFile().getAbsolutePath())
+                    + ". \nOr create your own class, either extends " + BootAuthenticator.class.getSimpleName() + " or implements " + Authenticator.class.getSimpleName()
+                    + " then annotated with @Service(binding = " + Authenticator.class.getSimpleName() + ".class)";
+            throw new UnsupportedOperationException(ERROR_NO_CFG);
+        }
+    }
+
+    /**
+     * @param bindPool user logins bind on a connection of this pool, on the search connection when null, which is then
+     *                 closed instead of returned to the search pool
+     */
+    public void setBindPool(LdapConnectionPool bindPool) {
+        this.bindPool = bindPool;
+    }
+
+    /**
+     * @param groupCache group names by lower case user DN, no cache when null
+     */
+    public void setGroupCache(LdapResultCache<List<String>> groupCache) {
+        this.groupCache = groupCache;
+    }
+
+    /**
+     * @param failedLoginCache failed username + password pairs, TRUE = user not found, FALSE = rejected, no cache when
+     *                         null
+     */
+    public void setFailedLoginCache(LdapResultCache<Boolean> failedLoginCache) {
+        this.failedLoginCache = failedLoginCache;
+    }
+
+    /**
+     * @param loginThrottle blocks a username after consecutive failed logins with any password, no throttle when null
+     */
+    public void setLoginThrottle(LdapLoginThrottle loginThrottle) {
+        this.loginThrottle = loginThrottle;
+    }
+
     public String getUidKey() {
         return uidKey;
     }
@@ -159,6 +247,12 @@ public class LdapAgent implements Closeable {
 
     @Override
     public void close() {
+        if (pooledContext != null) {
+            searchPool.release(pooledContext, broken);
+            pooledContext = null;
+            m_ctx = null;
+            return;
+        }
         if (m_ctx != null) {
             log.debug("processing...");
             try {
@@ -242,14 +336,20 @@ public class LdapAgent implements Closeable {
         List<Attributes> ret = new ArrayList<>();
         SearchControls ctrls = new SearchControls();
         ctrls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-        NamingEnumeration<SearchResult> results = m_ctx.search(baseDN, filter, ctrls);// CWE-90 False Positive - Util Feature: use with escapeQuery()
-        while (results.hasMore()) {
-            SearchResult sr = results.next();
-            //String dn = sr.getName() + "," + sBase;
-            String dn = sr.getNameInNamespace();
-            Attributes attr = sr.getAttributes();//m_ctx.getAttributes(dn);
-            ret.add(attr);
-            attr.put(DN, dn);
+        try {
+            NamingEnumeration<SearchResult> results = m_ctx.search(baseDN, filter, ctrls);// CWE-90 False Positive - Util Feature: use with escapeQuery()
+            while (results.hasMore()) {
+                SearchResult sr = results.next();
+                //String dn = sr.getName() + "," + sBase;
+                String dn = sr.getNameInNamespace();
+                Attributes attr = sr.getAttributes();//m_ctx.getAttributes(dn);
+                ret.add(attr);
+                attr.put(DN, dn);
+            }
+        } catch (CommunicationException | ServiceUnavailableException ex) {
+            // do not return a dead connection to the pool
+            broken = true;
+            throw ex;
         }
         return ret;
     }
@@ -353,25 +453,120 @@ public class LdapAgent implements Closeable {
 //        if (currentPassword == null) {
 //            currentPassword = accessPassword;
 //        }
+        if (bindPool == null) {
+            // the connection stays authenticated as the user (or unauthenticated after a failed bind), a pooled
+            // search connection must be discarded instead of being returned to the pool on close()
+            broken = true;
+            bind(m_ctx, dn, currentPassword);
+            return;
+        }
+        LdapConnectionPool.PooledContext c = bindPool.borrow();
+        boolean success = false;
         try {
-            m_ctx.addToEnvironment(Context.SECURITY_PRINCIPAL, dn == null ? "" : dn);   // user dn
+            bind(c.getContext(), dn, currentPassword);
+            success = true;
+        } finally {
+            // a connection is reused only after a successful bind
+            bindPool.release(c, !success);
+        }
+    }
+
+    protected void bind(LdapContext ctx, String dn, String currentPassword) throws NamingException {
+        try {
+            ctx.addToEnvironment(Context.SECURITY_PRINCIPAL, dn == null ? "" : dn);   // user dn
             if (currentPassword != null) {
-                m_ctx.addToEnvironment(Context.SECURITY_CREDENTIALS, currentPassword); // user password
+                ctx.addToEnvironment(Context.SECURITY_CREDENTIALS, currentPassword); // user password
             }
-            m_ctx.reconnect(null);
-            Control[] controls = m_ctx.getResponseControls();
+            ctx.reconnect(null);
+            Control[] controls = ctx.getResponseControls();
             if (controls != null) {
                 for (Control control : controls) {
                     log.debug("  Control: " + control.getID() + " | crit: " + control.isCritical() + " | val: '" + new String(control.getEncodedValue()) + "'");
                 }
             }
         } finally {
-            m_ctx.removeFromEnvironment(Context.SECURITY_PRINCIPAL);   // user dn
-            m_ctx.removeFromEnvironment(Context.SECURITY_CREDENTIALS); // user password
+            ctx.removeFromEnvironment(Context.SECURITY_PRINCIPAL);   // user dn
+            ctx.removeFromEnvironment(Context.SECURITY_CREDENTIALS); // user password
+        }
+    }
+
+    /**
+     * @param userDN
+     * @return the cn of the groups the user belongs to, cached by user DN when the group cache is set
+     * @throws NamingException
+     */
+    public List<String> getUserGroupNames(String userDN) throws NamingException {
+        LdapResultCache<List<String>> cache = groupCache;
+        String key = userDN.toLowerCase(Locale.ROOT);
+        if (cache != null) {
+            List<String> cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<String> groups = new ArrayList<>();
+        for (Attributes groupAttr : getUserRoleGroups(userDN)) {
+            groups.add(getAttr(groupAttr, "cn"));
+        }
+        groups = Collections.unmodifiableList(groups);
+        if (cache != null) {
+            cache.put(key, groups);
+        }
+        return groups;
+    }
+
+    protected void invalidateUserGroups(String userDN) {
+        LdapResultCache<List<String>> cache = groupCache;
+        if (cache != null && userDN != null) {
+            cache.invalidate(userDN.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * @param username
+     * @param password
+     * @return HMAC of the pair with a per process random key
+     */
+    protected static String failedLoginKey(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(FAILED_LOGIN_KEY, "HmacSHA256"));
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
         }
     }
 
     public User authenticateUser(String username, String password, AuthenticatorListener listener) throws NamingException {
+        if (StringUtils.isEmpty(password)) {
+            // an empty password is an unauthenticated bind (RFC 4513 5.1.2), which most servers accept
+            if (listener != null) {
+                listener.onLoginRejected(username, password);
+            }
+            return null;
+        }
+        LdapLoginThrottle throttle = username == null ? null : loginThrottle;
+        if (throttle != null && throttle.blockedMs(username) > 0) {
+            if (listener != null) {
+                listener.onLoginRejected(username, password);
+            }
+            return null;
+        }
+        LdapResultCache<Boolean> failedCache = failedLoginCache;
+        String failedKey = failedCache == null || username == null ? null : failedLoginKey(username, password);
+        Boolean userNotFound = failedKey == null ? null : failedCache.get(failedKey);
+        if (userNotFound != null) {
+            if (listener != null) {
+                if (userNotFound) {
+                    listener.onLoginUserNotFound(username, password);
+                } else {
+                    listener.onLoginRejected(username, password);
+                }
+            }
+            return null;
+        }
         List<Attributes> userAttrs = queryPerson(uidKey, username);//key =[uid, mail, email, employeeNumber, etc.]
         int size = userAttrs.size();
         String[] ret = new String[size];
@@ -380,6 +575,12 @@ public class LdapAgent implements Closeable {
         }
         String dn = size > 0 ? ret[0] : null;
         if (dn == null) {
+            if (failedKey != null) {
+                failedCache.put(failedKey, Boolean.TRUE);
+            }
+            if (throttle != null) {
+                throttle.onFailure(username);
+            }
             if (listener != null) {
                 listener.onLoginUserNotFound(username, password);
             }
@@ -393,20 +594,33 @@ public class LdapAgent implements Closeable {
         if (displayName == null) {
             displayName = username;
         }
-        List<Attributes> groupAttrs = getUserRoleGroups(dn);
+        // without a bind pool, the bind below re-authenticates the search connection as the user
+        List<String> groups = bindPool == null ? getUserGroupNames(dn) : null;
 
         try {
             authenticate(dn, password);
         } catch (AuthenticationException ex) {
+            if (failedKey != null) {
+                failedCache.put(failedKey, Boolean.FALSE);
+            }
+            if (throttle != null) {
+                throttle.onFailure(username);
+            }
             if (listener != null) {
                 listener.onLoginRejected(username, password);
             }
             return null;
         }
+        if (throttle != null) {
+            throttle.onSuccess(username);
+        }
+        if (groups == null) {
+            groups = getUserGroupNames(dn);
+        }
         User user = new User(0L, username);
         user.setDisplayName(displayName);
-        for (Attributes groupAttr : groupAttrs) {
-            user.addGroup(getAttr(groupAttr, "cn"));
+        for (String group : groups) {
+            user.addGroup(group);
         }
         return user;
     }
@@ -418,7 +632,63 @@ public class LdapAgent implements Closeable {
         BasicAttribute ba = new BasicAttribute("userPassword", generateSSHA(newPassword, algorithm));
         ModificationItem[] mods = new ModificationItem[1];
         mods[0] = new ModificationItem(DirContext.REPLACE_ATTRIBUTE, ba);
-        m_ctx.modifyAttributes(dn, mods);
+        modifyAttributes(dn, mods);
+        // the new password must not be rejected by a failed login cached before the change, nor by the throttle
+        LdapResultCache<Boolean> failedCache = failedLoginCache;
+        if (failedCache != null) {
+            failedCache.invalidate(failedLoginKey(uid, newPassword));
+        }
+        LdapLoginThrottle throttle = loginThrottle;
+        if (throttle != null) {
+            throttle.onSuccess(uid);
+        }
+        invalidateUserGroups(dn);
+    }
+
+    /**
+     * The write operations below mark the connection broken when the server is unreachable, like the searches and
+     * binds, so that close() does not return a dead connection to the pool
+     *
+     * @param dn
+     * @param mods
+     * @throws NamingException
+     */
+    protected void modifyAttributes(String dn, ModificationItem[] mods) throws NamingException {
+        try {
+            m_ctx.modifyAttributes(dn, mods);
+        } catch (CommunicationException | ServiceUnavailableException ex) {
+            broken = true;
+            throw ex;
+        }
+    }
+
+    /**
+     * @param dn
+     * @param entry
+     * @throws NamingException
+     */
+    protected void createSubcontext(String dn, Attributes entry) throws NamingException {
+        try {
+            m_ctx.createSubcontext(dn, entry).close();
+        } catch (NameAlreadyBoundException ex) {
+            // ignore
+        } catch (CommunicationException | ServiceUnavailableException ex) {
+            broken = true;
+            throw ex;
+        }
+    }
+
+    /**
+     * @param dn
+     * @throws NamingException
+     */
+    protected void unbind(String dn) throws NamingException {
+        try {
+            m_ctx.unbind(dn);
+        } catch (CommunicationException | ServiceUnavailableException ex) {
+            broken = true;
+            throw ex;
+        }
     }
 
     public static String n2q(String s) {
@@ -465,11 +735,7 @@ public class LdapAgent implements Closeable {
             });
         }
 
-        try {
-            m_ctx.createSubcontext(userDN, entry);
-        } catch (NameAlreadyBoundException ex) {
-            // ignore
-        }
+        createSubcontext(userDN, entry);
         return userDN;
     }
 
@@ -488,11 +754,7 @@ public class LdapAgent implements Closeable {
             entry.put(new BasicAttribute(key, value));
         });
 
-        try {
-            m_ctx.createSubcontext(dn, entry);
-        } catch (NameAlreadyBoundException ex) {
-            // ignore
-        }
+        createSubcontext(dn, entry);
         return dn;
     }
 
@@ -522,7 +784,7 @@ public class LdapAgent implements Closeable {
         int size = modList.size();
         if (size > 0) {
             ModificationItem[] mods = new ModificationItem[size];
-            m_ctx.modifyAttributes(entryDn, modList.toArray(mods));
+            modifyAttributes(entryDn, modList.toArray(mods));
         }
         return size;
     }
@@ -553,7 +815,7 @@ public class LdapAgent implements Closeable {
         int size = modList.size();
         if (size > 0) {
             ModificationItem[] mods = new ModificationItem[size];
-            m_ctx.modifyAttributes(entryDn, modList.toArray(mods));
+            modifyAttributes(entryDn, modList.toArray(mods));
         }
         return size;
     }
@@ -565,7 +827,8 @@ public class LdapAgent implements Closeable {
             String userDN = getAttr(arrt, DN);
             //System.out.println("deling="+userDN);
             updateUserGroups(userDN);
-            m_ctx.unbind(userDN);
+            unbind(userDN);
+            invalidateUserGroups(userDN);
         }
 //        String userDN = getDN(uid);
 //        if (userDN != null) {
@@ -578,11 +841,13 @@ public class LdapAgent implements Closeable {
         log.debug(dn);
         if (dn != null) {
             updateUserGroups(dn);
-            m_ctx.unbind(dn);
+            unbind(dn);
+            invalidateUserGroups(dn);
         }
     }
 
     public void updateUserGroups(String userDN, String... newGroupDnList) throws NamingException {
+        invalidateUserGroups(userDN);
         List<String>[] ret = parseAddedAndRemoved(getUserRoleGroups(userDN), newGroupDnList);
         List<String> addedList = ret[0];
         List<String> removedList = ret[1];
@@ -593,7 +858,7 @@ public class LdapAgent implements Closeable {
             ModificationItem[] mods = new ModificationItem[1];
             mods[0] = new ModificationItem(DirContext.REMOVE_ATTRIBUTE, new BasicAttribute("uniqueMember", userDN));
 //            try {
-            m_ctx.modifyAttributes(toBeRemovedGroupDn, mods);
+            modifyAttributes(toBeRemovedGroupDn, mods);
 //            } catch (Throwable ex) {
 //                throw new NamingException(ex.getMessage() + "\n\tremove: " + userDN + "\n\tfrom: " + toBeRemovedGroupDn, ex);
 //            }
@@ -605,7 +870,7 @@ public class LdapAgent implements Closeable {
             ModificationItem[] mods = new ModificationItem[1];
             mods[0] = new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("uniqueMember", userDN));
 //            try {
-            m_ctx.modifyAttributes(groupDN, mods);
+            modifyAttributes(groupDN, mods);
 //            } catch (Throwable ex) {
 //                throw new NamingException(ex.getMessage() + "\n\tadd: " + userDN + "\n\tto: " + groupDN, ex);
 //            }
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.ldap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+
+import javax.naming.InterruptedNamingException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of LDAP connections created with the same environment.
+ * <p>
+ * A connection is used by one caller at a time: {@link #borrow()} waits up to maxWaitMs for a free one, the most
+ * recently used idle connection is reused first (so that the others become idle and get evicted), and it is checked
+ * with a root DSE read when it has been idle longer than validateAfterMs. Connections idle longer than idleTimeoutMs or
+ * older than maxLifetimeMs are closed in the background.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class LdapConnectionPool implements Closeable {
+
+    protected static final Logger log = LogManager.getLogger(LdapConnectionPool.class.getName());
+
+    protected static final Map<String, LdapConnectionPool> REGISTRY = new ConcurrentHashMap<>();
+
+    protected static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("LdapPool.evictor").daemon(true).factory());
+
+    protected static final String[] VALIDATION_ATTRS = {"objectClass"};
+
+    static {
+        BootMetrics.register("ldap_connection_pool", LdapConnectionPool::appendMetrics);
+    }
+
+    public static class PooledContext {
+
+        protected final LdapContext ctx;
+        protected final long createdMs;
+        protected volatile long lastUsedMs;
+
+        protected PooledContext(LdapContext ctx, long nowMs) {
+            this.ctx = ctx;
+            this.createdMs = nowMs;
+            this.lastUsedMs = nowMs;
+        }
+
+        public LdapContext getContext() {
+            return ctx;
+        }
+    }
+
+    protected final String name;
+    protected final Properties env;
+    protected final int maxSize;
+    protected final long maxWaitMs;
+    protected final long validateAfterMs;
+    protected final long idleTimeoutMs;
+    protected final long maxLifetimeMs;
+    protected final Semaphore permits;
+    protected final LinkedBlockingDeque<PooledContext> idle = new LinkedBlockingDeque<>();
+    protected final ScheduledFuture<?> evictTask;
+    protected volatile boolean closed;
+
+    protected final LongAdder created = new LongAdder();
+    protected final LongAdder borrowed = new LongAdder();
+    protected final LongAdder waitTimeouts = new LongAdder();
+    protected final LongAdder validationFailures = new LongAdder();
+    protected final LongAdder evicted = new LongAdder();
+
+    /**
+     * @param name            pool name, unique, used as the metrics label
+     * @param env             JNDI environment of the connections, see {@link LdapAgent#buildCfg}
+     * @param maxSize         max connections
+     * @param maxWaitMs       max time to wait for a free connection
+     * @param validateAfterMs check an idle connection before reuse after this long
+     * @param idleTimeoutMs   close a connection after it has been idle this long
+     * @param maxLifetimeMs   close a connection after this long, unlimited when {@code <= 0}
+     */
+    public LdapConnectionPool(String name, Properties env, int maxSize, long maxWaitMs, long validateAfterMs, long idleTimeoutMs, long maxLifetimeMs) {
+        this.name = name;
+        this.env = env;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxWaitMs = Math.max(0, maxWaitMs);
+        this.validateAfterMs = Math.max(0, validateAfterMs);
+        this.idleTimeoutMs = Math.max(1000, idleTimeoutMs);
+        this.maxLifetimeMs = maxLifetimeMs;
+        this.permits = new Semaphore(this.maxSize, true);
+        long evictIntervalMs = Math.min(this.idleTimeoutMs, TimeUnit.SECONDS.toMillis(30));
+        this.evictTask = EVICTOR.scheduleWithFixedDelay(this::evict, evictIntervalMs, evictIntervalMs, TimeUnit.MILLISECONDS);
+        REGISTRY.put(name, this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return a connection, must be returned via {@link #release(PooledContext, boolean)}
+     * @throws NamingException ServiceUnavailableException when no connection is free within maxWaitMs, or failed to
+     *                         connect
+     */
+    public PooledContext borrow() throws NamingException {
+        if (closed) {
+            throw new ServiceUnavailableException("LDAP pool " + name + " is closed");
+        }
+        try {
+            if (!permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                waitTimeouts.increment();
+                throw new ServiceUnavailableException("LDAP pool " + name + " exhausted: all " + maxSize + " connections in use for " + maxWaitMs + "ms");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedNamingException("interrupted while waiting for LDAP pool " + name);
+        }
+        try {
+            PooledContext c;
+            while ((c = idle.pollFirst()) != null) {
+                if (isUsable(c, System.currentTimeMillis())) {
+                    borrowed.increment();
+                    return c;
+                }
+                destroy(c);
+            }
+            c = new PooledContext(new InitialLdapContext(env, null), System.currentTimeMillis());
+            created.increment();
+            borrowed.increment();
+            return c;
+        } catch (NamingException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * @param c      the borrowed connection
+     * @param broken true to close it instead of reuse, i.e. after a communication error
+     */
+    public void release(PooledContext c, boolean broken) {
+        if (c == null) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            if (broken || closed || isExpired(c, now)) {
+                destroy(c);
+            } else {
+                c.lastUsedMs = now;
+                idle.offerFirst(c);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    protected boolean isExpired(PooledContext c, long nowMs) {
+        return maxLifetimeMs > 0 && nowMs - c.createdMs >= maxLifetimeMs;
+    }
+
+    protected boolean isUsable(PooledContext c, long nowMs) {
+        if (isExpired(c, nowMs) || nowMs - c.lastUsedMs >= idleTimeoutMs) {
+            return false;
+        }
+        if (nowMs - c.lastUsedMs < validateAfterMs) {
+            return true;
+        }
+        try {
+            c.ctx.getAttributes("", VALIDATION_ATTRS);
+            return true;
+        } catch (NamingException ex) {
+            validationFailures.increment();
+            log.debug(() -> "LDAP pool " + name + ": stale connection dropped: " + ex);
+            return false;
+        }
+    }
+
+    protected void evict() {
+        long now = System.currentTimeMillis();
+        List<PooledContext> expired = new ArrayList<>();
+        idle.removeIf(c -> {
+            if (isExpired(c, now) || now - c.lastUsedMs >= idleTimeoutMs) {
+                expired.add(c);
+                return true;
+            }
+            return false;
+        });
+        for (PooledContext c : expired) {
+            evicted.increment();
+            destroy(c);
+        }
+    }
+
+    protected void destroy(PooledContext c) {
+        try {
+            c.ctx.close();
+        } catch (NamingException ex) {
+            log.debug(() -> "LDAP pool " + name + ": failed to close connection: " + ex);
+        }
+    }
+
+    /**
+     * Close the idle connections and stop pooling, the borrowed ones are closed when released
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictTask.cancel(false);
+        REGISTRY.remove(name, this);
+        PooledContext c;
+        while ((c = idle.pollFirst()) != null) {
+            destroy(c);
+        }
+    }
+
+    public static void appendMetrics(StringBuilder sb, boolean openMetrics) {
+        if (REGISTRY.isEmpty()) {
+            return;
+        }
+        Map<String, Number> inUse = new TreeMap<>();
+        Map<String, Number> idleCount = new TreeMap<>();
+        Map<String, Number> createdCount = new TreeMap<>();
+        Map<String, Number> borrowedCount = new TreeMap<>();
+        Map<String, Number> timeouts = new TreeMap<>();
+        Map<String, Number> closedCount = new TreeMap<>();
+        for (LdapConnectionPool p : new TreeMap<>(REGISTRY).values()) {
+            String pool = BootMetrics.label("pool", p.name);
+            inUse.put(pool, p.maxSize - p.permits.availablePermits());
+            idleCount.put(pool, p.idle.size());
+            createdCount.put(pool, p.created.sum());
+            borrowedCount.put(pool, p.borrowed.sum());
+            timeouts.put(pool, p.waitTimeouts.sum());
+            closedCount.put(pool + "," + BootMetrics.label("reason", "idle"), p.evicted.sum());
+            closedCount.put(pool + "," + BootMetrics.label("reason", "validation"), p.validationFailures.sum());
+        }
+        BootMetrics.appendLabeled(sb, openMetrics, "ldap_pool_in_use", "gauge", "LDAP connections borrowed", inUse);
+        BootMetrics.appendLabeled(sb, openMetrics, "ldap_pool_idle", "gauge", "LDAP connections idle in the pool", idleCount);
+        BootMetrics.appendLabeled(sb, openMetrics, "ldap_pool_connections_created", "counter", "LDAP connections opened", createdCount);
+        BootMetrics.appendLabeled(sb, openMetrics, "ldap_pool_borrowed", "counter", "LDAP connections borrowed from the pool", borrowedCount);
+        BootMetrics.appendLabeled(sb, openMetrics, "ldap_pool_wait_timeouts", "counter", "LDAP borrows failed because all connections were in use", timeouts);
+        BootMetrics.appendLabeled(sb, openMetrics, "ldap_pool_connections_dropped", "counter", "LDAP connections closed by the pool", closedCount);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.ldap;
+
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throttles failed logins per key (username or login source) with an exponential backoff: after maxFailures
+ * consecutive failures the key is blocked for backoffMs, doubled on each further failure up to maxBackoffMs. A
+ * successful login resets the key, so does maxBackoffMs without a failure. Tracked keys are bounded (LRU).
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class LdapLoginThrottle {
+
+    protected static final Map<String, LdapLoginThrottle> REGISTRY = new ConcurrentHashMap<>();
+
+    static {
+        BootMetrics.register("ldap_login_throttle", LdapLoginThrottle::appendMetrics);
+    }
+
+    protected static class Failures {
+
+        protected int count;
+        protected long lastFailureMs;
+        protected long blockedUntilMs;
+    }
+
+    protected final String name;
+    protected final int maxFailures;
+    protected final long backoffMs;
+    protected final long maxBackoffMs;
+    protected final int maxEntries;
+    protected final LinkedHashMap<String, Failures> entries = new LinkedHashMap<>(16, 0.75f, true);
+    protected final LongAdder throttled = new LongAdder();
+    protected final LongAdder failures = new LongAdder();
+
+    /**
+     * @param name         unique, used as the metrics label
+     * @param maxFailures  consecutive failures allowed before the key is blocked, at least 1
+     * @param backoffMs    first block duration
+     * @param maxBackoffMs longest block duration
+     * @param maxEntries   the least recently used key is forgotten when full
+     */
+    public LdapLoginThrottle(String name, int maxFailures, long backoffMs, long maxBackoffMs, int maxEntries) {
+        this.name = name;
+        this.maxFailures = Math.max(1, maxFailures);
+        this.backoffMs = Math.max(1, backoffMs);
+        this.maxBackoffMs = Math.max(this.backoffMs, maxBackoffMs);
+        this.maxEntries = Math.max(1, maxEntries);
+        REGISTRY.put(name, this);
+    }
+
+    /**
+     * @param key
+     * @return milliseconds the key stays blocked, 0 if not blocked
+     */
+    public long blockedMs(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Failures f = entries.get(key);
+            if (f == null) {
+                return 0;
+            }
+            if (f.blockedUntilMs > now) {
+                throttled.increment();
+                return f.blockedUntilMs - now;
+            }
+            if (now - f.lastFailureMs >= maxBackoffMs) {
+                entries.remove(key);
+            }
+            return 0;
+        }
+    }
+
+    public void onFailure(String key) {
+        failures.increment();
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Failures f = entries.get(key);
+            if (f == null || (now - f.lastFailureMs >= maxBackoffMs && f.blockedUntilMs <= now)) {
+                f = new Failures();
+                entries.put(key, f);
+            }
+            f.count++;
+            f.lastFailureMs = now;
+            if (f.count >= maxFailures) {
+                int doublings = Math.min(f.count - maxFailures, 30);
+                f.blockedUntilMs = now + Math.min(maxBackoffMs, backoffMs << doublings);
+            }
+            Iterator<Failures> it = entries.values().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    public void onSuccess(String key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Stop reporting metrics of this throttle
+     */
+    public void unregister() {
+        REGISTRY.remove(name, this);
+    }
+
+    public static void appendMetrics(StringBuilder sb, boolean openMetrics) {
+        if (REGISTRY.isEmpty()) {
+            return;
+        }
+        Map<String, Number> size = new TreeMap<>();
+        Map<String, Number> failed = new TreeMap<>();
+        Map<String, Number> blocked = new TreeMap<>();
+        for (LdapLoginThrottle t : new TreeMap<>(REGISTRY).values()) {
+            String throttle = BootMetrics.label("throttle", t.name);
+            size.put(throttle, t.size());
+            failed.put(throttle, t.failures.sum());
+            blocked.put(throttle, t.throttled.sum());
+        }
+        BootMetrics.appendLabeled(sb, openMetrics, "ldap_login_throttle_keys", "gauge", "usernames/sources with recent failed logins", size);
+        BootMetrics.appendLabeled(sb, openMetrics, "ldap_login_failures", "counter", "failed LDAP logins", failed);
+        BootMetrics.appendLabeled(sb, openMetrics, "ldap_login_throttled", "counter", "LDAP logins rejected by the throttle without calling LDAP", blocked);
+    }
+}
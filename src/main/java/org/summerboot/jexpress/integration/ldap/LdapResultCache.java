@@ -0,0 +1,132 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.ldap;
+
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of LDAP lookup results, an entry expires ttlMs after it is put
+ *
+ * @param <V>
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class LdapResultCache<V> {
+
+    protected static final Map<String, LdapResultCache<?>> REGISTRY = new ConcurrentHashMap<>();
+
+    static {
+        BootMetrics.register("ldap_result_cache", LdapResultCache::appendMetrics);
+    }
+
+    protected record Entry<V>(V value, long expiresAtMs) {
+    }
+
+    protected final String name;
+    protected final int maxEntries;
+    protected final long ttlMs;
+    protected final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+
+    /**
+     * @param name       cache name, unique, used as the metrics label
+     * @param maxEntries the least recently used entry is removed when full
+     * @param ttlMs      time to live of an entry
+     */
+    public LdapResultCache(String name, int maxEntries, long ttlMs) {
+        this.name = name;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMs = ttlMs;
+        REGISTRY.put(name, this);
+    }
+
+    public V get(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry<V> e = entries.get(key);
+            if (e != null && e.expiresAtMs() > now) {
+                hits.increment();
+                return e.value();
+            }
+            if (e != null) {
+                entries.remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String key, V value) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, now + ttlMs));
+            Iterator<Entry<V>> it = entries.values().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    public void invalidate(String key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Stop reporting metrics of this cache
+     */
+    public void unregister() {
+        REGISTRY.remove(name, this);
+    }
+
+    public static void appendMetrics(StringBuilder sb, boolean openMetrics) {
+        if (REGISTRY.isEmpty()) {
+            return;
+        }
+        Map<String, Number> size = new TreeMap<>();
+        Map<String, Number> lookups = new TreeMap<>();
+        for (LdapResultCache<?> c : new TreeMap<>(REGISTRY).values()) {
+            String cache = BootMetrics.label("cache", c.name);
+            size.put(cache, c.size());
+            lookups.put(cache + "," + BootMetrics.label("result", "hit"), c.hits.sum());
+            lookups.put(cache + "," + BootMetrics.label("result", "miss"), c.misses.sum());
+        }
+        BootMetrics.appendLabeled(sb, openMetrics, "ldap_cache_entries", "gauge", "LDAP lookup results cached", size);
+        BootMetrics.appendLabeled(sb, openMetrics, "ldap_cache_lookups", "counter", "LDAP cache lookups", lookups);
+    }
+}
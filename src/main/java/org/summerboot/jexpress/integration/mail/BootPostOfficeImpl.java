@@ -17,6 +17,7 @@
 package org.summerboot.jexpress.integration.mail;
 
 import com.google.inject.Singleton;
+import jakarta.mail.internet.MimeMessage;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -134,7 +135,15 @@ public class BootPostOfficeImpl implements PostOffice {
 
         boolean success = false;
         try {
-            if (async) {
+            MailQueue mailQueue = SmtpClientConfig.cfg.getMailQueue();
+            if (async && mailQueue != null) {
+                MimeMessage msg = email.buildMimeMessage(SmtpClientConfig.cfg.getMailSession());
+                success = msg != null && mailQueue.offer(msg);
+                if (!success) {
+                    log.fatal(() -> "Failed to queue email: " + email);
+                }
+                return success;
+            } else if (async) {
                 Runnable postman = () -> {
                     try {
                         email.send(SmtpClientConfig.cfg.getMailSession());
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.mail;
+
+import com.sun.mail.smtp.SMTPSendFailedException;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+import org.summerboot.jexpress.util.concurrent.NamedDefaultThreadFactory;
+import org.summerboot.jexpress.util.strategy.BackoffStrategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded outbound mail queue drained by a small pool of long-lived SMTP connections.
+ * <p>
+ * Each worker owns one {@link Transport}, sends up to batchSize queued messages per round on the same connection, checks
+ * the connection (SMTP NOOP) before reusing it, reconnects after maxMessagesPerConnection messages and closes it when
+ * idle. Transient failures (4xx replies, connection errors) are retried with the retry {@link BackoffStrategy},
+ * permanent failures (5xx replies, invalid recipients) are not.
+ * <p>
+ * When spoolDir is set, every accepted message is written to spoolDir/*.eml before {@link #offer(MimeMessage)} returns
+ * and deleted once delivered, permanently failed messages are renamed to *.failed, and the spooled messages are queued
+ * again on the next start, so a restart loses nothing. The spool directory must not be shared by multiple processes.
+ * <p>
+ * The Session decides where to connect, point it to an in-process SMTP stub to test.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class MailQueue {
+
+    protected static final Logger log = LogManager.getLogger(MailQueue.class.getName());
+
+    protected static final String SPOOL_EXT = ".eml";
+    protected static final String FAILED_EXT = ".failed";
+    protected static final long MAX_POLL_MS = 1000;
+    protected static final long SHUTDOWN_GRACE_MS = 10000;
+
+    protected static final AtomicLong SPOOL_SEQ = new AtomicLong();
+    protected static final LongAdder ENQUEUED = new LongAdder();
+    protected static final LongAdder SENT = new LongAdder();
+    protected static final LongAdder FAILED = new LongAdder();
+    protected static final LongAdder RETRIED = new LongAdder();
+    protected static final LongAdder REJECTED = new LongAdder();
+    protected static final LongAdder BATCHES = new LongAdder();
+    protected static final LongAdder CONNECTIONS = new LongAdder();
+
+    static {
+        BootMetrics.register("mail_queue", MailQueue::appendMetrics);
+    }
+
+    protected static volatile MailQueue current;
+
+    protected static class Envelope {
+
+        protected final MimeMessage message;
+        protected volatile File spoolFile;
+        protected int attempts;
+
+        protected Envelope(MimeMessage message, File spoolFile) {
+            this.message = message;
+            this.spoolFile = spoolFile;
+        }
+
+        @Override
+        public String toString() {
+            String subject;
+            try {
+                subject = message.getSubject();
+            } catch (MessagingException ex) {
+                subject = null;
+            }
+            return "[" + subject + "]" + (spoolFile == null ? "" : " " + spoolFile.getName());
+        }
+    }
+
+    protected final Session session;
+    protected final int connections;
+    protected final int batchSize;
+    protected final int maxMessagesPerConnection;
+    protected final long idleTimeoutMs;
+    protected final BackoffStrategy retry;
+    protected final File spoolDir;
+    protected final BlockingQueue<Envelope> queue;
+    protected final Set<Envelope> retrying = ConcurrentHashMap.newKeySet();
+    protected final ExecutorService workers;
+    protected final ScheduledExecutorService scheduler;
+    protected volatile boolean closing;
+
+    /**
+     * @param session                  the SMTP session to connect with
+     * @param capacity                 max messages waiting to be sent, {@link #offer(MimeMessage)} returns false when full
+     * @param connections              number of workers, each with its own SMTP connection
+     * @param batchSize                max messages sent per worker round on the same connection
+     * @param maxMessagesPerConnection reconnect after this many messages, unlimited when {@code <= 0}
+     * @param idleTimeoutMs            close a connection after it has been idle this long
+     * @param retry                    delay between attempts of a transient failure, no retry when null
+     * @param spoolDir                 local spool directory, no spool when null
+     */
+    public MailQueue(Session session, int capacity, int connections, int batchSize, int maxMessagesPerConnection, long idleTimeoutMs, BackoffStrategy retry, File spoolDir) {
+        this.session = session;
+        this.connections = Math.max(1, connections);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.idleTimeoutMs = Math.max(0, idleTimeoutMs);
+        this.retry = retry;
+        this.spoolDir = spoolDir;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        // daemon: never keeps the JVM alive, the shutdown hook drains the queue via SmtpClientConfig.shutdown()
+        this.workers = Executors.newFixedThreadPool(this.connections, NamedDefaultThreadFactory.build("MailQueue", false, true));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(NamedDefaultThreadFactory.build("MailQueue.retry", false, true));
+    }
+
+    /**
+     * Start the workers
+     *
+     * @param recoverSpool true to queue the messages left in the spool directory by the previous run
+     * @return this
+     * @throws IOException if failed to create the spool directory
+     */
+    public MailQueue start(boolean recoverSpool) throws IOException {
+        if (spoolDir != null) {
+            Files.createDirectories(spoolDir.toPath());
+            if (recoverSpool) {
+                recoverSpool();
+            }
+        }
+        for (int i = 0; i < connections; i++) {
+            workers.execute(this::work);
+        }
+        current = this;
+        return this;
+    }
+
+    /**
+     * Queue a message, the message is spooled before this method returns when spoolDir is set
+     *
+     * @param message
+     * @return false if the queue is full or closing, or failed to spool
+     */
+    public boolean offer(MimeMessage message) {
+        if (closing) {
+            REJECTED.increment();
+            return false;
+        }
+        Envelope env;
+        try {
+            // what Transport.send does before sending, once here so that the spooled copy is the one to be sent
+            message.saveChanges();
+            env = new Envelope(message, spool(message));
+        } catch (MessagingException | IOException ex) {
+            log.error("failed to queue email", ex);
+            REJECTED.increment();
+            return false;
+        }
+        if (!queue.offer(env)) {
+            log.warn(() -> "email queue is full, rejected " + env);
+            deleteSpool(env);
+            REJECTED.increment();
+            return false;
+        }
+        ENQUEUED.increment();
+        return true;
+    }
+
+    /**
+     * @return number of messages queued or waiting for retry
+     */
+    public int size() {
+        return queue.size() + retrying.size();
+    }
+
+    /**
+     * Stop accepting messages, send what is queued within a grace period, then close all connections. Messages waiting
+     * for retry or not sent within the grace period are left in the spool directory.
+     */
+    public void shutdown() {
+        shutdown(null);
+    }
+
+    /**
+     * Stop this queue and move its queued messages and messages waiting for retry to another queue, used when the
+     * configuration is reloaded
+     *
+     * @param successor the queue to take over the messages, null to shut down only
+     */
+    public void shutdown(MailQueue successor) {
+        closing = true;
+        scheduler.shutdownNow();
+        if (successor != null) {
+            List<Envelope> pending = new ArrayList<>(retrying);
+            retrying.clear();
+            queue.drainTo(pending);
+            for (Envelope env : pending) {
+                if (!successor.queue.offer(env)) {
+                    log.warn(() -> "email queue is full, " + (env.spoolFile == null ? "lost " : "left in spool ") + env);
+                }
+            }
+        }
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_GRACE_MS, TimeUnit.MILLISECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        int left = size();
+        if (left > 0) {
+            log.warn(() -> "email queue stopped with " + left + " unsent message(s)" + (spoolDir == null ? " lost" : " left in spool " + spoolDir));
+        }
+        if (current == this) {
+            current = successor;
+        }
+    }
+
+    protected void work() {
+        Transport transport = null;
+        int sentOnConnection = 0;
+        long lastUsedMs = 0;
+        List<Envelope> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                Envelope first = queue.poll(Math.min(MAX_POLL_MS, Math.max(1, idleTimeoutMs)), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (transport != null && System.currentTimeMillis() - lastUsedMs >= idleTimeoutMs) {
+                        close(transport);
+                        transport = null;
+                    }
+                    if (closing) {
+                        break;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                BATCHES.increment();
+                // health check once per batch, SMTPTransport.isConnected() sends NOOP
+                if (transport != null && (!transport.isConnected() || maxMessagesPerConnection > 0 && sentOnConnection >= maxMessagesPerConnection)) {
+                    close(transport);
+                    transport = null;
+                }
+                for (Envelope env : batch) {
+                    try {
+                        if (transport == null) {
+                            transport = session.getTransport();
+                            transport.connect();
+                            CONNECTIONS.increment();
+                            sentOnConnection = 0;
+                        }
+                        transport.sendMessage(env.message, env.message.getAllRecipients());
+                        sentOnConnection++;
+                        SENT.increment();
+                        deleteSpool(env);
+                    } catch (MessagingException ex) {
+                        if (!(ex instanceof SendFailedException)) {
+                            // connection level failure, the next message gets a new connection
+                            close(transport);
+                            transport = null;
+                        }
+                        onFailure(env, ex);
+                    }
+                }
+                batch.clear();
+                lastUsedMs = System.currentTimeMillis();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable ex) {
+            log.fatal("email queue worker stopped", ex);
+        } finally {
+            close(transport);
+        }
+    }
+
+    protected void onFailure(Envelope env, MessagingException ex) {
+        env.attempts++;
+        long delayMs = retry == null || !isTransient(ex) ? -1 : retry.calculateDelayByAttempt(env.attempts - 1, TimeUnit.MILLISECONDS);
+        if (delayMs < 0 || closing) {
+            if (delayMs < 0) {
+                FAILED.increment();
+                log.fatal(() -> "Failed to send email " + env + " after " + env.attempts + " attempt(s): " + ex);
+                failSpool(env);
+            } else {
+                log.warn(() -> "Failed to send email " + env + ", " + (env.spoolFile == null ? "lost" : "left in spool") + " on shutdown: " + ex);
+            }
+            return;
+        }
+        log.warn(() -> "Failed to send email " + env + ", retry #" + env.attempts + " in " + delayMs + "ms: " + ex);
+        RETRIED.increment();
+        retrying.add(env);
+        try {
+            scheduler.schedule(() -> {
+                if (retrying.remove(env) && !queue.offer(env)) {
+                    log.warn(() -> "email queue is full, " + (env.spoolFile == null ? "lost " : "left in spool ") + env);
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException rejected) {
+            // shutting down, stays in retrying for the successor
+        }
+    }
+
+    /**
+     * @param ex
+     * @return true if the same message may succeed later
+     */
+    protected boolean isTransient(MessagingException ex) {
+        if (ex instanceof SMTPSendFailedException smtpEx) {
+            int code = smtpEx.getReturnCode();
+            return code >= 400 && code < 500;
+        }
+        if (ex instanceof SendFailedException sfe) {
+            Address[] sent = sfe.getValidSentAddresses();
+            if (sent != null && sent.length > 0) {
+                // partially delivered, resending would deliver it twice
+                return false;
+            }
+            Address[] unsent = sfe.getValidUnsentAddresses();
+            return unsent != null && unsent.length > 0;
+        }
+        // connect, TLS, AUTH or I/O failure
+        return true;
+    }
+
+    protected void close(Transport transport) {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (MessagingException ex) {
+            log.debug(() -> "failed to close SMTP connection: " + ex);
+        }
+    }
+
+    protected File spool(MimeMessage message) throws IOException, MessagingException {
+        if (spoolDir == null) {
+            return null;
+        }
+        String name = System.currentTimeMillis() + "-" + SPOOL_SEQ.incrementAndGet();
+        File tmp = new File(spoolDir, name + ".tmp");
+        File file = new File(spoolDir, name + SPOOL_EXT);
+        try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+            message.writeTo(out);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    protected void deleteSpool(Envelope env) {
+        File file = env.spoolFile;
+        if (file != null && !file.delete() && file.exists()) {
+            log.warn(() -> "failed to delete spooled email " + file);
+        }
+    }
+
+    protected void failSpool(Envelope env) {
+        File file = env.spoolFile;
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.move(file.toPath(), new File(spoolDir, file.getName() + FAILED_EXT).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            log.warn(() -> "failed to mark spooled email as failed " + file + ": " + ex);
+        }
+    }
+
+    protected void recoverSpool() {
+        File[] files = spoolDir.listFiles((dir, name) -> name.endsWith(SPOOL_EXT));
+        if (files == null || files.length == 0) {
+            return;
+        }
+        // file names start with the spool time
+        Arrays.sort(files);
+        int recovered = 0;
+        for (File file : files) {
+            MimeMessage message;
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                message = new MimeMessage(session, in);
+            } catch (IOException | MessagingException ex) {
+                log.error("failed to recover spooled email " + file, ex);
+                continue;
+            }
+            if (!queue.offer(new Envelope(message, file))) {
+                log.warn("email queue is full, " + (files.length - recovered) + " spooled email(s) will be recovered on next start");
+                break;
+            }
+            recovered++;
+        }
+        int n = recovered;
+        log.info(() -> n + " spooled email(s) recovered from " + spoolDir);
+    }
+
+    public static void appendMetrics(StringBuilder sb, boolean openMetrics) {
+        MailQueue q = current;
+        BootMetrics.appendGauge(sb, "mail_queue_depth", "Emails queued or waiting for retry", q == null ? 0 : q.size());
+        BootMetrics.appendCounter(sb, openMetrics, "mail_enqueued", "Emails accepted by the mail queue", ENQUEUED.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "mail_sent", "Emails sent by the mail queue", SENT.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "mail_failed", "Emails failed permanently or after all retries", FAILED.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "mail_retries", "Email send attempts retried", RETRIED.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "mail_rejected", "Emails rejected because the mail queue was full or closing", REJECTED.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "mail_batches", "Email batches sent on one SMTP connection", BATCHES.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "mail_smtp_connections", "SMTP connections opened by the mail queue", CONNECTIONS.sum());
+    }
+}
@@ -25,9 +25,11 @@ import org.summerboot.jexpress.annotation.config.ConfigHeader;
 import org.summerboot.jexpress.boot.BackOffice;
 import org.summerboot.jexpress.boot.config.BootConfig;
 import org.summerboot.jexpress.boot.config.ConfigUtil;
+import org.summerboot.jexpress.integration.mail.MailQueue;
 import org.summerboot.jexpress.util.strategy.BackoffStrategy;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
@@ -53,6 +55,10 @@ public class SmtpClientConfig extends BootConfig {
 
     @Override
     public void shutdown() {
+        MailQueue q = mailQueue;
+        if (q != null) {
+            q.shutdown();
+        }
     }
 
     @JsonIgnore
@@ -117,7 +123,44 @@ public class SmtpClientConfig extends BootConfig {
             desc = "Backoff strategy, unit = millisecond), strategy = {LINEAR, EXPONENTIAL}, In exponential mode, factor is growth multiplier; in linear mode, factor is step. Unlimited attempts when maxAttempts <= 0")
     protected volatile BackoffStrategy backoffStrategy = new BackoffStrategy(BackoffStrategy.Strategy.LINEAR, TimeUnit.MINUTES, 30, 5, 60, 0, 0.05);
 
-    //3. mail session for Json display only
+    //3. Outbound Mail Queue
+    public static final String KEY_QUEUE_CAPACITY = "mail.queue.capacity";
+    @ConfigHeader(title = "3. Outbound Mail Queue",
+            desc = "Async emails are queued and sent by a small pool of long-lived SMTP connections")
+    @Config(key = KEY_QUEUE_CAPACITY, defaultValue = "1000",
+            desc = "Max emails waiting to be sent, async send fails when the queue is full. Send on a new connection per email when 0")
+    protected volatile int queueCapacity = 1000;
+
+    public static final String KEY_QUEUE_CONNECTIONS = "mail.queue.connections";
+    @Config(key = KEY_QUEUE_CONNECTIONS, defaultValue = "2", desc = "Number of SMTP connections (workers) draining the queue")
+    protected volatile int queueConnections = 2;
+
+    public static final String KEY_QUEUE_BATCH_SIZE = "mail.queue.batchSize";
+    @Config(key = KEY_QUEUE_BATCH_SIZE, defaultValue = "20", desc = "Max emails sent per round on the same connection, the connection is checked with NOOP before each round")
+    protected volatile int queueBatchSize = 20;
+
+    public static final String KEY_QUEUE_MAX_PER_CONNECTION = "mail.queue.maxMessagesPerConnection";
+    @Config(key = KEY_QUEUE_MAX_PER_CONNECTION, defaultValue = "100", desc = "Reconnect after this many emails, unlimited when <= 0")
+    protected volatile int queueMaxMessagesPerConnection = 100;
+
+    public static final String KEY_QUEUE_IDLE_TIMEOUT = "mail.queue.idleTimeoutSeconds";
+    @Config(key = KEY_QUEUE_IDLE_TIMEOUT, defaultValue = "60", desc = "Close an SMTP connection after it has been idle this long")
+    protected volatile int queueIdleTimeoutSeconds = 60;
+
+    public static final String KEY_QUEUE_RETRY = "mail.queue.retry.BackoffStrategy";
+    @Config(key = KEY_QUEUE_RETRY, defaultValue = "{\"strategy\":\"EXPONENTIAL\",\"timeUnit\":\"SECONDS\",\"initialInterval\":5,\"factor\":2.0,\"maxInterval\":300,\"maxAttempts\":8,\"jitterFactor\":0.1}",
+            desc = "Retry of transient failures (4xx replies, connection errors), maxAttempts is the max number of retries. Permanent failures (5xx replies, invalid recipients) are not retried")
+    protected volatile BackoffStrategy queueRetry = new BackoffStrategy(BackoffStrategy.Strategy.EXPONENTIAL, TimeUnit.SECONDS, 5, 2, 300, 8, 0.1);
+
+    public static final String KEY_QUEUE_SPOOL_DIR = "mail.queue.spool.dir";
+    @Config(key = KEY_QUEUE_SPOOL_DIR, required = false,
+            desc = "Local spool directory, queued emails are written here and sent again after restart, failed ones are kept as *.failed. No spool when not provided. Must not be shared by multiple processes")
+    protected volatile File queueSpoolDir;
+
+    @JsonIgnore
+    protected volatile MailQueue mailQueue;
+
+    //4. mail session for Json display only
     protected Properties mailSessionProp;
 
     @Override
@@ -150,6 +193,13 @@ public class SmtpClientConfig extends BootConfig {
         props.remove(KEY_MAILTO_DEV);
         props.remove(KEY_MAILTO_REPORT);
         props.remove(KEY_DEBOUCING_INTERVAL);
+        props.remove(KEY_QUEUE_CAPACITY);
+        props.remove(KEY_QUEUE_CONNECTIONS);
+        props.remove(KEY_QUEUE_BATCH_SIZE);
+        props.remove(KEY_QUEUE_MAX_PER_CONNECTION);
+        props.remove(KEY_QUEUE_IDLE_TIMEOUT);
+        props.remove(KEY_QUEUE_RETRY);
+        props.remove(KEY_QUEUE_SPOOL_DIR);
         Object displayName = props.get(KEY_USER_DISPLAYNAME);
         if (displayName == null) {
             displayName = props.get("mail.smtp.userName");// for backward compatibility only, will be depreacated in next release
@@ -168,12 +218,38 @@ public class SmtpClientConfig extends BootConfig {
             }
         });
         mailSessionProp = mailSession.getProperties();
+
+        //2. mail queue, the queued messages of the old one are moved to the new one
+        if (!isReal) {
+            return;
+        }
+        MailQueue old = mailQueue;
+        MailQueue q = null;
+        if (queueCapacity > 0) {
+            try {
+                q = new MailQueue(mailSession, queueCapacity, queueConnections, queueBatchSize, queueMaxMessagesPerConnection,
+                        TimeUnit.SECONDS.toMillis(queueIdleTimeoutSeconds), queueRetry, queueSpoolDir).start(old == null);
+            } catch (IOException ex) {
+                throw new IllegalArgumentException(KEY_QUEUE_SPOOL_DIR + ": failed to create " + queueSpoolDir, ex);
+            }
+        }
+        mailQueue = q;
+        if (old != null) {
+            old.shutdown(q);
+        }
     }
 
     public Session getMailSession() {
         return mailSession;
     }
 
+    /**
+     * @return the outbound mail queue, null when mail.queue.capacity is 0
+     */
+    public MailQueue getMailQueue() {
+        return mailQueue;
+    }
+
     public Set<String> getEmailToAppSupport() {
         return emailToAppSupport;
     }
@@ -16,12 +16,18 @@
  */
 package org.summerboot.jexpress.integration.pdf;
 
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.FSStreamFactory;
 import com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder;
+import com.openhtmltopdf.pdfboxout.PDFontSupplier;
 import com.openhtmltopdf.pdfboxout.PdfBoxRenderer;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
 import com.openhtmltopdf.render.Box;
 import com.openhtmltopdf.render.PageBox;
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentInformation;
 import org.apache.pdfbox.pdmodel.encryption.ProtectionPolicy;
@@ -34,23 +40,44 @@ import org.summerboot.jexpress.util.concurrent.ConcurrentUtil;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * HTML to PDF with openhtmltopdf and PDFBox.
+ * <p>
+ * The .ttf fonts are read once and parsed once per font set, a font set is used by one document at a time and reused
+ * by the next one, so a document only embeds the subset it uses instead of reading and parsing the font files again.
+ * The files under the base directory (CSS, images) are cached in memory and reloaded when modified.
+ *
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
  */
 public class PdfBoxAgent {
 
     public static final float POINTS_PER_MM = 75f;
+    public static final int MAX_CACHED_RESOURCE_SIZE = 4 * 1024 * 1024;
+    public static final int MAX_CACHED_RESOURCES = 1000;
     protected final Map<String, PDFont> FONTS = new HashMap();
 
     public PDFont getFont(String name) {
@@ -61,6 +88,47 @@ public class PdfBoxAgent {
 
     protected Map<File, String> fonts = null;
 
+    /**
+     * {@code <fontFamily, .ttf file data>} read once, shared by all font sets
+     */
+    protected Map<String, byte[]> fontData = null;
+
+    /**
+     * idle parsed font sets {@code <fontFamily, font>}, a font set is used by one document at a time
+     */
+    protected final Queue<Map<String, TrueTypeFont>> idleFontSets = new ConcurrentLinkedQueue<>();
+    protected final AtomicInteger idleFontSetCount = new AtomicInteger();
+    protected volatile int maxIdleFontSets = Runtime.getRuntime().availableProcessors();
+
+    protected record CachedResource(long lastModified, long length, byte[] data) {
+    }
+
+    /**
+     * {@code <url, file data>} of the files under the base directory
+     */
+    protected final Map<String, CachedResource> resources = new ConcurrentHashMap<>();
+
+    protected final FSStreamFactory resourceStreamFactory = url -> {
+        byte[] data;
+        try {
+            data = getResource(url);
+        } catch (IOException ex) {
+            data = null;
+        }
+        final byte[] content = data;
+        return new FSStream() {
+            @Override
+            public InputStream getStream() {
+                return content == null ? null : new ByteArrayInputStream(content);
+            }
+
+            @Override
+            public Reader getReader() {
+                return content == null ? null : new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8);
+            }
+        };
+    };
+
     public PdfBoxAgent(File fontDir) throws IOException {
         this(fontDir, null);
     }
@@ -83,10 +151,14 @@ public class PdfBoxAgent {
         });
         if (fontFiles != null && fontFiles.length > 0) {
             fonts = new HashMap();
+            fontData = new HashMap<>();
             for (File file : fontFiles) {
                 String fileName = file.getName();
                 String fontFamily = fileName.substring(0, fileName.lastIndexOf("."));
                 fonts.put(file.getAbsoluteFile(), fontFamily);
+                if (fileName.toLowerCase().endsWith(".ttf")) {
+                    fontData.put(fontFamily, Files.readAllBytes(file.toPath()));
+                }
             }
         }
 
@@ -130,6 +202,127 @@ public class PdfBoxAgent {
         return fontFiles.length;
     }
 
+    /**
+     * @param maxIdleFontSets max parsed font sets kept for reuse, usually the number of concurrent renders
+     */
+    public void setMaxIdleFontSets(int maxIdleFontSets) {
+        this.maxIdleFontSets = maxIdleFontSets;
+    }
+
+    protected Map<String, TrueTypeFont> borrowFontSet() {
+        Map<String, TrueTypeFont> fontSet = idleFontSets.poll();
+        if (fontSet == null) {
+            return new HashMap<>();
+        }
+        idleFontSetCount.decrementAndGet();
+        return fontSet;
+    }
+
+    protected void returnFontSet(Map<String, TrueTypeFont> fontSet) {
+        if (idleFontSetCount.incrementAndGet() <= maxIdleFontSets) {
+            idleFontSets.offer(fontSet);
+            return;
+        }
+        idleFontSetCount.decrementAndGet();
+        for (TrueTypeFont ttf : fontSet.values()) {
+            try {
+                ttf.close();
+            } catch (IOException ex) {
+                // in-memory font data
+            }
+        }
+    }
+
+    protected TrueTypeFont getParsedFont(Map<String, TrueTypeFont> fontSet, String fontFamily) throws IOException {
+        TrueTypeFont ttf = fontSet.get(fontFamily);
+        if (ttf == null) {
+            ttf = new TTFParser().parse(new RandomAccessReadBuffer(fontData.get(fontFamily)));
+            fontSet.put(fontFamily, ttf);
+        }
+        return ttf;
+    }
+
+    /**
+     * Register the fonts to the builder, the .ttf fonts are loaded from the font set only when used by the document
+     *
+     * @param builder
+     * @param doc     the document of the builder, see {@link PdfRendererBuilder#usePDDocument(PDDocument)}
+     * @param fontSet
+     */
+    protected void useFonts(PdfRendererBuilder builder, PDDocument doc, Map<String, TrueTypeFont> fontSet) {
+        if (fonts == null || fonts.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<File, String> entry : fonts.entrySet()) {
+            String fontFamily = entry.getValue();
+            if (!fontData.containsKey(fontFamily)) {
+                builder.useFont(entry.getKey(), fontFamily);
+                continue;
+            }
+            builder.useFont(new PDFontSupplier(null) {
+                PDFont font;
+
+                @Override
+                public PDFont supply() {
+                    if (font == null) {
+                        try {
+                            font = PDType0Font.load(doc, getParsedFont(fontSet, fontFamily), true);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    }
+                    return font;
+                }
+            }, fontFamily);
+        }
+    }
+
+    /**
+     * @param url
+     * @return the file data, cached when it is a local file
+     * @throws IOException
+     */
+    protected byte[] getResource(String url) throws IOException {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException ex) {
+            throw new MalformedURLException(ex.getMessage());
+        }
+        File file;
+        try {
+            file = new File(uri);
+        } catch (IllegalArgumentException ex) {
+            file = null;
+        }
+        if (file == null || !file.isFile()) {
+            URL remote;
+            try {
+                remote = uri.toURL();
+            } catch (IllegalArgumentException ex) {// not absolute
+                throw new MalformedURLException(ex.getMessage());
+            }
+            try (InputStream in = remote.openStream()) {
+                return in.readAllBytes();
+            }
+        }
+        long lastModified = file.lastModified();
+        long length = file.length();
+        CachedResource cached = resources.get(url);
+        if (cached != null && cached.lastModified() == lastModified && cached.length() == length) {
+            return cached.data();
+        }
+        byte[] data = Files.readAllBytes(file.toPath());
+        if (data.length <= MAX_CACHED_RESOURCE_SIZE && (cached != null || resources.size() < MAX_CACHED_RESOURCES)) {
+            resources.put(url, new CachedResource(lastModified, length, data));
+        }
+        return data;
+    }
+
+    protected void useResourceCache(PdfRendererBuilder builder) {
+        builder.useProtocolsStreamImplementation(resourceStreamFactory, "file");
+    }
+
 
     public byte[] html2PDF(String html, File baseDir, ProtectionPolicy protectionPolicy, PDDocumentInformation info, float pdfVersion) throws IOException {
         return html2PDF(html, baseDir, protectionPolicy, info, pdfVersion, 0, 0, null);
@@ -137,9 +330,14 @@ public class PdfBoxAgent {
 
     public byte[] html2PDF(String html, File baseDir, ProtectionPolicy protectionPolicy, PDDocumentInformation info, float pdfVersion,
                            float pageWidth, float pageHeight, BaseRendererBuilder.PageSizeUnits units) throws IOException {
+        String baseUri = buildBaseDocumentUri1(baseDir);
         PdfRendererBuilder builder = new PdfRendererBuilder();
-        useFonts(builder, null);
-        builder.withHtmlContent(html, buildBaseDocumentUri1(baseDir));
+        PDDocument target = new PDDocument();
+        builder.usePDDocument(target);
+        Map<String, TrueTypeFont> fontSet = borrowFontSet();
+        useFonts(builder, target, fontSet);
+        useResourceCache(builder);
+        builder.withHtmlContent(html, baseUri);
         if (info != null) {
             builder.withProducer(info.getProducer());
         }
@@ -148,7 +346,7 @@ public class PdfBoxAgent {
             builder.useDefaultPageSize(pageWidth, pageHeight, units);
         }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();) {
+        try (target; ByteArrayOutputStream baos = new ByteArrayOutputStream();) {
             builder.toStream(baos);
             try (PdfBoxRenderer renderer = builder.buildPdfRenderer(); PDDocument doc = renderer.getPdfDocument();) {
                 //security
@@ -167,6 +365,8 @@ public class PdfBoxAgent {
             }
 
             return baos.toByteArray();
+        } finally {
+            returnFontSet(fontSet);
         }
     }
 
@@ -225,16 +425,23 @@ public class PdfBoxAgent {
      */
     public LayoutInfo layoutThenGetInfo(String html, File baseDir) throws IOException {
         LayoutInfo ret;
+        String baseUri = buildBaseDocumentUri1(baseDir);
         PdfRendererBuilder builderTemp = new PdfRendererBuilder();
-        useFonts(builderTemp, null);
-        builderTemp.withHtmlContent(html, buildBaseDocumentUri1(baseDir));
+        PDDocument target = new PDDocument();
+        builderTemp.usePDDocument(target);
+        Map<String, TrueTypeFont> fontSet = borrowFontSet();
+        useFonts(builderTemp, target, fontSet);
+        useResourceCache(builderTemp);
+        builderTemp.withHtmlContent(html, baseUri);
         //builderTemp.useFastMode();
-        try (PdfBoxRenderer renderer = builderTemp.buildPdfRenderer(); PDDocument doc = renderer.getPdfDocument();) {//need to close doc if use box
+        try (target; PdfBoxRenderer renderer = builderTemp.buildPdfRenderer(); PDDocument doc = renderer.getPdfDocument();) {//need to close doc if use box
             renderer.layout();
             // The root box is <html>, the first child is <body>, then <div>.
             Box box = renderer.getRootBox();//1mm=76; 2mm=151;
             List<PageBox> pageList = box.getLayer().getPages();//1mm=215p; 2mm=110p;
             ret = new LayoutInfo(pageList.size(), box.getWidth(), box.getHeight());
+        } finally {
+            returnFontSet(fontSet);
         }
         return ret;
     }
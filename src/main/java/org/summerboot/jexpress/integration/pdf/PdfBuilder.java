@@ -31,6 +31,7 @@ import org.summerboot.jexpress.api.common.SessionContext;
 import org.summerboot.jexpress.api.mail.PostOffice;
 import org.summerboot.jexpress.boot.BootConstants;
 import org.summerboot.jexpress.integration.mail.config.SmtpClientConfig;
+import org.summerboot.jexpress.integration.template.freemarker.FreeMarker;
 import org.summerboot.jexpress.util.format.PageCssUtil;
 
 import java.io.File;
@@ -40,9 +41,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Base64;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.zip.CRC32;
 
 /**
@@ -75,7 +74,7 @@ public class PdfBuilder {
 
     //private static final WriterProperties WRITER_PROPS = IText.buildDefaultAccessPermission(null, null, true, PdfVersion.PDF_1_7);
 
-    private final Map<String, Template> FreeMarkerTemplates = new HashMap<>();
+    private volatile FreeMarker freeMarker;
 
     protected PdfBoxAgent pdfBoxAgent;
     protected ItextAgent agentIText;
@@ -113,6 +112,34 @@ public class PdfBuilder {
         this.dumpDir = dumpDir;
     }
 
+    /**
+     * @param templateName FreeMarker template under the HTML template directory, parsed once and cached by FreeMarker
+     * @return the template
+     * @throws IOException
+     */
+    public Template getTemplate(String templateName) throws IOException {
+        FreeMarker fm = freeMarker;
+        if (fm == null) {
+            fm = FreeMarker.init(htmlTemplateDir);
+            freeMarker = fm;
+        }
+        return fm.getTemplate(templateName);
+    }
+
+    /**
+     * @param templateName FreeMarker template under the HTML template directory
+     * @param dataModel
+     * @return HTML content
+     * @throws IOException
+     */
+    public String generateHtml(String templateName, Object dataModel) throws IOException {
+        return FreeMarker.generate(getTemplate(templateName), dataModel);
+    }
+
+    public PdfBoxAgent getPdfBoxAgent() {
+        return pdfBoxAgent;
+    }
+
     public byte[] html2PDF(String requesterTxId, String htmlContent, PdfBuilderConfig cfg, PostOffice po, SessionContext context) throws IOException {
         return html2PDF(requesterTxId, htmlContent, false, cfg, po, context);
     }
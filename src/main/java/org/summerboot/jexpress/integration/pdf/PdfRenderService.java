@@ -0,0 +1,202 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.pdf;
+
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.RenderDestination;
+import org.summerboot.jexpress.api.common.SessionContext;
+import org.summerboot.jexpress.api.mail.PostOffice;
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+import org.summerboot.jexpress.util.concurrent.NamedDefaultThreadFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders PDF documents of a {@link PdfBuilder} on a dedicated bounded pool, so that a burst of PDF requests can neither
+ * take all the BizExecutor threads nor render an unbounded number of documents in the heap at the same time.
+ * <p>
+ * A render is rejected with IOException when all threads are busy and the queue is full, and the caller gets
+ * IOException when the document is not rendered within timeoutMs (including the time waiting in the queue). A timed
+ * out render is interrupted, but the layout engine may not stop until the document is done.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class PdfRenderService {
+
+    protected static final Set<PdfRenderService> SERVICES = ConcurrentHashMap.newKeySet();
+    protected static final LongAdder RENDERED = new LongAdder();
+    protected static final LongAdder FAILED = new LongAdder();
+    protected static final LongAdder TIMEOUTS = new LongAdder();
+    protected static final LongAdder REJECTED = new LongAdder();
+    protected static final LongAdder RENDER_MS = new LongAdder();
+    protected static final LongAdder ALLOCATED_BYTES = new LongAdder();
+    protected static final com.sun.management.ThreadMXBean THREAD_MX =
+            ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean mx && mx.isThreadAllocatedMemorySupported() ? mx : null;
+
+    static {
+        BootMetrics.register("pdf_render", PdfRenderService::appendMetrics);
+    }
+
+    protected final PdfBuilder pdfBuilder;
+    protected final ThreadPoolExecutor executor;
+    protected final long timeoutMs;
+    protected final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * @param pdfBuilder
+     * @param threads    max documents rendered at the same time
+     * @param queueSize  max documents waiting to be rendered
+     * @param timeoutMs  max time per document, no timeout when {@code <= 0}
+     */
+    public PdfRenderService(PdfBuilder pdfBuilder, int threads, int queueSize, long timeoutMs) {
+        this.pdfBuilder = pdfBuilder;
+        this.timeoutMs = timeoutMs;
+        threads = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                NamedDefaultThreadFactory.build("PdfRender", false), new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        pdfBuilder.getPdfBoxAgent().setMaxIdleFontSets(threads);
+        SERVICES.add(this);
+    }
+
+    public PdfBuilder getPdfBuilder() {
+        return pdfBuilder;
+    }
+
+    public byte[] html2PDF(String requesterTxId, String htmlContent, boolean isSinglePage, int extraSpace, PdfBuilderConfig cfg, PostOffice po, SessionContext context) throws IOException {
+        return render(() -> pdfBuilder.html2PDF(requesterTxId, htmlContent, isSinglePage, extraSpace, cfg, po, context));
+    }
+
+    /**
+     * Generate HTML from a FreeMarker template under the HTML template directory, then render it
+     *
+     * @param requesterTxId
+     * @param templateName
+     * @param dataModel
+     * @param isSinglePage
+     * @param extraSpace
+     * @param cfg
+     * @param po
+     * @param context
+     * @return PDF data
+     * @throws IOException
+     */
+    public byte[] template2PDF(String requesterTxId, String templateName, Object dataModel, boolean isSinglePage, int extraSpace, PdfBuilderConfig cfg, PostOffice po, SessionContext context) throws IOException {
+        return render(() -> pdfBuilder.html2PDF(requesterTxId, pdfBuilder.generateHtml(templateName, dataModel), isSinglePage, extraSpace, cfg, po, context));
+    }
+
+    public List<byte[]> pdf2Images(String requesterTxId, byte[] pdf, String password, ImageType imageType, float imageDPI, String imageFormat, RenderDestination renderDestination, SessionContext context) throws IOException {
+        return render(() -> pdfBuilder.pdf2Images(requesterTxId, pdf, password, imageType, imageDPI, imageFormat, renderDestination, context));
+    }
+
+    /**
+     * Run a render task on the render pool and wait for its result
+     *
+     * @param task
+     * @param <T>
+     * @return the task result
+     * @throws IOException when the task failed, timed out or was rejected
+     */
+    public <T> T render(Callable<T> task) throws IOException {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> measure(task));
+        } catch (RejectedExecutionException ex) {
+            REJECTED.increment();
+            throw new IOException("PDF render queue is full", ex);
+        }
+        try {
+            return timeoutMs > 0 ? future.get(timeoutMs, TimeUnit.MILLISECONDS) : future.get();
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            TIMEOUTS.increment();
+            throw new IOException("PDF render timeout after " + timeoutMs + "ms", ex);
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("PDF render interrupted");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException ioe) {
+                throw ioe;
+            }
+            throw new IOException("PDF render failed", cause);
+        }
+    }
+
+    protected <T> T measure(Callable<T> task) throws Exception {
+        active.incrementAndGet();
+        long allocatedBefore = THREAD_MX == null ? -1 : THREAD_MX.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T ret = task.call();
+            success = true;
+            return ret;
+        } finally {
+            RENDER_MS.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            if (allocatedBefore >= 0) {
+                long allocatedAfter = THREAD_MX.getCurrentThreadAllocatedBytes();
+                if (allocatedAfter >= allocatedBefore) {
+                    ALLOCATED_BYTES.add(allocatedAfter - allocatedBefore);
+                }
+            }
+            if (success) {
+                RENDERED.increment();
+            } else {
+                FAILED.increment();
+            }
+            active.decrementAndGet();
+        }
+    }
+
+    public void shutdown() {
+        SERVICES.remove(this);
+        executor.shutdown();
+    }
+
+    public static void appendMetrics(StringBuilder sb, boolean openMetrics) {
+        int queued = 0, rendering = 0;
+        for (PdfRenderService s : SERVICES) {
+            queued += s.executor.getQueue().size();
+            rendering += s.active.get();
+        }
+        BootMetrics.appendGauge(sb, "pdf_render_queued", "PDF documents waiting for a render thread", queued);
+        BootMetrics.appendGauge(sb, "pdf_render_active", "PDF documents being rendered", rendering);
+        BootMetrics.appendCounter(sb, openMetrics, "pdf_rendered", "PDF renders completed", RENDERED.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "pdf_render_failed", "PDF renders failed", FAILED.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "pdf_render_timeouts", "PDF renders the caller stopped waiting for", TIMEOUTS.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "pdf_render_rejected", "PDF renders rejected because the render queue was full", REJECTED.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "pdf_render_milliseconds", "Total PDF render time, divided by renders for the average latency", RENDER_MS.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "pdf_render_allocated_bytes", "Total heap allocated by PDF renders, divided by renders for the memory per render", ALLOCATED_BYTES.sum());
+    }
+}
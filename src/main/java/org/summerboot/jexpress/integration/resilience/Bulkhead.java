@@ -0,0 +1,77 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.resilience;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the concurrent calls to one dependency, so that a slow dependency cannot take all the threads/connections
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class Bulkhead {
+
+    protected final int maxConcurrentCalls;
+    protected final long maxWaitMs;
+    protected final Semaphore semaphore;
+
+    /**
+     * @param maxConcurrentCalls
+     * @param maxWaitMs          max time to wait for a permit, 0 to reject immediately when full
+     */
+    public Bulkhead(int maxConcurrentCalls, long maxWaitMs) {
+        if (maxConcurrentCalls < 1 || maxWaitMs < 0) {
+            throw new IllegalArgumentException("invalid bulkhead settings: maxConcurrentCalls=" + maxConcurrentCalls + ", maxWaitMs=" + maxWaitMs);
+        }
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitMs = maxWaitMs;
+        this.semaphore = new Semaphore(maxConcurrentCalls);
+    }
+
+    /**
+     * @return true if permitted, the caller must call {@link #release()} when the call completes
+     */
+    public boolean tryAcquire() {
+        if (maxWaitMs == 0) {
+            return semaphore.tryAcquire();
+        }
+        try {
+            return semaphore.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void release() {
+        semaphore.release();
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public int getAvailablePermits() {
+        return semaphore.availablePermits();
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead{" + "maxConcurrentCalls=" + maxConcurrentCalls + ", maxWaitMs=" + maxWaitMs + ", available=" + semaphore.availablePermits() + '}';
+    }
+}
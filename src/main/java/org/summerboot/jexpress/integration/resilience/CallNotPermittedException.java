@@ -0,0 +1,46 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.resilience;
+
+/**
+ * Thrown when a call is rejected without reaching the dependency
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class CallNotPermittedException extends RuntimeException {
+
+    public enum Reason {
+        CIRCUIT_OPEN, BULKHEAD_FULL
+    }
+
+    protected final String dependency;
+    protected final Reason reason;
+
+    public CallNotPermittedException(String dependency, Reason reason) {
+        super(dependency + ": " + (reason == Reason.CIRCUIT_OPEN ? "circuit breaker is open" : "too many concurrent calls"), null, false, false);
+        this.dependency = dependency;
+        this.reason = reason;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
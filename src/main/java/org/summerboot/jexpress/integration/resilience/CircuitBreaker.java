@@ -0,0 +1,333 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.resilience;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Circuit breaker with a sliding window over the latest calls:
+ * <ul>
+ * <li>CLOSED: calls are permitted, the breaker opens when at least minimumNumberOfCalls are recorded in the window and
+ * the failure rate reaches failureRateThreshold</li>
+ * <li>OPEN: calls are rejected until waitDurationInOpenStateMs elapsed, then the next call moves it to HALF_OPEN</li>
+ * <li>HALF_OPEN: only permittedCallsInHalfOpenState probe calls are permitted, any failure opens it again, it closes
+ * when all probes succeeded</li>
+ * </ul>
+ * The window is either the last windowSize calls (COUNT) or the calls of the last windowSize seconds (TIME).
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public enum WindowType {
+        COUNT, TIME
+    }
+
+    @FunctionalInterface
+    public interface StateListener {
+
+        void onStateChanged(CircuitBreaker breaker, State from, State to, String reason);
+    }
+
+    protected final String name;
+    protected final WindowType windowType;
+    protected final int windowSize;
+    protected final int minimumNumberOfCalls;
+    protected final int failureRateThreshold;
+    protected final long waitDurationInOpenStateNanos;
+    protected final int permittedCallsInHalfOpenState;
+    protected volatile StateListener listener;
+
+    // sliding window, guarded by this
+    protected final boolean[] countWindowFailures;
+    protected final long[] timeWindowEpochSecond;
+    protected final int[] timeWindowCalls;
+    protected final int[] timeWindowFailures;
+    protected int countWindowIndex;
+    protected int windowCalls;
+    protected int windowFailures;
+
+    protected volatile State state = State.CLOSED;
+    // guarded by this
+    protected long openedAtNanos;
+    protected int halfOpenPermits;
+    protected int halfOpenSucceeded;
+
+    protected final AtomicLongArray transitions = new AtomicLongArray(State.values().length);
+
+    protected record Transition(State from, State to, String reason) {
+    }
+
+    // transitions queued under the lock in the order they happened, delivered outside the lock, guarded by this
+    protected final Queue<Transition> pendingTransitions = new ArrayDeque<>();
+    protected boolean notifying;
+
+    /**
+     * @param name                          dependency name, used as the health check name and metrics label
+     * @param windowType
+     * @param windowSize                    number of calls (COUNT) or seconds (TIME)
+     * @param minimumNumberOfCalls          minimum calls in the window before the failure rate is evaluated
+     * @param failureRateThreshold          percent 1-100
+     * @param waitDurationInOpenStateMs
+     * @param permittedCallsInHalfOpenState
+     */
+    public CircuitBreaker(String name, WindowType windowType, int windowSize, int minimumNumberOfCalls, int failureRateThreshold,
+                          long waitDurationInOpenStateMs, int permittedCallsInHalfOpenState) {
+        if (windowSize < 1 || minimumNumberOfCalls < 1 || failureRateThreshold < 1 || failureRateThreshold > 100
+                || waitDurationInOpenStateMs < 0 || permittedCallsInHalfOpenState < 1) {
+            throw new IllegalArgumentException("invalid circuit breaker settings of " + name);
+        }
+        this.name = name;
+        this.windowType = windowType;
+        this.windowSize = windowSize;
+        this.minimumNumberOfCalls = minimumNumberOfCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.waitDurationInOpenStateNanos = TimeUnit.MILLISECONDS.toNanos(waitDurationInOpenStateMs);
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+        if (windowType == WindowType.COUNT) {
+            countWindowFailures = new boolean[windowSize];
+            timeWindowEpochSecond = null;
+            timeWindowCalls = null;
+            timeWindowFailures = null;
+        } else {
+            countWindowFailures = null;
+            timeWindowEpochSecond = new long[windowSize];
+            timeWindowCalls = new int[windowSize];
+            timeWindowFailures = new int[windowSize];
+        }
+    }
+
+    /**
+     * @return true if the call is permitted, the caller must report the result via {@link #onSuccess()} or
+     * {@link #onFailure()}
+     */
+    public boolean tryAcquirePermission() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        boolean permitted;
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openedAtNanos >= waitDurationInOpenStateNanos) {
+                halfOpenPermits = permittedCallsInHalfOpenState;
+                halfOpenSucceeded = 0;
+                transitionTo(State.HALF_OPEN, "wait duration in open state elapsed");
+            }
+            permitted = switch (state) {
+                case CLOSED -> true;
+                case OPEN -> false;
+                case HALF_OPEN -> {
+                    if (halfOpenPermits > 0) {
+                        halfOpenPermits--;
+                        yield true;
+                    }
+                    yield false;
+                }
+            };
+        }
+        notifyListener();
+        return permitted;
+    }
+
+    public void onSuccess() {
+        record(false);
+    }
+
+    public void onFailure() {
+        record(true);
+    }
+
+    /**
+     * The permitted call was cancelled without an outcome: neither a success nor a failure, a half open probe
+     * permission is given back so that the breaker does not stay in HALF_OPEN
+     */
+    public void onIgnored() {
+        synchronized (this) {
+            if (state == State.HALF_OPEN && permittedCallsInHalfOpenState - halfOpenPermits - halfOpenSucceeded > 0) {
+                halfOpenPermits++;
+            }
+        }
+    }
+
+    protected void record(boolean failure) {
+        synchronized (this) {
+            switch (state) {
+                case CLOSED -> {
+                    recordInWindow(failure);
+                    if (windowCalls >= minimumNumberOfCalls && windowFailures * 100L >= (long) failureRateThreshold * windowCalls) {
+                        open("failure rate " + (windowFailures * 100 / windowCalls) + "% of " + windowCalls + " calls");
+                    } else {
+                        return;
+                    }
+                }
+                case HALF_OPEN -> {
+                    if (failure) {
+                        open("probe call failed in half open state");
+                    } else if (++halfOpenSucceeded >= permittedCallsInHalfOpenState) {
+                        resetWindow();
+                        transitionTo(State.CLOSED, halfOpenSucceeded + " probe calls succeeded in half open state");
+                    } else {
+                        return;
+                    }
+                }
+                case OPEN -> {
+                    // late result of a call permitted before opening
+                    return;
+                }
+            }
+        }
+        notifyListener();
+    }
+
+    protected void open(String reason) {
+        openedAtNanos = System.nanoTime();
+        transitionTo(State.OPEN, reason);
+    }
+
+    /**
+     * Must be called with the lock held, the listener is notified by {@link #notifyListener()} after the lock is
+     * released
+     *
+     * @param to
+     * @param reason
+     */
+    protected void transitionTo(State to, String reason) {
+        State from = state;
+        state = to;
+        transitions.incrementAndGet(to.ordinal());
+        if (from != to && listener != null) {
+            pendingTransitions.add(new Transition(from, to, reason));
+        }
+    }
+
+    /**
+     * Deliver the queued transitions outside the lock, one thread at a time in the order they happened: a thread that
+     * finds another one delivering leaves its transitions to it
+     */
+    protected void notifyListener() {
+        while (true) {
+            Transition t;
+            synchronized (this) {
+                if (notifying || (t = pendingTransitions.poll()) == null) {
+                    return;
+                }
+                notifying = true;
+            }
+            try {
+                StateListener l = listener;
+                if (l != null) {
+                    l.onStateChanged(this, t.from, t.to, t.reason);
+                }
+            } finally {
+                synchronized (this) {
+                    notifying = false;
+                }
+            }
+        }
+    }
+
+    protected void recordInWindow(boolean failure) {
+        if (windowType == WindowType.COUNT) {
+            if (windowCalls == windowSize) {
+                // overwrite the oldest call
+                if (countWindowFailures[countWindowIndex]) {
+                    windowFailures--;
+                }
+            } else {
+                windowCalls++;
+            }
+            countWindowFailures[countWindowIndex] = failure;
+            if (failure) {
+                windowFailures++;
+            }
+            countWindowIndex = (countWindowIndex + 1) % windowSize;
+            return;
+        }
+        long nowSecond = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        // evict expired buckets
+        windowCalls = 0;
+        windowFailures = 0;
+        for (int i = 0; i < windowSize; i++) {
+            if (nowSecond - timeWindowEpochSecond[i] >= windowSize) {
+                timeWindowCalls[i] = 0;
+                timeWindowFailures[i] = 0;
+            }
+        }
+        int bucket = Math.floorMod(nowSecond, windowSize);
+        if (timeWindowEpochSecond[bucket] != nowSecond) {
+            timeWindowEpochSecond[bucket] = nowSecond;
+            timeWindowCalls[bucket] = 0;
+            timeWindowFailures[bucket] = 0;
+        }
+        timeWindowCalls[bucket]++;
+        if (failure) {
+            timeWindowFailures[bucket]++;
+        }
+        for (int i = 0; i < windowSize; i++) {
+            windowCalls += timeWindowCalls[i];
+            windowFailures += timeWindowFailures[i];
+        }
+    }
+
+    protected void resetWindow() {
+        windowCalls = 0;
+        windowFailures = 0;
+        countWindowIndex = 0;
+        if (timeWindowCalls != null) {
+            Arrays.fill(timeWindowCalls, 0);
+            Arrays.fill(timeWindowFailures, 0);
+        }
+    }
+
+    /**
+     * @param listener notified outside the lock after each state transition, in transition order and never concurrently
+     */
+    public void setStateListener(StateListener listener) {
+        this.listener = listener;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @param to
+     * @return number of transitions to the given state since created
+     */
+    public long getTransitions(State to) {
+        return transitions.get(to.ordinal());
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker{" + "name=" + name + ", state=" + state + ", windowType=" + windowType + ", windowSize=" + windowSize
+                + ", minimumNumberOfCalls=" + minimumNumberOfCalls + ", failureRateThreshold=" + failureRateThreshold
+                + ", waitDurationInOpenStateMs=" + TimeUnit.NANOSECONDS.toMillis(waitDurationInOpenStateNanos)
+                + ", permittedCallsInHalfOpenState=" + permittedCallsInHalfOpenState + '}';
+    }
+}
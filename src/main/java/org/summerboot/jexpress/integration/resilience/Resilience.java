@@ -0,0 +1,370 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.resilience;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.summerboot.jexpress.api.common.BootErrorCode;
+import org.summerboot.jexpress.api.common.Err;
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+import org.summerboot.jexpress.integration.HealthMonitor;
+import org.summerboot.jexpress.util.strategy.BackoffStrategy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Resilience layer of one dependency: bulkhead, circuit breaker and retry with backoff and budget, each of them is
+ * optional.
+ * <pre>{@code
+ * User user = resilience.execute(attempt -> client.getUser(id), user -> Outcome.SUCCESS, ex -> Outcome.RETRYABLE_FAILURE);
+ * }</pre>
+ * Every attempt takes a bulkhead permit and a circuit breaker permission, a rejected attempt throws
+ * {@link CallNotPermittedException}. A retry waits {@link BackoffStrategy#calculateDelayByAttempt(int)} (no retry when
+ * its maxAttempts &lt;= 0) and withdraws one token from the {@link RetryBudget}.
+ * <p>
+ * When reportToHealthMonitor is true, an open circuit breaker is reported to {@link HealthMonitor} as a failed health
+ * check named after the dependency until it closes, so that endpoints with @RequiresHealthCheck fail fast. It is off
+ * by default: the failed health check also fails the ping endpoint, taking the instance out of the load balancer.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class Resilience implements CircuitBreaker.StateListener {
+
+    protected static final Logger log = LogManager.getLogger(Resilience.class.getName());
+
+    /**
+     * dependency name - the latest Resilience, exported as metrics
+     */
+    protected static final Map<String, Resilience> REGISTRY = new ConcurrentHashMap<>();
+
+    static {
+        BootMetrics.register("resilience", Resilience::appendMetrics);
+    }
+
+    public enum Outcome {
+        SUCCESS, FAILURE, RETRYABLE_FAILURE
+    }
+
+    /**
+     * @param <T>
+     * @param <E>
+     */
+    @FunctionalInterface
+    public interface Attempt<T, E extends Exception> {
+
+        /**
+         * @param attempt 0 for the first call, 1 for the first retry
+         * @return
+         * @throws E
+         */
+        T run(int attempt) throws E;
+    }
+
+    protected final String name;
+    protected final Bulkhead bulkhead;
+    protected final CircuitBreaker circuitBreaker;
+    protected final BackoffStrategy retryBackoff;
+    protected final RetryBudget retryBudget;
+    protected final boolean reportToHealthMonitor;
+
+    protected final LongAdder rejectedByCircuitBreaker = new LongAdder();
+    protected final LongAdder rejectedByBulkhead = new LongAdder();
+    protected final LongAdder retries = new LongAdder();
+    protected final LongAdder retryBudgetExhausted = new LongAdder();
+
+    /**
+     * @param name                  dependency name, used as the health check name and metrics label
+     * @param bulkhead              nullable
+     * @param circuitBreaker        nullable
+     * @param retryBackoff          nullable for no retry
+     * @param retryBudget           nullable for unlimited retries
+     * @param reportToHealthMonitor
+     */
+    public Resilience(String name, Bulkhead bulkhead, CircuitBreaker circuitBreaker, BackoffStrategy retryBackoff, RetryBudget retryBudget, boolean reportToHealthMonitor) {
+        this.name = name;
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+        this.retryBackoff = retryBackoff == null || retryBackoff.maxAttempts() <= 0 ? null : retryBackoff;
+        this.retryBudget = retryBudget;
+        this.reportToHealthMonitor = reportToHealthMonitor;
+        if (circuitBreaker != null) {
+            circuitBreaker.setStateListener(this);
+        }
+    }
+
+    /**
+     * Build from config values
+     *
+     * @param name
+     * @param circuitBreakerEnabled
+     * @param windowType
+     * @param windowSize
+     * @param minimumNumberOfCalls
+     * @param failureRateThreshold
+     * @param waitDurationInOpenStateMs
+     * @param permittedCallsInHalfOpenState
+     * @param reportToHealthMonitor
+     * @param maxConcurrentCalls            bulkhead disabled when &lt;= 0
+     * @param maxWaitMs
+     * @param retryBackoff                  no retry when null or its maxAttempts &lt;= 0
+     * @param retryBudgetPercent
+     * @param retryBudgetMaxTokens
+     * @return null if nothing is enabled
+     * @throws IllegalArgumentException when any setting is invalid
+     */
+    public static Resilience build(String name, boolean circuitBreakerEnabled, CircuitBreaker.WindowType windowType, int windowSize, int minimumNumberOfCalls,
+                                   int failureRateThreshold, long waitDurationInOpenStateMs, int permittedCallsInHalfOpenState, boolean reportToHealthMonitor,
+                                   int maxConcurrentCalls, long maxWaitMs, BackoffStrategy retryBackoff, int retryBudgetPercent, int retryBudgetMaxTokens) {
+        CircuitBreaker circuitBreaker = circuitBreakerEnabled
+                ? new CircuitBreaker(name, windowType, windowSize, minimumNumberOfCalls, failureRateThreshold, waitDurationInOpenStateMs, permittedCallsInHalfOpenState)
+                : null;
+        Bulkhead bulkhead = maxConcurrentCalls > 0 ? new Bulkhead(maxConcurrentCalls, maxWaitMs) : null;
+        boolean retryEnabled = retryBackoff != null && retryBackoff.maxAttempts() > 0;
+        RetryBudget retryBudget = retryEnabled ? new RetryBudget(retryBudgetPercent, retryBudgetMaxTokens) : null;
+        if (circuitBreaker == null && bulkhead == null && !retryEnabled) {
+            return null;
+        }
+        return new Resilience(name, bulkhead, circuitBreaker, retryBackoff, retryBudget, reportToHealthMonitor);
+    }
+
+    /**
+     * Register for metrics, replaces the previous one with the same name (e.g. config reloaded)
+     *
+     * @param resilience
+     * @return resilience
+     */
+    public static Resilience register(Resilience resilience) {
+        Resilience old = REGISTRY.put(resilience.getName(), resilience);
+        if (old != null && old != resilience && old.reportToHealthMonitor) {
+            // the new circuit breaker starts closed
+            HealthMonitor.reportHealthCheckResult(old.getName(), null);
+        }
+        return resilience;
+    }
+
+    public static void unregister(Resilience resilience) {
+        if (REGISTRY.remove(resilience.getName(), resilience) && resilience.reportToHealthMonitor) {
+            HealthMonitor.reportHealthCheckResult(resilience.getName(), null);
+        }
+    }
+
+    /**
+     * Take a bulkhead permit and a circuit breaker permission for one attempt, the caller must call
+     * {@link #onComplete(boolean)} when the attempt completes, or {@link #onCancelled()} when it was cancelled
+     *
+     * @throws CallNotPermittedException
+     */
+    public void acquirePermission() throws CallNotPermittedException {
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            rejectedByBulkhead.increment();
+            throw new CallNotPermittedException(name, CallNotPermittedException.Reason.BULKHEAD_FULL);
+        }
+        if (circuitBreaker != null && !circuitBreaker.tryAcquirePermission()) {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            rejectedByCircuitBreaker.increment();
+            throw new CallNotPermittedException(name, CallNotPermittedException.Reason.CIRCUIT_OPEN);
+        }
+    }
+
+    /**
+     * @param failure true if the dependency failed (not a client error)
+     */
+    public void onComplete(boolean failure) {
+        if (circuitBreaker != null) {
+            if (failure) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+        }
+        if (bulkhead != null) {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Release the permits of an attempt that was cancelled before it completed, not recorded as success or failure
+     */
+    public void onCancelled() {
+        if (circuitBreaker != null) {
+            circuitBreaker.onIgnored();
+        }
+        if (bulkhead != null) {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * @param <T>
+     * @param <E>
+     * @param attempt          the call
+     * @param resultClassifier nullable, null means all results are SUCCESS
+     * @param errorClassifier  nullable, null means all exceptions are FAILURE
+     * @return the result of the last attempt
+     * @throws E                         the exception of the last attempt
+     * @throws CallNotPermittedException when rejected by bulkhead or circuit breaker
+     */
+    public <T, E extends Exception> T execute(Attempt<T, E> attempt, Function<T, Outcome> resultClassifier, Function<Throwable, Outcome> errorClassifier) throws E {
+        if (retryBudget != null) {
+            retryBudget.onCall();
+        }
+        for (int i = 0; ; i++) {
+            acquirePermission();
+            T result = null;
+            Throwable error = null;
+            Outcome outcome;
+            try {
+                result = attempt.run(i);
+                outcome = resultClassifier == null ? Outcome.SUCCESS : resultClassifier.apply(result);
+            } catch (Throwable ex) {
+                error = ex;
+                outcome = errorClassifier == null ? Outcome.FAILURE : errorClassifier.apply(ex);
+            }
+            onComplete(outcome != Outcome.SUCCESS);
+            if (outcome != Outcome.RETRYABLE_FAILURE || !backoff(i)) {
+                if (error != null) {
+                    Resilience.<E>rethrow(error);
+                }
+                return result;
+            }
+        }
+    }
+
+    /**
+     * @param attempt
+     * @return true if retry is allowed and the backoff delay elapsed
+     */
+    protected boolean backoff(int attempt) {
+        if (retryBackoff == null) {
+            return false;
+        }
+        long delayMs = retryBackoff.calculateDelayByAttempt(attempt);
+        if (delayMs < 0) {
+            return false;
+        }
+        if (retryBudget != null && !retryBudget.tryWithdraw()) {
+            retryBudgetExhausted.increment();
+            return false;
+        }
+        retries.increment();
+        if (delayMs > 0) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static <E extends Exception> void rethrow(Throwable ex) throws E {
+        if (ex instanceof RuntimeException re) {
+            throw re;
+        }
+        if (ex instanceof Error er) {
+            throw er;
+        }
+        throw (E) ex;
+    }
+
+    @Override
+    public void onStateChanged(CircuitBreaker breaker, CircuitBreaker.State from, CircuitBreaker.State to, String reason) {
+        log.warn(() -> "circuit breaker " + name + ": " + from + " -> " + to + ", " + reason);
+        if (!reportToHealthMonitor || REGISTRY.get(name) != this) {
+            return;
+        }
+        switch (to) {
+            case OPEN ->
+                    HealthMonitor.reportHealthCheckResult(name, List.of(new Err(BootErrorCode.SERVICE_UNAVAILABLE, name, "circuit breaker is open", null, reason)));
+            case CLOSED -> HealthMonitor.reportHealthCheckResult(name, null);
+            case HALF_OPEN -> {
+                // still failed until the probes succeed
+            }
+        }
+    }
+
+    public static void appendMetrics(StringBuilder sb, boolean openMetrics) {
+        if (REGISTRY.isEmpty()) {
+            return;
+        }
+        Map<String, Resilience> all = new TreeMap<>(REGISTRY);
+        Map<String, Number> state = new TreeMap<>();
+        Map<String, Number> transitions = new TreeMap<>();
+        Map<String, Number> rejected = new TreeMap<>();
+        Map<String, Number> available = new TreeMap<>();
+        Map<String, Number> retried = new TreeMap<>();
+        Map<String, Number> exhausted = new TreeMap<>();
+        for (Resilience r : all.values()) {
+            String dependency = BootMetrics.label("dependency", r.name);
+            if (r.circuitBreaker != null) {
+                state.put(dependency, r.circuitBreaker.getState().ordinal());
+                for (CircuitBreaker.State s : CircuitBreaker.State.values()) {
+                    transitions.put(dependency + "," + BootMetrics.label("state", s.name().toLowerCase()), r.circuitBreaker.getTransitions(s));
+                }
+                rejected.put(dependency + "," + BootMetrics.label("reason", "circuit_open"), r.rejectedByCircuitBreaker.sum());
+            }
+            if (r.bulkhead != null) {
+                available.put(dependency, r.bulkhead.getAvailablePermits());
+                rejected.put(dependency + "," + BootMetrics.label("reason", "bulkhead_full"), r.rejectedByBulkhead.sum());
+            }
+            if (r.retryBackoff != null) {
+                retried.put(dependency, r.retries.sum());
+                exhausted.put(dependency, r.retryBudgetExhausted.sum());
+            }
+        }
+        BootMetrics.appendLabeled(sb, openMetrics, "resilience_circuit_state", "gauge", "circuit breaker state: 0=closed, 1=open, 2=half_open", state);
+        BootMetrics.appendLabeled(sb, openMetrics, "resilience_circuit_transitions", "counter", "circuit breaker transitions to the state", transitions);
+        BootMetrics.appendLabeled(sb, openMetrics, "resilience_calls_not_permitted", "counter", "calls rejected without reaching the dependency", rejected);
+        BootMetrics.appendLabeled(sb, openMetrics, "resilience_bulkhead_available", "gauge", "bulkhead permits currently available", available);
+        BootMetrics.appendLabeled(sb, openMetrics, "resilience_retries", "counter", "retries after a retryable failure", retried);
+        BootMetrics.appendLabeled(sb, openMetrics, "resilience_retry_budget_exhausted", "counter", "retries skipped because the retry budget was exhausted", exhausted);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public BackoffStrategy getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    @Override
+    public String toString() {
+        return "Resilience{" + "name=" + name + ", bulkhead=" + bulkhead + ", circuitBreaker=" + circuitBreaker + ", retryBackoff=" + retryBackoff + ", retryBudget=" + retryBudget + '}';
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.resilience;
+
+/**
+ * Token bucket limits retries to a percentage of the calls, so that retries cannot multiply the load on a dependency
+ * which is already failing: each call deposits budgetPercent/100 token, each retry withdraws one token.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class RetryBudget {
+
+    protected final int budgetPercent;
+    protected final double depositPerCall;
+    protected final double maxTokens;
+    // guarded by this
+    protected double tokens;
+
+    /**
+     * @param budgetPercent retries allowed per 100 calls
+     * @param maxTokens     max retries available at once, also the initial balance
+     */
+    public RetryBudget(int budgetPercent, int maxTokens) {
+        if (budgetPercent < 0 || maxTokens < 1) {
+            throw new IllegalArgumentException("invalid retry budget settings: budgetPercent=" + budgetPercent + ", maxTokens=" + maxTokens);
+        }
+        this.budgetPercent = budgetPercent;
+        this.depositPerCall = budgetPercent / 100.0;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    public synchronized void onCall() {
+        tokens = Math.min(maxTokens, tokens + depositPerCall);
+    }
+
+    /**
+     * @return true if a retry is allowed
+     */
+    public synchronized boolean tryWithdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    public synchronized double getTokens() {
+        return tokens;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryBudget{" + "budgetPercent=" + budgetPercent + ", maxTokens=" + maxTokens + '}';
+    }
+}
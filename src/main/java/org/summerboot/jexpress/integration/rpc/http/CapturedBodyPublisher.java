@@ -0,0 +1,61 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.rpc.http;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Flow;
+
+/**
+ * String body publisher which keeps the body, so that the body can be logged without subscribing to the publisher
+ * again, see {@link org.summerboot.jexpress.api.rpc.RpcDelegate#getHttpRequestBody(HttpRequest)}
+ * <pre>{@code
+ * HttpRequest.Builder reqBuilder = HttpRequest.newBuilder().uri(uri).POST(RpcDelegate.bodyPublisher(json));
+ * }</pre>
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class CapturedBodyPublisher implements HttpRequest.BodyPublisher {
+
+    protected final String body;
+    protected final HttpRequest.BodyPublisher delegate;
+
+    public CapturedBodyPublisher(String body) {
+        this(body, StandardCharsets.UTF_8);
+    }
+
+    public CapturedBodyPublisher(String body, Charset charset) {
+        this.body = body;
+        this.delegate = HttpRequest.BodyPublishers.ofString(body, charset);
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    @Override
+    public long contentLength() {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        delegate.subscribe(subscriber);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.rpc.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Bounded tap for logging: keeps only the first maxCaptureBytes of the stream while it is read, and counts the total
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class CapturingInputStream extends FilterInputStream {
+
+    protected final int maxCaptureBytes;
+    protected final ByteArrayOutputStream captured;
+    protected long totalBytes;
+
+    public CapturingInputStream(InputStream in, int maxCaptureBytes) {
+        super(in);
+        this.maxCaptureBytes = Math.max(0, maxCaptureBytes);
+        this.captured = new ByteArrayOutputStream(Math.min(this.maxCaptureBytes, 8192));
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            if (captured.size() < maxCaptureBytes) {
+                captured.write(b);
+            }
+            totalBytes++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            int remaining = maxCaptureBytes - captured.size();
+            if (remaining > 0) {
+                captured.write(b, off, Math.min(n, remaining));
+            }
+            totalBytes += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // read through, so that the skipped bytes are captured and counted
+        byte[] buf = new byte[(int) Math.min(8192, Math.max(0, n))];
+        long skipped = 0;
+        while (skipped < n) {
+            int r = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+            if (r < 0) {
+                break;
+            }
+            skipped += r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Read the rest of the stream without keeping it
+     *
+     * @throws IOException
+     */
+    public void drain() throws IOException {
+        byte[] buf = new byte[8192];
+        while (read(buf, 0, buf.length) >= 0) {
+        }
+    }
+
+    public String getCaptured(Charset charset) {
+        return captured.toString(charset);
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public boolean isTruncated() {
+        return totalBytes > captured.size();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.rpc.http;
+
+import org.summerboot.jexpress.infra.metrics.LatencyHistogram;
+import org.summerboot.jexpress.integration.resilience.RetryBudget;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hedged requests: when an idempotent call has not completed after the hedging delay, a second attempt is sent to the
+ * next server of the configured list (or to the same URI when no server is configured), the first success wins.
+ * <p>
+ * The delay is either static, or the observed percentile (e.g. p95) of the endpoint (method + path) limited by
+ * minDelayMs and maxDelayMs, maxDelayMs is used until the endpoint has {@value #MIN_SAMPLES} samples. Only primary
+ * attempts are sampled, a primary that is cancelled or timed out is sampled with its elapsed time as a lower bound, so
+ * that hedging does not hide the slow calls and drift the delay down. Each call deposits
+ * budgetPercent/100 token into the hedging budget, each hedge withdraws one token, so that the load cannot double
+ * during an outage.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class HedgingPolicy {
+
+    protected static final int MIN_SAMPLES = 20;
+    protected static final int MAX_ENDPOINTS = 100;
+    protected static final String ENDPOINT_OTHER = "_other";
+    protected static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    protected static class EndpointLatency {
+
+        protected final LatencyHistogram histogram;
+        protected volatile long delayMs;
+        protected volatile long refreshedAtNanos;
+
+        protected EndpointLatency(LatencyHistogram histogram, long delayMs) {
+            this.histogram = histogram;
+            this.delayMs = delayMs;
+            this.refreshedAtNanos = System.nanoTime();
+        }
+    }
+
+    protected final long staticDelayMs;
+    protected final double percentile;
+    protected final long minDelayMs;
+    protected final long maxDelayMs;
+    protected final long highestTrackableMicros;
+    protected final List<URI> servers;
+    protected final RetryBudget budget;
+    protected final Map<String, EndpointLatency> endpoints = new ConcurrentHashMap<>();
+    protected final AtomicInteger nextServer = new AtomicInteger();
+
+    protected final LongAdder hedged = new LongAdder();
+    protected final LongAdder hedgeWon = new LongAdder();
+    protected final LongAdder budgetExhausted = new LongAdder();
+
+    /**
+     * @param staticDelayMs      static hedging delay, the adaptive delay is used when &lt;= 0
+     * @param percentile         adaptive delay percentile 1-99, e.g. 95 for p95
+     * @param minDelayMs         adaptive delay lower limit
+     * @param maxDelayMs         adaptive delay upper limit
+     * @param servers            base URLs of the targets, e.g. https://replica2:8443, the hedge keeps the path and query
+     * @param budgetPercent      hedges allowed per 100 calls
+     * @param budgetMaxTokens    max hedges available at once
+     * @param highestTrackableMs the HTTP client timeout
+     */
+    public HedgingPolicy(long staticDelayMs, int percentile, long minDelayMs, long maxDelayMs, List<String> servers, int budgetPercent, int budgetMaxTokens, long highestTrackableMs) {
+        if (percentile < 1 || percentile > 99 || minDelayMs < 0 || maxDelayMs < minDelayMs) {
+            throw new IllegalArgumentException("invalid hedging delay settings: percentile=" + percentile + ", minDelayMs=" + minDelayMs + ", maxDelayMs=" + maxDelayMs);
+        }
+        this.staticDelayMs = staticDelayMs;
+        this.percentile = percentile / 100.0;
+        this.minDelayMs = minDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.highestTrackableMicros = TimeUnit.MILLISECONDS.toMicros(Math.max(highestTrackableMs, maxDelayMs) + 1);
+        List<URI> uris = new ArrayList<>();
+        if (servers != null) {
+            for (String server : servers) {
+                URI uri = URI.create(server.trim());
+                if (uri.getScheme() == null || uri.getRawAuthority() == null) {
+                    throw new IllegalArgumentException("invalid hedging server, expect scheme://host:port - " + server);
+                }
+                uris.add(uri);
+            }
+        }
+        this.servers = List.copyOf(uris);
+        this.budget = new RetryBudget(budgetPercent, budgetMaxTokens);
+    }
+
+    /**
+     * @param request
+     * @return the hedging delay of the request's endpoint
+     */
+    public long getDelayMs(HttpRequest request) {
+        if (staticDelayMs > 0) {
+            return staticDelayMs;
+        }
+        EndpointLatency e = getEndpoint(request);
+        long now = System.nanoTime();
+        if (now - e.refreshedAtNanos >= REFRESH_NANOS) {
+            // at most one snapshot per endpoint per second
+            e.refreshedAtNanos = now;
+            LatencyHistogram.Snapshot s = e.histogram.snapshot(percentile);
+            e.delayMs = s.windowCount() < MIN_SAMPLES
+                    ? maxDelayMs
+                    : Math.max(minDelayMs, Math.min(maxDelayMs, TimeUnit.MICROSECONDS.toMillis(s.valuesMicros()[0])));
+        }
+        return e.delayMs;
+    }
+
+    /**
+     * Record the latency of a primary attempt, or its elapsed time when it did not complete
+     *
+     * @param request
+     * @param nanos
+     */
+    public void record(HttpRequest request, long nanos) {
+        if (staticDelayMs > 0) {
+            return;
+        }
+        getEndpoint(request).histogram.recordNanos(nanos);
+    }
+
+    protected EndpointLatency getEndpoint(HttpRequest request) {
+        String key = request.method() + " " + request.uri().getRawPath();
+        EndpointLatency e = endpoints.get(key);
+        if (e != null) {
+            return e;
+        }
+        if (endpoints.size() >= MAX_ENDPOINTS) {
+            key = ENDPOINT_OTHER;
+        }
+        return endpoints.computeIfAbsent(key, k -> new EndpointLatency(new LatencyHistogram(highestTrackableMicros, 2, 60), maxDelayMs));
+    }
+
+    public void onCall() {
+        budget.onCall();
+    }
+
+    /**
+     * @param request
+     * @return the hedge request to the next server, null when the hedging budget is exhausted
+     */
+    public HttpRequest buildHedgeRequest(HttpRequest request) {
+        if (!budget.tryWithdraw()) {
+            budgetExhausted.increment();
+            return null;
+        }
+        hedged.increment();
+        URI uri = request.uri();
+        URI target = nextServer(uri);
+        if (target == null) {
+            return request;
+        }
+        String rawQuery = uri.getRawQuery();
+        URI hedgeUri = URI.create(target.getScheme() + "://" + target.getRawAuthority() + uri.getRawPath() + (rawQuery == null ? "" : "?" + rawQuery));
+        return HttpRequest.newBuilder(request, (name, value) -> true).uri(hedgeUri).build();
+    }
+
+    /**
+     * @param uri
+     * @return the next server with a different authority, null if not available
+     */
+    protected URI nextServer(URI uri) {
+        int size = servers.size();
+        for (int i = 0; i < size; i++) {
+            URI server = servers.get(Math.floorMod(nextServer.getAndIncrement(), size));
+            if (!server.getRawAuthority().equalsIgnoreCase(uri.getRawAuthority())) {
+                return server;
+            }
+        }
+        return null;
+    }
+
+    public void onHedgeWon() {
+        hedgeWon.increment();
+    }
+
+    public long getHedged() {
+        return hedged.sum();
+    }
+
+    public long getHedgeWon() {
+        return hedgeWon.sum();
+    }
+
+    public long getBudgetExhausted() {
+        return budgetExhausted.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingPolicy{" + "delayMs=" + (staticDelayMs > 0 ? staticDelayMs : "p" + Math.round(percentile * 100) + " [" + minDelayMs + ", " + maxDelayMs + "]")
+                + ", servers=" + servers + ", budget=" + budget + '}';
+    }
+}
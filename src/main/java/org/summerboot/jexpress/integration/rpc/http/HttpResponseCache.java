@@ -0,0 +1,543 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.rpc.http;
+
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Bounded shared HTTP cache (RFC 9111) for GET responses of one HttpClientConfig, shared by all callers and sessions:
+ * <ul>
+ * <li>freshness from Cache-Control s-maxage, max-age or Expires, current age from Date, Age and the resident time</li>
+ * <li>stale responses with ETag or Last-Modified are revalidated with If-None-Match / If-Modified-Since, a 304 refreshes
+ * the stored response</li>
+ * <li>stale-while-revalidate: a stale response is served within the window while it is revalidated in the
+ * background</li>
+ * <li>concurrent identical requests of a missing or stale response share one upstream call</li>
+ * <li>no-store, private, Vary: * and requests with Range or conditional headers are never cached, one Vary variant per
+ * URI</li>
+ * <li>responses to requests with Authorization are only stored and served when the response has public, s-maxage or
+ * must-revalidate (RFC 9111 3.5)</li>
+ * <li>unsafe methods (POST, PUT, DELETE, PATCH) invalidate the URI</li>
+ * </ul>
+ * No heuristic freshness: a response with a validator but without max-age/Expires is stored and revalidated on every
+ * use. The size limits count the body in chars.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class HttpResponseCache {
+
+    protected static final Map<String, HttpResponseCache> REGISTRY = new ConcurrentHashMap<>();
+
+    static {
+        BootMetrics.register("http_response_cache", HttpResponseCache::appendMetrics);
+    }
+
+    /**
+     * RFC 9110 heuristically cacheable status codes, the others are not stored
+     */
+    protected static final Set<Integer> CACHEABLE_STATUS = Set.of(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501);
+
+    public record Hit(HttpResponse<String> response, long ageSeconds, boolean stale) {
+    }
+
+    protected static class Entry {
+
+        protected final HttpResponse<String> response;
+        protected final Map<String, String> vary;
+        protected final String etag;
+        protected final String lastModified;
+        protected final long responseTimeMs;
+        protected final long initialAgeMs;
+        protected final long freshnessLifetimeMs;
+        protected final long staleWhileRevalidateMs;
+        protected final boolean mustRevalidate;
+        protected final boolean privateResponse;
+        /**
+         * RFC 9111 3.5, may be stored for and served to a request with Authorization
+         */
+        protected final boolean authorizedReusable;
+        protected final int size;
+
+        /**
+         * @param request        the request of the stored response, for Vary
+         * @param response       the stored response
+         * @param headers        the latest response headers, response.headers() or the headers of a 304
+         * @param requestTimeMs
+         * @param responseTimeMs
+         */
+        protected Entry(HttpRequest request, HttpResponse<String> response, HttpHeaders headers, long requestTimeMs, long responseTimeMs) {
+            this.response = response;
+            this.vary = varyValues(request, header(headers, response.headers(), "Vary"));
+            this.etag = header(headers, response.headers(), "ETag");
+            this.lastModified = header(headers, response.headers(), "Last-Modified");
+            this.responseTimeMs = responseTimeMs;
+            Map<String, String> cc = parseCacheControl(headers.allValues("Cache-Control").isEmpty() ? response.headers().allValues("Cache-Control") : headers.allValues("Cache-Control"));
+            long dateMs = parseDate(header(headers, response.headers(), "Date"), responseTimeMs);
+            if (dateMs <= 0) {
+                dateMs = responseTimeMs;
+            }
+            // RFC 9111 4.2.3
+            long apparentAgeMs = Math.max(0, responseTimeMs - dateMs);
+            long ageHeaderMs = TimeUnit.SECONDS.toMillis(Math.max(0, parseSeconds(header(headers, response.headers(), "Age"))));
+            this.initialAgeMs = Math.max(apparentAgeMs, ageHeaderMs + (responseTimeMs - requestTimeMs));
+            // RFC 9111 4.2.1, s-maxage overrides max-age in a shared cache
+            long maxAge = parseSeconds(cc.get("s-maxage"));
+            if (maxAge < 0) {
+                maxAge = parseSeconds(cc.get("max-age"));
+            }
+            if (maxAge >= 0) {
+                this.freshnessLifetimeMs = TimeUnit.SECONDS.toMillis(maxAge);
+            } else {
+                String expires = header(headers, response.headers(), "Expires");
+                this.freshnessLifetimeMs = expires == null ? 0 : Math.max(0, parseDate(expires, dateMs) - dateMs);
+            }
+            this.staleWhileRevalidateMs = TimeUnit.SECONDS.toMillis(Math.max(0, parseSeconds(cc.get("stale-while-revalidate"))));
+            // RFC 9111 5.2.2.8 and 5.2.2.10, proxy-revalidate and s-maxage apply to a shared cache
+            this.mustRevalidate = cc.containsKey("no-cache") || cc.containsKey("must-revalidate") || cc.containsKey("proxy-revalidate") || cc.containsKey("s-maxage");
+            this.privateResponse = cc.containsKey("private");
+            this.authorizedReusable = isAuthorizedReusable(cc);
+            String body = response.body();
+            this.size = body == null ? 0 : body.length();
+        }
+
+        protected long currentAgeMs(long nowMs) {
+            return initialAgeMs + Math.max(0, nowMs - responseTimeMs);
+        }
+
+        protected boolean hasValidator() {
+            return etag != null || lastModified != null;
+        }
+
+        protected boolean matches(HttpRequest request) {
+            for (Map.Entry<String, String> e : vary.entrySet()) {
+                if (!e.getValue().equals(String.join(",", request.headers().allValues(e.getKey())))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    protected final String name;
+    protected final int maxEntries;
+    protected final long maxEntrySize;
+    protected final long maxTotalSize;
+    protected final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    protected long totalSize;
+    protected final Map<String, CompletableFuture<HttpResponse<String>>> inflight = new ConcurrentHashMap<>();
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder staleHits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+    protected final LongAdder notModified = new LongAdder();
+    protected final LongAdder modified = new LongAdder();
+    protected final LongAdder coalesced = new LongAdder();
+    protected final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param name         metrics label
+     * @param maxEntries   max number of stored responses
+     * @param maxEntrySize responses with larger body (in chars) are not stored
+     * @param maxTotalSize max total body size (in chars) of all stored responses
+     */
+    public HttpResponseCache(String name, int maxEntries, long maxEntrySize, long maxTotalSize) {
+        if (maxEntries < 1 || maxEntrySize < 1 || maxTotalSize < maxEntrySize) {
+            throw new IllegalArgumentException("invalid cache size: maxEntries=" + maxEntries + ", maxEntrySize=" + maxEntrySize + ", maxTotalSize=" + maxTotalSize);
+        }
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.maxEntrySize = maxEntrySize;
+        this.maxTotalSize = maxTotalSize;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Register for metrics, replaces the previous one with the same name (e.g. config reloaded)
+     *
+     * @param cache
+     * @return cache
+     */
+    public static HttpResponseCache register(HttpResponseCache cache) {
+        REGISTRY.put(cache.getName(), cache);
+        return cache;
+    }
+
+    public static void unregister(HttpResponseCache cache) {
+        REGISTRY.remove(cache.getName(), cache);
+    }
+
+    /**
+     * @param request
+     * @return true if the request is a GET that may be served from or stored into the cache, a request with
+     * Authorization is only served a response that allows it, see {@link #isAuthorizedReusable(Map)}
+     */
+    public boolean isCacheable(HttpRequest request) {
+        if (!"GET".equals(request.method())) {
+            return false;
+        }
+        HttpHeaders headers = request.headers();
+        if (headers.firstValue("Range").isPresent() || headers.firstValue("If-None-Match").isPresent()
+                || headers.firstValue("If-Modified-Since").isPresent() || headers.firstValue("If-Match").isPresent()) {
+            // the caller manages the validation itself
+            return false;
+        }
+        return !parseCacheControl(headers.allValues("Cache-Control")).containsKey("no-store");
+    }
+
+    /**
+     * Serve from the cache without contacting the server: a fresh response, or a stale one within its
+     * stale-while-revalidate window (the revalidation is sent in the background via upstream)
+     *
+     * @param request  a cacheable request
+     * @param upstream sends the background revalidation
+     * @return null if the caller must call {@link #fetch(HttpRequest, Function, Consumer)}
+     */
+    public Hit lookup(HttpRequest request, Function<HttpRequest, CompletableFuture<HttpResponse<String>>> upstream) {
+        Map<String, String> cc = parseCacheControl(request.headers().allValues("Cache-Control"));
+        if (cc.containsKey("no-cache") || request.headers().firstValue("Pragma").filter(v -> v.contains("no-cache")).isPresent()) {
+            return null;
+        }
+        Entry entry = get(request);
+        if (entry == null) {
+            return null;
+        }
+        long ageMs = entry.currentAgeMs(System.currentTimeMillis());
+        long requestMaxAge = parseSeconds(cc.get("max-age"));
+        if (requestMaxAge >= 0 && ageMs > TimeUnit.SECONDS.toMillis(requestMaxAge)) {
+            return null;
+        }
+        if (ageMs < entry.freshnessLifetimeMs) {
+            hits.increment();
+            return new Hit(entry.response, TimeUnit.MILLISECONDS.toSeconds(ageMs), false);
+        }
+        if (!entry.mustRevalidate && ageMs < entry.freshnessLifetimeMs + entry.staleWhileRevalidateMs) {
+            staleHits.increment();
+            fetch(request, upstream, null);
+            return new Hit(entry.response, TimeUnit.MILLISECONDS.toSeconds(ageMs), true);
+        }
+        return null;
+    }
+
+    /**
+     * Get the response from the server, conditional when a stale response with validator is stored. Concurrent
+     * identical requests share the same upstream call.
+     *
+     * @param request  a cacheable request
+     * @param upstream sends the request
+     * @param memo     receives "cache miss", "cache revalidate" or "cache coalesced", nullable
+     * @return the server response, or the stored response when the server answers 304 Not Modified
+     */
+    public CompletableFuture<HttpResponse<String>> fetch(HttpRequest request, Function<HttpRequest, CompletableFuture<HttpResponse<String>>> upstream, Consumer<String> memo) {
+        String key = request.method() + " " + request.uri() + " " + request.headers().map();
+        CompletableFuture<HttpResponse<String>> future = new CompletableFuture<>();
+        CompletableFuture<HttpResponse<String>> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            if (memo != null) {
+                memo.accept("cache coalesced");
+            }
+            return existing;
+        }
+        Entry stored = get(request);
+        HttpRequest upstreamRequest = request;
+        if (stored != null && stored.hasValidator()) {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(request, (n, v) -> true);
+            if (stored.etag != null) {
+                builder.setHeader("If-None-Match", stored.etag);
+            }
+            if (stored.lastModified != null) {
+                builder.setHeader("If-Modified-Since", stored.lastModified);
+            }
+            upstreamRequest = builder.build();
+        } else {
+            misses.increment();
+        }
+        if (memo != null) {
+            memo.accept(upstreamRequest == request ? "cache miss" : "cache revalidate");
+        }
+        long requestTimeMs = System.currentTimeMillis();
+        try {
+            upstream.apply(upstreamRequest).whenComplete((response, ex) -> {
+                HttpResponse<String> ret = response;
+                try {
+                    if (ex == null) {
+                        ret = onResponse(request, stored, response, requestTimeMs, System.currentTimeMillis());
+                    }
+                } finally {
+                    // remove before complete, so that the next request sees the stored response
+                    inflight.remove(key, future);
+                }
+                if (ex == null) {
+                    future.complete(ret);
+                } else {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RuntimeException ex) {
+            inflight.remove(key, future);
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    protected HttpResponse<String> onResponse(HttpRequest request, Entry stored, HttpResponse<String> response, long requestTimeMs, long responseTimeMs) {
+        if (response.statusCode() == 304 && stored != null) {
+            notModified.increment();
+            // RFC 9111 4.3.4, freshen the stored response with the headers of the 304
+            Entry freshened = new Entry(request, stored.response, response.headers(), requestTimeMs, responseTimeMs);
+            if (freshened.privateResponse || isAuthorized(request) && !freshened.authorizedReusable) {
+                remove(request.uri().toString());
+            } else {
+                put(request.uri().toString(), freshened);
+            }
+            return stored.response;
+        }
+        if (stored != null) {
+            modified.increment();
+        }
+        String key = request.uri().toString();
+        if (isStorable(request, response)) {
+            put(key, new Entry(request, response, response.headers(), requestTimeMs, responseTimeMs));
+        } else {
+            remove(key);
+        }
+        return response;
+    }
+
+    protected boolean isStorable(HttpRequest request, HttpResponse<String> response) {
+        if (!CACHEABLE_STATUS.contains(response.statusCode())) {
+            return false;
+        }
+        HttpHeaders headers = response.headers();
+        Map<String, String> cc = parseCacheControl(headers.allValues("Cache-Control"));
+        if (cc.containsKey("no-store") || cc.containsKey("private") || headers.allValues("Vary").stream().anyMatch(v -> v.contains("*"))) {
+            return false;
+        }
+        if (isAuthorized(request) && !isAuthorizedReusable(cc)) {
+            return false;
+        }
+        String body = response.body();
+        if (body != null && body.length() > maxEntrySize) {
+            return false;
+        }
+        return cc.containsKey("s-maxage") || cc.containsKey("max-age") || headers.firstValue("Expires").isPresent()
+                || headers.firstValue("ETag").isPresent() || headers.firstValue("Last-Modified").isPresent();
+    }
+
+    /**
+     * RFC 9111 4.4, call before sending an unsafe request, no-op for safe methods
+     *
+     * @param request
+     */
+    public void invalidate(HttpRequest request) {
+        switch (request.method()) {
+            case "GET", "HEAD", "OPTIONS", "TRACE" -> {
+            }
+            default -> remove(request.uri().toString());
+        }
+    }
+
+    protected Entry get(HttpRequest request) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(request.uri().toString());
+        }
+        if (entry == null || !entry.matches(request) || isAuthorized(request) && !entry.authorizedReusable) {
+            return null;
+        }
+        return entry;
+    }
+
+    protected static boolean isAuthorized(HttpRequest request) {
+        return request.headers().firstValue("Authorization").isPresent();
+    }
+
+    /**
+     * RFC 9111 3.5, a shared cache must not reuse a response to a request with Authorization unless the response
+     * explicitly allows it
+     *
+     * @param cc response Cache-Control directives
+     * @return
+     */
+    protected static boolean isAuthorizedReusable(Map<String, String> cc) {
+        return cc.containsKey("public") || cc.containsKey("s-maxage") || cc.containsKey("must-revalidate");
+    }
+
+    protected void put(String key, Entry entry) {
+        synchronized (entries) {
+            Entry old = entries.put(key, entry);
+            if (old != null) {
+                totalSize -= old.size;
+            }
+            totalSize += entry.size;
+            Iterator<Entry> it = entries.values().iterator();
+            while ((entries.size() > maxEntries || totalSize > maxTotalSize) && it.hasNext()) {
+                Entry eldest = it.next();
+                it.remove();
+                totalSize -= eldest.size;
+                evictions.increment();
+            }
+        }
+    }
+
+    protected void remove(String key) {
+        synchronized (entries) {
+            Entry old = entries.remove(key);
+            if (old != null) {
+                totalSize -= old.size;
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            totalSize = 0;
+        }
+    }
+
+    protected static Map<String, String> varyValues(HttpRequest request, String vary) {
+        if (vary == null || vary.isBlank()) {
+            return Map.of();
+        }
+        Map<String, String> ret = new HashMap<>();
+        for (String h : vary.split(",")) {
+            h = h.trim();
+            if (!h.isEmpty()) {
+                ret.put(h, String.join(",", request.headers().allValues(h)));
+            }
+        }
+        return ret;
+    }
+
+    protected static String header(HttpHeaders primary, HttpHeaders fallback, String name) {
+        Optional<String> v = primary.firstValue(name);
+        return v.isPresent() ? v.get() : fallback.firstValue(name).orElse(null);
+    }
+
+    /**
+     * @param values Cache-Control header values
+     * @return lower-case directive - value without quotes, "" when the directive has no value
+     */
+    protected static Map<String, String> parseCacheControl(List<String> values) {
+        if (values.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> ret = new HashMap<>();
+        for (String value : values) {
+            for (String directive : value.split(",")) {
+                directive = directive.trim();
+                if (directive.isEmpty()) {
+                    continue;
+                }
+                int i = directive.indexOf('=');
+                String k = (i < 0 ? directive : directive.substring(0, i)).trim().toLowerCase(Locale.ROOT);
+                String v = i < 0 ? "" : directive.substring(i + 1).trim().replace("\"", "");
+                ret.putIfAbsent(k, v);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param value
+     * @return -1 when absent, 0 when invalid (RFC 9111 treats an invalid delta-seconds as stale)
+     */
+    protected static long parseSeconds(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * @param value        HTTP-date
+     * @param defaultValue
+     * @return epoch millis, defaultValue when absent, 0 when invalid (e.g. Expires: 0 means already expired)
+     */
+    protected static long parseDate(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            return 0;
+        }
+    }
+
+    public static void appendMetrics(StringBuilder sb, boolean openMetrics) {
+        if (REGISTRY.isEmpty()) {
+            return;
+        }
+        Map<String, Number> lookups = new TreeMap<>();
+        Map<String, Number> revalidations = new TreeMap<>();
+        Map<String, Number> coalescedCalls = new TreeMap<>();
+        Map<String, Number> evicted = new TreeMap<>();
+        Map<String, Number> size = new TreeMap<>();
+        Map<String, Number> chars = new TreeMap<>();
+        for (HttpResponseCache c : new TreeMap<>(REGISTRY).values()) {
+            String client = BootMetrics.label("client", c.name);
+            lookups.put(client + "," + BootMetrics.label("result", "hit"), c.hits.sum());
+            lookups.put(client + "," + BootMetrics.label("result", "stale"), c.staleHits.sum());
+            lookups.put(client + "," + BootMetrics.label("result", "miss"), c.misses.sum());
+            revalidations.put(client + "," + BootMetrics.label("result", "not_modified"), c.notModified.sum());
+            revalidations.put(client + "," + BootMetrics.label("result", "modified"), c.modified.sum());
+            coalescedCalls.put(client, c.coalesced.sum());
+            evicted.put(client, c.evictions.sum());
+            synchronized (c.entries) {
+                size.put(client, c.entries.size());
+                chars.put(client, c.totalSize);
+            }
+        }
+        BootMetrics.appendLabeled(sb, openMetrics, "httpclient_cache_lookups", "counter", "responses served from the cache (hit, stale-while-revalidate) or not found (miss)", lookups);
+        BootMetrics.appendLabeled(sb, openMetrics, "httpclient_cache_revalidations", "counter", "conditional requests sent for stale responses", revalidations);
+        BootMetrics.appendLabeled(sb, openMetrics, "httpclient_cache_coalesced", "counter", "requests that shared the upstream call of an identical request", coalescedCalls);
+        BootMetrics.appendLabeled(sb, openMetrics, "httpclient_cache_evictions", "counter", "responses evicted by the size limits", evicted);
+        BootMetrics.appendLabeled(sb, openMetrics, "httpclient_cache_entries", "gauge", "responses currently stored", size);
+        BootMetrics.appendLabeled(sb, openMetrics, "httpclient_cache_chars", "gauge", "body size in chars of the responses currently stored", chars);
+    }
+}
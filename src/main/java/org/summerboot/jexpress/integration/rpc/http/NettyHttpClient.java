@@ -0,0 +1,1127 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.integration.rpc.http;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultiThreadIoEventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollIoHandler;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioIoHandler;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.summerboot.jexpress.infra.netty.NioServer;
+import org.summerboot.jexpress.util.concurrent.NamedDefaultThreadFactory;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Netty engine behind the java.net.http.HttpClient API, selected by httpclient.engine=NETTY, so that RpcDelegate with
+ * resilience, hedging, cache and streaming works unchanged:
+ * <ul>
+ * <li>runs on the worker event loop group of the HTTP server once it is started, otherwise on its own group</li>
+ * <li>HTTP/1.1: bounded connection pool per host with max pending acquires, idle connections are closed</li>
+ * <li>HTTP/2: one multiplexed connection per host when ALPN selects h2 (https only), otherwise HTTP/1.1</li>
+ * <li>the request body is a pooled ByteBuf, the response body is streamed to the body subscriber with back pressure,
+ * each chunk is copied once</li>
+ * <li>TLS via the SslProvider of the HTTP server (OpenSSL when available), {@link #sslContext()} and
+ * {@link #sslParameters()} report the same key/trust material and protocol as JDK objects</li>
+ * </ul>
+ * Not supported: proxy, redirects, cookies, authenticator and push promises. Aggregating body handlers (e.g. ofString)
+ * fail when the body exceeds maxResponseBytes, streaming ones (e.g. ofInputStream, ofPublisher used by rpcStream and
+ * rpcPipe) are not limited, at most maxResponseBytes unread are buffered.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class NettyHttpClient extends HttpClient {
+
+    protected static final Logger log = LogManager.getLogger(NettyHttpClient.class.getName());
+
+    protected static final AttributeKey<Exchange<?>> EXCHANGE = AttributeKey.valueOf("jexpress.httpclient.exchange");
+    protected static final ResponseHandler RESPONSE_HANDLER = new ResponseHandler();
+
+    /**
+     * ALPN selected HTTP/1.1, use the connection pool
+     */
+    protected static class Http1NegotiatedException extends IOException {
+
+        protected Http1NegotiatedException() {
+            super("ALPN selected " + ApplicationProtocolNames.HTTP_1_1);
+        }
+    }
+
+    protected record Response<T>(HttpRequest request, int statusCode, HttpHeaders headers, T body,
+                                 HttpClient.Version version) implements HttpResponse<T> {
+
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public String toString() {
+            return "(" + request.method() + " " + request.uri() + ") " + statusCode;
+        }
+    }
+
+    protected final SslContext sslContext;
+    protected final SslContext alpnSslContext;
+    protected final SSLContext jdkSslContext;
+    protected final String tlsProtocol;
+    protected final boolean hostnameVerification;
+    protected final long connectTimeoutMs;
+    protected final long defaultTimeoutMs;
+    protected final int maxConnectionsPerHost;
+    protected final int maxPendingAcquires;
+    protected final long acquireTimeoutMs;
+    protected final int idleTimeoutSeconds;
+    protected final int maxResponseBytes;
+    protected final boolean useServerEventLoop;
+    protected final Executor executor;
+    protected final Map<String, HostPool> pools = new ConcurrentHashMap<>();
+    protected EventLoopGroup ownGroup;
+    protected Class<? extends Channel> ownChannelClass;
+    protected volatile boolean closed;
+
+    /**
+     * @param sslProvider           the SslProvider of the HTTP server, JDK is used when OpenSSL is not available
+     * @param kmf                   client certificate, nullable
+     * @param tmf                   nullable for the default trust store
+     * @param tlsProtocol           nullable for the provider default
+     * @param hostnameVerification
+     * @param http2                 negotiate h2 via ALPN for https
+     * @param connectTimeoutMs
+     * @param defaultTimeoutMs      end-to-end timeout when the request has no timeout
+     * @param maxConnectionsPerHost HTTP/1.1 pool size per host
+     * @param maxPendingAcquires    requests waiting for a pooled connection per host, more fail immediately
+     * @param acquireTimeoutMs      max time waiting for a pooled connection
+     * @param idleTimeoutSeconds    idle connections are closed
+     * @param maxResponseBytes      max response body size of aggregating body handlers, and max unread bytes buffered
+     *                              for streaming ones
+     * @param useServerEventLoop    use the worker event loop group of the HTTP server when it is started
+     * @param executor              completes the response futures, never on the event loop
+     * @throws SSLException
+     */
+    public NettyHttpClient(SslProvider sslProvider, KeyManagerFactory kmf, TrustManagerFactory tmf, String tlsProtocol, boolean hostnameVerification, boolean http2,
+                           long connectTimeoutMs, long defaultTimeoutMs, int maxConnectionsPerHost, int maxPendingAcquires, long acquireTimeoutMs, int idleTimeoutSeconds,
+                           int maxResponseBytes, boolean useServerEventLoop, Executor executor) throws SSLException {
+        if (maxConnectionsPerHost < 1 || maxPendingAcquires < 1 || acquireTimeoutMs < 1 || idleTimeoutSeconds < 1 || maxResponseBytes < 1) {
+            throw new IllegalArgumentException("invalid pool settings: maxConnectionsPerHost=" + maxConnectionsPerHost + ", maxPendingAcquires=" + maxPendingAcquires
+                    + ", acquireTimeoutMs=" + acquireTimeoutMs + ", idleTimeoutSeconds=" + idleTimeoutSeconds + ", maxResponseBytes=" + maxResponseBytes);
+        }
+        if (sslProvider == null || (sslProvider != SslProvider.JDK && !OpenSsl.isAvailable())) {
+            sslProvider = SslProvider.JDK;
+        }
+        SslContextBuilder builder = SslContextBuilder.forClient().sslProvider(sslProvider).keyManager(kmf).trustManager(tmf);
+        if (StringUtils.isNotBlank(tlsProtocol)) {
+            builder.protocols(tlsProtocol);
+        }
+        this.sslContext = builder.build();
+        this.alpnSslContext = http2
+                ? builder.ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+                .applicationProtocolConfig(new ApplicationProtocolConfig(ApplicationProtocolConfig.Protocol.ALPN,
+                        ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                        ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                        ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1))
+                .build()
+                : null;
+        try {
+            this.jdkSslContext = SSLContext.getInstance(StringUtils.isBlank(tlsProtocol) ? "TLS" : tlsProtocol);
+            jdkSslContext.init(kmf == null ? null : kmf.getKeyManagers(), tmf == null ? null : tmf.getTrustManagers(), null);
+        } catch (GeneralSecurityException ex) {
+            throw new SSLException(ex);
+        }
+        this.tlsProtocol = tlsProtocol;
+        this.hostnameVerification = hostnameVerification;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.defaultTimeoutMs = defaultTimeoutMs;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxPendingAcquires = maxPendingAcquires;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+        this.maxResponseBytes = maxResponseBytes;
+        this.useServerEventLoop = useServerEventLoop;
+        this.executor = executor;
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<T>> future = sendAsync(request, responseBodyHandler);
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            throw ex;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException ioe) {
+                throw ioe;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IOException("HttpClient is closed"));
+        }
+        URI uri = request.uri();
+        boolean tls = "https".equalsIgnoreCase(uri.getScheme());
+        if (!tls && !"http".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("unsupported URI: " + uri));
+        }
+        int port = uri.getPort() > 0 ? uri.getPort() : tls ? 443 : 80;
+        HostPool pool = getHostPool(uri.getHost(), port, tls);
+        Exchange<T> exchange = new Exchange<>(request, responseBodyHandler);
+        long timeoutMs = request.timeout().map(Duration::toMillis).orElse(defaultTimeoutMs);
+        if (timeoutMs > 0) {
+            try {
+                exchange.timeout = pool.group.schedule(() -> exchange.onError(new HttpTimeoutException("request timed out")), timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                // the event loop group is shutting down, e.g. CRaC checkpoint or config reload
+                return CompletableFuture.failedFuture(new IOException("HttpClient event loop is shutting down", ex));
+            }
+        }
+        exchange.future.whenComplete((response, ex) -> {
+            if (ex instanceof CancellationException) {
+                // e.g. the loser of a hedged request
+                exchange.onError(ex);
+            } else if (ex == null && exchange.timeout != null) {
+                // like the JDK client: the timeout ends when the response is available, a streamed body is not limited
+                exchange.timeout.cancel(false);
+            }
+        });
+        readBody(request).whenComplete((body, ex) -> {
+            if (ex != null) {
+                exchange.onError(ex);
+            } else {
+                pool.send(exchange, body);
+            }
+        });
+        return exchange.future;
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler, HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        return sendAsync(request, responseBodyHandler);
+    }
+
+    protected HostPool getHostPool(String host, int port, boolean tls) {
+        String key = (tls ? "https://" : "http://") + host + ":" + port;
+        HostPool pool = pools.get(key);
+        if (pool != null && !pool.isStale()) {
+            return pool;
+        }
+        synchronized (pools) {
+            pool = pools.get(key);
+            if (pool == null || pool.isStale()) {
+                if (pool != null) {
+                    pool.retire();
+                }
+                pool = new HostPool(host, port, tls);
+                pools.put(key, pool);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * @return the worker group of the HTTP server when it is started, otherwise the own group
+     */
+    protected synchronized EventLoopGroup group() {
+        EventLoopGroup shared = useServerEventLoop ? NioServer.getSharedWorkerGroup() : null;
+        if (shared != null && !shared.isShuttingDown()) {
+            return shared;
+        }
+        if (ownGroup == null || ownGroup.isShuttingDown()) {
+            boolean epoll = Epoll.isAvailable();
+            ownGroup = new MultiThreadIoEventLoopGroup(0, NamedDefaultThreadFactory.build("Netty-HttpClient", false), epoll ? EpollIoHandler.newFactory() : NioIoHandler.newFactory());
+            ownChannelClass = epoll ? EpollSocketChannel.class : NioSocketChannel.class;
+        }
+        return ownGroup;
+    }
+
+    protected synchronized Class<? extends Channel> channelClass(EventLoopGroup group) {
+        return group == ownGroup ? ownChannelClass : NioServer.getSharedSocketChannelClass();
+    }
+
+    protected class HostPool {
+
+        protected final String host;
+        protected final int port;
+        protected final boolean tls;
+        protected final EventLoopGroup group;
+        protected final Bootstrap bootstrap;
+        protected final FixedChannelPool http1;
+        protected volatile boolean http1Only;
+        protected Promise<Channel> http2Parent;
+        // exchanges sent and not yet done with their connection, guarded by this
+        protected int inFlight;
+        protected boolean retired;
+        protected boolean closed;
+
+        protected HostPool(String host, int port, boolean tls) {
+            this.host = host;
+            this.port = port;
+            this.tls = tls;
+            this.http1Only = !tls || alpnSslContext == null;
+            this.group = group();
+            this.bootstrap = new Bootstrap()
+                    .group(group)
+                    .channel(channelClass(group))
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeoutMs)
+                    .option(ChannelOption.TCP_NODELAY, true)
+                    .option(ChannelOption.SO_KEEPALIVE, true)
+                    .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                    .remoteAddress(host, port);
+            this.http1 = new FixedChannelPool(bootstrap, new AbstractChannelPoolHandler() {
+                @Override
+                public void channelCreated(Channel ch) {
+                    if (tls) {
+                        ch.pipeline().addLast(newSslHandler(sslContext, ch));
+                    }
+                    ch.pipeline().addLast(new HttpClientCodec(), new IdleStateHandler(0, 0, idleTimeoutSeconds), RESPONSE_HANDLER);
+                }
+            }, ChannelHealthChecker.ACTIVE, FixedChannelPool.AcquireTimeoutAction.FAIL, acquireTimeoutMs, maxConnectionsPerHost, maxPendingAcquires, true, true);
+        }
+
+        /**
+         * @return true if the event loop group is shut down (e.g. CRaC checkpoint) or the HTTP server group became
+         * available
+         */
+        protected boolean isStale() {
+            if (group.isShuttingDown()) {
+                return true;
+            }
+            EventLoopGroup shared = useServerEventLoop ? NioServer.getSharedWorkerGroup() : null;
+            return shared != null && shared != group && !shared.isShuttingDown();
+        }
+
+        protected SslHandler newSslHandler(SslContext ctx, Channel ch) {
+            SslHandler ssl = ctx.newHandler(ch.alloc(), host, port);
+            ssl.setHandshakeTimeoutMillis(connectTimeoutMs);
+            if (hostnameVerification) {
+                SSLEngine engine = ssl.engine();
+                SSLParameters params = engine.getSSLParameters();
+                params.setEndpointIdentificationAlgorithm("HTTPS");
+                engine.setSSLParameters(params);
+            }
+            return ssl;
+        }
+
+        protected void send(Exchange<?> exchange, ByteBuf body) {
+            boolean replaced;
+            synchronized (this) {
+                replaced = closed;
+                if (!replaced) {
+                    inFlight++;
+                }
+            }
+            if (replaced) {
+                // replaced and drained while the request body was read, send via the new pool
+                getHostPool(host, port, tls).send(exchange, body);
+                return;
+            }
+            if (http1Only) {
+                sendHttp1(exchange, body);
+                return;
+            }
+            http2Parent().addListener((Future<Channel> f) -> {
+                if (f.isSuccess()) {
+                    sendHttp2(f.getNow(), exchange, body);
+                } else if (f.cause() instanceof Http1NegotiatedException) {
+                    sendHttp1(exchange, body);
+                } else {
+                    body.release();
+                    exchange.onError(f.cause());
+                    onExchangeDone();
+                }
+            });
+        }
+
+        protected void sendHttp1(Exchange<?> exchange, ByteBuf body) {
+            http1.acquire().addListener((Future<Channel> f) -> {
+                if (!f.isSuccess()) {
+                    body.release();
+                    exchange.onError(f.cause());
+                    onExchangeDone();
+                    return;
+                }
+                Channel ch = f.getNow();
+                exchange.start(ch, HttpClient.Version.HTTP_1_1, () -> {
+                    http1.release(ch);
+                    onExchangeDone();
+                }, body);
+            });
+        }
+
+        protected void sendHttp2(Channel parent, Exchange<?> exchange, ByteBuf body) {
+            new Http2StreamChannelBootstrap(parent).handler(new ChannelInitializer<Http2StreamChannel>() {
+                @Override
+                protected void initChannel(Http2StreamChannel ch) {
+                    ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(false), RESPONSE_HANDLER);
+                }
+            }).open().addListener((Future<Http2StreamChannel> f) -> {
+                if (!f.isSuccess()) {
+                    body.release();
+                    exchange.onError(f.cause());
+                    onExchangeDone();
+                    return;
+                }
+                Http2StreamChannel stream = f.getNow();
+                exchange.start(stream, HttpClient.Version.HTTP_2, () -> {
+                    stream.close();
+                    onExchangeDone();
+                }, body);
+            });
+        }
+
+        /**
+         * @return the multiplexed connection, connect when there is none or it is closed. Fails with
+         * Http1NegotiatedException when the server does not support h2
+         */
+        protected synchronized Future<Channel> http2Parent() {
+            Promise<Channel> current = http2Parent;
+            if (current != null && (!current.isDone() || current.isSuccess() && current.getNow().isActive())) {
+                return current;
+            }
+            Promise<Channel> promise = group.next().newPromise();
+            http2Parent = promise;
+            ChannelFuture connect = bootstrap.clone().handler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                    ch.pipeline().addLast(newSslHandler(alpnSslContext, ch), new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+                        @Override
+                        protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+                            if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                                // in front of the codec to see the frames of all streams, stream frames do not reach the handlers after the multiplexer
+                                ctx.pipeline().addLast(new IdleStateHandler(0, 0, idleTimeoutSeconds), Http2FrameCodecBuilder.forClient().build(),
+                                        new Http2MultiplexHandler(new ChannelInboundHandlerAdapter()), RESPONSE_HANDLER);
+                                promise.trySuccess(ctx.channel());
+                            } else {
+                                http1Only = true;
+                                promise.tryFailure(new Http1NegotiatedException());
+                                ctx.close();
+                            }
+                        }
+
+                        @Override
+                        protected void handshakeFailure(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+                            promise.tryFailure(cause);
+                            super.handshakeFailure(ctx, cause);
+                        }
+                    });
+                }
+            }).connect();
+            connect.addListener((ChannelFuture f) -> {
+                if (!f.isSuccess()) {
+                    promise.tryFailure(f.cause());
+                }
+            });
+            return promise;
+        }
+
+        /**
+         * Replaced by a new pool: close the connections once the exchanges in flight are done with them, right away when
+         * the event loop group is shut down since the connections are gone anyway
+         */
+        protected synchronized void retire() {
+            retired = true;
+            if (inFlight == 0 || group.isShuttingDown()) {
+                close();
+            }
+        }
+
+        protected synchronized void onExchangeDone() {
+            if (--inFlight == 0 && retired) {
+                close();
+            }
+        }
+
+        protected synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            http1.closeAsync();
+            if (http2Parent != null && http2Parent.isSuccess()) {
+                http2Parent.getNow().close();
+            }
+        }
+    }
+
+    /**
+     * One request/response on a pooled HTTP/1.1 connection or an HTTP/2 stream. The response body is passed to the
+     * body subscriber chunk by chunk as requested, at most maxResponseBytes not yet requested are buffered before the
+     * channel stops reading. The connection is released as soon as the whole body is received.
+     *
+     * @param <T>
+     */
+    protected class Exchange<T> implements Flow.Subscription {
+
+        protected final HttpRequest request;
+        protected final HttpResponse.BodyHandler<T> bodyHandler;
+        protected final CompletableFuture<HttpResponse<T>> future = new CompletableFuture<>();
+        /**
+         * the connection is released or closed
+         */
+        protected final AtomicBoolean done = new AtomicBoolean();
+        protected volatile ScheduledFuture<?> timeout;
+        protected Channel channel;
+        protected Runnable release;
+        protected HttpClient.Version version;
+        protected volatile boolean keepAlive;
+
+        // response body, guarded by this
+        protected final ArrayDeque<ByteBuffer> chunks = new ArrayDeque<>();
+        protected HttpResponse.BodySubscriber<T> subscriber;
+        protected boolean streaming;
+        protected boolean headReceived;
+        protected boolean bodyReceived;
+        protected boolean paused;
+        protected boolean draining;
+        protected boolean terminated;
+        protected boolean cancelled;
+        protected Throwable failure;
+        protected long demand;
+        protected long queuedBytes;
+        protected long deliveredBytes;
+
+        protected Exchange(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+            this.request = request;
+            this.bodyHandler = bodyHandler;
+        }
+
+        protected synchronized void start(Channel ch, HttpClient.Version version, Runnable release, ByteBuf body) {
+            if (done.get()) {
+                // timed out or cancelled while waiting for the connection
+                body.release();
+                release.run();
+                return;
+            }
+            this.channel = ch;
+            this.release = release;
+            this.version = version;
+            ch.attr(EXCHANGE).set(this);
+            ch.writeAndFlush(toNettyRequest(request, body, version == HttpClient.Version.HTTP_2)).addListener(f -> {
+                if (!f.isSuccess()) {
+                    onError(f.cause());
+                }
+            });
+        }
+
+        /**
+         * event loop: status line and headers
+         *
+         * @param response
+         */
+        protected void onHead(io.netty.handler.codec.http.HttpResponse response) {
+            int status = response.status().code();
+            HttpHeaders headers = toJdkHeaders(response.headers());
+            keepAlive = HttpUtil.isKeepAlive(response);
+            synchronized (this) {
+                if (headReceived || failure != null || cancelled) {
+                    return;
+                }
+                headReceived = true;
+            }
+            complete(() -> subscribe(status, headers));
+        }
+
+        /**
+         * event loop: a chunk of the body, the last one releases the connection
+         *
+         * @param content
+         */
+        protected void onContent(HttpContent content) {
+            boolean last = content instanceof LastHttpContent;
+            boolean pause = false;
+            synchronized (this) {
+                if (!headReceived || bodyReceived || failure != null || cancelled) {
+                    return;
+                }
+                ByteBuf buf = content.content();
+                if (buf.isReadable()) {
+                    ByteBuffer chunk = ByteBuffer.allocate(buf.readableBytes());
+                    buf.getBytes(buf.readerIndex(), chunk);
+                    chunk.flip();
+                    chunks.add(chunk);
+                    queuedBytes += chunk.remaining();
+                }
+                bodyReceived = last;
+                if (!last && !paused && queuedBytes >= maxResponseBytes) {
+                    // the subscriber is slower than the server, stop reading until it catches up
+                    paused = true;
+                    pause = true;
+                }
+            }
+            if (last) {
+                release(!keepAlive);
+            } else if (pause) {
+                channel.config().setAutoRead(false);
+            }
+            scheduleDrain();
+        }
+
+        protected void onError(Throwable cause) {
+            Throwable ex = toException(cause);
+            boolean notifyFuture;
+            synchronized (this) {
+                if (failure != null || terminated || cancelled) {
+                    return;
+                }
+                failure = ex;
+                notifyFuture = subscriber == null;
+            }
+            release(true);
+            if (notifyFuture) {
+                complete(() -> future.completeExceptionally(ex));
+            } else {
+                scheduleDrain();
+            }
+        }
+
+        /**
+         * executor: create the body subscriber, the response future completes when its body is available, which is
+         * right away for streaming subscribers (e.g. ofInputStream, ofPublisher)
+         *
+         * @param status
+         * @param headers
+         */
+        protected void subscribe(int status, HttpHeaders headers) {
+            synchronized (this) {
+                if (failure != null || cancelled) {
+                    return;
+                }
+            }
+            HttpClient.Version v = version;
+            HttpResponse.BodySubscriber<T> s;
+            CompletableFuture<T> body;
+            try {
+                s = bodyHandler.apply(new HttpResponse.ResponseInfo() {
+                    @Override
+                    public int statusCode() {
+                        return status;
+                    }
+
+                    @Override
+                    public HttpHeaders headers() {
+                        return headers;
+                    }
+
+                    @Override
+                    public HttpClient.Version version() {
+                        return v;
+                    }
+                });
+                body = s.getBody().toCompletableFuture();
+            } catch (Throwable ex) {
+                onError(ex);
+                return;
+            }
+            synchronized (this) {
+                subscriber = s;
+                streaming = body.isDone();
+            }
+            body.whenComplete((b, ex) -> {
+                if (ex != null) {
+                    future.completeExceptionally(ex);
+                } else {
+                    future.complete(new Response<>(request, status, headers, b, v));
+                }
+            });
+            s.onSubscribe(this);
+            scheduleDrain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                onError(new IllegalArgumentException("non-positive subscription request: " + n));
+                return;
+            }
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            scheduleDrain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                chunks.clear();
+                queuedBytes = 0;
+            }
+            // no-op when the body is received already
+            release(true);
+        }
+
+        protected void scheduleDrain() {
+            synchronized (this) {
+                if (draining || subscriber == null) {
+                    return;
+                }
+                draining = true;
+            }
+            complete(this::drain);
+        }
+
+        /**
+         * executor, one at a time: pass the buffered chunks and the completion to the subscriber as requested
+         */
+        protected void drain() {
+            while (true) {
+                ByteBuffer chunk = null;
+                Throwable error = null;
+                boolean resume = false;
+                synchronized (this) {
+                    if (terminated || cancelled) {
+                        draining = false;
+                        return;
+                    }
+                    if (failure != null) {
+                        error = failure;
+                        terminated = true;
+                    } else if (demand > 0 && !chunks.isEmpty()) {
+                        chunk = chunks.poll();
+                        demand--;
+                        queuedBytes -= chunk.remaining();
+                        deliveredBytes += chunk.remaining();
+                        if (!streaming && deliveredBytes > maxResponseBytes) {
+                            // aggregating subscriber (e.g. ofString) holds the whole body in memory
+                            error = failure = new IOException("response body exceeds " + maxResponseBytes + " bytes: " + request.uri());
+                            terminated = true;
+                        } else if (paused && queuedBytes < maxResponseBytes / 2) {
+                            paused = false;
+                            resume = true;
+                        }
+                    } else if (bodyReceived && chunks.isEmpty()) {
+                        terminated = true;
+                    } else {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    if (error != null) {
+                        release(true);
+                        subscriber.onError(error);
+                        future.completeExceptionally(error);
+                        return;
+                    }
+                    if (chunk == null) {
+                        subscriber.onComplete();
+                        return;
+                    }
+                    if (resume) {
+                        // on the event loop, after a pending pause of onContent
+                        channel.eventLoop().execute(this::resume);
+                    }
+                    subscriber.onNext(List.of(chunk));
+                } catch (Throwable ex) {
+                    cancel();
+                    future.completeExceptionally(ex);
+                    return;
+                }
+            }
+        }
+
+        protected void resume() {
+            synchronized (this) {
+                if (paused) {
+                    return;
+                }
+            }
+            channel.config().setAutoRead(true);
+        }
+
+        /**
+         * @param close true to close the connection instead of reusing it
+         */
+        protected void release(boolean close) {
+            if (done.compareAndSet(false, true)) {
+                finish(close);
+            }
+        }
+
+        protected synchronized void finish(boolean close) {
+            ScheduledFuture<?> t = timeout;
+            if (t != null) {
+                t.cancel(false);
+            }
+            if (channel == null) {
+                // not started yet, start() releases the connection
+                return;
+            }
+            channel.attr(EXCHANGE).compareAndSet(this, null);
+            if (close) {
+                channel.close();
+            } else {
+                channel.config().setAutoRead(true);
+            }
+            release.run();
+        }
+
+        protected void complete(Runnable task) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException ex) {
+                task.run();
+            }
+        }
+    }
+
+    @ChannelHandler.Sharable
+    protected static class ResponseHandler extends SimpleChannelInboundHandler<HttpObject> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) {
+            Exchange<?> exchange = ctx.channel().attr(EXCHANGE).get();
+            if (exchange == null) {
+                return;
+            }
+            // a FullHttpResponse is both
+            if (msg instanceof io.netty.handler.codec.http.HttpResponse response) {
+                exchange.onHead(response);
+            }
+            if (msg instanceof HttpContent content) {
+                exchange.onContent(content);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            Exchange<?> exchange = ctx.channel().attr(EXCHANGE).get();
+            if (exchange != null) {
+                exchange.onError(cause);
+            } else {
+                log.debug(() -> "closing " + ctx.channel(), cause);
+                ctx.close();
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            Exchange<?> exchange = ctx.channel().attr(EXCHANGE).get();
+            if (exchange != null) {
+                exchange.onError(new IOException("connection closed: " + ctx.channel().remoteAddress()));
+            }
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent && ctx.channel().attr(EXCHANGE).get() == null && !hasActiveStreams(ctx)) {
+                ctx.close();
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        /**
+         * @param ctx
+         * @return true if ctx is on an HTTP/2 connection with open streams (the exchanges are on the stream channels)
+         */
+        protected boolean hasActiveStreams(ChannelHandlerContext ctx) {
+            Http2FrameCodec codec = ctx.pipeline().get(Http2FrameCodec.class);
+            return codec != null && codec.connection().numActiveStreams() > 0;
+        }
+    }
+
+    protected static FullHttpRequest toNettyRequest(HttpRequest request, ByteBuf body, boolean http2) {
+        URI uri = request.uri();
+        String path = StringUtils.isEmpty(uri.getRawPath()) ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path = path + "?" + uri.getRawQuery();
+        }
+        String method = request.method();
+        FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.valueOf(method), path, body);
+        for (Map.Entry<String, List<String>> e : request.headers().map().entrySet()) {
+            req.headers().add(e.getKey(), e.getValue());
+        }
+        req.headers().set(HttpHeaderNames.HOST, uri.getPort() > 0 ? uri.getHost() + ":" + uri.getPort() : uri.getHost());
+        if (body.isReadable() || "POST".equals(method) || "PUT".equals(method) || "PATCH".equals(method)) {
+            req.headers().set(HttpHeaderNames.CONTENT_LENGTH, body.readableBytes());
+        }
+        if (http2) {
+            req.headers().set(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(), uri.getScheme());
+        }
+        return req;
+    }
+
+    /**
+     * @param request
+     * @return the request body in a pooled buffer
+     */
+    protected static CompletableFuture<ByteBuf> readBody(HttpRequest request) {
+        Optional<HttpRequest.BodyPublisher> publisher = request.bodyPublisher();
+        if (publisher.isEmpty() || publisher.get().contentLength() == 0) {
+            return CompletableFuture.completedFuture(Unpooled.EMPTY_BUFFER);
+        }
+        long contentLength = publisher.get().contentLength();
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.buffer(contentLength > 0 && contentLength < Integer.MAX_VALUE ? (int) contentLength : 256);
+        CompletableFuture<ByteBuf> ret = new CompletableFuture<>();
+        publisher.get().subscribe(new Flow.Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                buf.writeBytes(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                buf.release();
+                ret.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                ret.complete(buf);
+            }
+        });
+        return ret;
+    }
+
+    protected static HttpHeaders toJdkHeaders(io.netty.handler.codec.http.HttpHeaders headers) {
+        Map<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, String> e : headers) {
+            // skip x-http2-stream-id etc. added by the HTTP/2 to HTTP/1 conversion
+            if (!e.getKey().regionMatches(true, 0, "x-http2-", 0, 8)) {
+                map.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(e.getValue());
+            }
+        }
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+
+    protected static Throwable toException(Throwable cause) {
+        if (cause instanceof IOException || cause instanceof CancellationException) {
+            return cause;
+        }
+        if (cause instanceof TimeoutException || cause instanceof IllegalStateException) {
+            // FixedChannelPool: acquire timeout or too many pending acquires
+            return new IOException("connection pool exhausted: " + cause.getMessage(), cause);
+        }
+        return new IOException(cause);
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return Optional.of(Duration.ofMillis(connectTimeoutMs));
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return Redirect.NEVER;
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return Optional.empty();
+    }
+
+    /**
+     * @return JDK SSLContext with the key and trust material of this client, the connections use the Netty SslContext
+     * built from the same material
+     */
+    @Override
+    public SSLContext sslContext() {
+        return jdkSslContext;
+    }
+
+    /**
+     * @return a copy of the SSL parameters used by the connections
+     */
+    @Override
+    public SSLParameters sslParameters() {
+        SSLParameters ret = jdkSslContext.getDefaultSSLParameters();
+        if (StringUtils.isNotBlank(tlsProtocol)) {
+            ret.setProtocols(new String[]{tlsProtocol});
+        }
+        if (hostnameVerification) {
+            ret.setEndpointIdentificationAlgorithm("HTTPS");
+        }
+        if (alpnSslContext != null) {
+            ret.setApplicationProtocols(new String[]{ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1});
+        }
+        return ret;
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Version version() {
+        return alpnSslContext == null ? Version.HTTP_1_1 : Version.HTTP_2;
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return Optional.ofNullable(executor);
+    }
+
+    /**
+     * Close all connections, the own event loop group (if any) is shut down gracefully
+     */
+    @Override
+    public void shutdown() {
+        closed = true;
+        synchronized (pools) {
+            pools.values().forEach(HostPool::close);
+            pools.clear();
+        }
+        synchronized (this) {
+            if (ownGroup != null) {
+                ownGroup.shutdownGracefully();
+            }
+        }
+    }
+
+    @Override
+    public void shutdownNow() {
+        shutdown();
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return closed && (ownGroup == null || ownGroup.isTerminated());
+    }
+
+    @Override
+    public boolean awaitTermination(Duration duration) throws InterruptedException {
+        EventLoopGroup group;
+        synchronized (this) {
+            group = ownGroup;
+        }
+        return group == null ? closed : group.awaitTermination(duration.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        shutdown();
+    }
+}
@@ -24,14 +24,36 @@ import org.summerboot.jexpress.api.common.SessionContext;
 import org.summerboot.jexpress.api.rpc.RpcDelegate;
 import org.summerboot.jexpress.api.rpc.RpcMemo;
 import org.summerboot.jexpress.api.rpc.RpcResult;
+import org.summerboot.jexpress.integration.resilience.CallNotPermittedException;
+import org.summerboot.jexpress.integration.resilience.Resilience;
 import org.summerboot.jexpress.integration.rpc.http.config.HttpClientConfig;
+import tools.jackson.databind.JavaType;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
@@ -74,7 +96,6 @@ public abstract class RpcDelegateHttpClientImpl implements RpcDelegate {
      */
     @Override
     public <T> RpcResult<T> rpcEx(SessionContext sessionContext, HttpRequest req, HttpResponseStatus... successStatusList) throws IOException {
-        Optional<HttpRequest.BodyPublisher> pub = req.bodyPublisher();
         String reqbody = RpcDelegate.getHttpRequestBody(req);
         return this.rpcEx(sessionContext, req, reqbody, successStatusList);
     }
@@ -93,10 +114,82 @@ public abstract class RpcDelegateHttpClientImpl implements RpcDelegate {
      */
     @Override
     public <T> RpcResult<T> rpcEx(SessionContext context, HttpRequest originRequest, String originRequestBody, HttpResponseStatus... successStatusList) throws IOException {
-        //1. log memo
-        context.memo(RpcMemo.MEMO_RPC_REQUEST, originRequest.toString() + " caller=" + context.caller());
-        if (originRequestBody != null) {
-            context.memo(RpcMemo.MEMO_RPC_REQUEST_DATA, originRequestBody);
+        //1. log memo, once for all attempts
+        memoRequest(context, originRequest, originRequestBody);
+        HttpResponseCache cache = getHttpClientConfig().getResponseCache();
+        if (cache != null && cache.isCacheable(originRequest)) {
+            // served from cache without calling the server, not counted by circuit breaker and bulkhead
+            HttpResponseCache.Hit hit = cache.lookup(originRequest, this::sendAsyncString);
+            if (hit != null) {
+                context.memo(RpcMemo.MEMO_RPC_REQUEST, (hit.stale() ? "cache stale-while-revalidate, age=" : "cache hit, age=") + hit.ageSeconds() + "s");
+                return buildRpcResult(context, originRequest, originRequestBody, hit.response(), successStatusList);
+            }
+        }
+        return execute(context, originRequest, originRequestBody, () -> this.<T>rpcOnce(context, originRequest, originRequestBody, successStatusList));
+    }
+
+    /**
+     * One call to the remote server
+     *
+     * @param <T>
+     */
+    @FunctionalInterface
+    protected interface Call<T> {
+
+        RpcResult<T> call() throws IOException;
+    }
+
+    /**
+     * Run the call with circuit breaker, bulkhead and retry when httpclient.resilience.* is configured
+     *
+     * @param <T>
+     * @param context
+     * @param originRequest
+     * @param originRequestBody
+     * @param call
+     * @return a Non-Null RpcResult
+     * @throws IOException
+     */
+    protected <T> RpcResult<T> execute(SessionContext context, HttpRequest originRequest, String originRequestBody, Call<T> call) throws IOException {
+        Resilience resilience = getHttpClientConfig().getResilience();
+        if (resilience == null) {
+            return call.call();
+        }
+        try {
+            return resilience.execute(attempt -> {
+                if (attempt > 0) {
+                    context.memo(RpcMemo.MEMO_RPC_REQUEST, "retry #" + attempt);
+                }
+                return call.call();
+            }, rpcResult -> classify(originRequest, rpcResult), ex -> classify(originRequest, ex));
+        } catch (CallNotPermittedException ex) {
+            onCallNotPermitted(context, originRequest, ex);
+            return new RpcResult<>(originRequest, originRequestBody, null, false, getHttpClientConfig());
+        }
+    }
+
+    /**
+     * One call without circuit breaker, bulkhead and retry, the request is memoed by the caller
+     *
+     * @param <T>
+     * @param context
+     * @param originRequest
+     * @param originRequestBody
+     * @param successStatusList
+     * @return a Non-Null RpcResult
+     * @throws IOException
+     */
+    protected <T> RpcResult<T> rpcOnce(SessionContext context, HttpRequest originRequest, String originRequestBody, HttpResponseStatus... successStatusList) throws IOException {
+        HttpResponseCache cache = getHttpClientConfig().getResponseCache();
+        if (cache != null) {
+            if (cache.isCacheable(originRequest)) {
+                return rpcCached(context, cache, originRequest, originRequestBody, successStatusList);
+            }
+            cache.invalidate(originRequest);
+        }
+        HedgingPolicy hedgingPolicy = getHttpClientConfig().getHedgingPolicy();
+        if (hedgingPolicy != null && isIdempotent(originRequest)) {
+            return rpcHedged(context, hedgingPolicy, originRequest, originRequestBody, successStatusList);
         }
         //2. call remote sever
         HttpResponse httpResponse;
@@ -113,31 +206,431 @@ public abstract class RpcDelegateHttpClientImpl implements RpcDelegate {
         } finally {
             context.poi(BootPoi.RPC_END);
         }
+        return buildRpcResult(context, originRequest, originRequestBody, httpResponse, successStatusList);
+    }
 
-        // 3a. check remote success or not
-        boolean isRemoteSuccess = false;
-        int statusCode = httpResponse.statusCode();
-        if (successStatusList == null || successStatusList.length < 1) {
-            //isRemoteSuccess = statusCode == HttpResponseStatus.OK.code();
-            isRemoteSuccess = (statusCode >= HttpResponseStatus.OK.code() && statusCode <= 299);
-        } else {
-            for (HttpResponseStatus successStatus : successStatusList) {// a simple loop is way faster than Arrays
-                if (statusCode == successStatus.code()) {
-                    isRemoteSuccess = true;
-                    break;
+    /**
+     * Send the request, send a hedge when it is not completed after the hedging delay, the first success (no
+     * IOException and HTTP status below 500) wins and the other one is cancelled
+     *
+     * @param <T>
+     * @param context
+     * @param hedgingPolicy
+     * @param originRequest
+     * @param originRequestBody
+     * @param successStatusList
+     * @return a Non-Null RpcResult
+     * @throws IOException
+     */
+    protected <T> RpcResult<T> rpcHedged(SessionContext context, HedgingPolicy hedgingPolicy, HttpRequest originRequest, String originRequestBody, HttpResponseStatus... successStatusList) throws IOException {
+        HttpResponse<String> httpResponse;
+        context.poi(BootPoi.RPC_BEGIN);
+        try {
+            httpResponse = sendHedged(context, hedgingPolicy, originRequest, HttpResponse.BodyHandlers.ofString(), body -> {
+            });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            Err e = new Err(BootErrorCode.APP_INTERRUPTED, null, "Http Client Interrupted", ex);
+            context.status(HttpResponseStatus.INTERNAL_SERVER_ERROR).error(e);
+            return new RpcResult<>(originRequest, originRequestBody, null, false, getHttpClientConfig());
+        } finally {
+            context.poi(BootPoi.RPC_END);
+        }
+        return buildRpcResult(context, originRequest, originRequestBody, httpResponse, successStatusList);
+    }
+
+    /**
+     * Send the request and a hedge when it is not completed after the hedging delay
+     *
+     * @param <B>
+     * @param context
+     * @param hedgingPolicy
+     * @param originRequest
+     * @param bodyHandler
+     * @param discard       releases the body of a losing response that already arrived, e.g. closes its stream
+     * @return the first success (no IOException and HTTP status below 500), or the last failure
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    protected <B> HttpResponse<B> sendHedged(SessionContext context, HedgingPolicy hedgingPolicy, HttpRequest originRequest, HttpResponse.BodyHandler<B> bodyHandler, Consumer<B> discard) throws IOException, InterruptedException {
+        HttpClient httpClient = getHttpClientConfig().getHttpClient();
+        hedgingPolicy.onCall();
+        long delayMs = hedgingPolicy.getDelayMs(originRequest);
+        CompletableFuture<HttpResponse<B>> primary = sendAndRecord(httpClient, hedgingPolicy, originRequest, bodyHandler);
+        CompletableFuture<HttpResponse<B>> hedge = null;
+        HttpResponse<B> httpResponse = null;
+        try {
+            try {
+                httpResponse = primary.get(delayMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                HttpRequest hedgeRequest = hedgingPolicy.buildHedgeRequest(originRequest);
+                if (hedgeRequest == null) {
+                    context.memo(RpcMemo.MEMO_RPC_REQUEST, "hedge skipped after " + delayMs + "ms: budget exhausted");
+                    httpResponse = primary.get();
+                } else {
+                    context.memo(RpcMemo.MEMO_RPC_REQUEST, "hedge after " + delayMs + "ms: " + hedgeRequest);
+                    // hedges are not recorded: they are only sent for slow calls and are cancelled when the primary wins
+                    hedge = httpClient.sendAsync(hedgeRequest, bodyHandler);
+                    httpResponse = firstSuccess(primary, hedge).get();
+                    if (hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.getNow(null) == httpResponse) {
+                        hedgingPolicy.onHedgeWon();
+                        context.memo(RpcMemo.MEMO_RPC_RESPONSE, "hedge won: " + hedgeRequest.uri());
+                    }
+                }
+            }
+            return httpResponse;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+            throw cause instanceof IOException ioe ? ioe : new IOException(cause);
+        } finally {
+            discardLoser(primary, httpResponse, discard);
+            discardLoser(hedge, httpResponse, discard);
+        }
+    }
+
+    /**
+     * Cancel the call when it is not the winner, or release its body when it already completed
+     *
+     * @param <B>
+     * @param future
+     * @param winner  null when no call won
+     * @param discard
+     */
+    protected static <B> void discardLoser(CompletableFuture<HttpResponse<B>> future, HttpResponse<B> winner, Consumer<B> discard) {
+        if (future == null) {
+            return;
+        }
+        future.cancel(true);// no-op when completed
+        future.thenAccept(httpResponse -> {
+            if (httpResponse != winner) {
+                discard.accept(httpResponse.body());
+            }
+        });
+    }
+
+    /**
+     * Cache miss or stale: send via the cache, which adds the validators of the stored response and shares the call
+     * with concurrent identical requests
+     *
+     * @param <T>
+     * @param context
+     * @param cache
+     * @param originRequest
+     * @param originRequestBody
+     * @param successStatusList
+     * @return a Non-Null RpcResult
+     * @throws IOException
+     */
+    protected <T> RpcResult<T> rpcCached(SessionContext context, HttpResponseCache cache, HttpRequest originRequest, String originRequestBody, HttpResponseStatus... successStatusList) throws IOException {
+        HttpResponse<String> httpResponse;
+        context.poi(BootPoi.RPC_BEGIN);
+        try {
+            httpResponse = cache.fetch(originRequest, this::sendAsyncString, memo -> context.memo(RpcMemo.MEMO_RPC_REQUEST, memo)).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            Err e = new Err(BootErrorCode.APP_INTERRUPTED, null, "Http Client Interrupted", ex);
+            context.status(HttpResponseStatus.INTERNAL_SERVER_ERROR).error(e);
+            return new RpcResult<>(originRequest, originRequestBody, null, false, getHttpClientConfig());
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+            throw cause instanceof IOException ioe ? ioe : new IOException(cause);
+        } finally {
+            context.poi(BootPoi.RPC_END);
+        }
+        return buildRpcResult(context, originRequest, originRequestBody, httpResponse, successStatusList);
+    }
+
+    protected CompletableFuture<HttpResponse<String>> sendAsyncString(HttpRequest request) {
+        return getHttpClientConfig().getHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Send the primary attempt and record its latency: the response time when completed, or the elapsed time as a lower
+     * bound when it is cancelled (lost to the hedge) or timed out, so that slow calls are not left out of the percentile
+     *
+     * @param httpClient
+     * @param hedgingPolicy
+     * @param request
+     * @param bodyHandler
+     * @return
+     */
+    protected <B> CompletableFuture<HttpResponse<B>> sendAndRecord(HttpClient httpClient, HedgingPolicy hedgingPolicy, HttpRequest request, HttpResponse.BodyHandler<B> bodyHandler) {
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<B>> future = httpClient.sendAsync(request, bodyHandler);
+        future.whenComplete((httpResponse, ex) -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause == null || cause instanceof CancellationException || (cause instanceof HttpTimeoutException && !(cause instanceof HttpConnectTimeoutException))) {
+                hedgingPolicy.record(request, System.nanoTime() - start);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @param primary
+     * @param hedge
+     * @return completes with the first success, or with the result of the last one when both failed
+     */
+    protected static <B> CompletableFuture<HttpResponse<B>> firstSuccess(CompletableFuture<HttpResponse<B>> primary, CompletableFuture<HttpResponse<B>> hedge) {
+        CompletableFuture<HttpResponse<B>> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        BiConsumer<HttpResponse<B>, Throwable> race = (httpResponse, ex) -> {
+            if (ex == null && httpResponse.statusCode() < 500) {
+                winner.complete(httpResponse);
+            } else if (pending.decrementAndGet() == 0) {
+                if (ex == null) {
+                    winner.complete(httpResponse);
+                } else {
+                    winner.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
                 }
             }
+        };
+        primary.whenComplete(race);
+        hedge.whenComplete(race);
+        return winner;
+    }
+
+    protected void memoRequest(SessionContext context, HttpRequest originRequest, String originRequestBody) {
+        context.memo(RpcMemo.MEMO_RPC_REQUEST, originRequest.toString() + " caller=" + context.caller());
+        if (originRequestBody != null) {
+            context.memo(RpcMemo.MEMO_RPC_REQUEST_DATA, originRequestBody);
         }
+    }
+
+    protected <T> RpcResult<T> buildRpcResult(SessionContext context, HttpRequest originRequest, String originRequestBody, HttpResponse httpResponse, HttpResponseStatus... successStatusList) {
+        return buildRpcResult(context, originRequest, originRequestBody, httpResponse, Integer.MAX_VALUE, successStatusList);
+    }
+
+    /**
+     * @param <T>
+     * @param context
+     * @param originRequest
+     * @param originRequestBody
+     * @param httpResponse
+     * @param memoMaxChars      the memo of a success response body is truncated to this length, an error body is
+     *                          kept as a whole
+     * @param successStatusList
+     * @return
+     */
+    protected <T> RpcResult<T> buildRpcResult(SessionContext context, HttpRequest originRequest, String originRequestBody, HttpResponse httpResponse, int memoMaxChars, HttpResponseStatus... successStatusList) {
+        // 3a. check remote success or not
+        boolean isRemoteSuccess = isRemoteSuccess(httpResponse.statusCode(), successStatusList);
 
         //3b. update status   
         RpcResult<T> rpcResult = new RpcResult<>(originRequest, originRequestBody, httpResponse, isRemoteSuccess, getHttpClientConfig());
         String rpcResponseJsonBody = rpcResult.httpResponseBody();
         context.memo(RpcMemo.MEMO_RPC_RESPONSE, rpcResult.httpStatusCode() + " " + httpResponse.headers());
-        context.memo(RpcMemo.MEMO_RPC_RESPONSE_DATA, rpcResponseJsonBody);
+        if (isRemoteSuccess && rpcResponseJsonBody != null && rpcResponseJsonBody.length() > memoMaxChars) {
+            context.memo(RpcMemo.MEMO_RPC_RESPONSE_DATA, rpcResponseJsonBody.substring(0, memoMaxChars) + "... (" + rpcResponseJsonBody.length() + " chars)");
+        } else {
+            context.memo(RpcMemo.MEMO_RPC_RESPONSE_DATA, rpcResponseJsonBody);
+        }
         // let caller decide how to process the RpcResult - rpcResult.update(successResponseClass, errorResponseClass, ioc);
         return rpcResult;
     }
 
+    protected boolean isRemoteSuccess(int statusCode, HttpResponseStatus... successStatusList) {
+        if (successStatusList == null || successStatusList.length < 1) {
+            //isRemoteSuccess = statusCode == HttpResponseStatus.OK.code();
+            return statusCode >= HttpResponseStatus.OK.code() && statusCode <= 299;
+        }
+        for (HttpResponseStatus successStatus : successStatusList) {// a simple loop is way faster than Arrays
+            if (statusCode == successStatus.code()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public <T> RpcResult<T> rpcStream(SessionContext context, HttpRequest.Builder reqBuilder, Class<T> successResponseClass, HttpResponseStatus... successStatusList) throws IOException {
+        return rpcStream(context, reqBuilder, getHttpClientConfig().getJsonMapper().constructType(successResponseClass), successStatusList);
+    }
+
+    @Override
+    public <T> RpcResult<T> rpcStream(SessionContext context, HttpRequest.Builder reqBuilder, JavaType successResponseType, HttpResponseStatus... successStatusList) throws IOException {
+        configure(reqBuilder);
+        HttpRequest originRequest = reqBuilder.build();
+        String originRequestBody = RpcDelegate.getHttpRequestBody(originRequest);
+        memoRequest(context, originRequest, originRequestBody);
+        invalidateCache(originRequest);
+        return execute(context, originRequest, originRequestBody, () -> this.<T>rpcStreamOnce(context, originRequest, originRequestBody, successResponseType, successStatusList));
+    }
+
+    /**
+     * One streaming call, the body is consumed before returning so that a retry does not interleave with it
+     *
+     * @param <T>
+     * @param context
+     * @param originRequest
+     * @param originRequestBody
+     * @param successResponseType
+     * @param successStatusList
+     * @return a Non-Null RpcResult
+     * @throws IOException
+     */
+    protected <T> RpcResult<T> rpcStreamOnce(SessionContext context, HttpRequest originRequest, String originRequestBody, JavaType successResponseType, HttpResponseStatus... successStatusList) throws IOException {
+        HttpClientConfig httpCfg = getHttpClientConfig();
+        HttpResponse<InputStream> httpResponse;
+        context.poi(BootPoi.RPC_BEGIN);
+        try {
+            // returns when the headers arrive, the body is read from the stream below on the calling thread
+            httpResponse = send(context, originRequest, HttpResponse.BodyHandlers.ofInputStream(), RpcDelegateHttpClientImpl::closeQuietly);
+            boolean isRemoteSuccess = isRemoteSuccess(httpResponse.statusCode(), successStatusList);
+            context.memo(RpcMemo.MEMO_RPC_RESPONSE, httpResponse.statusCode() + " " + httpResponse.headers());
+            // error body is kept as a whole for RpcResult.update(...)
+            try (CapturingInputStream in = new CapturingInputStream(httpResponse.body(), isRemoteSuccess ? httpCfg.getStreamingCaptureBytes() : Integer.MAX_VALUE)) {
+                T successResponse = null;
+                if (isRemoteSuccess) {
+                    successResponse = RpcResult.deserialize(httpCfg.getJsonMapper(), successResponseType, in, context);
+                }
+                in.drain();
+                String captured = in.getCaptured(getCharset(httpResponse));
+                context.memo(RpcMemo.MEMO_RPC_RESPONSE_DATA, in.isTruncated() ? captured + "... (" + in.getTotalBytes() + " bytes)" : captured);
+                return new RpcResult<>(originRequest, originRequestBody, httpResponse, captured, isRemoteSuccess, successResponse, httpCfg);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            Err e = new Err(BootErrorCode.APP_INTERRUPTED, null, "Http Client Interrupted", ex);
+            context.status(HttpResponseStatus.INTERNAL_SERVER_ERROR).error(e);
+            return new RpcResult<>(originRequest, originRequestBody, null, false, httpCfg);
+        } finally {
+            context.poi(BootPoi.RPC_END);
+        }
+    }
+
+    @Override
+    public <T> RpcResult<T> rpcPipe(SessionContext context, HttpRequest.Builder reqBuilder, HttpResponseStatus... successStatusList) throws IOException {
+        configure(reqBuilder);
+        HttpRequest originRequest = reqBuilder.build();
+        String originRequestBody = RpcDelegate.getHttpRequestBody(originRequest);
+        memoRequest(context, originRequest, originRequestBody);
+        invalidateCache(originRequest);
+        // the permits are released when the headers arrive, not when the piped body is done
+        return execute(context, originRequest, originRequestBody, () -> this.<T>rpcPipeOnce(context, originRequest, originRequestBody, successStatusList));
+    }
+
+    /**
+     * One pipe call, a success body is piped only when it is the final attempt's result, error bodies are consumed
+     *
+     * @param <T>
+     * @param context
+     * @param originRequest
+     * @param originRequestBody
+     * @param successStatusList
+     * @return a Non-Null RpcResult
+     * @throws IOException
+     */
+    protected <T> RpcResult<T> rpcPipeOnce(SessionContext context, HttpRequest originRequest, String originRequestBody, HttpResponseStatus... successStatusList) throws IOException {
+        HttpClientConfig httpCfg = getHttpClientConfig();
+        context.poi(BootPoi.RPC_BEGIN);
+        try {
+            HttpResponse<Flow.Publisher<List<ByteBuffer>>> httpResponse = send(context, originRequest, HttpResponse.BodyHandlers.ofPublisher(), RpcDelegateHttpClientImpl::cancel);
+            boolean isRemoteSuccess = isRemoteSuccess(httpResponse.statusCode(), successStatusList);
+            context.memo(RpcMemo.MEMO_RPC_RESPONSE, httpResponse.statusCode() + " " + httpResponse.headers());
+            if (isRemoteSuccess) {
+                String contentType = httpResponse.headers().firstValue("Content-Type").orElse(null);
+                long contentLength = httpResponse.headers().firstValueAsLong("Content-Length").orElse(-1L);
+                context.status(HttpResponseStatus.valueOf(httpResponse.statusCode())).responseStream(httpResponse.body(), contentType, contentLength);
+                return new RpcResult<>(originRequest, originRequestBody, httpResponse, null, true, null, httpCfg);
+            }
+            HttpResponse.BodySubscriber<String> errorBody = HttpResponse.BodySubscribers.ofString(getCharset(httpResponse));
+            httpResponse.body().subscribe(errorBody);
+            String body = errorBody.getBody().toCompletableFuture().get();
+            context.memo(RpcMemo.MEMO_RPC_RESPONSE_DATA, body);
+            return new RpcResult<>(originRequest, originRequestBody, httpResponse, body, false, null, httpCfg);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+            throw cause instanceof IOException ioe ? ioe : new IOException(cause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            Err e = new Err(BootErrorCode.APP_INTERRUPTED, null, "Http Client Interrupted", ex);
+            context.status(HttpResponseStatus.INTERNAL_SERVER_ERROR).error(e);
+            return new RpcResult<>(originRequest, originRequestBody, null, false, httpCfg);
+        } finally {
+            context.poi(BootPoi.RPC_END);
+        }
+    }
+
+    /**
+     * Send with hedging when configured and the request is idempotent
+     *
+     * @param <B>
+     * @param context
+     * @param originRequest
+     * @param bodyHandler
+     * @param discard       releases the body of a losing hedged response
+     * @return
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    protected <B> HttpResponse<B> send(SessionContext context, HttpRequest originRequest, HttpResponse.BodyHandler<B> bodyHandler, Consumer<B> discard) throws IOException, InterruptedException {
+        HedgingPolicy hedgingPolicy = getHttpClientConfig().getHedgingPolicy();
+        if (hedgingPolicy != null && isIdempotent(originRequest)) {
+            return sendHedged(context, hedgingPolicy, originRequest, bodyHandler, discard);
+        }
+        return getHttpClientConfig().getHttpClient().send(originRequest, bodyHandler);
+    }
+
+    /**
+     * Streaming calls bypass the cache, but an unsafe method still invalidates the cached responses of its URI
+     *
+     * @param originRequest
+     */
+    protected void invalidateCache(HttpRequest originRequest) {
+        HttpResponseCache cache = getHttpClientConfig().getResponseCache();
+        if (cache != null) {
+            cache.invalidate(originRequest);
+        }
+    }
+
+    protected static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ex) {
+            // the connection is dropped anyway
+        }
+    }
+
+    /**
+     * Cancel the subscription of a body that is not consumed, which releases the connection
+     *
+     * @param publisher
+     */
+    protected static void cancel(Flow.Publisher<List<ByteBuffer>> publisher) {
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.cancel();
+            }
+
+            @Override
+            public void onNext(List<ByteBuffer> item) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+    }
+
+    protected static Charset getCharset(HttpResponse<?> httpResponse) {
+        String contentType = httpResponse.headers().firstValue("Content-Type").orElse("");
+        int i = contentType.toLowerCase().indexOf("charset=");
+        if (i >= 0) {
+            try {
+                return Charset.forName(contentType.substring(i + 8).split(";")[0].trim().replace("\"", ""));
+            } catch (RuntimeException ex) {
+                // unsupported charset
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
     /**
      * Reset request
      *
@@ -153,4 +646,260 @@ public abstract class RpcDelegateHttpClientImpl implements RpcDelegate {
         return this.rpcEx(context, request.getOriginRequest(), request.getOriginRequestBody(), successStatusList);
     }
 
+    @Override
+    public <T> CompletableFuture<RpcResult<T>> rpcAsync(SessionContext context, HttpRequest.Builder reqBuilder, HttpResponseStatus... successStatusList) {
+        configure(reqBuilder);
+        HttpRequest req = reqBuilder.build();
+        String reqbody = RpcDelegate.getHttpRequestBody(req);
+        return this.rpcAsync(context, req, reqbody, successStatusList);
+    }
+
+    @Override
+    public <T> CompletableFuture<RpcResult<T>> rpcAsync(SessionContext context, HttpRequest originRequest, String originRequestBody, HttpResponseStatus... successStatusList) {
+        return rpcAsync(context, originRequest, originRequestBody, true, null, successStatusList);
+    }
+
+    /**
+     * @param <T>
+     * @param context
+     * @param originRequest
+     * @param originRequestBody
+     * @param updateContextStatus false to only record the rejection by circuit breaker or bulkhead in the result, e.g.
+     *                            one call of a fan-out
+     * @param exchangeListener    nullable, receives the sendAsync future when the request is sent: cancelling it
+     *                            aborts the HTTP exchange, while cancelling the returned future does not
+     * @param successStatusList
+     * @return
+     */
+    protected <T> CompletableFuture<RpcResult<T>> rpcAsync(SessionContext context, HttpRequest originRequest, String originRequestBody, boolean updateContextStatus,
+                                                           Consumer<CompletableFuture<HttpResponse<String>>> exchangeListener, HttpResponseStatus... successStatusList) {
+        //1. log memo
+        memoRequest(context, originRequest, originRequestBody);
+        // async calls are guarded by circuit breaker and bulkhead, but not retried
+        Resilience resilience = getHttpClientConfig().getResilience();
+        if (resilience != null) {
+            try {
+                resilience.acquirePermission();
+            } catch (CallNotPermittedException ex) {
+                Err e = callNotPermitted(context, originRequest, ex);
+                if (updateContextStatus) {
+                    context.status(HttpResponseStatus.SERVICE_UNAVAILABLE).error(e);
+                }
+                return CompletableFuture.completedFuture(new RpcResult<T>(originRequest, originRequestBody, null, false, getHttpClientConfig()).error(e));
+            }
+        }
+        //2. call remote sever without holding the current thread
+        context.poi(BootPoi.RPC_BEGIN);
+        CompletableFuture<HttpResponse<String>> future;
+        try {
+            future = getHttpClientConfig().getHttpClient().sendAsync(originRequest, HttpResponse.BodyHandlers.ofString());
+        } catch (Throwable ex) {
+            context.poi(BootPoi.RPC_END);
+            if (resilience != null) {
+                resilience.onComplete(classify(originRequest, ex) != Resilience.Outcome.SUCCESS);
+            }
+            return CompletableFuture.failedFuture(ex);
+        }
+        if (resilience != null) {
+            // released when the HTTP exchange completes: cancelling the returned future does not complete the exchange
+            future.whenComplete((httpResponse, ex) -> onAsyncComplete(resilience, originRequest, httpResponse, ex));
+        }
+        if (exchangeListener != null) {
+            exchangeListener.accept(future);
+        }
+        return future.handle((httpResponse, ex) -> {
+            context.poi(BootPoi.RPC_END);
+            if (ex != null) {
+                throw ex instanceof CompletionException ce ? ce : new CompletionException(ex);
+            }
+            // one memo per fan-out call: keep only the head of a success body, the RpcResult has all of it
+            return buildRpcResult(context, originRequest, originRequestBody, httpResponse, getHttpClientConfig().getStreamingCaptureBytes(), successStatusList);
+        });
+    }
+
+    /**
+     * Release the resilience permits of an async call
+     *
+     * @param resilience
+     * @param originRequest
+     * @param httpResponse
+     * @param ex
+     */
+    protected void onAsyncComplete(Resilience resilience, HttpRequest originRequest, HttpResponse<?> httpResponse, Throwable ex) {
+        if (ex == null) {
+            resilience.onComplete(classify(originRequest, httpResponse.statusCode()) != Resilience.Outcome.SUCCESS);
+            return;
+        }
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof CancellationException) {
+            resilience.onCancelled();
+        } else {
+            resilience.onComplete(classify(originRequest, cause) != Resilience.Outcome.SUCCESS);
+        }
+    }
+
+    @Override
+    public <T> List<RpcResult<T>> rpcAll(SessionContext context, long timeoutMs, List<HttpRequest.Builder> reqBuilders, HttpResponseStatus... successStatusList) {
+        int size = reqBuilders.size();
+        List<HttpRequest> requests = new ArrayList<>(size);
+        List<String> requestBodies = new ArrayList<>(size);
+        List<CompletableFuture<RpcResult<T>>> futures = new ArrayList<>(size);
+        // the sendAsync futures, cancel them to abort the HTTP exchanges
+        CompletableFuture<?>[] exchanges = new CompletableFuture<?>[size];
+        // 1. send all
+        for (int i = 0; i < size; i++) {
+            HttpRequest.Builder reqBuilder = reqBuilders.get(i);
+            configure(reqBuilder);
+            HttpRequest req = reqBuilder.build();
+            String reqbody = RpcDelegate.getHttpRequestBody(req);
+            requests.add(req);
+            requestBodies.add(reqbody);
+            int index = i;
+            futures.add(rpcAsync(context, req, reqbody, false, exchange -> exchanges[index] = exchange, successStatusList));
+        }
+        // 2. wait for all with a shared deadline
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        boolean interrupted = false;
+        List<RpcResult<T>> ret = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            CompletableFuture<RpcResult<T>> future = futures.get(i);
+            HttpRequest req = requests.get(i);
+            RpcResult<T> rpcResult = null;
+            Err error = null;
+            if (interrupted) {
+                cancel(exchanges[i]);
+                error = onAsyncFailure(context, req, new InterruptedException("fan-out interrupted"));
+            } else {
+                try {
+                    rpcResult = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    interrupted = true;
+                    cancel(exchanges[i]);
+                    error = onAsyncFailure(context, req, ex);
+                } catch (TimeoutException ex) {
+                    cancel(exchanges[i]);
+                    error = onAsyncFailure(context, req, new HttpTimeoutException("fan-out deadline " + timeoutMs + "ms exceeded"));
+                } catch (ExecutionException ex) {
+                    error = onAsyncFailure(context, req, ex.getCause() == null ? ex : ex.getCause());
+                }
+            }
+            if (rpcResult == null) {
+                rpcResult = new RpcResult<T>(req, requestBodies.get(i), null, false, getHttpClientConfig()).error(error);
+            }
+            ret.add(rpcResult);
+        }
+        return ret;
+    }
+
+    /**
+     * Abort the HTTP exchange, no-op when completed or never sent
+     *
+     * @param exchange nullable
+     */
+    protected static void cancel(CompletableFuture<?> exchange) {
+        if (exchange != null) {
+            exchange.cancel(true);
+        }
+    }
+
+    /**
+     * Classify a response for circuit breaker and retry: HTTP status 5xx and 429 are failures, 429/502/503/504 of an
+     * idempotent request are retryable
+     *
+     * @param originRequest
+     * @param rpcResult
+     * @return
+     */
+    protected Resilience.Outcome classify(HttpRequest originRequest, RpcResult<?> rpcResult) {
+        return classify(originRequest, rpcResult.httpStatusCode());
+    }
+
+    /**
+     * @param originRequest
+     * @param statusCode    0 when interrupted
+     * @return
+     */
+    protected Resilience.Outcome classify(HttpRequest originRequest, int statusCode) {
+        return switch (statusCode) {
+            case 0 -> Resilience.Outcome.SUCCESS;// interrupted, not a failure of the dependency
+            case 429, 502, 503, 504 -> isIdempotent(originRequest) ? Resilience.Outcome.RETRYABLE_FAILURE : Resilience.Outcome.FAILURE;
+            default -> statusCode >= 500 ? Resilience.Outcome.FAILURE : Resilience.Outcome.SUCCESS;
+        };
+    }
+
+    /**
+     * Classify an exception for circuit breaker and retry: IOException is a failure, retryable when the request is
+     * idempotent or never reached the server
+     *
+     * @param originRequest
+     * @param ex
+     * @return
+     */
+    protected Resilience.Outcome classify(HttpRequest originRequest, Throwable ex) {
+        if (ex instanceof HttpConnectTimeoutException || ex instanceof ConnectException) {
+            return Resilience.Outcome.RETRYABLE_FAILURE;
+        }
+        if (ex instanceof IOException) {
+            return isIdempotent(originRequest) ? Resilience.Outcome.RETRYABLE_FAILURE : Resilience.Outcome.FAILURE;
+        }
+        return Resilience.Outcome.SUCCESS;
+    }
+
+    protected boolean isIdempotent(HttpRequest request) {
+        return switch (request.method()) {
+            case "GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Called when the call is rejected by circuit breaker or bulkhead without reaching the remote server
+     *
+     * @param context
+     * @param originRequest
+     * @param ex
+     */
+    protected void onCallNotPermitted(SessionContext context, HttpRequest originRequest, CallNotPermittedException ex) {
+        context.status(HttpResponseStatus.SERVICE_UNAVAILABLE).error(callNotPermitted(context, originRequest, ex));
+    }
+
+    /**
+     * Memo the rejection by circuit breaker or bulkhead without changing the context status
+     *
+     * @param context
+     * @param originRequest
+     * @param ex
+     * @return the error of this call
+     */
+    protected Err callNotPermitted(SessionContext context, HttpRequest originRequest, CallNotPermittedException ex) {
+        String desc = originRequest.method() + " " + originRequest.uri() + ": " + ex.getMessage();
+        context.memo(RpcMemo.MEMO_RPC_RESPONSE, desc);
+        return new Err(BootErrorCode.SERVICE_UNAVAILABLE, null, "Service Unavailable", null, desc);
+    }
+
+    /**
+     * Called by {@link #rpcAll(SessionContext, long, List, HttpResponseStatus...)} when a call failed or timed out,
+     * the context status is not changed: one failed call of a fan-out does not fail the request
+     *
+     * @param context
+     * @param originRequest
+     * @param ex
+     * @return the error of this call, set to its RpcResult
+     */
+    protected Err onAsyncFailure(SessionContext context, HttpRequest originRequest, Throwable ex) {
+        String desc = originRequest.method() + " " + originRequest.uri() + ": " + ex;
+        context.memo(RpcMemo.MEMO_RPC_RESPONSE, desc);
+        if (ex instanceof HttpConnectTimeoutException) {
+            return new Err(BootErrorCode.HTTP_CONNECTION_TIMEOUT, null, "Http Connection Timeout", ex, "Http Connect Timeout: " + desc);
+        } else if (ex instanceof HttpTimeoutException) {
+            return new Err(BootErrorCode.HTTP_REQUEST_TIMEOUT, null, "Http Request Timeout", ex, "Http Request Timeout: " + desc);
+        } else if (ex instanceof InterruptedException) {
+            return new Err(BootErrorCode.APP_INTERRUPTED, null, "Http Client Interrupted", ex, desc);
+        } else if (ex instanceof CancellationException) {
+            return new Err(BootErrorCode.IO_BASE, null, "Http Client Cancelled", ex, desc);
+        }
+        return new Err(BootErrorCode.IO_BASE, null, "Http Client IO issue", ex, desc);
+    }
+
 }
@@ -23,16 +23,24 @@ import org.summerboot.jexpress.annotation.config.ConfigHeader;
 import org.summerboot.jexpress.boot.BootConstants;
 import org.summerboot.jexpress.boot.config.BootConfig;
 import org.summerboot.jexpress.boot.config.ConfigUtil;
+import org.summerboot.jexpress.infra.netty.config.NioConfig;
 import org.summerboot.jexpress.infra.metrics.HttpClientStatusListener;
+import org.summerboot.jexpress.integration.resilience.CircuitBreaker;
+import org.summerboot.jexpress.integration.resilience.Resilience;
+import org.summerboot.jexpress.integration.rpc.http.HedgingPolicy;
+import org.summerboot.jexpress.integration.rpc.http.HttpResponseCache;
+import org.summerboot.jexpress.integration.rpc.http.NettyHttpClient;
 import org.summerboot.jexpress.security.ssl.SslUtil;
 import org.summerboot.jexpress.util.concurrent.NamedDefaultThreadFactory;
 import org.summerboot.jexpress.util.lang.BeanUtil;
+import org.summerboot.jexpress.util.strategy.BackoffStrategy;
 import tools.jackson.databind.json.JsonMapper;
 import tools.jackson.dataformat.xml.XmlMapper;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import java.io.File;
@@ -72,6 +80,17 @@ abstract public class HttpClientConfig extends BootConfig {
 
     protected static final String FILENAME_TRUSTSTORE_4CLIENT = "truststore_httpclient.p12";
 
+    public enum Engine {
+        /**
+         * java.net.http.HttpClient
+         */
+        JDK,
+        /**
+         * NettyHttpClient
+         */
+        NETTY
+    }
+
     protected enum ProxyAuthenticationType {
         NONE, BASIC, DIGEST, NTLM, KERBEROS
     }
@@ -111,6 +130,10 @@ abstract public class HttpClientConfig extends BootConfig {
             System.out.println(tn + ": shutdown ses: " + ses);
             ses.shutdown();
         }
+        if (httpClient instanceof NettyHttpClient netty) {
+            System.out.println(tn + ": shutdown NettyHttpClient");
+            netty.shutdown();
+        }
     }
 
     //3.1 HTTP Client Security
@@ -254,6 +277,117 @@ abstract public class HttpClientConfig extends BootConfig {
         }
     }
 
+    //3.4 HTTP Client Resilience
+    protected static final String RESILIENCE = "httpclient.resilience.";
+    @ConfigHeader(title = "4. HTTP Client Resilience",
+            desc = "circuit breaker, bulkhead and retry of all calls made by RpcDelegateHttpClientImpl with this config. Rejected calls fail fast with 503 SERVICE_UNAVAILABLE")
+    @Config(key = RESILIENCE + "name", desc = "dependency name used as health check name and metrics label, default is the simple class name of this config")
+    protected volatile String resilienceName;
+    @Config(key = RESILIENCE + "CircuitBreaker.enabled", defaultValue = "false")
+    protected volatile boolean circuitBreakerEnabled = false;
+    @Config(key = RESILIENCE + "CircuitBreaker.windowType", defaultValue = "COUNT",
+            desc = "COUNT: the last windowSize calls, TIME: the calls of the last windowSize seconds")
+    protected volatile CircuitBreaker.WindowType circuitBreakerWindowType = CircuitBreaker.WindowType.COUNT;
+    @Config(key = RESILIENCE + "CircuitBreaker.windowSize", defaultValue = "100")
+    protected volatile int circuitBreakerWindowSize = 100;
+    @Config(key = RESILIENCE + "CircuitBreaker.minimumNumberOfCalls", defaultValue = "20",
+            desc = "minimum calls in the window before the failure rate is evaluated")
+    protected volatile int circuitBreakerMinimumNumberOfCalls = 20;
+    @Config(key = RESILIENCE + "CircuitBreaker.failureRateThreshold", defaultValue = "50",
+            desc = "percent, open the circuit when the failure rate (IOException or HTTP status 5xx/429) reaches it")
+    protected volatile int circuitBreakerFailureRateThreshold = 50;
+    @Config(key = RESILIENCE + "CircuitBreaker.waitDurationInOpenStateMs", defaultValue = "30000")
+    protected volatile long circuitBreakerWaitDurationInOpenStateMs = 30000;
+    @Config(key = RESILIENCE + "CircuitBreaker.permittedCallsInHalfOpenState", defaultValue = "5",
+            desc = "probe calls in half open state, the circuit closes when all of them succeed")
+    protected volatile int circuitBreakerPermittedCallsInHalfOpenState = 5;
+    @Config(key = RESILIENCE + "CircuitBreaker.reportToHealthMonitor", defaultValue = "false",
+            desc = "report the open circuit as a failed health check named after the dependency, endpoints with @RequiresHealthCheck fail fast. Note: the ping endpoint then reports this instance as unhealthy, one failing dependency takes it out of the load balancer")
+    protected volatile boolean circuitBreakerReportToHealthMonitor = false;
+    @Config(key = RESILIENCE + "Bulkhead.maxConcurrentCalls", defaultValue = "0", desc = "max concurrent calls, disabled when <= 0")
+    protected volatile int bulkheadMaxConcurrentCalls = 0;
+    @Config(key = RESILIENCE + "Bulkhead.maxWaitMs", defaultValue = "0", desc = "max time to wait for a permit, 0 to reject immediately")
+    protected volatile long bulkheadMaxWaitMs = 0;
+    @Config(key = RESILIENCE + "Retry.BackoffStrategy",
+            desc = "no retry if not set or maxAttempts <= 0. Only idempotent requests (GET, HEAD, OPTIONS, PUT, DELETE) are retried on IOException or HTTP status 429/502/503/504, and connect failures of any request",
+            example = "{\"strategy\":\"EXPONENTIAL\",\"initialInterval\":100,\"factor\":2.0,\"maxInterval\":1000,\"maxAttempts\":2,\"jitterFactor\":0.2}")
+    protected volatile BackoffStrategy retryBackoffStrategy;
+    @Config(key = RESILIENCE + "Retry.budgetPercent", defaultValue = "10", desc = "retries allowed per 100 calls")
+    protected volatile int retryBudgetPercent = 10;
+    @Config(key = RESILIENCE + "Retry.budgetMaxTokens", defaultValue = "10", desc = "max retries available at once")
+    protected volatile int retryBudgetMaxTokens = 10;
+
+    @JsonIgnore
+    protected volatile Resilience resilience;
+
+    //3.5 HTTP Client Hedging
+    protected static final String HEDGING = "httpclient.hedging.";
+    @ConfigHeader(title = "5. HTTP Client Hedging",
+            desc = "idempotent requests (GET, HEAD, OPTIONS, PUT, DELETE) not completed after the hedging delay are sent again to the next server, the first success wins and the other one is cancelled")
+    @Config(key = HEDGING + "enabled", defaultValue = "false")
+    protected volatile boolean hedgingEnabled = false;
+    @Config(key = HEDGING + "delayMs", defaultValue = "0", desc = "static hedging delay, use the adaptive delay when <= 0")
+    protected volatile long hedgingDelayMs = 0;
+    @Config(key = HEDGING + "adaptive.percentile", defaultValue = "95", desc = "adaptive delay is this percentile of the observed latency of the endpoint (method + path)")
+    protected volatile int hedgingPercentile = 95;
+    @Config(key = HEDGING + "adaptive.minDelayMs", defaultValue = "10")
+    protected volatile long hedgingMinDelayMs = 10;
+    @Config(key = HEDGING + "adaptive.maxDelayMs", defaultValue = "1000", desc = "also used before the endpoint has enough samples")
+    protected volatile long hedgingMaxDelayMs = 1000;
+    @Config(key = HEDGING + "servers", desc = "base URLs in CSV format, the hedge goes to the next one with a different host:port and keeps the path and query. Resend to the same URL when empty",
+            example = "https://replica1:8443, https://replica2:8443")
+    protected volatile List<String> hedgingServers;
+    @Config(key = HEDGING + "budgetPercent", defaultValue = "10", desc = "hedges allowed per 100 calls")
+    protected volatile int hedgingBudgetPercent = 10;
+    @Config(key = HEDGING + "budgetMaxTokens", defaultValue = "10", desc = "max hedges available at once")
+    protected volatile int hedgingBudgetMaxTokens = 10;
+
+    @JsonIgnore
+    protected volatile HedgingPolicy hedgingPolicy;
+
+    @ConfigHeader(title = "6. HTTP Client Streaming")
+    @Config(key = "httpclient.streaming.captureKB", defaultValue = "4",
+            desc = "RpcDelegate.rpcStream(...) and rpcAsync(...)/rpcAll(...) only keep the first KB of a success response body for logging")
+    protected volatile int streamingCaptureKB = 4;
+
+    //3.7 HTTP Client Cache
+    protected static final String CACHE = "httpclient.cache.";
+    @ConfigHeader(title = "7. HTTP Client Cache",
+            desc = "shared HTTP cache (RFC 9111) for GET requests of RpcDelegate.rpcEx(...): Cache-Control/Expires freshness, Cache-Control: private is never stored, responses to requests with Authorization only when public/s-maxage/must-revalidate, ETag/Last-Modified revalidation, stale-while-revalidate, concurrent identical requests share one upstream call")
+    @Config(key = CACHE + "enabled", defaultValue = "false")
+    protected volatile boolean cacheEnabled = false;
+    @Config(key = CACHE + "maxEntries", defaultValue = "1000")
+    protected volatile int cacheMaxEntries = 1000;
+    @Config(key = CACHE + "maxEntryKB", defaultValue = "256", desc = "larger responses are not stored")
+    protected volatile int cacheMaxEntryKB = 256;
+    @Config(key = CACHE + "maxTotalMB", defaultValue = "64")
+    protected volatile int cacheMaxTotalMB = 64;
+
+    @JsonIgnore
+    protected volatile HttpResponseCache responseCache;
+
+    //3.8 HTTP Client Engine
+    protected static final String NETTY = "httpclient.netty.";
+    @ConfigHeader(title = "8. HTTP Client Engine",
+            desc = "JDK: java.net.http.HttpClient\n"
+                    + "NETTY: pooled HTTP/1.1 and HTTP/2 (ALPN, https only) client on the event loop group of the HTTP server, TLS via the SslProvider of the HTTP server, proxy and redirects are not supported")
+    @Config(key = "httpclient.engine", defaultValue = "JDK", desc = "valid values: JDK, NETTY")
+    protected volatile Engine engine = Engine.JDK;
+    @Config(key = NETTY + "maxConnectionsPerHost", defaultValue = "64", desc = "HTTP/1.1 connection pool size per host")
+    protected volatile int nettyMaxConnectionsPerHost = 64;
+    @Config(key = NETTY + "maxPendingAcquires", defaultValue = "1024", desc = "max requests waiting for a pooled connection per host, more fail immediately")
+    protected volatile int nettyMaxPendingAcquires = 1024;
+    @Config(key = NETTY + "acquireTimeoutMs", defaultValue = "3000", desc = "max time waiting for a pooled connection")
+    protected volatile long nettyAcquireTimeoutMs = 3000;
+    @Config(key = NETTY + "idleTimeoutSeconds", defaultValue = "60", desc = "idle connections are closed, should be greater than http.timeout.ms")
+    protected volatile int nettyIdleTimeoutSeconds = 60;
+    @Config(key = NETTY + "http2", defaultValue = "true", desc = "negotiate HTTP/2 via ALPN for https, one multiplexed connection per host")
+    protected volatile boolean nettyHttp2 = true;
+    @Config(key = NETTY + "maxResponseKB", defaultValue = "10240", desc = "max response body size of RpcDelegate.rpcEx/rpcAsync, rpcStream/rpcPipe are streamed and only buffer up to this size of unread body")
+    protected volatile int nettyMaxResponseKB = 10240;
+    @Config(key = NETTY + "useServerEventLoop", defaultValue = "true", desc = "use the worker event loop group of the HTTP server once it is started, otherwise an own group")
+    protected volatile boolean nettyUseServerEventLoop = true;
+
     protected HttpClientStatusListener listener = null;
 
     public void setStatusListener(HttpClientStatusListener l) {
@@ -302,6 +436,43 @@ abstract public class HttpClientConfig extends BootConfig {
             }
         }
 
+        // 3.4 HTTP Client Resilience
+        Resilience newResilience = null;
+        try {
+            String name = StringUtils.isBlank(resilienceName) ? getClass().getSimpleName() : resilienceName;
+            newResilience = Resilience.build(name, circuitBreakerEnabled, circuitBreakerWindowType, circuitBreakerWindowSize, circuitBreakerMinimumNumberOfCalls,
+                    circuitBreakerFailureRateThreshold, circuitBreakerWaitDurationInOpenStateMs, circuitBreakerPermittedCallsInHalfOpenState, circuitBreakerReportToHealthMonitor,
+                    bulkheadMaxConcurrentCalls, bulkheadMaxWaitMs, retryBackoffStrategy, retryBudgetPercent, retryBudgetMaxTokens);
+        } catch (IllegalArgumentException ex) {
+            helper.addError("invalid \"" + RESILIENCE + "*\" - " + ex.getMessage(), null);
+        }
+        // 3.5 HTTP Client Hedging
+        HedgingPolicy newHedgingPolicy = null;
+        if (hedgingEnabled) {
+            try {
+                newHedgingPolicy = new HedgingPolicy(hedgingDelayMs, hedgingPercentile, hedgingMinDelayMs, hedgingMaxDelayMs, hedgingServers,
+                        hedgingBudgetPercent, hedgingBudgetMaxTokens, httpClientTimeoutMs);
+            } catch (IllegalArgumentException ex) {
+                helper.addError("invalid \"" + HEDGING + "*\" - " + ex.getMessage(), null);
+            }
+        }
+
+        // 3.7 HTTP Client Cache
+        HttpResponseCache newResponseCache = null;
+        if (cacheEnabled) {
+            try {
+                String name = StringUtils.isBlank(resilienceName) ? getClass().getSimpleName() : resilienceName;
+                newResponseCache = new HttpResponseCache(name, cacheMaxEntries, cacheMaxEntryKB * 1024L, cacheMaxTotalMB * 1024L * 1024L);
+            } catch (IllegalArgumentException ex) {
+                helper.addError("invalid \"" + CACHE + "*\" - " + ex.getMessage(), null);
+            }
+        }
+
+        // 3.8 HTTP Client Engine
+        if (Engine.NETTY.equals(engine) && StringUtils.isNotBlank(proxyHost)) {
+            helper.addError("invalid \"httpclient.engine\" - proxy is not supported by NETTY", null);
+        }
+
         // 3.3 HTTP Client Executor
 
         // -Djdk.http.keepalive.timeout=99999
@@ -317,6 +488,17 @@ abstract public class HttpClientConfig extends BootConfig {
         if (!isReal) {
             return;
         }
+        Resilience oldResilience = resilience;
+        resilience = newResilience == null ? null : Resilience.register(newResilience);
+        if (oldResilience != null && (newResilience == null || !oldResilience.getName().equals(newResilience.getName()))) {
+            Resilience.unregister(oldResilience);
+        }
+        hedgingPolicy = newHedgingPolicy;
+        HttpResponseCache oldResponseCache = responseCache;
+        responseCache = newResponseCache == null ? null : HttpResponseCache.register(newResponseCache);
+        if (oldResponseCache != null && (newResponseCache == null || !oldResponseCache.getName().equals(newResponseCache.getName()))) {
+            HttpResponseCache.unregister(oldResponseCache);
+        }
 
         ThreadPoolExecutor old = tpe;
         int currentTpeHashCode = old == null ? -1 : old.hashCode();
@@ -379,7 +561,18 @@ abstract public class HttpClientConfig extends BootConfig {
         } else {
             builder.proxy(ProxySelector.of((InetSocketAddress) Proxy.NO_PROXY.address()));
         }
-        httpClient = builder.build();
+        HttpClient oldHttpClient = httpClient;
+        if (Engine.NETTY.equals(engine)) {
+            try {
+                httpClient = new NettyHttpClient(NioConfig.cfg.getSslProvider(), kmf, tmf, tlsProtocol, !Boolean.FALSE.equals(hostnameVerification), nettyHttp2,
+                        httpConnectTimeoutMs, httpClientTimeoutMs, nettyMaxConnectionsPerHost, nettyMaxPendingAcquires, nettyAcquireTimeoutMs, nettyIdleTimeoutSeconds,
+                        nettyMaxResponseKB * 1024, nettyUseServerEventLoop, tpe);
+            } catch (SSLException | IllegalArgumentException ex) {
+                throw new IllegalArgumentException("invalid \"" + NETTY + "*\" - " + ex.getMessage(), ex);
+            }
+        } else {
+            httpClient = builder.build();
+        }
         // 3. register new
         ses = Executors.newSingleThreadScheduledExecutor(NamedDefaultThreadFactory.build("HttpClient.QPS_SERVICE", tpeThreadingMode.equals(ThreadingMode.VirtualThread)));
         ses.scheduleAtFixedRate(() -> {
@@ -398,6 +591,10 @@ abstract public class HttpClientConfig extends BootConfig {
                 logger.info(() -> "HTTPClient task=" + task + ", completed=" + completed + ", queue=" + queue + ", active=" + active + ", pool=" + pool + ", core=" + core + ", max=" + max + ", largest=" + largest);
             }
         }, 0, 1, TimeUnit.SECONDS);
+        if (oldHttpClient instanceof NettyHttpClient oldNettyClient) {
+            // let in-flight requests complete
+            ses.schedule(oldNettyClient::shutdown, httpClientTimeoutMs, TimeUnit.MILLISECONDS);
+        }
 
         // 4. shutdown old
         if (old != null && isHttpClientSettingsChanged) {
@@ -507,4 +704,29 @@ abstract public class HttpClientConfig extends BootConfig {
     public String getTpeInfo() {
         return String.valueOf(tpe);
     }
+
+    /**
+     * @return null if none of circuit breaker, bulkhead and retry is enabled
+     */
+    public Resilience getResilience() {
+        return resilience;
+    }
+
+    public int getStreamingCaptureBytes() {
+        return streamingCaptureKB * 1024;
+    }
+
+    /**
+     * @return null if the HTTP cache is disabled
+     */
+    public HttpResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * @return null if hedging is disabled
+     */
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
 }
@@ -0,0 +1,521 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.security;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Streaming encryption format for large files: the data is split into chunks, each chunk is encrypted and
+ * authenticated on its own with AES-256-GCM, so that chunks are encrypted/decrypted in parallel and any byte range is
+ * decrypted without reading the whole file ({@link #open(Key, Path)}).
+ * <pre>{@code
+ * header: magic "JXC1" | version (1) | key wrap (1) | chunk size (int) | nonce prefix (7) | wrapped key length (int) | wrapped key
+ * chunk i: AES-GCM(data key, nonce = nonce prefix | i (int) | last chunk flag (1), aad = header) = encrypted data | tag (16)
+ * }</pre>
+ * The random data key is generated per file and wrapped with the given SecretKey (AES-GCM) or public key
+ * ({@link EncryptorUtil#CIPHERS_TRANSFORMATION_ASYMMETRIC}). The chunk index and the last chunk flag in the nonce
+ * detect reordered, removed and truncated chunks, the header is authenticated by every chunk.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class ChunkedCipher {
+
+    protected static final byte[] MAGIC = {'J', 'X', 'C', '1'};
+    protected static final byte VERSION = 1;
+    protected static final byte KEY_WRAP_SYMMETRIC = 0;
+    protected static final byte KEY_WRAP_ASYMMETRIC = 1;
+    protected static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    protected static final int DATA_KEY_BYTES = 32;
+    protected static final int NONCE_PREFIX_BYTES = 7;
+    protected static final int WRAP_IV_BYTES = 12;
+    protected static final int MAX_WRAPPED_KEY_BYTES = 4096;
+    public static final int TAG_BYTES = 16;
+    public static final int MIN_CHUNK_SIZE = 4 * 1024;
+    public static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    protected record Header(byte[] bytes, int chunkSize, byte[] noncePrefix, SecretKey dataKey) {
+    }
+
+    @FunctionalInterface
+    protected interface ChunkTransformer {
+
+        /**
+         * @return bytes written to output
+         */
+        int transform(int index, boolean last, byte[] input, int length, byte[] output) throws GeneralSecurityException;
+    }
+
+    /**
+     * Reusable input/output buffers of one chunk in flight
+     */
+    protected static class Slot {
+
+        protected final byte[] input;
+        protected final byte[] output;
+        protected int length;
+
+        protected Slot(int readSize) {
+            input = new byte[readSize];
+            output = new byte[readSize + TAG_BYTES];
+        }
+    }
+
+    protected ChunkedCipher() {
+    }
+
+    /**
+     * Encrypt with {@link #DEFAULT_CHUNK_SIZE} on the common ForkJoinPool
+     *
+     * @param wrapKey a SecretKey or a public key to wrap the random data key
+     * @param in
+     * @param out     not closed
+     * @return plain data bytes
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    public static long encrypt(Key wrapKey, InputStream in, OutputStream out) throws IOException, GeneralSecurityException {
+        return encrypt(wrapKey, in, out, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * @param wrapKey     a SecretKey or a public key to wrap the random data key
+     * @param in
+     * @param out         not closed
+     * @param chunkSize   plain data bytes per chunk, {@link #MIN_CHUNK_SIZE} - {@link #MAX_CHUNK_SIZE}
+     * @param executor    runs the chunk encryption, on the calling thread if null
+     * @param parallelism chunks in flight = 2 x parallelism, memory used is about 4 x parallelism x chunkSize
+     * @return plain data bytes
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    public static long encrypt(Key wrapKey, InputStream in, OutputStream out, int chunkSize, Executor executor, int parallelism) throws IOException, GeneralSecurityException {
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be " + MIN_CHUNK_SIZE + " - " + MAX_CHUNK_SIZE + ": " + chunkSize);
+        }
+        Header header = createHeader(wrapKey, chunkSize);
+        out.write(header.bytes);
+        return pipeline(in, out, chunkSize, executor, parallelism, (index, last, input, length, output) -> {
+            Cipher cipher = initChunkCipher(Cipher.ENCRYPT_MODE, header, index, last);
+            return cipher.doFinal(input, 0, length, output, 0);
+        });
+    }
+
+    /**
+     * Decrypt on the common ForkJoinPool
+     *
+     * @param unwrapKey the SecretKey or the private key of the public key used to encrypt
+     * @param in
+     * @param out       not closed, incomplete when an exception is thrown
+     * @return plain data bytes
+     * @throws IOException
+     * @throws GeneralSecurityException when the key is wrong or the data was modified or truncated
+     */
+    public static long decrypt(Key unwrapKey, InputStream in, OutputStream out) throws IOException, GeneralSecurityException {
+        return decrypt(unwrapKey, in, out, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * @param unwrapKey   the SecretKey or the private key of the public key used to encrypt
+     * @param in
+     * @param out         not closed, incomplete when an exception is thrown
+     * @param executor    runs the chunk decryption, on the calling thread if null
+     * @param parallelism chunks in flight = 2 x parallelism
+     * @return plain data bytes
+     * @throws IOException
+     * @throws GeneralSecurityException when the key is wrong or the data was modified or truncated
+     */
+    public static long decrypt(Key unwrapKey, InputStream in, OutputStream out, Executor executor, int parallelism) throws IOException, GeneralSecurityException {
+        Header header = readHeader(unwrapKey, in);
+        return pipeline(in, out, header.chunkSize + TAG_BYTES, executor, parallelism, (index, last, input, length, output) -> {
+            Cipher cipher = initChunkCipher(Cipher.DECRYPT_MODE, header, index, last);
+            return cipher.doFinal(input, 0, length, output, 0);
+        });
+    }
+
+    /**
+     * @param unwrapKey the SecretKey or the private key of the public key used to encrypt
+     * @param encrypted
+     * @return read only channel of the plain data, closing it closes the file
+     * @throws IOException
+     * @throws GeneralSecurityException when the key is wrong or the header was modified
+     */
+    public static DecryptingChannel open(Key unwrapKey, Path encrypted) throws IOException, GeneralSecurityException {
+        SeekableByteChannel source = Files.newByteChannel(encrypted);
+        try {
+            return open(unwrapKey, source);
+        } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+            source.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @param unwrapKey the SecretKey or the private key of the public key used to encrypt
+     * @param source    positioned anywhere, closed when the returned channel is closed
+     * @return read only channel of the plain data
+     * @throws IOException
+     * @throws GeneralSecurityException when the key is wrong or the header was modified
+     */
+    public static DecryptingChannel open(Key unwrapKey, SeekableByteChannel source) throws IOException, GeneralSecurityException {
+        source.position(0);
+        // not closed, it would close the source
+        Header header = readHeader(unwrapKey, Channels.newInputStream(source));
+        return new DecryptingChannel(source, header);
+    }
+
+    protected static Header createHeader(Key wrapKey, int chunkSize) throws IOException, GeneralSecurityException {
+        byte[] dataKey = EncryptorUtil.randomBytes(DATA_KEY_BYTES);
+        byte[] noncePrefix = EncryptorUtil.randomBytes(NONCE_PREFIX_BYTES);
+        byte keyWrap;
+        byte[] wrappedKey;
+        if (wrapKey instanceof SecretKey secretKey) {
+            keyWrap = KEY_WRAP_SYMMETRIC;
+            byte[] iv = EncryptorUtil.randomBytes(WRAP_IV_BYTES);
+            Cipher cipher = EncryptorUtil.getCipher(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_BYTES * 8, iv));
+            byte[] encryptedKey = cipher.doFinal(dataKey);
+            wrappedKey = ByteBuffer.allocate(iv.length + encryptedKey.length).put(iv).put(encryptedKey).array();
+        } else {
+            keyWrap = KEY_WRAP_ASYMMETRIC;
+            wrappedKey = EncryptorUtil.asymmetric(Cipher.ENCRYPT_MODE, wrapKey, dataKey);
+        }
+        byte[] bytes = headerBytes(keyWrap, chunkSize, noncePrefix, wrappedKey);
+        SecretKey key = new SecretKeySpec(dataKey, "AES");
+        Arrays.fill(dataKey, (byte) 0);
+        return new Header(bytes, chunkSize, noncePrefix, key);
+    }
+
+    protected static byte[] headerBytes(byte keyWrap, int chunkSize, byte[] noncePrefix, byte[] wrappedKey) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(64 + wrappedKey.length);
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            dos.write(MAGIC);
+            dos.writeByte(VERSION);
+            dos.writeByte(keyWrap);
+            dos.writeInt(chunkSize);
+            dos.write(noncePrefix);
+            dos.writeInt(wrappedKey.length);
+            dos.write(wrappedKey);
+        }
+        return bos.toByteArray();
+    }
+
+    protected static Header readHeader(Key unwrapKey, InputStream in) throws IOException, GeneralSecurityException {
+        DataInputStream dis = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        dis.readFully(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("Not a chunked encrypted stream");
+        }
+        byte version = dis.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported chunked encryption version: " + version);
+        }
+        byte keyWrap = dis.readByte();
+        int chunkSize = dis.readInt();
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid chunk size: " + chunkSize);
+        }
+        byte[] noncePrefix = new byte[NONCE_PREFIX_BYTES];
+        dis.readFully(noncePrefix);
+        int wrappedKeyLength = dis.readInt();
+        if (wrappedKeyLength <= 0 || wrappedKeyLength > MAX_WRAPPED_KEY_BYTES) {
+            throw new IOException("Invalid wrapped key length: " + wrappedKeyLength);
+        }
+        byte[] wrappedKey = new byte[wrappedKeyLength];
+        dis.readFully(wrappedKey);
+
+        byte[] dataKey;
+        switch (keyWrap) {
+            case KEY_WRAP_SYMMETRIC -> {
+                if (!(unwrapKey instanceof SecretKey secretKey)) {
+                    throw new IllegalArgumentException("SecretKey expected to unwrap the data key");
+                }
+                if (wrappedKeyLength <= WRAP_IV_BYTES + TAG_BYTES) {
+                    throw new IOException("Invalid wrapped key length: " + wrappedKeyLength);
+                }
+                Cipher cipher = EncryptorUtil.getCipher(TRANSFORMATION);
+                cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_BYTES * 8, wrappedKey, 0, WRAP_IV_BYTES));
+                dataKey = cipher.doFinal(wrappedKey, WRAP_IV_BYTES, wrappedKeyLength - WRAP_IV_BYTES);
+            }
+            case KEY_WRAP_ASYMMETRIC ->
+                    dataKey = EncryptorUtil.asymmetric(Cipher.DECRYPT_MODE, unwrapKey, wrappedKey);
+            default -> throw new IOException("Unsupported key wrap: " + keyWrap);
+        }
+        if (dataKey.length != DATA_KEY_BYTES) {
+            throw new IOException("Invalid data key length: " + dataKey.length);
+        }
+        byte[] bytes = headerBytes(keyWrap, chunkSize, noncePrefix, wrappedKey);
+        SecretKey key = new SecretKeySpec(dataKey, "AES");
+        Arrays.fill(dataKey, (byte) 0);
+        return new Header(bytes, chunkSize, noncePrefix, key);
+    }
+
+    /**
+     * @return a Cipher initialized for the chunk
+     */
+    protected static Cipher initChunkCipher(int mode, Header header, int index, boolean last) throws GeneralSecurityException {
+        byte[] nonce = ByteBuffer.allocate(NONCE_PREFIX_BYTES + 5)
+                .put(header.noncePrefix)
+                .putInt(index)
+                .put((byte) (last ? 1 : 0))
+                .array();
+        Cipher cipher = EncryptorUtil.getCipher(TRANSFORMATION);
+        cipher.init(mode, header.dataKey, new GCMParameterSpec(TAG_BYTES * 8, nonce));
+        cipher.updateAAD(header.bytes);
+        return cipher;
+    }
+
+    /**
+     * Read fixed size chunks with one chunk look ahead to know the last one, transform them on the executor and write
+     * the results in order. The chunk buffers are recycled, at most 2 x parallelism + 1 are allocated.
+     *
+     * @return bytes written
+     */
+    protected static long pipeline(InputStream in, OutputStream out, int readSize, Executor executor, int parallelism, ChunkTransformer transformer) throws IOException, GeneralSecurityException {
+        Executor exec = executor == null ? Runnable::run : executor;
+        int window = Math.max(1, parallelism) * 2;
+        Deque<FutureTask<Slot>> inFlight = new ArrayDeque<>(window);
+        Deque<Slot> free = new ArrayDeque<>(window + 1);
+        long written = 0;
+        try {
+            Slot current = new Slot(readSize);
+            current.length = in.readNBytes(current.input, 0, readSize);
+            for (int index = 0; ; index++) {
+                if (index < 0) {
+                    throw new IOException("Too many chunks");
+                }
+                Slot next = null;
+                if (current.length == readSize) {
+                    next = free.isEmpty() ? new Slot(readSize) : free.pollFirst();
+                    next.length = in.readNBytes(next.input, 0, readSize);
+                }
+                boolean last = next == null || next.length == 0;
+                final int chunkIndex = index;
+                final Slot slot = current;
+                FutureTask<Slot> task = new FutureTask<>(() -> {
+                    slot.length = transformer.transform(chunkIndex, last, slot.input, slot.length, slot.output);
+                    return slot;
+                });
+                inFlight.addLast(task);
+                exec.execute(task);
+                while (inFlight.size() >= window || (last && !inFlight.isEmpty())) {
+                    Slot done = await(inFlight.pollFirst());
+                    out.write(done.output, 0, done.length);
+                    written += done.length;
+                    free.addLast(done);
+                }
+                if (last) {
+                    return written;
+                }
+                current = next;
+            }
+        } finally {
+            for (Future<Slot> f : inFlight) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    protected static <T> T await(Future<T> future) throws IOException, GeneralSecurityException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for chunk");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof GeneralSecurityException gse) {
+                throw gse;
+            }
+            if (cause instanceof IOException ioe) {
+                throw ioe;
+            }
+            if (cause instanceof RuntimeException rte) {
+                throw rte;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Read only, random access view of the plain data, decrypts only the chunks being read and keeps the last one.
+     * Thread safe.
+     */
+    public static class DecryptingChannel implements SeekableByteChannel {
+
+        protected final SeekableByteChannel source;
+        protected final Header header;
+        protected final long headerLength;
+        protected final int encryptedChunkSize;
+        protected final int lastChunkIndex;
+        protected final int lastEncryptedChunkSize;
+        protected final long size;
+        protected final byte[] encrypted;
+        protected long position;
+        protected int cachedIndex = -1;
+        protected byte[] cachedChunk;
+
+        protected DecryptingChannel(SeekableByteChannel source, Header header) throws IOException {
+            this.source = source;
+            this.header = header;
+            this.headerLength = header.bytes.length;
+            this.encryptedChunkSize = header.chunkSize + TAG_BYTES;
+            long payload = source.size() - headerLength;
+            long chunks = (payload + encryptedChunkSize - 1) / encryptedChunkSize;
+            if (chunks < 1 || chunks > Integer.MAX_VALUE) {
+                throw new IOException("Invalid encrypted data length: " + payload);
+            }
+            this.lastChunkIndex = (int) (chunks - 1);
+            this.lastEncryptedChunkSize = (int) (payload - (long) lastChunkIndex * encryptedChunkSize);
+            if (lastEncryptedChunkSize < TAG_BYTES) {
+                throw new IOException("Truncated encrypted data");
+            }
+            this.size = (long) lastChunkIndex * header.chunkSize + lastEncryptedChunkSize - TAG_BYTES;
+            this.encrypted = new byte[encryptedChunkSize];
+        }
+
+        /**
+         * @return an InputStream from the current position, closing it closes this channel
+         */
+        public InputStream newInputStream() {
+            return Channels.newInputStream(this);
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (position >= size) {
+                return -1;
+            }
+            int total = 0;
+            while (dst.hasRemaining() && position < size) {
+                int index = (int) (position / header.chunkSize);
+                byte[] chunk = loadChunk(index);
+                int offset = (int) (position - (long) index * header.chunkSize);
+                int n = Math.min(dst.remaining(), chunk.length - offset);
+                dst.put(chunk, offset, n);
+                position += n;
+                total += n;
+            }
+            return total;
+        }
+
+        protected byte[] loadChunk(int index) throws IOException {
+            if (index == cachedIndex) {
+                return cachedChunk;
+            }
+            boolean last = index == lastChunkIndex;
+            int length = last ? lastEncryptedChunkSize : encryptedChunkSize;
+            source.position(headerLength + (long) index * encryptedChunkSize);
+            ByteBuffer bb = ByteBuffer.wrap(encrypted, 0, length);
+            while (bb.hasRemaining()) {
+                if (source.read(bb) < 0) {
+                    throw new IOException("Truncated encrypted data");
+                }
+            }
+            try {
+                cachedChunk = initChunkCipher(Cipher.DECRYPT_MODE, header, index, last).doFinal(encrypted, 0, length);
+            } catch (GeneralSecurityException ex) {
+                cachedIndex = -1;
+                throw new IOException("Failed to decrypt chunk " + index, ex);
+            }
+            cachedIndex = index;
+            return cachedChunk;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public synchronized long position() throws IOException {
+            ensureOpen();
+            return position;
+        }
+
+        @Override
+        public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("negative position: " + newPosition);
+            }
+            position = newPosition;
+            return this;
+        }
+
+        /**
+         * @return plain data bytes
+         */
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return size;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return source.isOpen();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            cachedChunk = null;
+            cachedIndex = -1;
+            source.close();
+        }
+
+        protected void ensureOpen() throws IOException {
+            if (!source.isOpen()) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
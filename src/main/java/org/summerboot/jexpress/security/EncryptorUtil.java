@@ -89,6 +89,8 @@ import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.time.LocalDateTime;
 import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
@@ -205,6 +207,45 @@ public class EncryptorUtil {
         }
     }
 
+    /**
+     * One unused MessageDigest per algorithm, cloned for each use instead of walking the provider list. Ciphers are not
+     * kept: an initialized Cipher holds its key.
+     */
+    protected static final Map<String, MessageDigest> DIGEST_PROTOTYPES = new ConcurrentHashMap<>();
+
+    /**
+     * @param transformation
+     * @return a new Cipher, never cached or shared
+     * @throws NoSuchAlgorithmException
+     * @throws NoSuchPaddingException
+     */
+    public static Cipher getCipher(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException {
+        return Cipher.getInstance(transformation);
+    }
+
+    /**
+     * @param algorithm
+     * @return a new MessageDigest
+     * @throws NoSuchAlgorithmException
+     */
+    public static MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+        MessageDigest prototype = DIGEST_PROTOTYPES.get(algorithm);
+        if (prototype == null) {
+            MessageDigest md = MessageDigest.getInstance(algorithm);
+            try {
+                DIGEST_PROTOTYPES.putIfAbsent(algorithm, (MessageDigest) md.clone());
+            } catch (CloneNotSupportedException ex) {
+                // provider without clone support, not cached
+            }
+            return md;
+        }
+        try {
+            return (MessageDigest) prototype.clone();
+        } catch (CloneNotSupportedException ex) {
+            return MessageDigest.getInstance(algorithm);
+        }
+    }
+
     /**
      * @param filename
      * @return
@@ -224,9 +265,9 @@ public class EncryptorUtil {
      * @throws IOException
      */
     public static byte[] md5(File filename, String algorithm) throws NoSuchAlgorithmException, IOException {
-        MessageDigest complete = MessageDigest.getInstance(algorithm);
+        MessageDigest complete = getMessageDigest(algorithm);
         try (InputStream fis = new FileInputStream(filename);) {
-            byte[] buffer = new byte[1024];
+            byte[] buffer = new byte[65536];
             int numRead;
             do {
                 numRead = fis.read(buffer);
@@ -254,7 +295,7 @@ public class EncryptorUtil {
      * @throws NoSuchAlgorithmException
      */
     public static byte[] md5(byte[] data) throws NoSuchAlgorithmException {
-        MessageDigest md = MessageDigest.getInstance(ALGORITHM_MESSAGEDIGEST);
+        MessageDigest md = getMessageDigest(ALGORITHM_MESSAGEDIGEST);
         //md.rest();
         md.update(data);
         byte[] digest = md.digest();
@@ -270,7 +311,7 @@ public class EncryptorUtil {
      * @throws NoSuchAlgorithmException
      */
     public static byte[] md5(byte[] data, String algorithm) throws NoSuchAlgorithmException {
-        MessageDigest md = MessageDigest.getInstance(algorithm);
+        MessageDigest md = getMessageDigest(algorithm);
         //md.rest();
         md.update(data);
         byte[] digest = md.digest();
@@ -317,7 +358,7 @@ public class EncryptorUtil {
     }
 
     public static byte[] decrypt(SecretKey symmetricKey, byte[] iv, byte[] encryptedData) throws IOException, NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
-        Cipher cipher = buildCypher_GCM(false, symmetricKey, iv);
+        Cipher cipher = initCypher_GCM(false, symmetricKey, iv);
         byte[] plainData = cipher.doFinal(encryptedData);
         return plainData;
     }
@@ -333,6 +374,15 @@ public class EncryptorUtil {
         return cipher;
     }
 
+    /**
+     * Same as {@link #buildCypher_GCM(boolean, SecretKey, byte[])}, for one-shot doFinal within the calling method
+     */
+    protected static Cipher initCypher_GCM(boolean encrypt, SecretKey symmetricKey, byte[] iv) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException {
+        Cipher cipher = getCipher(CIPHERS_TRANSFORMATION_SYMMETRIC);
+        cipher.init(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, symmetricKey, new GCMParameterSpec(SYMMETRIC_KEY_AUTHENTICATION_TAG_BITS, iv));// CWE-327 False Positive due to iv is passed in as parameter
+        return cipher;
+    }
+
     /**
      * @param plainData
      * @param warped    true if the encrypted value is in a warper like
@@ -359,7 +409,7 @@ public class EncryptorUtil {
         byte[] salt = randomBytes(ALGORITHM_SECRET_KEY_SALT_BYTES);
         SecretKey key = buildSecretKey(password, salt);
         byte[] iv = randomBytes(SYMMETRIC_KEY_IV_BYTES);
-        Cipher cipher = buildCypher_GCM(true, key, iv);
+        Cipher cipher = initCypher_GCM(true, key, iv);
 
         // encrypt data
         //byte[] plainData = plainDataString.getBytes(StandardCharsets.UTF_8);
@@ -417,7 +467,7 @@ public class EncryptorUtil {
 
         // build cipher
         SecretKey key = buildSecretKey(password, salt);
-        Cipher cipher = buildCypher_GCM(false, key, iv);
+        Cipher cipher = initCypher_GCM(false, key, iv);
         //byte[] decodedData = Base64.getDecoder().decode(encryptedData);
         //byte[] plaintext = cipher.doFinal(decodedData);
         byte[] decryptedData = cipher.doFinal(encryptedData);
@@ -443,6 +493,39 @@ public class EncryptorUtil {
         }
     }
 
+    /**
+     * Encrypt large file in the {@link ChunkedCipher} format: independently authenticated AES-GCM chunks encrypted in
+     * parallel, can be decrypted as a random access channel via {@link ChunkedCipher#open(Key, java.nio.file.Path)}
+     *
+     * @param wrapKey           a SecretKey or a public key to wrap the random per file data key
+     * @param plainDataFileName
+     * @param encryptedFileName
+     * @return plain data bytes
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    public static long encryptChunked(Key wrapKey, String plainDataFileName, String encryptedFileName) throws IOException, GeneralSecurityException {
+        try (InputStream in = new FileInputStream(plainDataFileName); FileOutputStream out = new FileOutputStream(encryptedFileName)) {
+            return ChunkedCipher.encrypt(wrapKey, in, out);
+        }
+    }
+
+    /**
+     * @param unwrapKey         the SecretKey or the private key of the public key used by
+     *                          {@link #encryptChunked(Key, String, String)}
+     * @param encryptedFileName
+     * @param plainDataFileName
+     * @return plain data bytes
+     * @throws IOException
+     * @throws GeneralSecurityException when the key is wrong or the file was modified or truncated, the plain data file
+     *                                  is incomplete then
+     */
+    public static long decryptChunked(Key unwrapKey, String encryptedFileName, String plainDataFileName) throws IOException, GeneralSecurityException {
+        try (InputStream in = new FileInputStream(encryptedFileName); FileOutputStream out = new FileOutputStream(plainDataFileName)) {
+            return ChunkedCipher.decrypt(unwrapKey, in, out);
+        }
+    }
+
     public static byte[] decrypt(SecretKey symmetricKey, byte[] encryptedLibraryBytes) throws IOException, NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException {
         try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(encryptedLibraryBytes));) {
             //2. read iv
@@ -782,7 +865,7 @@ public class EncryptorUtil {
      * @throws BadPaddingException
      */
     protected static byte[] asymmetric(int cipherMode, Key asymmetricKey, byte[] in) throws NoSuchAlgorithmException, InvalidKeyException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
-        Cipher rsaCipher = Cipher.getInstance(CIPHERS_TRANSFORMATION_ASYMMETRIC);
+        Cipher rsaCipher = getCipher(CIPHERS_TRANSFORMATION_ASYMMETRIC);
         rsaCipher.init(cipherMode, asymmetricKey);
         // Encrypt the Rijndael key with the RSA cipher
         // and write it to the beginning of the file.
@@ -28,6 +28,9 @@ import org.summerboot.jexpress.boot.BootConstants;
 import org.summerboot.jexpress.boot.config.BootConfig;
 import org.summerboot.jexpress.boot.config.ConfigUtil;
 import org.summerboot.jexpress.integration.ldap.LdapAgent;
+import org.summerboot.jexpress.integration.ldap.LdapConnectionPool;
+import org.summerboot.jexpress.integration.ldap.LdapLoginThrottle;
+import org.summerboot.jexpress.integration.ldap.LdapResultCache;
 import org.summerboot.jexpress.integration.ldap.ssl.LdapSslConnectionFactory1;
 import org.summerboot.jexpress.security.EncryptorUtil;
 import org.summerboot.jexpress.security.SecurityUtil;
@@ -45,10 +48,12 @@ import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.PublicKey;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
@@ -82,6 +87,12 @@ public class AuthConfig extends BootConfig {
 
     @Override
     public void shutdown() {
+        if (ldapSearchPool != null) {
+            ldapSearchPool.close();
+        }
+        if (ldapBindPool != null) {
+            ldapBindPool.close();
+        }
     }
 
     //1.1 LDAP settings
@@ -157,8 +168,76 @@ public class AuthConfig extends BootConfig {
         generateTemplate = true;
     }
 
+    //1.4 LDAP connection pool and caches
+    @ConfigHeader(title = "1.4 LDAP connection pool and caches",
+            desc = "Searches use the service account (ldap.bindingUserDN) connections, user logins bind on separate connections")
+    @Config(key = "ldap.pool.search.maxSize", defaultValue = "8",
+            desc = "Max service account connections for searches and updates, open a new connection per LdapAgent when 0")
+    protected volatile int ldapPoolSearchMaxSize = 8;
+
+    @Config(key = "ldap.pool.bind.maxSize", defaultValue = "8",
+            desc = "Max connections for user login binds, bind on the search connection when 0, which is then closed instead of returned to the search pool")
+    protected volatile int ldapPoolBindMaxSize = 8;
+
+    @Config(key = "ldap.pool.maxWaitMs", defaultValue = "5000", desc = "Max time to wait for a free connection when all are in use")
+    protected volatile long ldapPoolMaxWaitMs = 5000;
+
+    @Config(key = "ldap.pool.validateAfterSeconds", defaultValue = "30", desc = "Check an idle connection (root DSE read) before reuse when it has been idle this long")
+    protected volatile int ldapPoolValidateAfterSeconds = 30;
+
+    @Config(key = "ldap.pool.idleTimeoutSeconds", defaultValue = "300", desc = "Close a connection after it has been idle this long")
+    protected volatile int ldapPoolIdleTimeoutSeconds = 300;
+
+    @Config(key = "ldap.pool.maxLifetimeMinutes", defaultValue = "60", desc = "Close a connection after this long, unlimited when 0")
+    protected volatile int ldapPoolMaxLifetimeMinutes = 60;
+
+    @Config(key = "ldap.cache.groups.ttlSeconds", defaultValue = "300",
+            desc = "Cache the group membership of a user DN for this long, no cache when 0. Changes made via LdapAgent invalidate the local cache")
+    protected volatile int ldapCacheGroupsTtlSeconds = 300;
+
+    @Config(key = "ldap.cache.groups.maxEntries", defaultValue = "10000")
+    protected volatile int ldapCacheGroupsMaxEntries = 10000;
+
+    @Config(key = "ldap.cache.failedLogin.ttlSeconds", defaultValue = "0",
+            desc = "Reject a username + password pair that failed (user not found or wrong password) within this long without calling LDAP, no cache when 0. Only a keyed hash of the pair is kept")
+    protected volatile int ldapCacheFailedLoginTtlSeconds = 0;
+
+    @Config(key = "ldap.cache.failedLogin.maxEntries", defaultValue = "100000")
+    protected volatile int ldapCacheFailedLoginMaxEntries = 100000;
+
+    @Config(key = "ldap.throttle.maxFailures", defaultValue = "0",
+            desc = "Block a username without calling LDAP after this many consecutive failed logins, whatever password is tried next, no throttle when 0")
+    protected volatile int ldapThrottleMaxFailures = 0;
+
+    @Config(key = "ldap.throttle.backoffMs", defaultValue = "1000", desc = "First block duration, doubled on each further failure")
+    protected volatile long ldapThrottleBackoffMs = 1000;
+
+    @Config(key = "ldap.throttle.maxBackoffMs", defaultValue = "300000", desc = "Longest block duration, the failures of a username are forgotten after this long without a failure")
+    protected volatile long ldapThrottleMaxBackoffMs = 300000;
+
+    @Config(key = "ldap.throttle.maxEntries", defaultValue = "100000")
+    protected volatile int ldapThrottleMaxEntries = 100000;
+
     protected volatile Properties ldapConfig;
 
+    @JsonIgnore
+    protected volatile Properties ldapBindConfig;
+
+    @JsonIgnore
+    protected volatile LdapConnectionPool ldapSearchPool;
+
+    @JsonIgnore
+    protected volatile LdapConnectionPool ldapBindPool;
+
+    @JsonIgnore
+    protected volatile LdapResultCache<List<String>> ldapGroupCache;
+
+    @JsonIgnore
+    protected volatile LdapResultCache<Boolean> ldapFailedLoginCache;
+
+    @JsonIgnore
+    protected volatile LdapLoginThrottle ldapLoginThrottle;
+
     //2. JWT
     protected static final String KEY_privateKeyFile = "jwt.asymmetric.SigningKeyFile";
     protected static final String KEY_privateKeyPwd = "jwt.asymmetric.SigningKeyPwd";
@@ -285,6 +364,7 @@ public class AuthConfig extends BootConfig {
             }
             //1.2 LDAP info
             ldapConfig = LdapAgent.buildCfg(ldapHost, ldapPort, isSSLEnabled, ldapSSLConnectionFactoryClassName, ldapTLSProtocol, bindingUserDN, bindingPassword);
+            ldapBindConfig = LdapAgent.buildCfg(ldapHost, ldapPort, isSSLEnabled, ldapSSLConnectionFactoryClassName, ldapTLSProtocol, null, null);
         }
         // 2. JWT        
         if (symmetricKey != null) {
@@ -347,6 +427,47 @@ public class AuthConfig extends BootConfig {
         if (error != null) {
             throw new IllegalArgumentException(error);
         }
+
+        // 5. LDAP connection pools and caches, the connections borrowed from the old pools are closed when released
+        if (!isReal) {
+            return;
+        }
+        LdapConnectionPool oldSearchPool = ldapSearchPool;
+        LdapConnectionPool oldBindPool = ldapBindPool;
+        boolean isLdapEnabled = ldapHost != null;
+        long validateAfterMs = TimeUnit.SECONDS.toMillis(ldapPoolValidateAfterSeconds);
+        long idleTimeoutMs = TimeUnit.SECONDS.toMillis(ldapPoolIdleTimeoutSeconds);
+        long maxLifetimeMs = TimeUnit.MINUTES.toMillis(ldapPoolMaxLifetimeMinutes);
+        ldapSearchPool = isLdapEnabled && ldapPoolSearchMaxSize > 0
+                ? new LdapConnectionPool("ldap.search", ldapConfig, ldapPoolSearchMaxSize, ldapPoolMaxWaitMs, validateAfterMs, idleTimeoutMs, maxLifetimeMs)
+                : null;
+        ldapBindPool = isLdapEnabled && ldapPoolBindMaxSize > 0
+                ? new LdapConnectionPool("ldap.bind", ldapBindConfig, ldapPoolBindMaxSize, ldapPoolMaxWaitMs, validateAfterMs, idleTimeoutMs, maxLifetimeMs)
+                : null;
+        if (oldSearchPool != null) {
+            oldSearchPool.close();
+        }
+        if (oldBindPool != null) {
+            oldBindPool.close();
+        }
+        if (ldapGroupCache != null) {
+            ldapGroupCache.unregister();
+        }
+        if (ldapFailedLoginCache != null) {
+            ldapFailedLoginCache.unregister();
+        }
+        if (ldapLoginThrottle != null) {
+            ldapLoginThrottle.unregister();
+        }
+        ldapGroupCache = isLdapEnabled && ldapCacheGroupsTtlSeconds > 0
+                ? new LdapResultCache<>("ldap.groups", ldapCacheGroupsMaxEntries, TimeUnit.SECONDS.toMillis(ldapCacheGroupsTtlSeconds))
+                : null;
+        ldapFailedLoginCache = isLdapEnabled && ldapCacheFailedLoginTtlSeconds > 0
+                ? new LdapResultCache<>("ldap.failedLogin", ldapCacheFailedLoginMaxEntries, TimeUnit.SECONDS.toMillis(ldapCacheFailedLoginTtlSeconds))
+                : null;
+        ldapLoginThrottle = isLdapEnabled && ldapThrottleMaxFailures > 0
+                ? new LdapLoginThrottle("ldap.login", ldapThrottleMaxFailures, ldapThrottleBackoffMs, ldapThrottleMaxBackoffMs, ldapThrottleMaxEntries)
+                : null;
     }
 
     public String getLdapHost() {
@@ -394,6 +515,40 @@ public class AuthConfig extends BootConfig {
         return ldapConfig;
     }
 
+    /**
+     * @return the service account connection pool, null when ldap.pool.search.maxSize is 0 or LDAP is not configured
+     */
+    @JsonIgnore
+    public LdapConnectionPool getLdapSearchPool() {
+        return ldapSearchPool;
+    }
+
+    /**
+     * @return the user login bind connection pool, null when ldap.pool.bind.maxSize is 0 or LDAP is not configured
+     */
+    @JsonIgnore
+    public LdapConnectionPool getLdapBindPool() {
+        return ldapBindPool;
+    }
+
+    @JsonIgnore
+    public LdapResultCache<List<String>> getLdapGroupCache() {
+        return ldapGroupCache;
+    }
+
+    @JsonIgnore
+    public LdapResultCache<Boolean> getLdapFailedLoginCache() {
+        return ldapFailedLoginCache;
+    }
+
+    /**
+     * @return the failed login throttle by username, null when ldap.throttle.maxFailures is 0 or LDAP is not configured
+     */
+    @JsonIgnore
+    public LdapLoginThrottle getLdapLoginThrottle() {
+        return ldapLoginThrottle;
+    }
+
     @JsonIgnore
     public Key getJwtSigningKey() {
         return jwtSigningKey;
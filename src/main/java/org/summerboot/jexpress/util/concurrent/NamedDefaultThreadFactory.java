@@ -28,17 +28,19 @@ public class NamedDefaultThreadFactory implements ThreadFactory {
     protected final ThreadGroup group;
     protected final AtomicInteger threadCounter = new AtomicInteger(1);
     protected final String namePrefix;
+    protected final boolean daemon;
 
-    private NamedDefaultThreadFactory(String tpeName) {
+    private NamedDefaultThreadFactory(String tpeName, boolean daemon) {
         group = Thread.currentThread().getThreadGroup();
         namePrefix = tpeName;
+        this.daemon = daemon;
     }
 
     @Override
     public Thread newThread(Runnable r) {
         Thread t = new Thread(group, r, namePrefix + threadCounter.getAndIncrement(), 0);
-        if (t.isDaemon()) {
-            t.setDaemon(false);
+        if (t.isDaemon() != daemon) {
+            t.setDaemon(daemon);
         }
         if (t.getPriority() != Thread.NORM_PRIORITY) {
             t.setPriority(Thread.NORM_PRIORITY);
@@ -47,11 +49,21 @@ public class NamedDefaultThreadFactory implements ThreadFactory {
     }
 
     public static ThreadFactory build(String tpeName, boolean useVirtualThread) {
+        return build(tpeName, useVirtualThread, false);
+    }
+
+    /**
+     * @param tpeName
+     * @param useVirtualThread
+     * @param daemon           platform threads only, virtual threads are always daemon
+     * @return
+     */
+    public static ThreadFactory build(String tpeName, boolean useVirtualThread, boolean daemon) {
         String namePrefix = tpeName + "-"
                 + poolNumber.getAndIncrement()
                 + (useVirtualThread ? "-vt-" : "-pt-");
         return useVirtualThread
                 ? Thread.ofVirtual().name(namePrefix, 0).factory() // Java 21+ only
-                : new NamedDefaultThreadFactory(namePrefix);
+                : new NamedDefaultThreadFactory(namePrefix, daemon);
     }
 }
@@ -16,27 +16,42 @@
  */
 package org.summerboot.jexpress.util.concurrent;
 
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.summerboot.jexpress.boot.BackOffice;
 import org.summerboot.jexpress.boot.BootConstants;
 
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * Warn (and optionally run a task) when a process is not closed within the timeout:
+ * <pre>{@code
+ * try (var a = Timeout.watch("loading config file", timeoutMs).withDesc(timeoutDesc)) {
+ *     ...
+ * }
+ * }</pre>
+ * All watches share one hashed wheel timer thread, arming and closing a watch is O(1) and no thread is held while
+ * waiting. The alert is logged and the task is run on {@link BackOffice}, never on the timer thread.
+ *
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
  */
 public class Timeout implements AutoCloseable {
 
     protected static Logger log = LogManager.getLogger(Timeout.class);
 
+    /**
+     * 100ms tick is precise enough for alerting, the wheel grows with the timeouts, not with the number of watches
+     */
+    protected static final Timer TIMER = new HashedWheelTimer(new DefaultThreadFactory("Timeout", true), 100, TimeUnit.MILLISECONDS, 512);
+
     protected final String processName;
     protected final long timeoutMilliseconds;
-    protected String message;
-    protected Runnable task;
-
-    protected final ReentrantLock lock = new ReentrantLock();
+    protected volatile String message;
+    protected volatile Runnable task;
+    protected final io.netty.util.Timeout handle;
 
     public static Timeout watch(String processName, long timeoutMilliseconds) {
         return new Timeout(processName, timeoutMilliseconds, null, null);
@@ -47,7 +62,8 @@ public class Timeout implements AutoCloseable {
         this.timeoutMilliseconds = timeoutMilliseconds;
         this.message = message;
         this.task = task;
-        startTheTimer();
+        log.trace("Task started: {} - {}", processName, System.currentTimeMillis());
+        this.handle = TIMER.newTimeout(t -> BackOffice.execute(this::onTimeout), timeoutMilliseconds, TimeUnit.MILLISECONDS);
     }
 
     public Timeout withDesc(String desc) {
@@ -60,32 +76,28 @@ public class Timeout implements AutoCloseable {
         return this;
     }
 
-    protected void startTheTimer() {
-        lock.lock();
-        Runnable runnableTask = () -> {
-            try {
-                log.trace("Task started: {} - {}", processName, System.currentTimeMillis());
-                if (lock.tryLock(timeoutMilliseconds, TimeUnit.MILLISECONDS)) {
-                    lock.unlock();
-                    log.trace("Task finished: {} - {}", processName, System.currentTimeMillis());
-                    return;
-                }
-                String desc = message == null
-                        ? ""
-                        : BootConstants.BR + "\t" + message;
-                log.warn(BootConstants.BR + BootConstants.BR + "\t*** Warning: " + processName + " has timed out over " + timeoutMilliseconds + " ms ***" + BootConstants.BR + desc + BootConstants.BR + BootConstants.BR);
-                if (task != null) {
-                    BackOffice.execute(task);
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        };
-        BackOffice.execute(runnableTask);
+    protected void onTimeout() {
+        String desc = message == null
+                ? ""
+                : BootConstants.BR + "\t" + message;
+        log.warn(BootConstants.BR + BootConstants.BR + "\t*** Warning: " + processName + " has timed out over " + timeoutMilliseconds + " ms ***" + BootConstants.BR + desc + BootConstants.BR + BootConstants.BR);
+        Runnable t = task;
+        if (t != null) {
+            t.run();
+        }
+    }
+
+    /**
+     * @return true if the watched process has not been closed within the timeout
+     */
+    public boolean isExpired() {
+        return handle.isExpired();
     }
 
     @Override
-    public void close() throws Exception {
-        lock.unlock();
+    public void close() {
+        if (handle.cancel()) {
+            log.trace("Task finished: {} - {}", processName, System.currentTimeMillis());
+        }
     }
 }
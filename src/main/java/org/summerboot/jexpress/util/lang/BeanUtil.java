@@ -24,15 +24,19 @@ import org.apache.commons.lang3.StringUtils;
 import org.summerboot.jexpress.boot.BootConstants;
 import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.JacksonModule;
 import tools.jackson.databind.JavaType;
 import tools.jackson.databind.MapperFeature;
 import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.ObjectWriter;
 import tools.jackson.databind.SerializationFeature;
 import tools.jackson.databind.json.JsonMapper;
 import tools.jackson.databind.ser.FilterProvider;
 import tools.jackson.databind.ser.std.SimpleBeanPropertyFilter;
 import tools.jackson.databind.ser.std.SimpleFilterProvider;
 import tools.jackson.dataformat.xml.XmlMapper;
+import tools.jackson.module.blackbird.BlackbirdModule;
 
 import java.lang.reflect.Array;
 import java.util.Iterator;
@@ -40,6 +44,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
@@ -59,17 +64,146 @@ public class BeanUtil {
     public static JsonMapper JSONMapper;
     public static XmlMapper XMLMapper;
 
+    /**
+     * ObjectReader/ObjectWriter are immutable and thread-safe, cached per mapper, target type and view instead of
+     * being resolved on each call; cleared by {@link #init}. The mapper is part of the key, so that a reader/writer of
+     * the previous mapper put back concurrently with {@link #init} is never served.
+     */
+    protected record ReaderKey(ObjectMapper mapper, Object type, Class<?> view) {
+    }
+
+    protected record WriterKey(ObjectMapper mapper, boolean pretty, Class<?> view) {
+    }
+
+    /**
+     * jackson-module-blackbird is an optional dependency, only loaded when enabled
+     */
+    protected static class BlackbirdSupport {
+
+        protected static JacksonModule newModule() {
+            return new BlackbirdModule();
+        }
+    }
+
+    protected static final int MAX_CACHED_READERS = 4096;
+    protected static final Map<ReaderKey, ObjectReader> ReaderCache = new ConcurrentHashMap<>();
+    protected static final Map<WriterKey, ObjectWriter> WriterCache = new ConcurrentHashMap<>();
+    protected static volatile ObjectWriter XMLWriter;
+    protected static volatile ObjectWriter XMLWriterPretty;
+
     static {
         init(TimeZone.getDefault(), true, false, false, false, true, true);
     }
 
     public static void init(TimeZone timeZone, boolean deserializationFailOnUnknownProperties, boolean deserializationCaseInsensitive, boolean serializationPretty, boolean serializationIgnoreEmptyArray, boolean serializationIgnoreNull, boolean showRefInServiceError) {
+        init(timeZone, deserializationFailOnUnknownProperties, deserializationCaseInsensitive, serializationPretty, serializationIgnoreEmptyArray, serializationIgnoreNull, showRefInServiceError, false);
+    }
+
+    /**
+     * @param timeZone
+     * @param deserializationFailOnUnknownProperties
+     * @param deserializationCaseInsensitive
+     * @param serializationPretty
+     * @param serializationIgnoreEmptyArray
+     * @param serializationIgnoreNull
+     * @param showRefInServiceError
+     * @param blackbird                              use Jackson Blackbird generated property accessors instead of reflection for JSON,
+     *                                               requires the optional tools.jackson.module:jackson-module-blackbird
+     */
+    public static void init(TimeZone timeZone, boolean deserializationFailOnUnknownProperties, boolean deserializationCaseInsensitive, boolean serializationPretty, boolean serializationIgnoreEmptyArray, boolean serializationIgnoreNull, boolean showRefInServiceError, boolean blackbird) {
         isSerializationPretty = serializationPretty;
         isSerializationIgnoreNull = serializationIgnoreNull;
 
-        JSONMapperIncludeNull = buildJsonMapper(timeZone, deserializationFailOnUnknownProperties, deserializationCaseInsensitive, serializationIgnoreEmptyArray, false, showRefInServiceError).build();
-        JSONMapper = buildJsonMapper(timeZone, deserializationFailOnUnknownProperties, deserializationCaseInsensitive, serializationIgnoreEmptyArray, true, showRefInServiceError).build();
+        JsonMapper.Builder jsonMapperIncludeNullBuilder = buildJsonMapper(timeZone, deserializationFailOnUnknownProperties, deserializationCaseInsensitive, serializationIgnoreEmptyArray, false, showRefInServiceError);
+        JsonMapper.Builder jsonMapperBuilder = buildJsonMapper(timeZone, deserializationFailOnUnknownProperties, deserializationCaseInsensitive, serializationIgnoreEmptyArray, true, showRefInServiceError);
+        if (blackbird) {
+            try {
+                jsonMapperIncludeNullBuilder.addModule(BlackbirdSupport.newModule());
+                jsonMapperBuilder.addModule(BlackbirdSupport.newModule());
+            } catch (NoClassDefFoundError ex) {
+                throw new IllegalStateException("Jackson Blackbird is enabled but tools.jackson.module:jackson-module-blackbird is not on the classpath", ex);
+            }
+        }
+        JSONMapperIncludeNull = jsonMapperIncludeNullBuilder.build();
+        JSONMapper = jsonMapperBuilder.build();
         XMLMapper = buildXmlMapper(timeZone, deserializationFailOnUnknownProperties, deserializationCaseInsensitive, serializationIgnoreEmptyArray, true, showRefInServiceError).build();
+        XMLWriter = XMLMapper.writer();
+        XMLWriterPretty = XMLMapper.writerWithDefaultPrettyPrinter();
+        WriterCache.clear();
+        ReaderCache.clear();
+    }
+
+    /**
+     * @param mapper
+     * @param type
+     * @return cached reader of the mapper for the type
+     */
+    public static ObjectReader reader(ObjectMapper mapper, Class<?> type) {
+        return reader(mapper, type, null, null);
+    }
+
+    /**
+     * @param mapper
+     * @param type
+     * @return cached reader of the mapper for the type
+     */
+    public static ObjectReader reader(ObjectMapper mapper, JavaType type) {
+        return reader(mapper, null, type, null);
+    }
+
+    /**
+     * @param type
+     * @param view @JsonView, null for all properties
+     * @return cached reader of the JSON mapper for the type
+     */
+    public static ObjectReader jsonReader(Class<?> type, Class<?> view) {
+        return reader(JSONMapperIncludeNull, type, null, view);
+    }
+
+    /**
+     * @param type
+     * @param view @JsonView, null for all properties
+     * @return cached reader of the JSON mapper for the type
+     */
+    public static ObjectReader jsonReader(JavaType type, Class<?> view) {
+        return reader(JSONMapperIncludeNull, null, type, view);
+    }
+
+    protected static ObjectReader reader(ObjectMapper mapper, Class<?> type, JavaType javaType, Class<?> view) {
+        ReaderKey key = new ReaderKey(mapper, javaType == null ? type : javaType, view);
+        ObjectReader reader = ReaderCache.get(key);
+        if (reader == null) {
+            reader = javaType == null ? mapper.readerFor(type) : mapper.readerFor(javaType);
+            if (view != null) {
+                reader = reader.withView(view);
+            }
+            if (ReaderCache.size() >= MAX_CACHED_READERS) {
+                // mappers created on the fly, e.g. reloaded HttpClientConfig
+                ReaderCache.clear();
+            }
+            ReaderCache.put(key, reader);
+        }
+        return reader;
+    }
+
+    /**
+     * @param pretty
+     * @param ignoreNull
+     * @param view       @JsonView, null for all properties
+     * @return cached writer of the JSON mapper
+     */
+    public static ObjectWriter jsonWriter(boolean pretty, boolean ignoreNull, Class<?> view) {
+        ObjectMapper objectMapper = ignoreNull ? JSONMapper : JSONMapperIncludeNull;
+        WriterKey key = new WriterKey(objectMapper, pretty, view);
+        ObjectWriter writer = WriterCache.get(key);
+        if (writer == null) {
+            writer = pretty ? objectMapper.writerWithDefaultPrettyPrinter() : objectMapper.writer();
+            if (view != null) {
+                writer = writer.withView(view);
+            }
+            WriterCache.put(key, writer);
+        }
+        return writer;
     }
 
     public static JsonMapper.Builder buildJsonMapper(TimeZone timeZone, boolean deserializationFailOnUnknownProperties,
@@ -174,12 +308,26 @@ public class BeanUtil {
         if (obj == null) {
             return "";
         }
-        final ObjectMapper objectMapper = ignoreNull ? JSONMapper : JSONMapperIncludeNull;
-        if (pretty) {
-            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
-        } else {
-            return objectMapper.writeValueAsString(obj);
+        return jsonWriter(pretty, ignoreNull, null).writeValueAsString(obj);
+    }
+
+    /**
+     * Serialization with @JsonView
+     *
+     * @param <T>
+     * @param obj
+     * @param view @JsonView, null for all properties
+     * @return
+     */
+    public static <T extends Object> String toJson(T obj, Class<?> view) {
+        return toJson(obj, isSerializationPretty, view);
+    }
+
+    public static <T extends Object> String toJson(T obj, boolean pretty, Class<?> view) {
+        if (obj == null) {
+            return "";
         }
+        return jsonWriter(pretty, isSerializationIgnoreNull, view).writeValueAsString(obj);
     }
 
     public static String toXML(Object obj) {
@@ -190,11 +338,7 @@ public class BeanUtil {
         if (obj == null) {
             return "";
         }
-        if (pretty) {
-            return XMLMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
-        } else {
-            return XMLMapper.writeValueAsString(obj);
-        }
+        return (pretty ? XMLWriterPretty : XMLWriter).writeValueAsString(obj);
     }
 
     /**
@@ -209,7 +353,7 @@ public class BeanUtil {
         if (StringUtils.isBlank(json)) {
             return null;
         }
-        return JSONMapperIncludeNull.readValue(json, c);
+        return jsonReader(c, null).readValue(json);
     }
 
     public static <T extends Object> T fromJson(Class<T> c, String json) {
@@ -228,7 +372,7 @@ public class BeanUtil {
         if (StringUtils.isBlank(json)) {
             return null;
         }
-        return JSONMapperIncludeNull.readValue(json, javaType);
+        return jsonReader(javaType, null).readValue(json);
     }
 
     public static <T extends Object> T fromJson(String json, TypeReference<T> javaType) {
@@ -243,7 +387,7 @@ public class BeanUtil {
             return null;
         }
         JavaType javaType = buildMapType(keyClass, valueClass);
-        return JSONMapperIncludeNull.readValue(json, javaType);
+        return jsonReader(javaType, null).readValue(json);
     }
 
     /**
@@ -263,7 +407,7 @@ public class BeanUtil {
             return fromJson(json, collectionClass);
         }
         JavaType javaType = JSONMapperIncludeNull.getTypeFactory().constructParametricType(collectionClass, genericClasses);
-        return JSONMapperIncludeNull.readValue(json, javaType);
+        return jsonReader(javaType, null).readValue(json);
     }
 
     public static JavaType buildJavaType(Class collectionClass, Class... genericClasses) {
@@ -275,7 +419,7 @@ public class BeanUtil {
     }
 
     public static <T extends Object> T fromXML(String xml, Class<T> targetClass) {
-        return (T) XMLMapper.readValue(xml, targetClass);
+        return (T) reader(XMLMapper, targetClass).readValue(xml);
     }
 
     public static final ValidatorFactory ValidatorFactory = Validation.buildDefaultValidatorFactory();
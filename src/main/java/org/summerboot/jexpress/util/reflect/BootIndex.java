@@ -0,0 +1,235 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.util.reflect;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Build-time class index written by {@link BootIndexProcessor} into {@value #INDEX_LOCATION} of each jar/module
+ * compiled with it, all index files on the classpath are loaded once. An index file only describes the classpath root
+ * (jar or classes directory) that contains it, roots without an index file must still be scanned.
+ * <p>
+ * Only {@link #INDEXED_TYPES} are indexed, each line of an index file is
+ * <code>className=indexedType1,indexedType2</code>. Set system property {@value #SYS_PROP_IGNORE}=true to ignore the
+ * index and always scan the classpath.
+ * <p>
+ * This class is also loaded by the annotation processor inside javac, where log4j may be absent: only {@link #load}
+ * logs, via a lazily initialized holder class.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class BootIndex {
+
+    protected static class LogHolder {
+
+        protected static final Logger log = LogManager.getLogger(BootIndex.class.getName());
+    }
+
+    public static final String INDEX_LOCATION = "META-INF/jexpress.index";
+    public static final String SYS_PROP_IGNORE = "jexpress.index.ignore";
+
+    /**
+     * annotations (direct, @Inherited or on any supertype) and supertypes (direct or indirect) recorded by
+     * {@link BootIndexProcessor}, same as a classpath scan with honorInherited=false
+     */
+    public static final Set<String> INDEXED_TYPES = Set.of(
+            "org.summerboot.jexpress.annotation.Controller",
+            "org.summerboot.jexpress.annotation.Service",
+            "org.summerboot.jexpress.annotation.GrpcController",
+            "org.summerboot.jexpress.annotation.Scheduled",
+            "org.summerboot.jexpress.annotation.health.HealthCheck",
+            "org.summerboot.jexpress.annotation.validation.Unique",
+            "org.summerboot.jexpress.boot.config.JExpressConfig",
+            "org.summerboot.jexpress.boot.lifecycle.app.AppInitializer",
+            "org.quartz.Job",
+            "jakarta.persistence.Entity");
+
+    private static volatile BootIndex instance;
+
+    /**
+     * indexed type name - class names
+     */
+    protected final Map<String, Set<String>> index;
+    /**
+     * normalized classpath roots having an index file
+     */
+    protected final Set<String> indexedRoots;
+
+    protected BootIndex(Map<String, Set<String>> index, Set<String> indexedRoots) {
+        this.index = index;
+        this.indexedRoots = indexedRoots;
+    }
+
+    /**
+     * @return the merged index of the context class loader, loaded on first call
+     */
+    public static BootIndex get() {
+        BootIndex ret = instance;
+        if (ret == null) {
+            synchronized (BootIndex.class) {
+                ret = instance;
+                if (ret == null) {
+                    ClassLoader cl = Thread.currentThread().getContextClassLoader();
+                    ret = load(cl == null ? BootIndex.class.getClassLoader() : cl);
+                    instance = ret;
+                }
+            }
+        }
+        return ret;
+    }
+
+    public static void reset() {
+        instance = null;
+    }
+
+    protected static BootIndex load(ClassLoader classLoader) {
+        if (Boolean.getBoolean(SYS_PROP_IGNORE)) {
+            return new BootIndex(Map.of(), Set.of());
+        }
+        Map<String, Set<String>> index = new HashMap<>();
+        Set<String> indexedRoots = new HashSet<>();
+        try {
+            Enumeration<URL> urls = classLoader.getResources(INDEX_LOCATION);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                try (InputStream is = url.openStream()) {
+                    for (Map.Entry<String, Set<String>> e : read(is).entrySet()) {
+                        for (String type : e.getValue()) {
+                            index.computeIfAbsent(type, k -> new HashSet<>()).add(e.getKey());
+                        }
+                    }
+                }
+                String root = url.toExternalForm();
+                indexedRoots.add(normalizeRoot(root.substring(0, root.length() - INDEX_LOCATION.length())));
+            }
+        } catch (IOException ex) {
+            // unreadable index must not break the startup, fallback to classpath scan
+            LogHolder.log.warn("Failed to load " + INDEX_LOCATION + ", fallback to classpath scan", ex);
+            return new BootIndex(Map.of(), Set.of());
+        }
+        return new BootIndex(index, indexedRoots);
+    }
+
+    /**
+     * @param root jar:file:/app/lib/a.jar!/, file:/app/lib/a.jar or file:/app/classes/
+     * @return file:/app/lib/a.jar or file:/app/classes
+     */
+    protected static String normalizeRoot(String root) {
+        if (root.startsWith("jar:")) {
+            root = root.substring(4);
+        }
+        if (root.endsWith("!/")) {
+            root = root.substring(0, root.length() - 2);
+        }
+        if (root.endsWith("/")) {
+            root = root.substring(0, root.length() - 1);
+        }
+        return root;
+    }
+
+    /**
+     * @param is
+     * @return className - indexed type names, sorted
+     * @throws IOException
+     */
+    public static Map<String, Set<String>> read(InputStream is) throws IOException {
+        Map<String, Set<String>> ret = new TreeMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            int i = line.indexOf('=');
+            if (line.isEmpty() || line.startsWith("#") || i < 1) {
+                continue;
+            }
+            Set<String> types = ret.computeIfAbsent(line.substring(0, i).trim(), k -> new TreeSet<>());
+            for (String type : line.substring(i + 1).split(",")) {
+                type = type.trim();
+                if (!type.isEmpty()) {
+                    types.add(type);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return true if at least one index file is on the classpath
+     */
+    public boolean isPresent() {
+        return !indexedRoots.isEmpty();
+    }
+
+    /**
+     * @param typeName
+     * @return true if the index is present and records the type
+     */
+    public boolean isIndexed(String typeName) {
+        return isPresent() && INDEXED_TYPES.contains(typeName);
+    }
+
+    /**
+     * The index is authoritative only for the classpath roots having an index file, the caller should scan the other
+     * roots.
+     *
+     * @param classpathRoot
+     * @return true if the classpath root (jar or classes directory) has an index file
+     */
+    public boolean isIndexed(URL classpathRoot) {
+        return indexedRoots.contains(normalizeRoot(classpathRoot.toExternalForm()));
+    }
+
+    /**
+     * @param typeName
+     * @param rootPackageName "" for all
+     * @return class names annotated with / implementing the type in the root package and its sub packages of all
+     * indexed classpath roots
+     */
+    public Set<String> getClassNames(String typeName, String rootPackageName) {
+        Set<String> classNames = index.getOrDefault(typeName, Collections.emptySet());
+        if (rootPackageName.isEmpty()) {
+            return classNames;
+        }
+        Set<String> ret = new HashSet<>();
+        for (String className : classNames) {
+            if (isInPackage(className, rootPackageName)) {
+                ret.add(className);
+            }
+        }
+        return ret;
+    }
+
+    protected static boolean isInPackage(String className, String packageName) {
+        return className.startsWith(packageName) && className.length() > packageName.length() && className.charAt(packageName.length()) == '.';
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.util.reflect;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor writes {@link BootIndex#INDEX_LOCATION} at compile time, so that the application startup reads
+ * one small file instead of scanning the classpath for {@link BootIndex#INDEXED_TYPES}.
+ * <p>
+ * Registered via META-INF/services, to enable it on JDK 23+ (or with -proc:none) add jexpress to the processor path:
+ * <pre>{@code
+ * <plugin>
+ *     <groupId>org.apache.maven.plugins</groupId>
+ *     <artifactId>maven-compiler-plugin</artifactId>
+ *     <configuration>
+ *         <annotationProcessorPaths>
+ *             <path>
+ *                 <groupId>org.summerboot</groupId>
+ *                 <artifactId>jexpress</artifactId>
+ *                 <version>${jexpress.version}</version>
+ *             </path>
+ *         </annotationProcessorPaths>
+ *     </configuration>
+ * </plugin>
+ * }</pre>
+ * Incremental compilation: the previous index is merged, entries of recompiled classes are replaced, entries of
+ * deleted classes are ignored at runtime.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+@SupportedAnnotationTypes("*")
+public class BootIndexProcessor extends AbstractProcessor {
+
+    /**
+     * className - indexed type names
+     */
+    protected final Map<String, Set<String>> entries = new TreeMap<>();
+    protected final Set<String> processed = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element e : roundEnv.getRootElements()) {
+            if (e instanceof TypeElement te) {
+                index(te);
+            }
+        }
+        if (roundEnv.processingOver()) {
+            writeIndex();
+        }
+        // never claim annotations, other processors still see them
+        return false;
+    }
+
+    protected void index(TypeElement te) {
+        String className = processingEnv.getElementUtils().getBinaryName(te).toString();
+        processed.add(className);
+        Set<String> types = new TreeSet<>();
+        // getAllAnnotationMirrors includes @Inherited annotations from super classes, collectSuperTypes adds the others
+        for (AnnotationMirror am : processingEnv.getElementUtils().getAllAnnotationMirrors(te)) {
+            String name = ((TypeElement) am.getAnnotationType().asElement()).getQualifiedName().toString();
+            if (BootIndex.INDEXED_TYPES.contains(name)) {
+                types.add(name);
+            }
+        }
+        collectSuperTypes(te.asType(), types, new HashSet<>());
+        if (!types.isEmpty()) {
+            entries.put(className, types);
+        }
+        for (Element enclosed : te.getEnclosedElements()) {
+            if (enclosed instanceof TypeElement nested) {
+                index(nested);
+            }
+        }
+    }
+
+    /**
+     * Record the indexed supertypes and the indexed annotations of all supertypes, so that the index holds the same
+     * classes as a classpath scan for subtypes of annotated types (Reflections.getTypesAnnotatedWith(a, false))
+     *
+     * @param type
+     * @param types
+     * @param visited
+     */
+    protected void collectSuperTypes(TypeMirror type, Set<String> types, Set<String> visited) {
+        for (TypeMirror st : processingEnv.getTypeUtils().directSupertypes(type)) {
+            if (st.getKind() != TypeKind.DECLARED) {
+                continue;
+            }
+            TypeElement ste = (TypeElement) ((DeclaredType) st).asElement();
+            String name = ste.getQualifiedName().toString();
+            if (!visited.add(name)) {
+                continue;
+            }
+            if (BootIndex.INDEXED_TYPES.contains(name)) {
+                types.add(name);
+            }
+            for (AnnotationMirror am : ste.getAnnotationMirrors()) {
+                String annotationName = ((TypeElement) am.getAnnotationType().asElement()).getQualifiedName().toString();
+                if (BootIndex.INDEXED_TYPES.contains(annotationName)) {
+                    types.add(annotationName);
+                }
+            }
+            collectSuperTypes(st, types, visited);
+        }
+    }
+
+    protected void writeIndex() {
+        Map<String, Set<String>> merged = new TreeMap<>();
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", BootIndex.INDEX_LOCATION);
+            try (InputStream is = existing.openInputStream()) {
+                merged.putAll(BootIndex.read(is));
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            // no previous index, full build
+        }
+        merged.keySet().removeAll(processed);
+        merged.putAll(entries);
+        if (merged.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject fo = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", BootIndex.INDEX_LOCATION);
+            try (Writer w = new OutputStreamWriter(fo.openOutputStream(), StandardCharsets.UTF_8)) {
+                w.write("# generated by " + getClass().getName() + "\n");
+                for (Map.Entry<String, Set<String>> e : merged.entrySet()) {
+                    w.write(e.getKey() + "=" + String.join(",", e.getValue()) + "\n");
+                }
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Failed to write " + BootIndex.INDEX_LOCATION + ": " + ex);
+        }
+    }
+}
@@ -70,7 +70,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static org.summerboot.jexpress.boot.config.ConfigUtil.ENCRYPTED_WARPER_PREFIX;
@@ -82,6 +84,10 @@ public class ReflectionUtil {
 
     protected static final Set<Class<?>> PluginClasses = new HashSet();
 
+    /**
+     * root package name - scan result, one classpath scan per root package instead of one per call
+     */
+    protected static final Map<String, Reflections> ScanCache = new ConcurrentHashMap<>();
 
     public static void setPluginClasses(Set<Class<?>> pluginClasses) {
         PluginClasses.clear();
@@ -127,6 +133,82 @@ public class ReflectionUtil {
         return new Reflections(cb);
     }
 
+    /**
+     * Release the cached scan results and the loaded {@link BootIndex}, next call will load/scan again
+     */
+    public static void clearScanCache() {
+        ScanCache.clear();
+        BootIndex.reset();
+    }
+
+    protected static Reflections getReflections(String rootPackageName) {
+        return ScanCache.computeIfAbsent(rootPackageName, name -> buildReflections(name));
+    }
+
+    /**
+     * @param rootPackageName
+     * @param roots           the classpath roots to scan
+     * @param cl
+     * @return cached scan of the root package within the given classpath roots only
+     */
+    protected static Reflections getReflections(String rootPackageName, Collection<URL> roots, ClassLoader cl) {
+        // key: "!" never appears in a package name
+        return ScanCache.computeIfAbsent("!" + rootPackageName + roots, key -> {
+            ConfigurationBuilder cb = new ConfigurationBuilder().setUrls(roots).setClassLoaders(new ClassLoader[]{cl});
+            if (!rootPackageName.isEmpty()) {
+                cb.filterInputsBy(new FilterBuilder().includePackage(rootPackageName));
+            }
+            return new Reflections(cb);
+        });
+    }
+
+    /**
+     * @param type            annotation or interface
+     * @param rootPackageName
+     * @return classes from {@link BootIndex} for the indexed classpath roots plus a scan of the other roots containing
+     * the root package, or null if no such root is indexed
+     */
+    protected static Set<Class<?>> getIndexedClasses(Class<?> type, String rootPackageName) {
+        BootIndex bootIndex = BootIndex.get();
+        if (!bootIndex.isIndexed(type.getName())) {
+            return null;
+        }
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        if (cl == null) {
+            cl = ReflectionUtil.class.getClassLoader();
+        }
+        Collection<URL> roots = rootPackageName.isEmpty()
+                ? ClasspathHelper.forJavaClassPath()
+                : ClasspathHelper.forPackage(rootPackageName, cl);
+        List<URL> unindexedRoots = new ArrayList<>();
+        for (URL root : roots) {
+            if (!bootIndex.isIndexed(root)) {
+                unindexedRoots.add(root);
+            }
+        }
+        if (unindexedRoots.size() == roots.size()) {
+            return null;
+        }
+        Set<Class<?>> ret = new HashSet();
+        for (String className : bootIndex.getClassNames(type.getName(), rootPackageName)) {
+            try {
+                ret.add(Class.forName(className, false, cl));
+            } catch (ClassNotFoundException | LinkageError ex) {
+                // stale entry of a deleted class after incremental compilation
+            }
+        }
+        if (!unindexedRoots.isEmpty()) {
+            // e.g. the framework itself and the jars/modules not compiled with BootIndexProcessor
+            Reflections reflections = getReflections(rootPackageName, unindexedRoots, cl);
+            if (type.isAnnotation()) {
+                ret.addAll(reflections.getTypesAnnotatedWith((Class<? extends Annotation>) type, false));
+            } else {
+                ret.addAll(reflections.getSubTypesOf(type));
+            }
+        }
+        return ret;
+    }
+
     public static <T extends Object> Set<Class<? extends T>> getAllImplementationsByInterface(Class<T> interfaceClass, Collection<String> rootPackageNames) {
         String[] sa = rootPackageNames.toArray(String[]::new);
         return getAllImplementationsByInterface(interfaceClass, sa);
@@ -144,8 +226,18 @@ public class ReflectionUtil {
             if (rootPackageName == null || (!rootPackageName.isEmpty() && rootPackageName.isBlank())) {
                 continue;// skip null and whitespace-only; allow "" to scan default (no-package) classes
             }
-            Reflections reflections = buildReflections(rootPackageName);//REF2610-1
-            Set<Class<? extends T>> cs = reflections.getSubTypesOf(interfaceClass);
+            Set<Class<? extends T>> cs;
+            Set<Class<?>> indexed = getIndexedClasses(interfaceClass, rootPackageName);
+            if (indexed == null) {
+                cs = getReflections(rootPackageName).getSubTypesOf(interfaceClass);//REF2610-1
+            } else {
+                cs = new HashSet();
+                for (Class c : indexed) {
+                    if (c != interfaceClass && interfaceClass.isAssignableFrom(c)) {
+                        cs.add(c);
+                    }
+                }
+            }
             if (cs.isEmpty()) {
                 continue;
             }
@@ -162,7 +254,8 @@ public class ReflectionUtil {
     /**
      * @param annotation
      * @param rootPackageNames
-     * @param honorInherited
+     * @param honorInherited   passed to Reflections.getTypesAnnotatedWith, the {@link BootIndex} is only used when
+     *                         false since it is built the same way as a scan with false
      * @return
      */
     public static Set<Class<?>> getAllImplementationsByAnnotation(Class<? extends Annotation> annotation, boolean honorInherited, String... rootPackageNames) {
@@ -171,8 +264,10 @@ public class ReflectionUtil {
             if (rootPackageName == null || (!rootPackageName.isEmpty() && rootPackageName.isBlank())) {
                 continue;// skip null and whitespace-only; allow "" to scan default (no-package) classes
             }
-            Reflections reflections = buildReflections(rootPackageName);//REF2610-1
-            Set<Class<?>> cs = reflections.getTypesAnnotatedWith(annotation, honorInherited);
+            Set<Class<?>> cs = honorInherited ? null : getIndexedClasses(annotation, rootPackageName);
+            if (cs == null) {
+                cs = getReflections(rootPackageName).getTypesAnnotatedWith(annotation, honorInherited);//REF2610-1
+            }
             if (cs.isEmpty()) {
                 continue;
             }
@@ -381,6 +476,242 @@ public class ReflectionUtil {
         }
     }
 
+    /**
+     * Same conversion as {@link #toJavaType(Class, Type, String, boolean, boolean, boolean, EnumConvert.To, String)},
+     * with the generic type arguments, wildcard bounds, enum conversion and the target type parser resolved once, for
+     * values converted again and again to the same type (e.g. request parameters)
+     *
+     * @param targetClass
+     * @param genericType
+     * @param trim
+     * @param autoDecrypt
+     * @param isEmailRecipients
+     * @param enumConvert
+     * @param collectionDelimiter
+     * @return
+     */
+    public static StringConverter compileConverter(Class targetClass, Type genericType, final boolean trim, final boolean autoDecrypt,
+                                                   final boolean isEmailRecipients, EnumConvert.To enumConvert, String collectionDelimiter) {
+        final Class declaredClass = targetClass;
+        final StringConverter blankConverter = compileBlankConverter(declaredClass);
+        Class[] upperBoundClasses = {};
+        if (genericType instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) genericType;
+            Type fieldRawType = parameterizedType.getRawType();
+            if (fieldRawType instanceof Class) {
+                targetClass = (Class) fieldRawType;
+            }
+            Type[] argTypes = parameterizedType.getActualTypeArguments();
+            upperBoundClasses = new Class[argTypes.length];
+            for (int i = 0; i < argTypes.length; i++) {
+                Type upperBoundType = argTypes[i];
+                if (upperBoundType instanceof WildcardType) {
+                    upperBoundClasses[i] = (Class) ((WildcardType) upperBoundType).getUpperBounds()[0];
+                } else if (upperBoundType instanceof Class) {
+                    upperBoundClasses[i] = (Class) upperBoundType;
+                }
+            }
+        }
+        final Class classT = targetClass.isArray() ? targetClass.getComponentType() : upperBoundClasses.length > 0 ? upperBoundClasses[0] : null;
+        final boolean isCollection = targetClass.equals(Set.class) || targetClass.equals(SortedSet.class) || targetClass.equals(List.class);
+        final StringConverter converter;
+        if ((targetClass.isArray() || isCollection) && classT != null) {
+            final StringConverter elementConverter = compileStandardConverter(trim, classT, autoDecrypt, isEmailRecipients, enumConvert);
+            final DsvParser dsvParser = new DsvParser(collectionDelimiter == null ? "," : collectionDelimiter);
+            final int kind = targetClass.isArray() ? 0 : targetClass.equals(Set.class) ? 1 : targetClass.equals(SortedSet.class) ? 2 : 3;
+            converter = value -> {
+                String[] valuesStr = dsvParser.parse(value);
+                if (valuesStr.length < 1) {
+                    return null;
+                }
+                Object array = kind == 0 ? Array.newInstance(classT, valuesStr.length) : new Object[valuesStr.length];
+                for (int i = 0; i < valuesStr.length; i++) {
+                    Array.set(array, i, elementConverter.convert(valuesStr[i]));
+                }
+                return switch (kind) {
+                    case 1 -> Set.of((Object[]) array);
+                    case 2 -> ImmutableSortedSet.copyOf(List.of((Object[]) array));
+                    case 3 -> List.of((Object[]) array);
+                    default -> array;
+                };
+            };
+        } else if (isCollection || targetClass.equals(Map.class) || targetClass.equals(Class.class) || targetClass.equals(JsonNode.class)) {
+            // rarely used or invalid declaration, keep the exact behavior of toJavaType
+            converter = value -> {
+                try {
+                    return toJavaType(declaredClass, genericType, value, trim, autoDecrypt, isEmailRecipients, enumConvert, collectionDelimiter);
+                } catch (IllegalAccessException ex) {
+                    throw new IllegalArgumentException(ex);
+                }
+            };
+        } else {
+            converter = compileStandardConverter(trim, targetClass, autoDecrypt, isEmailRecipients, enumConvert);
+        }
+        return value -> {
+            if (StringUtils.isBlank(value)) {
+                return blankConverter.convert(null);
+            }
+            return converter.convert(trim ? value.trim() : value);
+        };
+    }
+
+    /**
+     * Same conversion as {@link #toStandardJavaType(String, boolean, Class, boolean, boolean, EnumConvert.To)} with the
+     * parser of the target class resolved once
+     *
+     * @param trim
+     * @param targetClass
+     * @param autoDecrypt
+     * @param isEmailRecipients
+     * @param enumConvert
+     * @return
+     */
+    public static StringConverter compileStandardConverter(final boolean trim, final Class targetClass, final boolean autoDecrypt,
+                                                           final boolean isEmailRecipients, EnumConvert.To enumConvert) {
+        final StringConverter blankConverter = compileBlankConverter(targetClass);
+        final StringConverter parser = compileStandardParser(targetClass, enumConvert);
+        return value -> {
+            if (StringUtils.isBlank(value)) {
+                return blankConverter.convert(null);
+            }
+            if (trim) {
+                value = value.trim();
+            }
+            if (autoDecrypt && value.startsWith(ENCRYPTED_WARPER_PREFIX + "(") && value.endsWith(")")) {
+                try {
+                    value = EncryptorUtil.decrypt(value, true);
+                } catch (GeneralSecurityException ex) {
+                    throw new IllegalArgumentException("Failed to decrypt", ex);
+                }
+            }
+            if (isEmailRecipients && !FormatterUtil.REGEX_EMAIL_PATTERN.matcher(value).matches()) {
+                throw new IllegalArgumentException("invalid email address format");
+            }
+            return parser.convert(value);
+        };
+    }
+
+    protected static StringConverter compileBlankConverter(final Class targetClass) {
+        if (targetClass.equals(TimeZone.class)) {
+            // TimeZone is mutable, return a new one each time
+            return value -> TimeZone.getDefault();
+        }
+        final Object blankValue = toStandardJavaType(null, false, targetClass, false, false, null);
+        return value -> blankValue;
+    }
+
+    /**
+     * @param targetClass
+     * @param enumConvert
+     * @return parser of a non-blank value
+     */
+    protected static StringConverter compileStandardParser(final Class targetClass, final EnumConvert.To enumConvert) {
+        if (targetClass.equals(String.class)) {
+            return value -> value;
+        } else if (targetClass.equals(boolean.class) || targetClass.equals(Boolean.class)) {
+            return Boolean::parseBoolean;
+        } else if (targetClass.equals(byte.class) || targetClass.equals(Byte.class)) {
+            return Byte::parseByte;
+        } else if (targetClass.equals(char.class)) {
+            return value -> (char) Short.parseShort(value);
+        } else if (targetClass.equals(short.class) || targetClass.equals(Short.class)) {
+            return Short::parseShort;
+        } else if (targetClass.equals(int.class) || targetClass.equals(Integer.class)) {
+            return Integer::parseInt;
+        } else if (targetClass.equals(long.class) || targetClass.equals(Long.class)) {
+            return Long::parseLong;
+        } else if (targetClass.equals(float.class) || targetClass.equals(Float.class)) {
+            return Float::parseFloat;
+        } else if (targetClass.equals(double.class) || targetClass.equals(Double.class)) {
+            return Double::parseDouble;
+        } else if (targetClass.equals(BigDecimal.class)) {
+            return value -> BigDecimal.valueOf(Double.parseDouble(value));
+        } else if (targetClass.isEnum()) {
+            final Class<Enum> enumClass = targetClass;
+            if (enumConvert == EnumConvert.To.UpperCase) {
+                return value -> Enum.valueOf(enumClass, value.toUpperCase());
+            } else if (enumConvert == EnumConvert.To.LowerCase) {
+                return value -> Enum.valueOf(enumClass, value.toLowerCase());
+            }
+            return value -> Enum.valueOf(enumClass, value);
+        } else if (targetClass.equals(OffsetDateTime.class)) {
+            return value -> OffsetDateTime.parse(value, TimeUtil.ISO8601_ZONED_DATE_TIME);
+        } else if (targetClass.equals(ZonedDateTime.class)) {
+            return value -> ZonedDateTime.parse(value, TimeUtil.ISO8601_ZONED_DATE_TIME);
+        } else if (targetClass.equals(LocalDateTime.class)) {
+            return value -> LocalDateTime.parse(value, DateTimeFormatter.ISO_DATE_TIME);
+        } else if (targetClass.equals(LocalDate.class)) {
+            return value -> LocalDate.parse(value, DateTimeFormatter.ISO_LOCAL_DATE);
+        } else if (targetClass.equals(URI.class) || targetClass.equals(URL.class) || targetClass.equals(Path.class) || targetClass.equals(File.class)
+                || targetClass.equals(TimeZone.class) || targetClass.equals(InetSocketAddress.class) || targetClass.equals(SocketAddress.class)
+                || targetClass.equals(Charset.class)) {
+            return value -> toStandardJavaType(value, false, targetClass, false, false, null);
+        }
+        // 1. static valueOf(String), of(String) or fromString(String); 2. constructor(String); 3. JSON
+        final List<Method> factoryMethods = new ArrayList<>();
+        for (String name : new String[]{"valueOf", "of", "fromString"}) {
+            try {
+                Method mtd = targetClass.getMethod(name, String.class);
+                if (Modifier.isStatic(mtd.getModifiers())) {
+                    factoryMethods.add(mtd);
+                }
+            } catch (NoSuchMethodException | SecurityException ex) {
+                //no static method(String)
+            }
+        }
+        Constructor cst;
+        try {
+            cst = targetClass.getConstructor(String.class);
+        } catch (NoSuchMethodException | SecurityException ex) {
+            //no constructor with (String)
+            cst = null;
+        }
+        final Constructor constructor = cst;
+        return value -> {
+            for (Method mtd : factoryMethods) {
+                try {
+                    return mtd.invoke(null, value);
+                } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
+                    //failed to call static method(String)
+                }
+            }
+            if (constructor != null) {
+                try {
+                    return constructor.newInstance(value);
+                } catch (InstantiationException | IllegalAccessException | IllegalArgumentException |
+                         InvocationTargetException ex) {
+                    //failed to crate instance
+                }
+            }
+            try {
+                return BeanUtil.fromJson(targetClass, value);
+            } catch (Exception ex) {
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Same as {@link FormatterUtil#parseDsv(String, String)} with the delimiter regex compiled once
+     */
+    protected static class DsvParser {
+
+        protected final String delimiter;
+        protected final Pattern delimiterRegex;
+
+        protected DsvParser(String delimiter) {
+            this.delimiter = delimiter;
+            this.delimiterRegex = Pattern.compile("\\s*+" + delimiter + "\\s*+");
+        }
+
+        protected String[] parse(String dsv) {
+            if (StringUtils.isBlank(dsv)) {
+                return FormatterUtil.EMPTY_STR_ARRAY;
+            }
+            return StringUtils.split(delimiterRegex.matcher(dsv.trim()).replaceAll(delimiter), delimiter);
+        }
+    }
+
     /**
      * T: enum, String, boolean/Boolean, byte/Byte, short/Short, int/Integer,
      * long/Long, float/Float, double/Double, BigDecimal, URI, URL, Path, File
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.util.reflect;
+
+/**
+ * Converts a String to a target type resolved once by
+ * {@link ReflectionUtil#compileConverter(Class, java.lang.reflect.Type, boolean, boolean, boolean, org.summerboot.jexpress.annotation.validation.EnumConvert.To, String)},
+ * so that each conversion is a direct call without type introspection.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+@FunctionalInterface
+public interface StringConverter {
+
+    /**
+     * @param value
+     * @return the converted value, or the default value of the target type (0, false or null) if value is blank
+     * @throws IllegalArgumentException if value cannot be converted
+     */
+    Object convert(String value);
+}
@@ -16,6 +16,7 @@
  */
 package org.summerboot.jexpress.webserver.jaxrs;
 
+import com.fasterxml.jackson.annotation.JsonView;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponseStatus;
@@ -42,10 +43,16 @@ import org.summerboot.jexpress.api.common.SessionContext;
 import org.summerboot.jexpress.infra.netty.config.NioConfig;
 import org.summerboot.jexpress.util.lang.BeanUtil;
 import org.summerboot.jexpress.util.reflect.ReflectionUtil;
+import org.summerboot.jexpress.util.reflect.StringConverter;
+import tools.jackson.databind.JavaType;
 
 import java.lang.reflect.Parameter;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.temporal.TemporalAccessor;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -63,12 +70,32 @@ class JaxRsRequestParameter {
     protected final Type parameterizedType;
     protected final Type[] argTypes;
     protected final Class genericClassT;
+    /**
+     * JSON body type resolved at registration time, null for non-generic body
+     */
+    protected final JavaType bodyJavaType;
+    /**
+     * JSON body @JsonView
+     */
+    protected final Class<?> jsonView;
     protected final ParamType type;
     protected final String key;
     protected final String defaultValue;
     protected final boolean isRequired;
 
     protected final Pattern pattern;
+    /**
+     * compiled regex of @Pattern
+     */
+    protected final java.util.regex.Pattern patternRegex;
+    /**
+     * converter resolved at registration time, binding a request is a direct call without type introspection
+     */
+    protected final StringConverter converter;
+    /**
+     * {@link DefaultValue} converted at registration time, null if it is not immutable or invalid (to be reported per request)
+     */
+    protected final Object resolvedDefaultValue;
 
     //protected final boolean requestBodyAllowed;
     protected boolean autoBeanValidation = false;
@@ -106,11 +133,16 @@ class JaxRsRequestParameter {
         }
         if (argTypes == null || argTypes.length < 1) {
             genericClassT = null;
+            bodyJavaType = null;
         } else {
             genericClassT = (Class) argTypes[0];
+            bodyJavaType = BeanUtil.buildJavaType(targetClass, genericClassT);
         }
+        JsonView jv = param.getAnnotation(JsonView.class);
+        jsonView = jv == null || jv.value().length < 1 ? null : jv.value()[0];
 
         pattern = param.getAnnotation(Pattern.class);
+        patternRegex = pattern == null ? null : java.util.regex.Pattern.compile(pattern.regexp());
         DefaultValue dft = param.getAnnotation(DefaultValue.class);
         if (dft == null) {
             defaultValue = null;
@@ -197,6 +229,26 @@ class JaxRsRequestParameter {
         } else {
             enumConvert = null;
         }
+        converter = ReflectionUtil.compileConverter(targetClass, parameterizedType, true, false, false, enumConvert, this.collectionDelimiter);
+        resolvedDefaultValue = resolveDefaultValue();
+    }
+
+    protected Object resolveDefaultValue() {
+        if (defaultValue == null || (patternRegex != null && !patternRegex.matcher(defaultValue).matches())) {
+            return null;
+        }
+        Object v;
+        try {
+            v = converter.convert(defaultValue);
+        } catch (Throwable ex) {
+            return null;
+        }
+        // shared by all requests
+        boolean immutable = v instanceof String || v instanceof Boolean || v instanceof Character
+                || v instanceof Byte || v instanceof Short || v instanceof Integer || v instanceof Long
+                || v instanceof Float || v instanceof Double || v instanceof BigDecimal
+                || v instanceof Enum || v instanceof TemporalAccessor || v instanceof URI || v instanceof Path;
+        return immutable ? v : null;
     }
 
     public ParamType getType() {
@@ -265,10 +317,13 @@ class JaxRsRequestParameter {
             case Body_JSON:
                 Object postDataObj;
                 try {
-                    if (genericClassT == null) {
-                        postDataObj = BeanUtil.fromJson(request.getHttpPostRequestBody(), targetClass);
+                    String body = request.getHttpPostRequestBody();
+                    if (StringUtils.isBlank(body)) {
+                        postDataObj = null;
+                    } else if (bodyJavaType == null) {
+                        postDataObj = BeanUtil.jsonReader(targetClass, jsonView).readValue(body);
                     } else {
-                        postDataObj = BeanUtil.fromJson(request.getHttpPostRequestBody(), targetClass, genericClassT);
+                        postDataObj = BeanUtil.jsonReader(bodyJavaType, jsonView).readValue(body);
                     }
                 } catch (Throwable ex) {
                     // 1. convert to JSON
@@ -366,28 +421,30 @@ class JaxRsRequestParameter {
 
     protected Object parse(String value, String defaultValue, SessionContext context) {
         if (StringUtils.isBlank(value)) {
-            if (defaultValue != null) {
+            if (resolvedDefaultValue != null) {
+                return resolvedDefaultValue;
+            } else if (defaultValue != null) {
                 value = defaultValue;
             } else {
                 if (isRequired) {
                     Err e = new Err(BootErrorCode.BAD_REQUEST_MISSING_REQUIRED_FILED, null, "Missing Required Filed", null, "Missing Required Filed: " + type + "{" + key + "}=" + value);
                     context.status(HttpResponseStatus.BAD_REQUEST).error(e);
                 }
-                return ReflectionUtil.toStandardJavaType(null, false, targetClass, false, false, null);//primitive types devault value or null
+                return converter.convert(null);//primitive types devault value or null
             }
         }
-        String regex = pattern == null ? null : pattern.regexp();
-        if (regex != null && !value.matches(regex)) {
+        if (patternRegex != null && !patternRegex.matcher(value).matches()) {
+            String regex = pattern.regexp();
             Err e = new Err(BootErrorCode.BAD_REQUEST_DATA, null, "Failed to parse regex data type: invalid " + type + "{" + key + "}=" + value, null, "Failed to parse data type: invalid " + type + "{" + key + "}=" + value + " by regex=" + regex);
             context.status(HttpResponseStatus.BAD_REQUEST).error(e);
-            return ReflectionUtil.toStandardJavaType(null, false, targetClass, false, false, null);//primitive types devault value or null
+            return converter.convert(null);//primitive types devault value or null
         }
         try {
-            return ReflectionUtil.toJavaType(targetClass, parameterizedType, value, true, false, false, enumConvert, collectionDelimiter);
+            return converter.convert(value);
         } catch (Throwable ex) {
             Err e = new Err(BootErrorCode.BAD_REQUEST_DATA, null, "Failed to parse data type: invalid " + type + "{" + key + "}=" + value, ex);
             context.status(HttpResponseStatus.BAD_REQUEST).error(e);
-            return ReflectionUtil.toStandardJavaType(null, false, targetClass, false, false, null);//primitive types devault value or null
+            return converter.convert(null);//primitive types devault value or null
         }
     }
 }
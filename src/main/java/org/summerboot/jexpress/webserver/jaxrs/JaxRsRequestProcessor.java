@@ -16,6 +16,7 @@
  */
 package org.summerboot.jexpress.webserver.jaxrs;
 
+import com.fasterxml.jackson.annotation.JsonView;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
@@ -94,6 +95,10 @@ public class JaxRsRequestProcessor implements RequestProcessor {
     protected final int parameterSize;
     public static final List<String> SupportedProducesWithReturnType = Arrays.asList(MediaType.APPLICATION_JSON, MediaType.APPLICATION_JSON_PATCH_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_XML, MediaType.TEXT_PLAIN, MediaType.TEXT_HTML);
     protected final Boolean pretty;
+    /**
+     * JSON response @JsonView of the method or the controller class
+     */
+    protected final Class<?> jsonView;
 
     //logging info
     protected final ProcessorSettings processorSettings;
@@ -122,6 +127,11 @@ public class JaxRsRequestProcessor implements RequestProcessor {
         } else {
             pretty = null;
         }
+        JsonView jv = javaMethod.getAnnotation(JsonView.class);
+        if (jv == null) {
+            jv = (JsonView) controllerClass.getAnnotation(JsonView.class);
+        }
+        jsonView = jv == null || jv.value().length < 1 ? null : jv.value()[0];
 
 
         // Reject ASAP: pause
@@ -312,6 +322,7 @@ public class JaxRsRequestProcessor implements RequestProcessor {
 //        }
 
         processorSettings = new ProcessorSettings();
+        processorSettings.setMetricsName(httpMethod.name() + " " + declaredUri);
         updateLogSettings(classLevelLogAnnotation);//init with class level settings
         Log methodLevelLogAnnotation = javaMethod.getAnnotation(Log.class);
         updateLogSettings(methodLevelLogAnnotation);//override root settings with method level settings
@@ -550,9 +561,9 @@ public class JaxRsRequestProcessor implements RequestProcessor {
                         case MediaType.APPLICATION_JSON -> {
                             Boolean isPretty = isPretty(context.pretty(), pretty);
                             if (isPretty != null) {
-                                context.response(BeanUtil.toJson(ret, isPretty));
+                                context.response(BeanUtil.toJson(ret, isPretty, jsonView));
                             } else {
-                                context.response(BeanUtil.toJson(ret));
+                                context.response(BeanUtil.toJson(ret, jsonView));
                             }
                         }
                         case MediaType.APPLICATION_XML, MediaType.TEXT_XML -> {
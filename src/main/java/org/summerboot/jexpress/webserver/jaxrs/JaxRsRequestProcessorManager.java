@@ -39,9 +39,11 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -273,6 +275,25 @@ public class JaxRsRequestProcessorManager {
     protected static Map<HttpMethod, Map<String, RequestProcessor>> processorMapString;
     protected static Map<HttpMethod, Map<String, RequestProcessor>> processorMapRegex;
 
+    /**
+     * @return declared URIs of all registered processors by HTTP method
+     */
+    public static Map<HttpMethod, List<String>> getDeclaredUris() {
+        Map<HttpMethod, List<String>> ret = new LinkedHashMap<>();
+        for (Map<HttpMethod, Map<String, RequestProcessor>> processorMap : Arrays.asList(processorMapString, processorMapRegex)) {
+            if (processorMap == null) {
+                continue;
+            }
+            processorMap.forEach((httpMethod, processors) -> {
+                List<String> uris = ret.computeIfAbsent(httpMethod, k -> new ArrayList<>());
+                for (RequestProcessor p : processors.values()) {
+                    uris.add(p.getDeclaredUri());
+                }
+            });
+        }
+        return ret;
+    }
+
     public static RequestProcessor getRequestProcessor(final HttpMethod httpMethod, final String httpRequestPath) {
         if (processorMapString == null) {
             return null;
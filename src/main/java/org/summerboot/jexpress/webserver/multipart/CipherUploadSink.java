@@ -0,0 +1,91 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.webserver.multipart;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.summerboot.jexpress.api.web.UploadSink;
+
+import javax.crypto.Cipher;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * Encrypts (or decrypts) the upload with an initialized {@link Cipher} while passing the result to the downstream
+ * sink, the plain content never reaches the disk
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class CipherUploadSink implements UploadSink {
+
+    protected final Cipher cipher;
+    protected final UploadSink downstream;
+
+    /**
+     * @param cipher     initialized, e.g. cipher.init(Cipher.ENCRYPT_MODE, key, iv)
+     * @param downstream
+     */
+    public CipherUploadSink(Cipher cipher, UploadSink downstream) {
+        this.cipher = cipher;
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void write(ByteBuf chunk) throws IOException {
+        int length = chunk.readableBytes();
+        ByteBuf out = chunk.alloc().heapBuffer(cipher.getOutputSize(length));
+        try {
+            ByteBuffer output = out.nioBuffer(0, out.capacity());
+            for (ByteBuffer input : chunk.nioBuffers()) {
+                cipher.update(input, output);
+            }
+            out.writerIndex(output.position());
+            if (out.isReadable()) {
+                downstream.write(out);
+            }
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("failed to process upload with " + cipher.getAlgorithm(), ex);
+        } finally {
+            out.release();
+        }
+    }
+
+    @Override
+    public void complete() throws IOException {
+        try {
+            byte[] last = cipher.doFinal();
+            if (last != null && last.length > 0) {
+                downstream.write(Unpooled.wrappedBuffer(last));
+            }
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("failed to process upload with " + cipher.getAlgorithm(), ex);
+        }
+        downstream.complete();
+    }
+
+    @Override
+    public void abort(Throwable cause) {
+        downstream.abort(cause);
+    }
+
+    @Override
+    public File getFile() {
+        return downstream.getFile();
+    }
+}
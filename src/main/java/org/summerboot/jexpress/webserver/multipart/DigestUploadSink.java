@@ -0,0 +1,95 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.webserver.multipart;
+
+import io.netty.buffer.ByteBuf;
+import org.summerboot.jexpress.api.web.UploadSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * Computes the digest of the upload while passing the chunks to the downstream sink, e.g.
+ * <code>new DigestUploadSink(MessageDigest.getInstance("SHA-256"), new FileUploadSink(path))</code>
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class DigestUploadSink implements UploadSink {
+
+    protected final MessageDigest messageDigest;
+    protected final UploadSink downstream;
+    protected volatile byte[] digest;
+
+    /**
+     * @param messageDigest
+     * @param downstream    null to compute the digest only
+     */
+    public DigestUploadSink(MessageDigest messageDigest, UploadSink downstream) {
+        this.messageDigest = messageDigest;
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void write(ByteBuf chunk) throws IOException {
+        // nioBuffers are views, the reader index stays for the downstream sink
+        for (ByteBuffer bb : chunk.nioBuffers()) {
+            messageDigest.update(bb);
+        }
+        if (downstream != null) {
+            downstream.write(chunk);
+        }
+    }
+
+    @Override
+    public void complete() throws IOException {
+        digest = messageDigest.digest();
+        if (downstream != null) {
+            downstream.complete();
+        }
+    }
+
+    @Override
+    public void abort(Throwable cause) {
+        messageDigest.reset();
+        if (downstream != null) {
+            downstream.abort(cause);
+        }
+    }
+
+    @Override
+    public File getFile() {
+        return downstream == null ? null : downstream.getFile();
+    }
+
+    /**
+     * @return null if not completed
+     */
+    public byte[] getDigest() {
+        return digest;
+    }
+
+    /**
+     * @return lower case hex, null if not completed
+     */
+    public String getDigestHex() {
+        byte[] ret = digest;
+        return ret == null ? null : HexFormat.of().formatHex(ret);
+    }
+}
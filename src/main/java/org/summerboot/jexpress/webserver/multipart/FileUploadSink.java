@@ -0,0 +1,82 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.webserver.multipart;
+
+import io.netty.buffer.ByteBuf;
+import org.summerboot.jexpress.api.web.UploadSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the upload to a file, the partial file is deleted when the upload is aborted
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class FileUploadSink implements UploadSink {
+
+    protected final Path file;
+    protected final FileChannel fileChannel;
+
+    public FileUploadSink(Path file) throws IOException {
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void write(ByteBuf chunk) throws IOException {
+        int remaining = chunk.readableBytes();
+        int index = chunk.readerIndex();
+        while (remaining > 0) {
+            int written = chunk.getBytes(index, fileChannel, remaining);
+            index += written;
+            remaining -= written;
+        }
+    }
+
+    @Override
+    public void complete() throws IOException {
+        fileChannel.close();
+    }
+
+    @Override
+    public void abort(Throwable cause) {
+        try {
+            fileChannel.close();
+        } catch (IOException ex) {
+            // closing a file being deleted
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    @Override
+    public File getFile() {
+        return file.toFile();
+    }
+}
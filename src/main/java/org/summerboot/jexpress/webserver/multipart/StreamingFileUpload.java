@@ -0,0 +1,454 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.webserver.multipart;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.handler.codec.http.multipart.AbstractHttpData;
+import io.netty.handler.codec.http.multipart.FileUpload;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData;
+import io.netty.handler.codec.http.multipart.MemoryFileUpload;
+import org.summerboot.jexpress.api.web.UploadSink;
+import org.summerboot.jexpress.infra.metrics.BootMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A FileUpload created by {@link StreamingHttpDataFactory}, the decoded content is handed to an {@link UploadSink}
+ * chunk by chunk instead of being kept in memory or in a temp file.
+ * <p>
+ * With an executor the sink runs off the IO thread, one chunk at a time in order. Reading from the connection is
+ * paused (autoRead) while more than highWatermark bytes wait for the sink and resumed at lowWatermark, so the memory
+ * of an upload is bounded whatever the client sends.
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class StreamingFileUpload extends AbstractHttpData implements FileUpload {
+
+    protected static final AtomicInteger ACTIVE = new AtomicInteger();
+    protected static final LongAdder BYTES_RECEIVED = new LongAdder();
+    protected static final LongAdder BYTES_WRITTEN = new LongAdder();
+    protected static final LongAdder COMPLETED = new LongAdder();
+    protected static final LongAdder FAILED = new LongAdder();
+    protected static final LongAdder PAUSES = new LongAdder();
+
+    static {
+        BootMetrics.register("streaming_upload", StreamingFileUpload::appendMetrics);
+    }
+
+    protected final UploadSink sink;
+    protected final Channel channel;
+    /**
+     * null to run the sink on the IO thread
+     */
+    protected final Executor executor;
+    protected final long highWatermark;
+    protected final long lowWatermark;
+    protected final CompletableFuture<UploadSink> done = new CompletableFuture<>();
+    protected final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    protected final AtomicBoolean draining = new AtomicBoolean();
+    protected final AtomicLong pendingBytes = new AtomicLong();
+    protected final AtomicBoolean paused = new AtomicBoolean();
+    protected volatile long receivedBytes;
+    protected volatile long writtenBytes;
+    protected String filename;
+    protected String contentType;
+    protected String contentTransferEncoding;
+
+    public StreamingFileUpload(String name, String filename, String contentType, String contentTransferEncoding, Charset charset, long size,
+                               UploadSink sink, Channel channel, Executor executor, long highWatermark) {
+        super(name, charset, size);
+        this.filename = filename;
+        this.contentType = contentType;
+        this.contentTransferEncoding = contentTransferEncoding;
+        this.sink = sink;
+        this.channel = channel;
+        this.executor = executor;
+        this.highWatermark = Math.max(1, highWatermark);
+        this.lowWatermark = this.highWatermark / 2;
+        ACTIVE.incrementAndGet();
+    }
+
+    /**
+     * @return completed with the sink after {@link UploadSink#complete()}, or exceptionally when the upload failed
+     */
+    public CompletableFuture<UploadSink> getResult() {
+        return done;
+    }
+
+    public UploadSink getSink() {
+        return sink;
+    }
+
+    /**
+     * @return bytes received from the client so far
+     */
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    /**
+     * @return bytes written by the sink so far
+     */
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * Called by the decoder on the IO thread, takes the ownership of the buffer
+     *
+     * @param buffer
+     * @param last
+     * @throws IOException
+     */
+    @Override
+    public void addContent(ByteBuf buffer, boolean last) throws IOException {
+        int length = buffer == null ? 0 : buffer.readableBytes();
+        ByteBuf chunk = buffer == null ? Unpooled.EMPTY_BUFFER : buffer;
+        try {
+            checkSize(receivedBytes + length);
+        } catch (IOException ex) {
+            chunk.release();
+            throw ex;
+        }
+        receivedBytes += length;
+        BYTES_RECEIVED.add(length);
+        if (last) {
+            setCompleted();
+        }
+        if (done.isDone()) {
+            chunk.release();
+            return;
+        }
+        if (executor != null && pendingBytes.addAndGet(length) > highWatermark && paused.compareAndSet(false, true)) {
+            channel.config().setAutoRead(false);
+            PAUSES.increment();
+        }
+        enqueue(() -> write(chunk, length, last));
+    }
+
+    protected void write(ByteBuf chunk, int length, boolean last) {
+        try {
+            if (done.isDone()) {
+                return;
+            }
+            if (length > 0) {
+                sink.write(chunk);
+                writtenBytes += length;
+                BYTES_WRITTEN.add(length);
+            }
+            if (last) {
+                sink.complete();
+                // false when expired meanwhile
+                if (done.complete(sink)) {
+                    COMPLETED.increment();
+                    ACTIVE.decrementAndGet();
+                }
+            }
+        } catch (Throwable ex) {
+            fail(ex);
+        } finally {
+            chunk.release();
+            if (executor != null && pendingBytes.addAndGet(-length) <= lowWatermark && paused.compareAndSet(true, false)) {
+                channel.config().setAutoRead(true);
+            }
+        }
+    }
+
+    /**
+     * Abort the upload after the chunks already received are handled
+     *
+     * @param cause
+     */
+    public void abort(Throwable cause) {
+        enqueue(() -> fail(cause));
+    }
+
+    /**
+     * Fail the upload now, e.g. when it is not completed in time: the chunks still waiting are released without being
+     * written, and the sink is aborted once the chunk it is writing (if any) is done
+     *
+     * @param cause
+     */
+    public void expire(Throwable cause) {
+        if (markFailed(cause)) {
+            enqueue(() -> sink.abort(cause));
+        }
+    }
+
+    protected void fail(Throwable cause) {
+        if (markFailed(cause)) {
+            sink.abort(cause);
+        }
+    }
+
+    /**
+     * @param cause
+     * @return false when already completed or failed
+     */
+    protected boolean markFailed(Throwable cause) {
+        if (!done.completeExceptionally(cause)) {
+            return false;
+        }
+        FAILED.increment();
+        ACTIVE.decrementAndGet();
+        if (paused.compareAndSet(true, false)) {
+            channel.config().setAutoRead(true);
+        }
+        return true;
+    }
+
+    /**
+     * Run the tasks one at a time in order on the executor, or inline without executor
+     *
+     * @param task
+     */
+    protected void enqueue(Runnable task) {
+        if (executor == null) {
+            task.run();
+            return;
+        }
+        tasks.add(task);
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException ex) {
+                // executor is shutting down, run here to release the buffers
+                drain();
+            }
+        }
+    }
+
+    protected void drain() {
+        do {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+            draining.set(false);
+        } while (!tasks.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    @Override
+    public long length() {
+        return receivedBytes;
+    }
+
+    @Override
+    public void setContent(ByteBuf buffer) throws IOException {
+        addContent(buffer, true);
+    }
+
+    @Override
+    public void setContent(File file) throws IOException {
+        throw new IOException("not supported by streaming upload");
+    }
+
+    @Override
+    public void setContent(InputStream inputStream) throws IOException {
+        throw new IOException("not supported by streaming upload");
+    }
+
+    /**
+     * Called when the decoder releases this upload, abort if the client did not send all content
+     */
+    @Override
+    public void delete() {
+        if (!isCompleted()) {
+            abort(new IOException("upload incomplete: " + filename));
+        }
+    }
+
+    /**
+     * @return empty, the content is streamed to the sink and not kept
+     */
+    @Override
+    public byte[] get() {
+        return new byte[0];
+    }
+
+    /**
+     * @return empty, the content is streamed to the sink and not kept
+     */
+    @Override
+    public ByteBuf getByteBuf() {
+        return Unpooled.EMPTY_BUFFER;
+    }
+
+    @Override
+    public ByteBuf getChunk(int length) {
+        return Unpooled.EMPTY_BUFFER;
+    }
+
+    @Override
+    public String getString() {
+        return "";
+    }
+
+    @Override
+    public String getString(Charset encoding) {
+        return "";
+    }
+
+    @Override
+    public boolean renameTo(File dest) {
+        return false;
+    }
+
+    @Override
+    public boolean isInMemory() {
+        return false;
+    }
+
+    @Override
+    public File getFile() throws IOException {
+        return sink.getFile();
+    }
+
+    @Override
+    public HttpDataType getHttpDataType() {
+        return HttpDataType.FileUpload;
+    }
+
+    @Override
+    public int compareTo(InterfaceHttpData o) {
+        return getName().compareToIgnoreCase(o.getName());
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    @Override
+    public String getContentTransferEncoding() {
+        return contentTransferEncoding;
+    }
+
+    @Override
+    public void setContentTransferEncoding(String contentTransferEncoding) {
+        this.contentTransferEncoding = contentTransferEncoding;
+    }
+
+    /**
+     * @return a {@link MemoryFileUpload} with the same name, filename, content type and no content, the content is
+     * streamed to the sink and not kept
+     */
+    @Override
+    public FileUpload copy() {
+        return replace(getByteBuf().copy());
+    }
+
+    /**
+     * @return a {@link MemoryFileUpload} with the same name, filename, content type and no content
+     */
+    @Override
+    public FileUpload duplicate() {
+        return replace(getByteBuf().duplicate());
+    }
+
+    /**
+     * @return a {@link MemoryFileUpload} with the same name, filename, content type and no content
+     */
+    @Override
+    public FileUpload retainedDuplicate() {
+        return replace(getByteBuf().retainedDuplicate());
+    }
+
+    /**
+     * @param content
+     * @return a {@link MemoryFileUpload} with the same name, filename and content type holding the given content, this
+     * upload and its sink are not affected
+     */
+    @Override
+    public FileUpload replace(ByteBuf content) {
+        MemoryFileUpload upload = new MemoryFileUpload(getName(), filename, contentType, contentTransferEncoding, getCharset(), definedSize);
+        if (content != null) {
+            try {
+                upload.setContent(content);
+            } catch (IOException ex) {
+                throw new ChannelException(ex);
+            }
+        }
+        return upload;
+    }
+
+    @Override
+    public FileUpload retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public FileUpload retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public FileUpload touch() {
+        return this;
+    }
+
+    @Override
+    public FileUpload touch(Object hint) {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamingFileUpload: " + getName() + ", filename=" + filename + ", received=" + receivedBytes + ", written=" + writtenBytes;
+    }
+
+    public static void appendMetrics(StringBuilder sb, boolean openMetrics) {
+        BootMetrics.appendGauge(sb, "upload_active", "Streaming file uploads in progress", ACTIVE.get());
+        BootMetrics.appendCounter(sb, openMetrics, "upload_received_bytes", "Streaming file upload bytes received", BYTES_RECEIVED.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "upload_written_bytes", "Streaming file upload bytes written by the sinks", BYTES_WRITTEN.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "upload_completed", "Streaming file uploads completed", COMPLETED.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "upload_failed", "Streaming file uploads failed or aborted", FAILED.sum());
+        BootMetrics.appendCounter(sb, openMetrics, "upload_backpressure_pauses", "Connection reads paused because the upload sink was behind", PAUSES.sum());
+    }
+}
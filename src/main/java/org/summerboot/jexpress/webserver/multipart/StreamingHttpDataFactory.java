@@ -0,0 +1,53 @@
+/*
+ * Copyright 2005-2026 Du Law Office - jExpress, The Summer Boot Framework Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.summerboot.jexpress.webserver.multipart;
+
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.FileUpload;
+
+import java.nio.charset.Charset;
+
+/**
+ * Creates a {@link StreamingFileUpload} when the provider returns one, otherwise the default temp file upload
+ *
+ * @author Changski Tie Zheng Zhang 张铁铮, 魏泽北, 杜旺财, 杜富贵
+ */
+public class StreamingHttpDataFactory extends DefaultHttpDataFactory {
+
+    @FunctionalInterface
+    public interface FileUploadProvider {
+
+        /**
+         * @return null to use the default temp file upload
+         */
+        FileUpload createFileUpload(String name, String filename, String contentType, String contentTransferEncoding, Charset charset, long size);
+    }
+
+    protected final FileUploadProvider provider;
+
+    public StreamingHttpDataFactory(boolean useDisk, FileUploadProvider provider) {
+        super(useDisk);
+        this.provider = provider;
+    }
+
+    @Override
+    public FileUpload createFileUpload(HttpRequest request, String name, String filename, String contentType, String contentTransferEncoding, Charset charset, long size) {
+        FileUpload ret = provider.createFileUpload(name, filename, contentType, contentTransferEncoding, charset, size);
+        return ret == null ? super.createFileUpload(request, name, filename, contentType, contentTransferEncoding, charset, size) : ret;
+    }
+}